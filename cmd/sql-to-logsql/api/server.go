@@ -2,6 +2,9 @@ package api
 
 import (
 	"bytes"
+	"compress/gzip"
+	"crypto/sha256"
+	"encoding/hex"
 	"encoding/json"
 	"errors"
 	"fmt"
@@ -11,8 +14,10 @@ import (
 	"net/http"
 	"net/url"
 	"path"
+	"strconv"
 	"strings"
 	"sync"
+	"time"
 
 	"github.com/VictoriaMetrics/sql-to-logsql/cmd/sql-to-logsql/web"
 	"github.com/VictoriaMetrics/sql-to-logsql/lib/logsql"
@@ -146,7 +151,9 @@ func (s *Server) handleQuery(w http.ResponseWriter, r *http.Request) {
 	start := strings.TrimSpace(req.Start)
 	end := strings.TrimSpace(req.End)
 
+	translateStart := time.Now()
 	statement, err := processQuery(sqlText, s.sp)
+	translateDuration := time.Since(translateStart)
 	if err != nil {
 		log.Printf("ERROR: query processing failed: %v", err)
 		var ae *vlogs.APIError
@@ -168,6 +175,7 @@ func (s *Server) handleQuery(w http.ResponseWriter, r *http.Request) {
 	}
 
 	resp := queryResponse{LogsQL: statement.LogsQL}
+	queryStart := time.Now()
 	data, err := s.api.Execute(r.Context(), statement, vlogs.RequestParams{
 		EndpointConfig: vlogs.EndpointConfig{
 			Endpoint:    req.Endpoint,
@@ -197,7 +205,18 @@ func (s *Server) handleQuery(w http.ResponseWriter, r *http.Request) {
 		return
 	}
 	resp.Data = string(data)
-	writeJSON(w, http.StatusOK, resp)
+	w.Header().Set("Server-Timing", serverTiming(translateDuration, time.Since(queryStart)))
+	writeQueryResponse(w, r, resp)
+}
+
+// serverTiming formats the time spent translating the statement and running it on VictoriaLogs as a
+// Server-Timing header value, in milliseconds, so that clients can tell server time from network time.
+func serverTiming(translate, query time.Duration) string {
+	return "translate;dur=" + formatMillis(translate) + ", query;dur=" + formatMillis(query)
+}
+
+func formatMillis(d time.Duration) string {
+	return strconv.FormatFloat(float64(d)/float64(time.Millisecond), 'f', 3, 64)
 }
 
 func processQuery(sql string, sp *store.Provider) (*logsql.StatementInfo, error) {
@@ -225,6 +244,126 @@ func writeJSON(w http.ResponseWriter, status int, v interface{}) {
 	}
 }
 
+const ndjsonContentType = "application/x-ndjson"
+
+// writeQueryResponse writes a successful query response. Clients accepting NDJSON receive the translated
+// statement as a JSON object on the first line followed by the raw result rows, which spares escaping the
+// rows into a single JSON string. Clients accepting Smile get the same document transcoded into binary JSON
+// with back-referenced property names; everybody else gets the JSON envelope.
+func writeQueryResponse(w http.ResponseWriter, r *http.Request, resp queryResponse) {
+	w.Header().Add("Vary", "Accept")
+	accept := r.Header.Get("Accept")
+	if !acceptsMediaType(accept, ndjsonContentType) && !acceptsMediaType(accept, smileContentType) {
+		body, err := json.Marshal(resp)
+		if err != nil {
+			log.Printf("ERROR: failed to encode JSON response: %v", err)
+			writeJSON(w, http.StatusInternalServerError, queryResponse{Error: "failed to encode response"})
+			return
+		}
+		writeCacheable(w, r, "application/json", append(body, '\n'))
+		return
+	}
+	head, err := json.Marshal(queryResponse{LogsQL: resp.LogsQL})
+	if err != nil {
+		log.Printf("ERROR: failed to encode JSON response: %v", err)
+		writeJSON(w, http.StatusInternalServerError, queryResponse{Error: "failed to encode response"})
+		return
+	}
+	body := make([]byte, 0, len(head)+1+len(resp.Data))
+	body = append(body, head...)
+	body = append(body, '\n')
+	body = append(body, resp.Data...)
+	if acceptsMediaType(accept, smileContentType) {
+		enc := newSmileEncoder(len(body))
+		enc.writeStringField("logsql", resp.LogsQL)
+		if err = enc.writeJSON([]byte(resp.Data)); err == nil {
+			writeCacheable(w, r, smileContentType, enc.bytes())
+			return
+		}
+		// rows that are not valid JSON are handed over as they are
+		log.Printf("WARN: failed to transcode response to Smile, falling back to NDJSON: %v", err)
+	}
+	writeCacheable(w, r, ndjsonContentType, body)
+}
+
+// writeCacheable writes a successful response together with a strong ETag derived from its body,
+// answering 304 Not Modified when the client already holds the same representation. Bodies above
+// gzipMinSize are gzip-compressed for clients that accept it.
+func writeCacheable(w http.ResponseWriter, r *http.Request, contentType string, body []byte) {
+	w.Header().Add("Vary", "Accept-Encoding")
+	sum := sha256.Sum256(body)
+	tag := hex.EncodeToString(sum[:16])
+	gzipped := len(body) >= gzipMinSize && acceptsEncoding(r.Header.Get("Accept-Encoding"), "gzip")
+	if gzipped {
+		// a strong validator identifies one representation, so the encoded body gets its own tag
+		tag += "-gzip"
+	}
+	etag := `"` + tag + `"`
+	w.Header().Set("ETag", etag)
+	w.Header().Set("Cache-Control", "no-cache")
+	if etagMatches(r.Header.Get("If-None-Match"), etag) {
+		w.WriteHeader(http.StatusNotModified)
+		return
+	}
+	w.Header().Set("Content-Type", contentType)
+	if gzipped {
+		// writes to a bytes.Buffer cannot fail
+		var buf bytes.Buffer
+		zw, _ := gzip.NewWriterLevel(&buf, gzip.BestSpeed)
+		_, _ = zw.Write(body)
+		_ = zw.Close()
+		body = buf.Bytes()
+		w.Header().Set("Content-Encoding", "gzip")
+	}
+	w.WriteHeader(http.StatusOK)
+	if _, err := w.Write(body); err != nil {
+		log.Printf("ERROR: failed to write response: %v", err)
+	}
+}
+
+// gzipMinSize is the smallest body worth compressing; below it the gzip framing outweighs the savings.
+const gzipMinSize = 1024
+
+func acceptsEncoding(acceptEncoding, coding string) bool {
+	for _, part := range strings.Split(acceptEncoding, ",") {
+		name, params, _ := strings.Cut(part, ";")
+		if !strings.EqualFold(strings.TrimSpace(name), coding) {
+			continue
+		}
+		key, value, _ := strings.Cut(strings.TrimSpace(params), "=")
+		if strings.TrimSpace(key) == "q" {
+			q, err := strconv.ParseFloat(strings.TrimSpace(value), 64)
+			return err == nil && q > 0
+		}
+		return true
+	}
+	return false
+}
+
+func acceptsMediaType(accept, mediaType string) bool {
+	for _, part := range strings.Split(accept, ",") {
+		parsed, params, err := mime.ParseMediaType(strings.TrimSpace(part))
+		if err != nil || parsed != mediaType {
+			continue
+		}
+		return params["q"] != "0"
+	}
+	return false
+}
+
+func etagMatches(header, etag string) bool {
+	if header == "" {
+		return false
+	}
+	for _, candidate := range strings.Split(header, ",") {
+		candidate = strings.TrimPrefix(strings.TrimSpace(candidate), "W/")
+		if candidate == "*" || candidate == etag {
+			return true
+		}
+	}
+	return false
+}
+
 var (
 	indexOnce  sync.Once
 	indexBytes []byte
@@ -2,6 +2,7 @@ package api
 
 import (
 	"bytes"
+	"compress/gzip"
 	"encoding/json"
 	"io"
 	"net/http"
@@ -10,6 +11,7 @@ import (
 	"path/filepath"
 	"strings"
 	"testing"
+	"time"
 )
 
 type roundTripperFunc func(*http.Request) (*http.Response, error)
@@ -75,6 +77,17 @@ func TestHandleQuerySuccess(t *testing.T) {
 	if resp.Data != `{"status":"ok"}` {
 		t.Fatalf("unexpected victoria payload: %s", resp.Data)
 	}
+	timing := rr.Header().Get("Server-Timing")
+	if !strings.HasPrefix(timing, "translate;dur=") || !strings.Contains(timing, ", query;dur=") {
+		t.Fatalf("unexpected Server-Timing header: %q", timing)
+	}
+}
+
+func TestServerTiming(t *testing.T) {
+	got := serverTiming(1500*time.Microsecond, 2*time.Second)
+	if want := "translate;dur=1.500, query;dur=2000.000"; got != want {
+		t.Fatalf("expected %q, got %q", want, got)
+	}
 }
 
 func TestHandleQueryCustomTable(t *testing.T) {
@@ -125,6 +138,232 @@ func TestHandleQueryCustomTable(t *testing.T) {
 	}
 }
 
+func TestHandleQueryNotModified(t *testing.T) {
+	srv, err := NewServer(Config{Endpoint: "http://victoria", Tables: map[string]string{"logs": "*"}})
+	if err != nil {
+		t.Fatalf("NewServer error: %v", err)
+	}
+	payload := `{"_msg":"a"}`
+	srv.setHTTPClient(&http.Client{
+		Transport: roundTripperFunc(func(req *http.Request) (*http.Response, error) {
+			resp := &http.Response{
+				StatusCode: http.StatusOK,
+				Body:       io.NopCloser(bytes.NewBufferString(payload)),
+				Header:     make(http.Header),
+			}
+			resp.Header.Set("Content-Type", "application/json")
+			return resp, nil
+		}),
+	})
+
+	query := func(ifNoneMatch string) *httptest.ResponseRecorder {
+		buf, _ := json.Marshal(map[string]string{"sql": "SELECT * FROM logs"})
+		req := httptest.NewRequest(http.MethodPost, "/api/v1/sql-to-logsql", bytes.NewReader(buf))
+		req.Header.Set("Content-Type", "application/json")
+		if ifNoneMatch != "" {
+			req.Header.Set("If-None-Match", ifNoneMatch)
+		}
+		rr := httptest.NewRecorder()
+		srv.ServeHTTP(rr, req)
+		return rr
+	}
+
+	first := query("")
+	etag := first.Header().Get("ETag")
+	if first.Code != http.StatusOK || etag == "" {
+		t.Fatalf("expected status 200 with an ETag, got %d %q", first.Code, etag)
+	}
+
+	repeated := query(etag)
+	if repeated.Code != http.StatusNotModified {
+		t.Fatalf("expected status 304, got %d", repeated.Code)
+	}
+	if repeated.Body.Len() != 0 {
+		t.Fatalf("expected empty body, got %q", repeated.Body.String())
+	}
+
+	payload = `{"_msg":"b"}`
+	changed := query(etag)
+	if changed.Code != http.StatusOK {
+		t.Fatalf("expected status 200 after data change, got %d", changed.Code)
+	}
+	if changed.Header().Get("ETag") == etag {
+		t.Fatalf("expected a new ETag after data change")
+	}
+}
+
+func TestHandleQueryNDJSON(t *testing.T) {
+	srv, err := NewServer(Config{Endpoint: "http://victoria", Tables: map[string]string{"logs": "*"}})
+	if err != nil {
+		t.Fatalf("NewServer error: %v", err)
+	}
+	srv.setHTTPClient(&http.Client{
+		Transport: roundTripperFunc(func(req *http.Request) (*http.Response, error) {
+			resp := &http.Response{
+				StatusCode: http.StatusOK,
+				Body:       io.NopCloser(bytes.NewBufferString("{\"_msg\":\"a\"}\n{\"_msg\":\"b\"}\n")),
+				Header:     make(http.Header),
+			}
+			resp.Header.Set("Content-Type", "application/json")
+			return resp, nil
+		}),
+	})
+
+	buf, _ := json.Marshal(map[string]string{"sql": "SELECT * FROM logs"})
+	req := httptest.NewRequest(http.MethodPost, "/api/v1/sql-to-logsql", bytes.NewReader(buf))
+	req.Header.Set("Content-Type", "application/json")
+	req.Header.Set("Accept", "application/x-ndjson, application/json;q=0.9")
+
+	rr := httptest.NewRecorder()
+	srv.ServeHTTP(rr, req)
+
+	if rr.Code != http.StatusOK {
+		t.Fatalf("expected status 200, got %d", rr.Code)
+	}
+	if got := rr.Header().Get("Content-Type"); got != "application/x-ndjson" {
+		t.Fatalf("unexpected content type: %q", got)
+	}
+	want := "{\"logsql\":\"*\"}\n{\"_msg\":\"a\"}\n{\"_msg\":\"b\"}\n"
+	if got := rr.Body.String(); got != want {
+		t.Fatalf("unexpected body: %q", got)
+	}
+}
+
+func TestHandleQuerySmile(t *testing.T) {
+	srv, err := NewServer(Config{Endpoint: "http://victoria", Tables: map[string]string{"logs": "*"}})
+	if err != nil {
+		t.Fatalf("NewServer error: %v", err)
+	}
+	srv.setHTTPClient(&http.Client{
+		Transport: roundTripperFunc(func(req *http.Request) (*http.Response, error) {
+			resp := &http.Response{
+				StatusCode: http.StatusOK,
+				Body:       io.NopCloser(bytes.NewBufferString("{\"_msg\":\"a\"}\n{\"_msg\":\"b\"}\n")),
+				Header:     make(http.Header),
+			}
+			resp.Header.Set("Content-Type", "application/json")
+			return resp, nil
+		}),
+	})
+
+	buf, _ := json.Marshal(map[string]string{"sql": "SELECT * FROM logs"})
+	req := httptest.NewRequest(http.MethodPost, "/api/v1/sql-to-logsql", bytes.NewReader(buf))
+	req.Header.Set("Content-Type", "application/json")
+	req.Header.Set("Accept", "application/x-jackson-smile, application/x-ndjson;q=0.9, application/json;q=0.8")
+
+	rr := httptest.NewRecorder()
+	srv.ServeHTTP(rr, req)
+
+	if rr.Code != http.StatusOK {
+		t.Fatalf("expected status 200, got %d", rr.Code)
+	}
+	if got := rr.Header().Get("Content-Type"); got != "application/x-jackson-smile" {
+		t.Fatalf("unexpected content type: %q", got)
+	}
+	want := []byte{
+		':', ')', '\n', 0x01,
+		0xFA, 0x85, 'l', 'o', 'g', 's', 'q', 'l', 0x40, '*', 0xFB,
+		0xFA, 0x83, '_', 'm', 's', 'g', 0x40, 'a', 0xFB,
+		// the repeated property name is a one-byte back-reference
+		0xFA, 0x41, 0x40, 'b', 0xFB,
+	}
+	if got := rr.Body.Bytes(); !bytes.Equal(got, want) {
+		t.Fatalf("unexpected body: % x", got)
+	}
+}
+
+func TestSmileEncoderNumbers(t *testing.T) {
+	enc := newSmileEncoder(0)
+	if err := enc.writeJSON([]byte("[0,-1,100,-2147483649,9223372036854775808,1.5,1e400]")); err != nil {
+		t.Fatalf("writeJSON error: %v", err)
+	}
+	want := []byte{
+		':', ')', '\n', 0x01,
+		0xF8,
+		0xC0,
+		0xC1,
+		0x24, 0x03, 0x88,
+		0x25, 0x20, 0x00, 0x00, 0x00, 0x81,
+		0x26, 0x89, 0x00, 0x20, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+		0x29, 0x00, 0x3F, 0x7C, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+		// out of range for a double, written as +Inf like Jackson does
+		0x29, 0x00, 0x7F, 0x78, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+		0xF9,
+	}
+	if got := enc.bytes(); !bytes.Equal(got, want) {
+		t.Fatalf("unexpected encoding: % x", got)
+	}
+}
+
+func TestSmileEncoderNames(t *testing.T) {
+	short := strings.Repeat("ü", 28) // 56 bytes, the longest name Jackson writes in the short Unicode form
+	long := short + "u"
+	enc := newSmileEncoder(0)
+	rows := `{"` + short + `":1,"` + long + `":2}` + "\n" + `{"` + short + `":3,"` + long + `":4}`
+	if err := enc.writeJSON([]byte(rows)); err != nil {
+		t.Fatalf("writeJSON error: %v", err)
+	}
+	want := []byte{':', ')', '\n', 0x01, 0xFA, 0xF6}
+	want = append(want, short...)
+	want = append(want, 0xC2, 0x34)
+	want = append(want, long...)
+	want = append(want, 0xFC, 0xC4, 0xFB)
+	// both names are back-referenced, including the one written in the long form
+	want = append(want, 0xFA, 0x40, 0xC6, 0x41, 0xC8, 0xFB)
+	if got := enc.bytes(); !bytes.Equal(got, want) {
+		t.Fatalf("unexpected encoding: % x", got)
+	}
+}
+
+func TestHandleQueryGzip(t *testing.T) {
+	srv, err := NewServer(Config{Endpoint: "http://victoria", Tables: map[string]string{"logs": "*"}})
+	if err != nil {
+		t.Fatalf("NewServer error: %v", err)
+	}
+	payload := strings.Repeat("{\"_msg\":\"repeated log line\"}\n", 200)
+	srv.setHTTPClient(&http.Client{
+		Transport: roundTripperFunc(func(req *http.Request) (*http.Response, error) {
+			resp := &http.Response{
+				StatusCode: http.StatusOK,
+				Body:       io.NopCloser(bytes.NewBufferString(payload)),
+				Header:     make(http.Header),
+			}
+			resp.Header.Set("Content-Type", "application/json")
+			return resp, nil
+		}),
+	})
+
+	buf, _ := json.Marshal(map[string]string{"sql": "SELECT * FROM logs"})
+	req := httptest.NewRequest(http.MethodPost, "/api/v1/sql-to-logsql", bytes.NewReader(buf))
+	req.Header.Set("Content-Type", "application/json")
+	req.Header.Set("Accept", "application/x-ndjson")
+	req.Header.Set("Accept-Encoding", "gzip")
+
+	rr := httptest.NewRecorder()
+	srv.ServeHTTP(rr, req)
+
+	if rr.Code != http.StatusOK {
+		t.Fatalf("expected status 200, got %d", rr.Code)
+	}
+	if got := rr.Header().Get("Content-Encoding"); got != "gzip" {
+		t.Fatalf("expected gzip content encoding, got %q", got)
+	}
+	if rr.Body.Len() >= len(payload) {
+		t.Fatalf("expected compressed body, got %d bytes for %d bytes of data", rr.Body.Len(), len(payload))
+	}
+	zr, err := gzip.NewReader(rr.Body)
+	if err != nil {
+		t.Fatalf("invalid gzip body: %v", err)
+	}
+	decoded, err := io.ReadAll(zr)
+	if err != nil {
+		t.Fatalf("failed to decompress body: %v", err)
+	}
+	if want := "{\"logsql\":\"*\"}\n" + payload; string(decoded) != want {
+		t.Fatalf("unexpected decompressed body: %q", decoded)
+	}
+}
+
 func TestHandleQueryTranslateError(t *testing.T) {
 	srv, err := NewServer(Config{Endpoint: "http://victoria", Tables: map[string]string{"logs": "*"}})
 	if err != nil {
@@ -0,0 +1,314 @@
+package api
+
+import (
+	"bytes"
+	"encoding/json"
+	"errors"
+	"io"
+	"math"
+	"math/big"
+	"strconv"
+	"strings"
+)
+
+const (
+	smileContentType = "application/x-jackson-smile"
+
+	// smileMaxSharedNames is the size of the back-reference table for property names; decoders clear
+	// the table once it is full, so the encoder has to do the same.
+	smileMaxSharedNames = 1024
+
+	// smileMaxShortUnicodeName is the longest non-ASCII property name written in the short form. The format
+	// allows 57 bytes, but Jackson's generator stops at 56 and the output is kept byte-identical to it.
+	smileMaxShortUnicodeName = 56
+)
+
+// smileEncoder transcodes JSON values into one Smile stream (https://github.com/FasterXML/smile-format-specification).
+// Property names are written once and back-referenced afterwards, so keys repeated in every row such as
+// _time, _msg and _stream cost a single byte after their first occurrence.
+type smileEncoder struct {
+	buf       []byte
+	seenNames map[string]int
+}
+
+func newSmileEncoder(sizeHint int) *smileEncoder {
+	e := &smileEncoder{
+		buf:       make([]byte, 0, sizeHint),
+		seenNames: make(map[string]int),
+	}
+	// header: version 0, shared property names enabled, shared string values and raw binary disabled
+	e.buf = append(e.buf, ':', ')', '\n', 0x01)
+	return e
+}
+
+func (e *smileEncoder) bytes() []byte {
+	return e.buf
+}
+
+// writeStringField writes a root-level object holding a single string property.
+func (e *smileEncoder) writeStringField(name, value string) {
+	e.buf = append(e.buf, 0xFA)
+	e.writeKey(name)
+	e.writeString(value)
+	e.buf = append(e.buf, 0xFB)
+}
+
+// writeJSON appends every JSON value contained in data, such as the rows of an NDJSON document.
+func (e *smileEncoder) writeJSON(data []byte) error {
+	dec := json.NewDecoder(bytes.NewReader(data))
+	dec.UseNumber()
+	for {
+		tok, err := dec.Token()
+		if errors.Is(err, io.EOF) {
+			return nil
+		}
+		if err != nil {
+			return err
+		}
+		if err := e.writeToken(dec, tok); err != nil {
+			return err
+		}
+	}
+}
+
+func (e *smileEncoder) writeToken(dec *json.Decoder, tok json.Token) error {
+	switch v := tok.(type) {
+	case json.Delim:
+		switch v {
+		case '{':
+			e.buf = append(e.buf, 0xFA)
+			for dec.More() {
+				key, err := dec.Token()
+				if err != nil {
+					return unexpectedEOF(err)
+				}
+				name, ok := key.(string)
+				if !ok {
+					return errors.New("smile: object key is not a string")
+				}
+				e.writeKey(name)
+				if err := e.writeNext(dec); err != nil {
+					return err
+				}
+			}
+			e.buf = append(e.buf, 0xFB)
+		case '[':
+			e.buf = append(e.buf, 0xF8)
+			for dec.More() {
+				if err := e.writeNext(dec); err != nil {
+					return err
+				}
+			}
+			e.buf = append(e.buf, 0xF9)
+		default:
+			return errors.New("smile: unexpected delimiter " + v.String())
+		}
+		// consume the closing delimiter
+		if _, err := dec.Token(); err != nil {
+			return unexpectedEOF(err)
+		}
+	case string:
+		e.writeString(v)
+	case json.Number:
+		return e.writeNumber(v)
+	case bool:
+		if v {
+			e.buf = append(e.buf, 0x23)
+		} else {
+			e.buf = append(e.buf, 0x22)
+		}
+	case nil:
+		e.buf = append(e.buf, 0x21)
+	default:
+		return errors.New("smile: unsupported token")
+	}
+	return nil
+}
+
+func (e *smileEncoder) writeNext(dec *json.Decoder) error {
+	tok, err := dec.Token()
+	if err != nil {
+		return unexpectedEOF(err)
+	}
+	return e.writeToken(dec, tok)
+}
+
+func (e *smileEncoder) writeKey(name string) {
+	n := len(name)
+	if n == 0 {
+		e.buf = append(e.buf, 0x20)
+		return
+	}
+	if idx, ok := e.seenNames[name]; ok {
+		if idx < 64 {
+			e.buf = append(e.buf, 0x40+byte(idx))
+		} else {
+			e.buf = append(e.buf, 0x30|byte(idx>>8), byte(idx))
+		}
+		return
+	}
+	switch ascii := isASCII(name); {
+	case ascii && n <= 64:
+		e.buf = append(e.buf, 0x80+byte(n-1))
+		e.buf = append(e.buf, name...)
+	case !ascii && n <= smileMaxShortUnicodeName:
+		e.buf = append(e.buf, 0xC0+byte(n-2))
+		e.buf = append(e.buf, name...)
+	default:
+		e.buf = append(e.buf, 0x34)
+		e.buf = append(e.buf, name...)
+		e.buf = append(e.buf, 0xFC)
+	}
+	if len(e.seenNames) == smileMaxSharedNames {
+		clear(e.seenNames)
+	}
+	e.seenNames[name] = len(e.seenNames)
+}
+
+func (e *smileEncoder) writeString(s string) {
+	n := len(s)
+	ascii := isASCII(s)
+	switch {
+	case n == 0:
+		e.buf = append(e.buf, 0x20)
+		return
+	case ascii && n <= 32:
+		e.buf = append(e.buf, 0x40+byte(n-1))
+	case ascii && n <= 64:
+		e.buf = append(e.buf, 0x60+byte(n-33))
+	case !ascii && n <= 33:
+		e.buf = append(e.buf, 0x80+byte(n-2))
+	case !ascii && n <= 64:
+		e.buf = append(e.buf, 0xA0+byte(n-34))
+	case ascii:
+		e.buf = append(e.buf, 0xE0)
+		e.buf = append(e.buf, s...)
+		e.buf = append(e.buf, 0xFC)
+		return
+	default:
+		e.buf = append(e.buf, 0xE4)
+		e.buf = append(e.buf, s...)
+		e.buf = append(e.buf, 0xFC)
+		return
+	}
+	e.buf = append(e.buf, s...)
+}
+
+// writeNumber keeps the numeric types a JSON parser would produce: int, long, BigInteger or double.
+func (e *smileEncoder) writeNumber(n json.Number) error {
+	s := n.String()
+	if !strings.ContainsAny(s, ".eE") {
+		if i, err := strconv.ParseInt(s, 10, 64); err == nil {
+			e.writeInt(i)
+			return nil
+		}
+		if b, ok := new(big.Int).SetString(s, 10); ok {
+			e.writeBigInt(b)
+			return nil
+		}
+	}
+	f, err := strconv.ParseFloat(s, 64)
+	if err != nil && !errors.Is(err, strconv.ErrRange) {
+		return err
+	}
+	// out of range values become infinities, as they do for a JSON parser reading doubles
+	bits := math.Float64bits(f)
+	e.buf = append(e.buf, 0x29)
+	// 64 bits as ten 7-bit groups, most significant first
+	for group := 9; group >= 0; group-- {
+		e.buf = append(e.buf, byte(bits>>uint(7*group))&0x7F)
+	}
+	return nil
+}
+
+func (e *smileEncoder) writeInt(i int64) {
+	if i >= math.MinInt32 && i <= math.MaxInt32 {
+		zz := uint32(int32(i)<<1) ^ uint32(int32(i)>>31)
+		if zz <= 0x1F {
+			e.buf = append(e.buf, 0xC0+byte(zz))
+			return
+		}
+		e.buf = append(e.buf, 0x24)
+		e.buf = appendSmileVInt(e.buf, uint64(zz))
+		return
+	}
+	e.buf = append(e.buf, 0x25)
+	e.buf = appendSmileVInt(e.buf, uint64(i<<1)^uint64(i>>63))
+}
+
+func (e *smileEncoder) writeBigInt(b *big.Int) {
+	e.buf = append(e.buf, 0x26)
+	data := twosComplement(b)
+	e.buf = appendSmileVInt(e.buf, uint64(len(data)))
+	// 7-bit encoding: every 7 input bytes become 8 output bytes, a trailing group of n bytes
+	// becomes n+1 output bytes with the last one holding the remaining n bits right-aligned
+	for len(data) >= 7 {
+		var v uint64
+		for _, c := range data[:7] {
+			v = v<<8 | uint64(c)
+		}
+		for shift := 49; shift >= 0; shift -= 7 {
+			e.buf = append(e.buf, byte(v>>uint(shift))&0x7F)
+		}
+		data = data[7:]
+	}
+	if n := len(data); n > 0 {
+		var v uint64
+		for _, c := range data {
+			v = v<<8 | uint64(c)
+		}
+		for shift := 8*n - 7; shift >= n; shift -= 7 {
+			e.buf = append(e.buf, byte(v>>uint(shift))&0x7F)
+		}
+		e.buf = append(e.buf, byte(v&(1<<uint(n)-1)))
+	}
+}
+
+// twosComplement returns the minimal big-endian two's complement form of b, as java.math.BigInteger expects.
+func twosComplement(b *big.Int) []byte {
+	if b.Sign() >= 0 {
+		data := b.Bytes()
+		if len(data) == 0 || data[0]&0x80 != 0 {
+			data = append([]byte{0}, data...)
+		}
+		return data
+	}
+	data := new(big.Int).Sub(new(big.Int).Neg(b), big.NewInt(1)).Bytes()
+	for i := range data {
+		data[i] = ^data[i]
+	}
+	if len(data) == 0 || data[0]&0x80 == 0 {
+		data = append([]byte{0xFF}, data...)
+	}
+	return data
+}
+
+// appendSmileVInt writes v as big-endian 7-bit groups where the last byte carries 6 bits and has its high bit set.
+func appendSmileVInt(buf []byte, v uint64) []byte {
+	var tmp [11]byte
+	i := len(tmp) - 1
+	tmp[i] = 0x80 | byte(v&0x3F)
+	v >>= 6
+	for v != 0 {
+		i--
+		tmp[i] = byte(v & 0x7F)
+		v >>= 7
+	}
+	return append(buf, tmp[i:]...)
+}
+
+func isASCII(s string) bool {
+	for i := 0; i < len(s); i++ {
+		if s[i] >= 0x80 {
+			return false
+		}
+	}
+	return true
+}
+
+func unexpectedEOF(err error) error {
+	if errors.Is(err, io.EOF) {
+		return io.ErrUnexpectedEOF
+	}
+	return err
+}
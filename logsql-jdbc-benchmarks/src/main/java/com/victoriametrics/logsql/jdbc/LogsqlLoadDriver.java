@@ -0,0 +1,299 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs concurrent JDBC clients against the driver and reports throughput, latency percentiles, time to first row
+ * and allocation rate. Without {@code --url} the clients query an in-process {@link LogsqlStandInServer} answering
+ * with synthetic rows, so that a driver build can be qualified offline against a traffic profile.
+ *
+ * <p>Options, given as {@code --name=value}: {@code url}, {@code sql}, {@code clients}, {@code warmup} and
+ * {@code duration} in seconds, and for the stand-in service {@code rows}, {@code width}, {@code latency} in
+ * milliseconds and {@code error-rate}. Options named {@code property.<name>} are passed to the driver as connection
+ * properties, e.g. {@code --property.decodeParallelism=4}; conditional requests are disabled unless
+ * {@code property.retainedResultRows} is given, so that every query transfers and decodes its response.
+ *
+ * <p>Latency covers {@code executeQuery}, reading every value with {@code getString} and closing the result set.
+ * Since {@code executeQuery} only returns once the whole response has been decoded, the time to first row is taken
+ * by a {@link LogsqlQueryListener} when the driver decodes that row, and is added to any {@code queryListeners}.
+ * Allocation is counted for all threads except those of the stand-in service, so it includes the HTTP client and
+ * decoder threads of the driver.
+ */
+public final class LogsqlLoadDriver {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("url", "");
+        DEFAULTS.put("sql", "SELECT * FROM logs");
+        DEFAULTS.put("clients", "8");
+        DEFAULTS.put("warmup", "5");
+        DEFAULTS.put("duration", "30");
+        DEFAULTS.put("rows", "1000");
+        DEFAULTS.put("width", "16");
+        DEFAULTS.put("latency", "0");
+        DEFAULTS.put("error-rate", "0");
+        // every execution of the same statement would otherwise be answered with 304 Not Modified
+        DEFAULTS.put("property.retainedResultRows", "0");
+    }
+
+    private final Map<String, String> options;
+    private final Properties properties = new Properties();
+
+    private LogsqlLoadDriver(Map<String, String> options) {
+        this.options = options;
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            if (option.getKey().startsWith("property.")) {
+                properties.setProperty(option.getKey().substring("property.".length()), option.getValue());
+            }
+        }
+        String listeners = properties.getProperty("queryListeners", "");
+        properties.setProperty("queryListeners", listeners.isBlank()
+                ? FirstRowListener.class.getName() : listeners + "," + FirstRowListener.class.getName());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.err.println("Usage: LogsqlLoadDriver [--name=value]..., options and defaults: " + DEFAULTS);
+                System.exit(2);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        new LogsqlLoadDriver(options).run();
+    }
+
+    private void run() throws Exception {
+        String url = options.get("url");
+        LogsqlStandInServer server = null;
+        if (url.isEmpty()) {
+            server = new LogsqlStandInServer();
+            server.setSyntheticRows(intOption("rows"), intOption("width"));
+            server.setLatencyMillis(Long.parseLong(options.get("latency")));
+            server.setErrorRate(Double.parseDouble(options.get("error-rate")));
+            url = server.jdbcUrl();
+        }
+        try {
+            int clients = intOption("clients");
+            runClients(url, clients, intOption("warmup"));
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            List<Client> measured = runClients(url, clients, intOption("duration"));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long allocated = allocatedBytes() - allocatedBefore;
+            for (Client client : measured) {
+                allocated += client.allocated;
+            }
+            report(measured, clients, seconds, allocated);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private List<Client> runClients(String url, int clients, int seconds) throws Exception {
+        List<Client> started = new ArrayList<>();
+        if (seconds <= 0) {
+            return started;
+        }
+        CountDownLatch ready = new CountDownLatch(clients);
+        CountDownLatch go = new CountDownLatch(1);
+        for (int i = 0; i < clients; i++) {
+            Client client = new Client(url, ready, go);
+            client.setName("logsql-load-" + i);
+            client.start();
+            started.add(client);
+        }
+        ready.await();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        for (Client client : started) {
+            client.deadline = deadline;
+        }
+        go.countDown();
+        for (Client client : started) {
+            client.join();
+            if (client.failure != null) {
+                throw client.failure;
+            }
+        }
+        return started;
+    }
+
+    private void report(List<Client> clients, int clientCount, double seconds, long allocated) {
+        Samples latencies = new Samples();
+        Samples firstRows = new Samples();
+        long rows = 0;
+        long errors = 0;
+        for (Client client : clients) {
+            latencies.addAll(client.latencies);
+            firstRows.addAll(client.firstRows);
+            rows += client.rows;
+            errors += client.errors;
+        }
+        long queries = latencies.size + errors;
+        System.out.printf(Locale.ROOT, "clients      %d for %.1f s against %s%n", clientCount, seconds,
+                options.get("url").isEmpty()
+                        ? "stand-in service (" + options.get("rows") + " rows x " + options.get("width")
+                        + " fields, " + options.get("latency") + " ms latency, error rate "
+                        + options.get("error-rate") + ")"
+                        : options.get("url"));
+        System.out.printf(Locale.ROOT, "queries      %d (%.1f/s), %d failed%n", queries, queries / seconds, errors);
+        System.out.printf(Locale.ROOT, "rows         %d (%.0f/s)%n", rows, rows / seconds);
+        System.out.printf(Locale.ROOT, "latency      %s%n", latencies.summary());
+        System.out.printf(Locale.ROOT, "first row    %s%n", firstRows.summary());
+        System.out.printf(Locale.ROOT, "allocation   %.1f MB/s, %.1f KB/query%n", allocated / seconds / 1e6,
+                queries == 0 ? 0.0 : allocated / 1e3 / queries);
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        return (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    /**
+     * Returns the bytes allocated so far by the live threads of the driver, which are not clients or threads of the
+     * stand-in service. Clients report their own allocations, since they have ended when the run is over.
+     */
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = threads();
+        long[] ids = threads.getAllThreadIds();
+        ThreadInfo[] infos = threads.getThreadInfo(ids);
+        long[] allocated = threads.getThreadAllocatedBytes(ids);
+        long total = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (infos[i] == null || allocated[i] < 0) {
+                continue;
+            }
+            String name = infos[i].getThreadName();
+            if (!name.startsWith("logsql-stand-in-") && !name.startsWith("HTTP-Dispatcher")
+                    && !name.startsWith("logsql-load-")) {
+                total += allocated[i];
+            }
+        }
+        return total;
+    }
+
+    private final class Client extends Thread {
+
+        private final String url;
+        private final CountDownLatch ready;
+        private final CountDownLatch go;
+        private final Samples latencies = new Samples();
+        private final Samples firstRows = new Samples();
+        private volatile long deadline;
+        private long rows;
+        private long errors;
+        private long allocated;
+        private Exception failure;
+
+        Client(String url, CountDownLatch ready, CountDownLatch go) {
+            this.url = url;
+            this.ready = ready;
+            this.go = go;
+        }
+
+        @Override
+        public void run() {
+            try (Connection connection = DriverManager.getConnection(url, properties);
+                 Statement statement = connection.createStatement()) {
+                ready.countDown();
+                go.await();
+                long allocatedBefore = threads().getThreadAllocatedBytes(getId());
+                String sql = options.get("sql");
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    try (ResultSet rs = statement.executeQuery(sql)) {
+                        int columns = rs.getMetaData().getColumnCount();
+                        while (rs.next()) {
+                            for (int column = 1; column <= columns; column++) {
+                                rs.getString(column);
+                            }
+                            rows++;
+                        }
+                    } catch (SQLException e) {
+                        errors++;
+                        continue;
+                    }
+                    latencies.add(System.nanoTime() - start);
+                }
+                allocated = threads().getThreadAllocatedBytes(getId()) - allocatedBefore;
+            } catch (Exception e) {
+                failure = e;
+                ready.countDown();
+            }
+        }
+    }
+
+    /**
+     * Records the time from the start of an execution until its first row was decoded with the client running it.
+     * Listener callbacks run on the thread executing the query, which is the client itself.
+     */
+    public static final class FirstRowListener implements LogsqlQueryListener {
+
+        @Override
+        public void firstRow(LogsqlQueryExecution execution) {
+            Thread thread = Thread.currentThread();
+            if (thread instanceof Client) {
+                ((Client) thread).firstRows.add(System.nanoTime() - execution.getStartNanos());
+            }
+        }
+    }
+
+    /**
+     * Growable array of nanosecond durations, recorded without boxing so that it hardly adds to the allocation rate.
+     */
+    private static final class Samples {
+
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        String summary() {
+            if (size == 0) {
+                return "no samples";
+            }
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return String.format(Locale.ROOT, "p50 %s  p99 %s  p999 %s  max %s", millis(sorted, 0.5),
+                    millis(sorted, 0.99), millis(sorted, 0.999), millis(sorted, 1.0));
+        }
+
+        private static String millis(long[] sorted, double quantile) {
+            int index = Math.max(0, (int) Math.ceil(quantile * sorted.length) - 1);
+            return String.format(Locale.ROOT, "%.3f ms", sorted[index] / 1e6);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of an NDJSON query response into a result, by the streaming reader, the parallel decoder and the lazy
+ * indexer, at different row widths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NdjsonDecodeBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param({"4", "16", "64"})
+    public int width;
+
+    @Param({"stream", "parallel", "lazy"})
+    public String decoder;
+
+    private byte[] body;
+    private LogsqlResponseReader reader;
+
+    @Setup
+    public void setUp() {
+        body = LogsqlSyntheticData.ndjsonResponse(LogsqlSyntheticData.DEFAULT_SEED, ROWS, width);
+        ObjectMapper mapper = new ObjectMapper();
+        LogsqlParallelDecoder parallelDecoder = "stream".equals(decoder)
+                ? null
+                : new LogsqlParallelDecoder(mapper,
+                        "parallel".equals(decoder) ? Runtime.getRuntime().availableProcessors() : 1,
+                        LogsqlConnectionConfig.DEFAULT_DECODE_QUEUE_BYTES, "lazy".equals(decoder));
+        reader = new LogsqlResponseReader(mapper, parallelDecoder);
+    }
+
+    @Benchmark
+    public int decode() throws SQLException {
+        LogsqlQueryResult result = reader.read(new ByteArrayInputStream(body), LogsqlResponseReader.NDJSON_CONTENT_TYPE,
+                0);
+        result.getRows().close();
+        return result.getRowCount();
+    }
+}
@@ -0,0 +1,67 @@
+package com.victoriametrics.logsql.jdbc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of a prepared lookup into the SQL sent for translation, with parameters of the common types, a quoted
+ * literal containing a question mark and a binary value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreparedStatementBenchmark {
+
+    private static final String SQL = "SELECT _time, _msg FROM logs WHERE host = ? AND level IN (?, ?) "
+            + "AND status >= ? AND ratio < ? AND _time > ? AND payload = ? AND note <> 'who''s asking?' LIMIT ?";
+
+    private LogsqlStandInServer server;
+    private Connection connection;
+    private LogsqlPreparedStatement statement;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        // the connection only needs the health check of the service
+        server = new LogsqlStandInServer();
+        connection = DriverManager.getConnection(server.jdbcUrl());
+        statement = (LogsqlPreparedStatement) connection.prepareStatement(SQL);
+        statement.setString(1, "api-0");
+        statement.setString(2, "warn");
+        statement.setString(3, "error");
+        statement.setInt(4, 500);
+        statement.setDouble(5, 0.25);
+        statement.setTimestamp(6, Timestamp.valueOf("2024-06-01 00:00:00.123"));
+        statement.setBytes(7, new byte[]{(byte) 0xca, (byte) 0xfe, 0x00, 0x7f, (byte) 0x80, 0x10, 0x20, 0x30});
+        statement.setInt(8, 100);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+        server.close();
+    }
+
+    @Benchmark
+    public String renderSql() throws SQLException {
+        return statement.renderSql();
+    }
+}
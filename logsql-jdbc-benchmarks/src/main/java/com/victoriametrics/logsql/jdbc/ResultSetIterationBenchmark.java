@@ -0,0 +1,99 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Full iterations over a decoded result the way BI tools read it: every column through {@code getString}, the
+ * integer columns through {@code getLong} and {@code _time} through {@code getTimestamp}. Results are decoded once,
+ * into the column store or, with lazy decoding, into raw rows decoded on access.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultSetIterationBenchmark {
+
+    private static final int ROWS = 10_000;
+    private static final int WIDTH = 16;
+
+    @Param({"columnar", "lazy"})
+    public String store;
+
+    private LogsqlQueryResult result;
+    private int[] longColumns;
+
+    @Setup
+    public void setUp() throws SQLException {
+        ObjectMapper mapper = new ObjectMapper();
+        LogsqlResponseReader reader = new LogsqlResponseReader(mapper, "lazy".equals(store)
+                ? new LogsqlParallelDecoder(mapper, 1, LogsqlConnectionConfig.DEFAULT_DECODE_QUEUE_BYTES, true)
+                : null);
+        byte[] body = LogsqlSyntheticData.ndjsonResponse(LogsqlSyntheticData.DEFAULT_SEED, ROWS, WIDTH);
+        result = reader.read(new ByteArrayInputStream(body), LogsqlResponseReader.NDJSON_CONTENT_TYPE, 0);
+        // the integer fields and the numeric strings
+        longColumns = IntStream.range(0, result.getColumnNames().size())
+                .filter(i -> result.getColumnNames().get(i).matches("(count|code)_\\d+"))
+                .map(i -> i + 1)
+                .toArray();
+    }
+
+    @TearDown
+    public void tearDown() {
+        result.getRows().close();
+    }
+
+    @Benchmark
+    public void getString(Blackhole blackhole) throws SQLException {
+        ResultSet rs = resultSet();
+        int columns = result.getColumnNames().size();
+        while (rs.next()) {
+            for (int column = 1; column <= columns; column++) {
+                blackhole.consume(rs.getString(column));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getLong(Blackhole blackhole) throws SQLException {
+        ResultSet rs = resultSet();
+        while (rs.next()) {
+            for (int column : longColumns) {
+                blackhole.consume(rs.getLong(column));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getTimestamp(Blackhole blackhole) throws SQLException {
+        ResultSet rs = resultSet();
+        while (rs.next()) {
+            blackhole.consume(rs.getTimestamp(1));
+        }
+    }
+
+    private ResultSet resultSet() {
+        // not closed, which would release the rows shared by all invocations
+        return new LogsqlResultSet(null, result.getColumnNames(), result.getColumnTypes(), result.getRows());
+    }
+}
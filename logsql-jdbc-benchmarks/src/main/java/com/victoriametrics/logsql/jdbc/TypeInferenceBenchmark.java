@@ -0,0 +1,74 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assembly of already parsed rows into a result, which aligns columns and infers their types, and the type
+ * inference of single values on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TypeInferenceBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param({"4", "16", "64"})
+    public int width;
+
+    private List<Map<String, Object>> rows;
+    private Object[] values;
+
+    @Setup
+    public void setUp() throws IOException {
+        rows = new ArrayList<>(ROWS);
+        byte[] data = LogsqlSyntheticData.rows(LogsqlSyntheticData.DEFAULT_SEED, ROWS, width);
+        try (MappingIterator<LinkedHashMap<String, Object>> it = new ObjectMapper()
+                .readerFor(LinkedHashMap.class).readValues(data)) {
+            while (it.hasNext()) {
+                rows.add(it.next());
+            }
+        }
+        values = rows.get(0).values().toArray();
+    }
+
+    @Benchmark
+    public int assembleRows() throws SQLException {
+        LogsqlResultBuilder builder = new LogsqlResultBuilder(0);
+        for (Map<String, Object> row : rows) {
+            builder.addRow(row);
+        }
+        return builder.build("*").getRowCount();
+    }
+
+    @Benchmark
+    public void inferTypes(Blackhole blackhole) {
+        for (Object value : values) {
+            blackhole.consume(LogsqlResultBuilder.inferType(value));
+        }
+    }
+}
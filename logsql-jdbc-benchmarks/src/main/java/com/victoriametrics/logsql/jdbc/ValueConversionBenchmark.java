@@ -0,0 +1,108 @@
+package com.victoriametrics.logsql.jdbc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversions of result set getters from the values responses carry: timestamps given as RFC 3339 strings or epoch
+ * milliseconds, and numbers given as JSON numbers or as strings. Each operation converts {@value #VALUES} values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValueConversionBenchmark {
+
+    private static final int VALUES = 1024;
+    private static final List<String> COLUMNS = List.of("time", "millis", "longString", "doubleString", "long",
+            "double");
+    private static final int[] TYPES = {Types.VARCHAR, Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.BIGINT,
+            Types.DOUBLE};
+
+    private List<Object[]> rows;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(LogsqlSyntheticData.DEFAULT_SEED);
+        rows = new ArrayList<>(VALUES);
+        for (int i = 0; i < VALUES; i++) {
+            Instant time = Instant.ofEpochSecond(1_717_200_000L + i, random.nextInt(1_000_000_000));
+            long number = random.nextLong(1L << 40);
+            double fraction = random.nextInt(1_000_000) / 1000.0;
+            rows.add(new Object[]{time.toString(), time.toEpochMilli(), Long.toString(number),
+                    Double.toString(fraction), number, fraction});
+        }
+    }
+
+    @Benchmark
+    public void timestampFromString(Blackhole blackhole) throws SQLException {
+        ResultSet rs = resultSet();
+        while (rs.next()) {
+            blackhole.consume(rs.getTimestamp(1));
+        }
+    }
+
+    @Benchmark
+    public void timestampFromMillis(Blackhole blackhole) throws SQLException {
+        ResultSet rs = resultSet();
+        while (rs.next()) {
+            blackhole.consume(rs.getTimestamp(2));
+        }
+    }
+
+    @Benchmark
+    public void longFromString(Blackhole blackhole) throws SQLException {
+        ResultSet rs = resultSet();
+        while (rs.next()) {
+            blackhole.consume(rs.getLong(3));
+        }
+    }
+
+    @Benchmark
+    public void doubleFromString(Blackhole blackhole) throws SQLException {
+        ResultSet rs = resultSet();
+        while (rs.next()) {
+            blackhole.consume(rs.getDouble(4));
+        }
+    }
+
+    @Benchmark
+    public void longFromNumber(Blackhole blackhole) throws SQLException {
+        ResultSet rs = resultSet();
+        while (rs.next()) {
+            blackhole.consume(rs.getLong(5));
+        }
+    }
+
+    @Benchmark
+    public void doubleFromNumber(Blackhole blackhole) throws SQLException {
+        ResultSet rs = resultSet();
+        while (rs.next()) {
+            blackhole.consume(rs.getDouble(6));
+        }
+    }
+
+    private ResultSet resultSet() {
+        return new LogsqlResultSet(null, COLUMNS, TYPES, rows);
+    }
+}
@@ -0,0 +1,149 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Locates framing bytes in raw response buffers: line breaks separating NDJSON rows, and the quotes and
+ * backslashes delimiting JSON strings.
+ *
+ * <p>The portable implementation compares eight bytes at a time within a {@code long} (SWAR). On Java 17 and
+ * later, when the application runs with {@code --add-modules jdk.incubator.vector}, the multi-release jar
+ * supplies a {@link LogsqlVectorScanner} that compares a full SIMD register per step; short ranges and the
+ * remainder of a range are still handled here.
+ */
+final class LogsqlByteScanner {
+
+    static final boolean VECTORIZED = vectorSupported();
+
+    // below this length setting up vectors costs more than it saves
+    private static final int MIN_VECTOR_LENGTH = 64;
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+    private static final long QUOTES = 0x2222222222222222L;
+    private static final long BACKSLASHES = 0x5C5C5C5C5C5C5C5CL;
+
+    private LogsqlByteScanner() {
+    }
+
+    /**
+     * Returns the index of the first {@code '\n'} in {@code [from, to)}, or -1.
+     */
+    static int indexOfNewline(byte[] bytes, int from, int to) {
+        return VECTORIZED && to - from >= MIN_VECTOR_LENGTH
+                ? LogsqlVectorScanner.indexOfNewline(bytes, from, to)
+                : swarIndexOfNewline(bytes, from, to);
+    }
+
+    /**
+     * Returns the index of the last {@code '\n'} in {@code [from, to)}, or -1.
+     */
+    static int lastIndexOfNewline(byte[] bytes, int from, int to) {
+        return VECTORIZED && to - from >= MIN_VECTOR_LENGTH
+                ? LogsqlVectorScanner.lastIndexOfNewline(bytes, from, to)
+                : swarLastIndexOfNewline(bytes, from, to);
+    }
+
+    /**
+     * Returns the number of {@code '\n'} bytes in {@code [from, to)}.
+     */
+    static int countNewlines(byte[] bytes, int from, int to) {
+        return VECTORIZED && to - from >= MIN_VECTOR_LENGTH
+                ? LogsqlVectorScanner.countNewlines(bytes, from, to)
+                : swarCountNewlines(bytes, from, to);
+    }
+
+    /**
+     * Returns the index of the first {@code '"'} or {@code '\\'} in {@code [from, to)}, or -1.
+     */
+    static int indexOfQuoteOrBackslash(byte[] bytes, int from, int to) {
+        return VECTORIZED && to - from >= MIN_VECTOR_LENGTH
+                ? LogsqlVectorScanner.indexOfQuoteOrBackslash(bytes, from, to)
+                : swarIndexOfQuoteOrBackslash(bytes, from, to);
+    }
+
+    static int swarIndexOfNewline(byte[] bytes, int from, int to) {
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES) {
+            long matches = matches((long) LONGS.get(bytes, i), NEWLINES);
+            if (matches != 0) {
+                return i + (Long.numberOfTrailingZeros(matches) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int swarLastIndexOfNewline(byte[] bytes, int from, int to) {
+        int i = to;
+        for (; i - Long.BYTES >= from; i -= Long.BYTES) {
+            long matches = matches((long) LONGS.get(bytes, i - Long.BYTES), NEWLINES);
+            if (matches != 0) {
+                return i - 1 - (Long.numberOfLeadingZeros(matches) >>> 3);
+            }
+        }
+        for (i--; i >= from; i--) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int swarCountNewlines(byte[] bytes, int from, int to) {
+        int count = 0;
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES) {
+            count += Long.bitCount(matches((long) LONGS.get(bytes, i), NEWLINES));
+        }
+        for (; i < to; i++) {
+            if (bytes[i] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static int swarIndexOfQuoteOrBackslash(byte[] bytes, int from, int to) {
+        int i = from;
+        for (; i <= to - Long.BYTES; i += Long.BYTES) {
+            long word = (long) LONGS.get(bytes, i);
+            long matches = matches(word, QUOTES) | matches(word, BACKSLASHES);
+            if (matches != 0) {
+                return i + (Long.numberOfTrailingZeros(matches) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (bytes[i] == '"' || bytes[i] == '\\') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the high bit of every byte of {@code word} equal to the corresponding byte of {@code pattern}.
+     * Unlike the common {@code (x - 0x01..) & ~x & 0x80..} test this has no false positives, so the mask
+     * can be counted as well as searched.
+     */
+    private static long matches(long word, long pattern) {
+        long x = word ^ pattern;
+        return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+    }
+
+    private static boolean vectorSupported() {
+        try {
+            return LogsqlVectorScanner.isSupported();
+        } catch (LinkageError e) {
+            // the incubator module is not part of the module graph
+            return false;
+        }
+    }
+}
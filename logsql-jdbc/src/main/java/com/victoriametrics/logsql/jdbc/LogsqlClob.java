@@ -0,0 +1,248 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * Read-only {@link Clob} over a string value. Large values are read from a {@link LogsqlFieldSpill}, or, in results
+ * that keep their rows as raw JSON, from the literal in the response bytes; other values wrap their {@link String}.
+ * A value read from response bytes that are not kept must be {@linkplain #spill(LogsqlFieldSpill) spilled} while
+ * the bytes are still available. {@link #toString()} materializes the full text.
+ */
+final class LogsqlClob implements Clob {
+
+    private final String text;
+    private final byte[] literal;
+    private final int quote;
+    private final int end;
+    private final LogsqlFieldSpill spill;
+    private final long offset;
+    private final long byteLength;
+    private long length = -1;
+
+    LogsqlClob(String text) {
+        this(text, null, 0, 0, null, 0, 0);
+    }
+
+    /**
+     * Creates a value read from the JSON string literal in {@code [quote, end)} of {@code literal}.
+     */
+    LogsqlClob(byte[] literal, int quote, int end) {
+        this(null, literal, quote, end, null, 0, 0);
+    }
+
+    LogsqlClob(LogsqlFieldSpill spill, long offset, long byteLength) {
+        this(null, null, 0, 0, spill, offset, byteLength);
+    }
+
+    private LogsqlClob(String text, byte[] literal, int quote, int end, LogsqlFieldSpill spill, long offset,
+                       long byteLength) {
+        this.text = text;
+        this.literal = literal;
+        this.quote = quote;
+        this.end = end;
+        this.spill = spill;
+        this.offset = offset;
+        this.byteLength = byteLength;
+    }
+
+    /**
+     * Returns this value as stored in {@code spill} when it is read from response bytes, otherwise this value.
+     */
+    LogsqlClob spill(LogsqlFieldSpill spill) throws SQLException {
+        return literal == null ? this : spill.write(literal, quote, end);
+    }
+
+    LogsqlFieldSpill getSpill() {
+        return spill;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    long getByteLength() {
+        return byteLength;
+    }
+
+    @Override
+    public long length() throws SQLException {
+        if (text != null) {
+            return text.length();
+        }
+        if (length < 0) {
+            long count = 0;
+            char[] buffer = new char[8192];
+            try (Reader reader = getCharacterStream()) {
+                int read;
+                while ((read = reader.read(buffer)) >= 0) {
+                    count += read;
+                }
+            } catch (IOException e) {
+                throw new SQLException("Failed to read field value", e);
+            }
+            length = count;
+        }
+        return length;
+    }
+
+    @Override
+    public String getSubString(long pos, int length) throws SQLException {
+        if (pos < 1 || length < 0) {
+            throw new SQLException("Invalid substring position " + pos + " or length " + length);
+        }
+        if (text != null) {
+            int from = (int) Math.min(pos - 1, text.length());
+            return text.substring(from, Math.min(text.length(), from + length));
+        }
+        if (literal != null && pos == 1) {
+            return LogsqlJsonString.decode(literal, quote, end, length);
+        }
+        StringBuilder sb = new StringBuilder(Math.min(length, 8192));
+        char[] buffer = new char[8192];
+        try (Reader reader = getCharacterStream()) {
+            skipFully(reader, pos - 1);
+            int read;
+            while (sb.length() < length
+                    && (read = reader.read(buffer, 0, Math.min(buffer.length, length - sb.length()))) >= 0) {
+                sb.append(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to read field value", e);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public Reader getCharacterStream() throws SQLException {
+        if (text != null) {
+            return new StringReader(text);
+        }
+        return new InputStreamReader(openUtf8(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Reader getCharacterStream(long pos, long length) throws SQLException {
+        if (pos < 1 || length < 0) {
+            throw new SQLException("Invalid position " + pos + " or length " + length);
+        }
+        Reader reader = getCharacterStream();
+        try {
+            skipFully(reader, pos - 1);
+        } catch (IOException e) {
+            throw new SQLException("Failed to read field value", e);
+        }
+        return new BoundedReader(reader, length);
+    }
+
+    @Override
+    public InputStream getAsciiStream() throws SQLException {
+        throw new SQLFeatureNotSupportedException("ASCII streams are not supported");
+    }
+
+    @Override
+    public long position(String searchstr, long start) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Searching field values is not supported");
+    }
+
+    @Override
+    public long position(Clob searchstr, long start) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Searching field values is not supported");
+    }
+
+    @Override
+    public int setString(long pos, String str) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Field values are read-only");
+    }
+
+    @Override
+    public int setString(long pos, String str, int offset, int len) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Field values are read-only");
+    }
+
+    @Override
+    public OutputStream setAsciiStream(long pos) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Field values are read-only");
+    }
+
+    @Override
+    public Writer setCharacterStream(long pos) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Field values are read-only");
+    }
+
+    @Override
+    public void truncate(long len) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Field values are read-only");
+    }
+
+    @Override
+    public void free() {
+        // the storage belongs to the result
+    }
+
+    @Override
+    public String toString() {
+        if (text != null) {
+            return text;
+        }
+        if (literal != null) {
+            return LogsqlJsonString.decode(literal, quote, end, Integer.MAX_VALUE);
+        }
+        try (InputStream in = openUtf8()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException("Failed to read field value", e);
+        }
+    }
+
+    private InputStream openUtf8() throws SQLException {
+        return literal == null ? spill.open(offset, byteLength) : LogsqlJsonString.utf8(literal, quote, end);
+    }
+
+    private static void skipFully(Reader reader, long chars) throws IOException {
+        while (chars > 0) {
+            long skipped = reader.skip(chars);
+            if (skipped <= 0) {
+                return;
+            }
+            chars -= skipped;
+        }
+    }
+
+    private static final class BoundedReader extends Reader {
+
+        private final Reader reader;
+        private long remaining;
+
+        BoundedReader(Reader reader, long remaining) {
+            this.reader = reader;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int read = reader.read(cbuf, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
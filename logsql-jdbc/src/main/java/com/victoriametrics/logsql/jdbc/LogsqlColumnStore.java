@@ -0,0 +1,163 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Heap row store keeping every column in its own array.
+ *
+ * <p>String columns start out dictionary-encoded: every row holds an {@code int} code into a per-column table of
+ * distinct values, so values repeated across rows such as levels, stream labels or host names are stored once and
+ * every read returns the same instance. A column switches to plain value storage when a non-string value shows up,
+ * or when its values turn out to be mostly distinct, as they are for messages and trace ids.
+ */
+final class LogsqlColumnStore implements LogsqlRowStore {
+
+    private final Column[] columns;
+    private final int rowCount;
+
+    LogsqlColumnStore(List<Column> columns, int rowCount) {
+        this.columns = columns.toArray(new Column[0]);
+        this.rowCount = rowCount;
+        for (Column column : this.columns) {
+            column.finish(rowCount);
+        }
+    }
+
+    /**
+     * Returns a heap copy of {@code rows} with {@code columnCount} columns, or {@code null} when one of its values
+     * lives in a spill file of the store and would not outlive it.
+     */
+    static LogsqlColumnStore copyOf(LogsqlRowStore rows, int columnCount) throws SQLException {
+        int rowCount = rows.getRowCount();
+        List<Column> columns = new ArrayList<>(columnCount);
+        for (int column = 0; column < columnCount; column++) {
+            Column copy = new Column(0);
+            for (int row = 0; row < rowCount; row++) {
+                Object value = rows.getValue(row, column);
+                if (value instanceof LogsqlClob && ((LogsqlClob) value).getSpill() != null) {
+                    return null;
+                }
+                copy.set(row, value);
+            }
+            columns.add(copy);
+        }
+        return new LogsqlColumnStore(columns, rowCount);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public Object getValue(int row, int column) {
+        return column < columns.length ? columns[column].get(row) : null;
+    }
+
+    /**
+     * Reports whether {@code column} is still dictionary-encoded.
+     */
+    boolean isDictionaryEncoded(int column) {
+        return columns[column].codes != null;
+    }
+
+    /**
+     * Values of one column, filled row by row while a result is assembled.
+     */
+    static final class Column {
+
+        // distinct values accepted before the cardinality of a column is judged
+        private static final int MIN_JUDGED_DICTIONARY_SIZE = 256;
+        private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+        // 0 encodes null, n encodes dictionary[n - 1]
+        private int[] codes;
+        private String[] dictionary = new String[16];
+        private int dictionarySize;
+        private HashMap<String, Integer> codesByValue = new HashMap<>();
+        private int encodedValues;
+        private Object[] values;
+
+        Column(int firstRow) {
+            codes = new int[Math.max(16, firstRow + 1)];
+        }
+
+        void set(int row, Object value) {
+            if (codes != null) {
+                if (value == null) {
+                    if (row < codes.length) {
+                        codes[row] = 0;
+                    }
+                    return;
+                }
+                if (value instanceof String && encode(row, (String) value)) {
+                    return;
+                }
+                decodeAll();
+            }
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, Math.max(row + 1, values.length * 2));
+            }
+            values[row] = value;
+        }
+
+        Object get(int row) {
+            if (codes != null) {
+                int code = row < codes.length ? codes[row] : 0;
+                return code == 0 ? null : dictionary[code - 1];
+            }
+            return row < values.length ? values[row] : null;
+        }
+
+        private boolean encode(int row, String value) {
+            Integer code = codesByValue.get(value);
+            if (code == null) {
+                boolean mostlyDistinct = dictionarySize >= MIN_JUDGED_DICTIONARY_SIZE
+                        && 4L * (dictionarySize + 1) > 3L * (encodedValues + 1);
+                if (mostlyDistinct || dictionarySize == MAX_DICTIONARY_SIZE) {
+                    // codes would only add to the size of values that hardly repeat
+                    return false;
+                }
+                if (dictionarySize == dictionary.length) {
+                    dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+                }
+                dictionary[dictionarySize] = value;
+                code = ++dictionarySize;
+                codesByValue.put(value, code);
+            }
+            if (row >= codes.length) {
+                codes = Arrays.copyOf(codes, Math.max(row + 1, codes.length * 2));
+            }
+            codes[row] = code;
+            encodedValues++;
+            return true;
+        }
+
+        private void decodeAll() {
+            values = new Object[codes.length];
+            for (int row = 0; row < codes.length; row++) {
+                if (codes[row] != 0) {
+                    values[row] = dictionary[codes[row] - 1];
+                }
+            }
+            codes = null;
+            dictionary = null;
+            codesByValue = null;
+        }
+
+        private void finish(int rowCount) {
+            // the lookup table is only needed while values are added
+            codesByValue = null;
+            if (codes != null) {
+                codes = Arrays.copyOf(codes, rowCount);
+                dictionary = Arrays.copyOf(dictionary, dictionarySize);
+            } else {
+                values = Arrays.copyOf(values, rowCount);
+            }
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact columnar file format used by the on-disk result cache.
+ *
+ * <pre>
+ * file      := MAGIC VERSION createdAt:long column* directory directoryOffset:long MAGIC
+ * directory := logsql:str rowCount:int columnCount:int (name:str sqlType:int encoding:byte offset:long length:long)*
+ * </pre>
+ *
+ * Fixed-width columns hold a null bitmap followed by the values. Variable-width columns hold a heap of
+ * tagged values followed by {@code rowCount + 1} heap offsets; an empty slot denotes {@code null}.
+ * Files are read back through a {@link MappedByteBuffer}, values being decoded only when accessed. Every offset
+ * and length is checked against the mapped size when the file is mapped, so that a truncated or corrupted file is
+ * rejected up front rather than failing while its rows are read.
+ */
+final class LogsqlColumnarFile {
+
+    static final int MAGIC = 0x4C53514C;
+    static final short VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 2 + 8;
+    private static final int TRAILER_SIZE = 8 + 4;
+    // type, encoding, offset and length of a column in the directory, besides its name
+    private static final int COLUMN_ENTRY_SIZE = 4 + 1 + 8 + 8;
+
+    private static final byte ENCODING_INT = 1;
+    private static final byte ENCODING_LONG = 2;
+    private static final byte ENCODING_DOUBLE = 3;
+    private static final byte ENCODING_BOOLEAN = 4;
+    private static final byte ENCODING_VARIABLE = 5;
+
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INT = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_DOUBLE = 4;
+    private static final byte TAG_BOOLEAN = 5;
+    private static final byte TAG_BIG_INTEGER = 6;
+    private static final byte TAG_BIG_DECIMAL = 7;
+    private static final byte TAG_JSON = 8;
+
+    private LogsqlColumnarFile() {
+    }
+
+    static final class Mapped {
+        final long createdAt;
+        final LogsqlQueryResult result;
+
+        Mapped(long createdAt, LogsqlQueryResult result) {
+            this.createdAt = createdAt;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Writes the result to {@code target} and forces it to the storage device.
+     *
+     * @return the number of bytes written
+     */
+    static long write(Path target, LogsqlQueryResult result, long createdAt, ObjectMapper mapper)
+            throws IOException, SQLException {
+        LogsqlRowStore rows = result.getRows();
+        int rowCount = rows.getRowCount();
+        List<String> columns = result.getColumnNames();
+        int[] columnTypes = result.getColumnTypes();
+        byte[] encodings = new byte[columns.size()];
+        long[] offsets = new long[columns.size()];
+        long[] lengths = new long[columns.size()];
+
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(createdAt);
+            for (int column = 0; column < columns.size(); column++) {
+                encodings[column] = chooseEncoding(rows, rowCount, column);
+                offsets[column] = out.size();
+                lengths[column] = writeColumn(out, rows, rowCount, column, encodings[column], mapper);
+            }
+            long directoryOffset = out.size();
+            writeString(out, result.getLogsql());
+            out.writeInt(rowCount);
+            out.writeInt(columns.size());
+            for (int column = 0; column < columns.size(); column++) {
+                writeString(out, columns.get(column));
+                out.writeInt(columnTypes[column]);
+                out.writeByte(encodings[column]);
+                out.writeLong(offsets[column]);
+                out.writeLong(lengths[column]);
+            }
+            out.writeLong(directoryOffset);
+            out.writeInt(MAGIC);
+            out.flush();
+            if (out.size() == Integer.MAX_VALUE) {
+                throw new IOException("Result is too large to be cached");
+            }
+            channel.force(true);
+            return out.size();
+        }
+    }
+
+    static Mapped map(Path file, ObjectMapper mapper) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Unexpected cache file size: " + size);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        int limit = buffer.limit();
+        if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION || buffer.getInt(limit - 4) != MAGIC) {
+            throw new IOException("Not a result cache file: " + file);
+        }
+        long createdAt = buffer.getLong(6);
+        long directoryOffset = buffer.getLong(limit - TRAILER_SIZE);
+        if (directoryOffset < HEADER_SIZE || directoryOffset > limit - TRAILER_SIZE) {
+            throw new IOException("Corrupted result cache file: " + file);
+        }
+
+        ByteBuffer directory = buffer.duplicate();
+        directory.position((int) directoryOffset);
+        directory.limit(limit - TRAILER_SIZE);
+        String logsql = readString(directory, file);
+        require(directory.remaining() >= 8, file);
+        int rowCount = directory.getInt();
+        int columnCount = directory.getInt();
+        require(rowCount >= 0 && columnCount >= 0 && columnCount <= directory.remaining() / (4 + COLUMN_ENTRY_SIZE),
+                file);
+        List<String> columns = new ArrayList<>(columnCount);
+        int[] columnTypes = new int[columnCount];
+        byte[] encodings = new byte[columnCount];
+        int[] offsets = new int[columnCount];
+        int[] lengths = new int[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            columns.add(readString(directory, file));
+            require(directory.remaining() >= COLUMN_ENTRY_SIZE, file);
+            columnTypes[column] = directory.getInt();
+            encodings[column] = directory.get();
+            long offset = directory.getLong();
+            long length = directory.getLong();
+            require(offset >= HEADER_SIZE && length >= 0 && length <= directoryOffset - offset, file);
+            offsets[column] = (int) offset;
+            lengths[column] = (int) length;
+            checkColumn(buffer, (int) directoryOffset, rowCount, encodings[column], offsets[column], lengths[column],
+                    file);
+        }
+        require(!directory.hasRemaining(), file);
+        MappedRowStore store = new MappedRowStore(buffer, rowCount, encodings, offsets, lengths, mapper);
+        return new Mapped(createdAt, new LogsqlQueryResult(logsql, columns, columnTypes, store));
+    }
+
+    /**
+     * Checks that a column fits between its offset and the directory: the null bitmap and values of a fixed-width
+     * column, or the heap of a variable-width column, whose slots must lie within it in order and hold values of a
+     * known tag and width, followed by the offsets of the slots.
+     */
+    private static void checkColumn(ByteBuffer buffer, int directoryOffset, int rowCount, byte encoding, int offset,
+                                    int length, Path file) throws IOException {
+        if (encoding != ENCODING_VARIABLE) {
+            require(encoding >= ENCODING_INT && encoding <= ENCODING_BOOLEAN, file);
+            require(length == ((rowCount + 7L) >>> 3) + (long) rowCount * fixedWidth(encoding), file);
+            return;
+        }
+        int heapOffsets = offset + length;
+        require((rowCount + 1L) * 4 <= directoryOffset - heapOffsets, file);
+        int previous = buffer.getInt(heapOffsets);
+        require(previous == 0, file);
+        for (int row = 1; row <= rowCount; row++) {
+            int next = buffer.getInt(heapOffsets + row * 4);
+            require(next >= previous && next <= length, file);
+            if (next > previous) {
+                int width = taggedWidth(buffer.get(offset + previous));
+                require(width < 0 ? next - previous >= 1 : next - previous == width, file);
+            }
+            previous = next;
+        }
+        require(previous == length, file);
+    }
+
+    /**
+     * Returns the size of a tagged value including its tag, or -1 when it is variable, failing on unknown tags.
+     */
+    private static int taggedWidth(byte tag) throws IOException {
+        switch (tag) {
+            case TAG_INT:
+                return 1 + 4;
+            case TAG_LONG:
+            case TAG_DOUBLE:
+                return 1 + 8;
+            case TAG_BOOLEAN:
+                return 1 + 1;
+            case TAG_STRING:
+            case TAG_BIG_INTEGER:
+            case TAG_BIG_DECIMAL:
+            case TAG_JSON:
+                return -1;
+            default:
+                throw new IOException("Unknown cached value tag: " + tag);
+        }
+    }
+
+    private static void require(boolean valid, Path file) throws IOException {
+        if (!valid) {
+            throw new IOException("Corrupted result cache file: " + file);
+        }
+    }
+
+    private static byte chooseEncoding(LogsqlRowStore rows, int rowCount, int column) throws SQLException {
+        Class<?> valueClass = null;
+        for (int row = 0; row < rowCount; row++) {
+            Object value = rows.getValue(row, column);
+            if (value == null) {
+                continue;
+            }
+            if (valueClass == null) {
+                valueClass = value.getClass();
+            } else if (valueClass != value.getClass()) {
+                return ENCODING_VARIABLE;
+            }
+        }
+        if (valueClass == Integer.class) {
+            return ENCODING_INT;
+        }
+        if (valueClass == Long.class) {
+            return ENCODING_LONG;
+        }
+        if (valueClass == Double.class) {
+            return ENCODING_DOUBLE;
+        }
+        if (valueClass == Boolean.class) {
+            return ENCODING_BOOLEAN;
+        }
+        return ENCODING_VARIABLE;
+    }
+
+    private static long writeColumn(DataOutputStream out, LogsqlRowStore rows, int rowCount, int column,
+                                    byte encoding, ObjectMapper mapper) throws IOException, SQLException {
+        if (encoding != ENCODING_VARIABLE) {
+            byte[] bitmap = new byte[(rowCount + 7) >>> 3];
+            for (int row = 0; row < rowCount; row++) {
+                if (rows.getValue(row, column) != null) {
+                    bitmap[row >>> 3] |= (byte) (1 << (row & 7));
+                }
+            }
+            out.write(bitmap);
+            for (int row = 0; row < rowCount; row++) {
+                Object value = rows.getValue(row, column);
+                switch (encoding) {
+                    case ENCODING_INT:
+                        out.writeInt(value == null ? 0 : (Integer) value);
+                        break;
+                    case ENCODING_LONG:
+                        out.writeLong(value == null ? 0L : (Long) value);
+                        break;
+                    case ENCODING_DOUBLE:
+                        out.writeDouble(value == null ? 0D : (Double) value);
+                        break;
+                    default:
+                        out.writeBoolean(value != null && (Boolean) value);
+                        break;
+                }
+            }
+            return bitmap.length + (long) rowCount * fixedWidth(encoding);
+        }
+
+        int[] heapOffsets = new int[rowCount + 1];
+        int heapStart = out.size();
+        for (int row = 0; row < rowCount; row++) {
+            heapOffsets[row] = out.size() - heapStart;
+            writeTaggedValue(out, rows.getValue(row, column), mapper);
+        }
+        heapOffsets[rowCount] = out.size() - heapStart;
+        for (int offset : heapOffsets) {
+            out.writeInt(offset);
+        }
+        return heapOffsets[rowCount];
+    }
+
+    private static void writeTaggedValue(DataOutputStream out, Object value, ObjectMapper mapper) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof String) {
+            out.writeByte(TAG_STRING);
+            out.write(((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(TAG_BIG_INTEGER);
+            out.write(value.toString().getBytes(StandardCharsets.US_ASCII));
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(TAG_BIG_DECIMAL);
+            out.write(value.toString().getBytes(StandardCharsets.US_ASCII));
+        } else if (value instanceof Map || value instanceof List) {
+            out.writeByte(TAG_JSON);
+            out.write(mapper.writeValueAsBytes(value));
+        } else {
+            out.writeByte(TAG_STRING);
+            out.write(value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static int fixedWidth(byte encoding) {
+        switch (encoding) {
+            case ENCODING_INT:
+                return 4;
+            case ENCODING_LONG:
+            case ENCODING_DOUBLE:
+                return 8;
+            default:
+                return 1;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, Path file) throws IOException {
+        require(buffer.remaining() >= 4, file);
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        require(length <= buffer.remaining(), file);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class MappedRowStore implements LogsqlRowStore {
+
+        private final ByteBuffer buffer;
+        private final int rowCount;
+        private final byte[] encodings;
+        private final int[] offsets;
+        private final int[] lengths;
+        private final ObjectMapper mapper;
+
+        MappedRowStore(ByteBuffer buffer, int rowCount, byte[] encodings, int[] offsets, int[] lengths, ObjectMapper mapper) {
+            this.buffer = buffer;
+            this.rowCount = rowCount;
+            this.encodings = encodings;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public Object getValue(int row, int column) throws SQLException {
+            int base = offsets[column];
+            byte encoding = encodings[column];
+            if (encoding == ENCODING_VARIABLE) {
+                int heapOffsets = base + lengths[column];
+                int start = buffer.getInt(heapOffsets + row * 4);
+                int end = buffer.getInt(heapOffsets + (row + 1) * 4);
+                return start == end ? null : readTaggedValue(base + start, end - start);
+            }
+            if ((buffer.get(base + (row >>> 3)) & (1 << (row & 7))) == 0) {
+                return null;
+            }
+            int values = base + ((rowCount + 7) >>> 3);
+            switch (encoding) {
+                case ENCODING_INT:
+                    return buffer.getInt(values + row * 4);
+                case ENCODING_LONG:
+                    return buffer.getLong(values + row * 8);
+                case ENCODING_DOUBLE:
+                    return buffer.getDouble(values + row * 8);
+                default:
+                    return buffer.get(values + row) != 0;
+            }
+        }
+
+        private Object readTaggedValue(int position, int length) throws SQLException {
+            byte tag = buffer.get(position);
+            switch (tag) {
+                case TAG_INT:
+                    return buffer.getInt(position + 1);
+                case TAG_LONG:
+                    return buffer.getLong(position + 1);
+                case TAG_DOUBLE:
+                    return buffer.getDouble(position + 1);
+                case TAG_BOOLEAN:
+                    return buffer.get(position + 1) != 0;
+                case TAG_BIG_INTEGER:
+                    return new BigInteger(new String(readBytes(position + 1, length - 1), StandardCharsets.US_ASCII));
+                case TAG_BIG_DECIMAL:
+                    return new BigDecimal(new String(readBytes(position + 1, length - 1), StandardCharsets.US_ASCII));
+                case TAG_JSON:
+                    try {
+                        return mapper.readValue(readBytes(position + 1, length - 1), Object.class);
+                    } catch (IOException e) {
+                        throw new SQLException("Failed to decode cached value", e);
+                    }
+                default:
+                    return new String(readBytes(position + 1, length - 1), StandardCharsets.UTF_8);
+            }
+        }
+
+        private byte[] readBytes(int position, int length) {
+            byte[] bytes = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(position);
+            view.get(bytes);
+            return bytes;
+        }
+    }
+}
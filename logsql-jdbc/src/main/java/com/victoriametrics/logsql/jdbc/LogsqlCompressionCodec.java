@@ -0,0 +1,24 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Service provider interface for response compression formats.
+ *
+ * <p>Implementations are discovered through {@link java.util.ServiceLoader} and offered to the service in the
+ * {@code Accept-Encoding} header. gzip is built in; other formats such as zstd or lz4 can be added by
+ * registering an implementation in {@code META-INF/services/com.victoriametrics.logsql.jdbc.LogsqlCompressionCodec}.
+ */
+public interface LogsqlCompressionCodec {
+
+    /**
+     * Returns the HTTP content-coding token handled by this codec, for example {@code zstd}.
+     */
+    String getEncoding();
+
+    /**
+     * Wraps {@code compressed} in a stream that decompresses it incrementally as it is read.
+     */
+    InputStream decompress(InputStream compressed) throws IOException;
+}
@@ -0,0 +1,112 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Resolves the compression codecs a connection offers to the service.
+ */
+final class LogsqlCompressionCodecs {
+
+    private static final Logger LOGGER = Logger.getLogger(LogsqlCompressionCodecs.class.getName());
+
+    static final LogsqlCompressionCodec GZIP = new LogsqlCompressionCodec() {
+        @Override
+        public String getEncoding() {
+            return "gzip";
+        }
+
+        @Override
+        public InputStream decompress(InputStream compressed) throws IOException {
+            return new GZIPInputStream(compressed, 64 * 1024);
+        }
+    };
+
+    private final Map<String, LogsqlCompressionCodec> codecs;
+    private final String acceptEncoding;
+
+    private LogsqlCompressionCodecs(Map<String, LogsqlCompressionCodec> codecs) {
+        this.codecs = codecs;
+        this.acceptEncoding = codecs.isEmpty() ? null : String.join(", ", codecs.keySet());
+    }
+
+    /**
+     * Builds the codec set for the {@code compression} property: {@code none} disables compression, a
+     * comma-separated list selects codecs in order of preference, and an empty value offers every codec found
+     * on the class path ahead of the built-in gzip.
+     */
+    static LogsqlCompressionCodecs forProperty(String value) throws SQLException {
+        Map<String, LogsqlCompressionCodec> available = new LinkedHashMap<>();
+        try {
+            for (LogsqlCompressionCodec codec : ServiceLoader.load(LogsqlCompressionCodec.class,
+                    LogsqlCompressionCodecs.class.getClassLoader())) {
+                available.putIfAbsent(codec.getEncoding().toLowerCase(Locale.ROOT), codec);
+            }
+        } catch (ServiceConfigurationError e) {
+            LOGGER.log(Level.WARNING, "Failed to load compression codecs", e);
+        }
+        available.putIfAbsent(GZIP.getEncoding(), GZIP);
+
+        String trimmed = LogsqlUrlParser.trimToNull(value);
+        if (trimmed == null) {
+            return new LogsqlCompressionCodecs(available);
+        }
+        Map<String, LogsqlCompressionCodec> selected = new LinkedHashMap<>();
+        if (!"none".equalsIgnoreCase(trimmed)) {
+            List<String> missing = new ArrayList<>();
+            for (String encoding : trimmed.split(",")) {
+                String key = encoding.trim().toLowerCase(Locale.ROOT);
+                if (key.isEmpty()) {
+                    continue;
+                }
+                LogsqlCompressionCodec codec = available.get(key);
+                if (codec == null) {
+                    missing.add(key);
+                } else {
+                    selected.put(key, codec);
+                }
+            }
+            if (!missing.isEmpty()) {
+                throw new SQLException("Unsupported compression " + missing + ", available: " + available.keySet());
+            }
+        }
+        return new LogsqlCompressionCodecs(selected);
+    }
+
+    /**
+     * Returns the {@code Accept-Encoding} header value, or {@code null} when compression is disabled.
+     */
+    String getAcceptEncoding() {
+        return acceptEncoding;
+    }
+
+    /**
+     * Wraps {@code body} according to the response {@code Content-Encoding}.
+     */
+    InputStream decode(InputStream body, String contentEncoding) throws SQLException {
+        String encoding = LogsqlUrlParser.trimToNull(contentEncoding);
+        if (encoding == null || "identity".equalsIgnoreCase(encoding)) {
+            return body;
+        }
+        LogsqlCompressionCodec codec = codecs.get(encoding.toLowerCase(Locale.ROOT));
+        if (codec == null) {
+            throw new SQLException("Unsupported response content encoding: " + contentEncoding);
+        }
+        try {
+            return codec.decompress(body);
+        } catch (IOException e) {
+            throw new SQLException("Failed to decode " + encoding + " response", e);
+        }
+    }
+}
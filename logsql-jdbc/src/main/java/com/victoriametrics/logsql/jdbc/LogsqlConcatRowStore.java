@@ -0,0 +1,135 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Row store presenting several partial results one after another under a union of their columns. Closing it closes
+ * the parts it owns; parts shared with other results, such as cached time buckets, are left open.
+ */
+final class LogsqlConcatRowStore implements LogsqlRowStore {
+
+    private final LogsqlRowStore[] parts;
+    private final boolean[] owned;
+    private final int[][] columnMappings;
+    private final int[] firstRows;
+    private final int rowCount;
+
+    private LogsqlConcatRowStore(LogsqlRowStore[] parts, boolean[] owned, int[][] columnMappings, int rowCount) {
+        this.parts = parts;
+        this.owned = owned;
+        this.columnMappings = columnMappings;
+        this.firstRows = new int[parts.length];
+        int first = 0;
+        for (int i = 0; i < parts.length; i++) {
+            firstRows[i] = first;
+            first += parts[i].getRowCount();
+        }
+        this.rowCount = Math.min(rowCount, first);
+    }
+
+    /**
+     * Concatenates {@code parts} in order. Columns keep the order of their first appearance and the type
+     * of the first part that could infer one. The rows of part {@code i} are closed with the result when
+     * {@code owned[i]} is set.
+     */
+    static LogsqlQueryResult stitch(String logsql, List<LogsqlQueryResult> parts, boolean[] owned, int maxRows) {
+        List<String> columns = new ArrayList<>();
+        Map<String, Integer> columnIndexes = new HashMap<>();
+        int[] types = new int[16];
+        int[][] mappings = new int[parts.size()][];
+        LogsqlRowStore[] stores = new LogsqlRowStore[parts.size()];
+        long total = 0;
+        for (int p = 0; p < parts.size(); p++) {
+            LogsqlQueryResult part = parts.get(p);
+            List<String> partColumns = part.getColumnNames();
+            int[] mapping = new int[partColumns.size()];
+            for (int c = 0; c < partColumns.size(); c++) {
+                Integer index = columnIndexes.get(partColumns.get(c));
+                if (index == null) {
+                    index = columns.size();
+                    columnIndexes.put(partColumns.get(c), index);
+                    columns.add(partColumns.get(c));
+                    if (index >= types.length) {
+                        types = Arrays.copyOf(types, types.length * 2);
+                    }
+                    types[index] = Types.NULL;
+                }
+                mapping[c] = index;
+                if (types[index] == Types.NULL && part.getRowCount() > 0) {
+                    types[index] = part.getColumnTypes()[c];
+                }
+            }
+            mappings[p] = invert(mapping);
+            stores[p] = part.getRows();
+            total += part.getRowCount();
+        }
+        int[] columnTypes = Arrays.copyOf(types, columns.size());
+        for (int i = 0; i < columnTypes.length; i++) {
+            if (columnTypes[i] == Types.NULL) {
+                columnTypes[i] = Types.VARCHAR;
+            }
+        }
+        int limit = (int) Math.min(Integer.MAX_VALUE, maxRows > 0 ? Math.min(maxRows, total) : total);
+        return new LogsqlQueryResult(logsql, columns, columnTypes,
+                new LogsqlConcatRowStore(stores, Arrays.copyOf(owned, stores.length), mappings, limit));
+    }
+
+    /**
+     * Presents {@code second} after {@code first}, both using the same {@code columnCount} columns.
+     */
+    static LogsqlRowStore append(LogsqlRowStore first, LogsqlRowStore second, int columnCount) {
+        int[] identity = new int[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            identity[column] = column;
+        }
+        return new LogsqlConcatRowStore(new LogsqlRowStore[]{first, second}, new boolean[]{true, true},
+                new int[][]{identity, identity}, first.getRowCount() + second.getRowCount());
+    }
+
+    private static int[] invert(int[] mapping) {
+        int width = 0;
+        for (int target : mapping) {
+            width = Math.max(width, target + 1);
+        }
+        int[] inverted = new int[width];
+        Arrays.fill(inverted, -1);
+        for (int source = 0; source < mapping.length; source++) {
+            inverted[mapping[source]] = source;
+        }
+        return inverted;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public Object getValue(int row, int column) throws SQLException {
+        int part = Arrays.binarySearch(firstRows, row);
+        if (part < 0) {
+            part = -part - 2;
+        }
+        while (parts[part].getRowCount() == 0 || row - firstRows[part] >= parts[part].getRowCount()) {
+            part++;
+        }
+        int[] mapping = columnMappings[part];
+        int source = column < mapping.length ? mapping[column] : -1;
+        return source < 0 ? null : parts[part].getValue(row - firstRows[part], source);
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0; i < parts.length; i++) {
+            if (owned[i]) {
+                parts[i].close();
+            }
+        }
+    }
+}
@@ -4,11 +4,13 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import javax.management.ObjectName;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLParameters;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
@@ -16,6 +18,7 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
@@ -36,18 +39,17 @@ import java.sql.SQLXML;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Struct;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
-import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
 
@@ -72,9 +74,19 @@ final class LogsqlConnection implements Connection {
     private final LogsqlConnectionConfig config;
     private final HttpClient httpClient;
     private final ObjectMapper mapper = new ObjectMapper();
+    private final LogsqlResponseReader responseReader;
+    private final LogsqlConnectionStats stats = new LogsqlConnectionStats(LogsqlDriverMetrics.INSTANCE.getStats());
     private final String baseUrl;
+    private final LogsqlConnectionMonitor monitor;
+    private final LogsqlSlowQueryLog slowQueryLog;
+    private ObjectName monitorName;
     private final DatabaseMetaData metadata;
-    private boolean closed;
+    private final LogsqlResultCache resultCache;
+    private final LogsqlTimeBuckets timeBuckets;
+    private final LogsqlResultLru retainedResults;
+    private final LogsqlTemplateCache templateCache;
+    // read by background cache refreshes
+    private volatile boolean closed;
     private boolean readOnly = true;
     private boolean autoCommit = true;
 
@@ -82,100 +94,339 @@ final class LogsqlConnection implements Connection {
         this.config = Objects.requireNonNull(config, "config");
         this.httpClient = createHttpClient(config);
         this.baseUrl = buildBaseUrl(config);
+        this.responseReader = new LogsqlResponseReader(mapper,
+                config.getDecodeParallelism() <= 1 && !config.isLazyDecoding()
+                        ? null
+                        : new LogsqlParallelDecoder(mapper, config.getDecodeParallelism(), config.getDecodeQueueBytes(),
+                                config.isLazyDecoding()));
         this.metadata = createMetadata();
+        this.timeBuckets = config.getTimeBucket() == null
+                ? null
+                : new LogsqlTimeBuckets(this, config.getTimeBucket(), config.getTimeBucketDelay(),
+                        config.getTimeBucketMaxAge(), config.getTimeBucketCacheRows(), Clock.systemUTC());
+        this.retainedResults = config.getRetainedResultRows() == 0
+                ? null
+                : new LogsqlResultLru(config.getRetainedResultRows());
+        this.templateCache = config.getStatementCacheSize() == 0
+                ? null
+                : new LogsqlTemplateCache(config.getStatementCacheSize());
+        this.monitor = new LogsqlConnectionMonitor(stats, baseUrl);
+        this.slowQueryLog = LogsqlSlowQueryLog.forConfig(config);
         performHealthCheck();
+        // opened once the service answered, so that failed connections do not hold on to the directory
+        this.resultCache = config.getCacheDir() == null
+                ? null
+                : LogsqlResultCache.open(config.getCacheDir(), config.getCacheMaxBytes(),
+                        config.getCacheRefreshConcurrency());
+        long id = LogsqlDriverMetrics.INSTANCE.connectionOpened();
+        if (config.isJmx()) {
+            LogsqlDriverMetrics.INSTANCE.register();
+            this.monitorName = LogsqlDriverMetrics.register(monitor, LogsqlConnectionMXBean.class,
+                    LogsqlDriverMetrics.DOMAIN + ":type=Connection,id=" + id);
+        }
+    }
+
+    /**
+     * Runs {@code sql} for a statement, reading at most {@code maxResultBytes} of the response and values of at most
+     * {@code maxFieldBytes}, and cutting off strings at {@code maxFieldSize} characters, where {@code 0} means
+     * unlimited. The byte limits do not apply to results served from the result cache or from cached time buckets,
+     * which are bounded by their own settings; the result set applies {@code maxFieldSize} to those and to results
+     * assembled from time buckets.
+     */
+    LogsqlQueryResult executeQuery(String sql, int maxRows, long maxResultBytes, long maxFieldBytes, int maxFieldSize)
+            throws SQLException {
+        return executeQuery(sql, maxRows, maxResultBytes, maxFieldBytes, maxFieldSize, trace(sql));
     }
 
-    LogsqlQueryResult executeQuery(String sql, int maxRows) throws SQLException {
+    /**
+     * Returns a trace for an execution of {@code sql}, reported to the query listeners of this connection.
+     */
+    LogsqlQueryTrace trace(String sql) {
+        return new LogsqlQueryTrace(sql, config.getQueryListeners(), config.getQueryProgressRows());
+    }
+
+    /**
+     * Runs {@code sql} like {@link #executeQuery(String, int, long, long, int)}, recording the execution to
+     * {@code trace}.
+     */
+    LogsqlQueryResult executeQuery(String sql, int maxRows, long maxResultBytes, long maxFieldBytes, int maxFieldSize,
+                                   LogsqlQueryTrace trace) throws SQLException {
         ensureOpen();
         if (sql == null) {
             throw new SQLException("SQL must not be null");
         }
-        String payload;
+        monitor.queryStarted();
+        trace.started();
+        LogsqlQueryResult result;
         try {
-            Map<String, Object> body = new LinkedHashMap<>();
-            body.put("sql", sql);
-            if (config.getEndpoint() != null) {
-                body.put("endpoint", config.getEndpoint());
+            result = runQuery(sql, maxRows, maxResultBytes, maxFieldBytes, maxFieldSize, trace);
+        } catch (SQLException | RuntimeException | Error e) {
+            trace.failed(e);
+            monitor.queryFailed(e);
+            if (slowQueryLog != null) {
+                slowQueryLog.record(trace, null, e);
             }
-            if (config.getBearerToken() != null) {
-                body.put("bearerToken", config.getBearerToken());
-            }
-            payload = mapper.writeValueAsString(body);
-        } catch (JsonProcessingException e) {
-            throw new SQLException("Failed to serialize request payload", e);
+            throw e;
+        }
+        trace.finished(result);
+        monitor.querySucceeded(trace, result);
+        if (slowQueryLog != null) {
+            slowQueryLog.record(trace, result, null);
         }
+        return result;
+    }
 
-        HttpRequest request = baseRequestBuilder(buildUri("/api/v1/sql-to-logsql"))
-                .timeout(config.getTimeout())
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(payload))
-                .build();
+    private LogsqlQueryResult runQuery(String sql, int maxRows, long maxResultBytes, long maxFieldBytes,
+                                       int maxFieldSize, LogsqlQueryTrace trace) throws SQLException {
+        if (timeBuckets != null) {
+            // cached buckets are shared by statements with any max field size
+            LogsqlQueryResult windowed = timeBuckets.execute(sql, maxRows,
+                    LogsqlResultLimits.of(maxResultBytes, maxFieldBytes, 0, config));
+            if (windowed != null) {
+                trace.source(LogsqlQueryProfile.Source.TIME_BUCKETS);
+                return windowed;
+            }
+        }
+        String cacheKey = null;
+        if (resultCache != null && LogsqlResultCache.isCacheable(sql)) {
+            cacheKey = LogsqlResultCache.key(config, sql, maxRows);
+            LogsqlResultCache.Lookup cached = resultCache.lookup(
+                    cacheKey, config.getCacheTtl(), config.getCacheMaxStale(), mapper);
+            monitor.resultCacheLookup(cached != null);
+            if (cached != null && !cached.isStale()) {
+                trace.source(LogsqlQueryProfile.Source.RESULT_CACHE);
+                return cached.result;
+            }
+            if (cached != null) {
+                trace.source(LogsqlQueryProfile.Source.STALE_RESULT_CACHE);
+                resultCache.refreshAsync(cacheKey,
+                        () -> refreshQuery(sql, maxRows, maxResultBytes, maxFieldBytes, maxFieldSize), mapper);
+                return cached.result.withWarning(new SQLWarning("Cached result expired "
+                        + cached.expiredForMillis + " ms ago and is being refreshed", "01000"));
+            }
+        }
 
-        HttpResponse<String> response = send(request);
-        if (response.statusCode() >= 400) {
-            throw new SQLException("Query execution failed: " + extractErrorMessage(response));
+        LogsqlResultLimits limits = LogsqlResultLimits.of(maxResultBytes, maxFieldBytes, maxFieldSize, config);
+        LogsqlQueryResult result = fetchQuery(sql, maxRows, null, null, isOwned(limits), limits, trace);
+        // a truncated result is not the result of the query
+        if (cacheKey != null && (limits == null || limits.isComplete())) {
+            resultCache.put(cacheKey, result, mapper);
         }
+        return result;
+    }
 
-        Map<String, Object> resultMap = parseJson(response.body());
-        String translated = (String) resultMap.getOrDefault("logsql", null);
-        String data = (String) resultMap.getOrDefault("data", "");
+    /**
+     * Runs {@code sql} for a background refresh of the result cache, under the memory accounting of the connection
+     * and the limits of the statement that found the entry stale. Returns {@code null} when the result is not
+     * complete, or when the connection was closed meanwhile: a refresh still queued or running then does not reach
+     * the service, or its result is dropped, so that it neither uses the credentials of a closed connection nor
+     * writes to the cache on its behalf afterwards.
+     */
+    private LogsqlQueryResult refreshQuery(String sql, int maxRows, long maxResultBytes, long maxFieldBytes,
+                                           int maxFieldSize) throws SQLException {
+        ensureOpen();
+        LogsqlResultLimits limits = LogsqlResultLimits.of(maxResultBytes, maxFieldBytes, maxFieldSize, config);
+        LogsqlQueryResult result = fetchQuery(sql, maxRows, null, null, true, limits, null);
+        if (closed || limits != null && !limits.isComplete()) {
+            result.getRows().close();
+            return null;
+        }
+        return result;
+    }
 
-        List<Map<String, Object>> rows = new ArrayList<>();
-        Set<String> columnOrder = new LinkedHashSet<>();
-        if (data != null && !data.isBlank()) {
-            String[] lines = data.split("\\r?\\n");
-            for (String line : lines) {
-                if (line == null) {
-                    continue;
-                }
-                String trimmed = line.trim();
-                if (trimmed.isEmpty()) {
-                    continue;
-                }
-                Map<String, Object> row = parseRow(trimmed);
-                rows.add(row);
-                columnOrder.addAll(row.keySet());
+    /**
+     * Reports whether results read under {@code limits} are owned by the result they are handed to.
+     */
+    private boolean isOwned(LogsqlResultLimits limits) {
+        return LogsqlResultMemory.isRequired(config) || limits != null;
+    }
+
+    /**
+     * Runs {@code sql} on the service, optionally restricted to the {@code [start, end]} time range, reading it under
+     * {@code limits} unless they are {@code null}. Like the results of statements, the result is owned by the
+     * caller when it is accounted to a memory budget or read under limits. Other results carrying a validator are
+     * retained so that repeated executions can be answered with {@code 304 Not Modified} instead of transferring
+     * and decoding the same body again.
+     */
+    LogsqlQueryResult fetchQuery(String sql, int maxRows, String start, String end, LogsqlResultLimits limits)
+            throws SQLException {
+        return fetchQuery(sql, maxRows, start, end, isOwned(limits), limits, null);
+    }
+
+    /**
+     * Runs {@code sql}, accounting the result to a {@link LogsqlResultMemory} when {@code owned} is set. Such a
+     * result belongs to the result set it is handed to, which frees it on close, so it is never retained. Results
+     * read under {@code limits} must be owned. The execution is recorded to {@code trace} unless it is {@code null}.
+     */
+    private LogsqlQueryResult fetchQuery(String sql, int maxRows, String start, String end, boolean owned,
+                                         LogsqlResultLimits limits, LogsqlQueryTrace trace) throws SQLException {
+        Map<String, Object> body = requestBody(sql);
+        if (start != null) {
+            body.put("start", start);
+        }
+        if (end != null) {
+            body.put("end", end);
+        }
+        String retainKey = null;
+        LogsqlResultLru.Entry retained = null;
+        if (retainedResults != null && !owned) {
+            retainKey = maxRows + "\u0000" + start + "\u0000" + end + "\u0000" + sql;
+            retained = retainedResults.get(retainKey);
+        }
+        if (trace != null) {
+            trace.sending();
+        }
+        HttpResponse<InputStream> response = postQuery(body, retained == null ? null : retained.validator);
+        if (trace != null) {
+            trace.responseReceived();
+            trace.serverTiming(response.headers().firstValue("Server-Timing").orElse(null));
+        }
+        if (retained != null) {
+            monitor.conditionalRequest(response.statusCode() == 304);
+        }
+        if (response.statusCode() == 304) {
+            closeQuietly(response.body());
+            if (retained == null) {
+                throw new SQLException("Query execution failed: unexpected 304 Not Modified response");
+            }
+            if (trace != null) {
+                trace.source(LogsqlQueryProfile.Source.NOT_MODIFIED);
             }
+            return retained.result;
         }
-
-        List<String> columns = new ArrayList<>(columnOrder);
-        for (Map<String, Object> row : rows) {
-            for (String column : columns) {
-                row.putIfAbsent(column, null);
+        LogsqlQueryResult result = decodeQueryResponse(response, maxRows,
+                owned ? new LogsqlResultMemory(mapper, stats, config) : null, limits, trace);
+        if (retainKey != null) {
+            String validator = response.headers().firstValue("ETag").orElse(null);
+            if (validator != null) {
+                retainedResults.put(retainKey, validator, result);
+            } else {
+                retainedResults.remove(retainKey);
             }
         }
+        return result;
+    }
+
+    private LogsqlQueryResult decodeQueryResponse(HttpResponse<InputStream> response, int maxRows,
+                                                  LogsqlResultMemory memory, LogsqlResultLimits limits,
+                                                  LogsqlQueryTrace trace) throws SQLException {
+        String contentType = response.headers().firstValue("Content-Type").orElse(null);
+        LogsqlQueryResult result = responseReader.read(decodedBody(response, trace), contentType, maxRows, memory,
+                limits, trace);
+        if (trace != null) {
+            trace.bodyRead();
+        }
+        return result;
+    }
 
-        if (maxRows > 0 && rows.size() > maxRows) {
-            rows = new ArrayList<>(rows.subList(0, maxRows));
+    /**
+     * Returns the template of a statement preparing {@code sql}, reusing the one of a statement closed before
+     * when it was cached.
+     */
+    LogsqlSqlTemplate template(String sql) {
+        LogsqlSqlTemplate template = templateCache == null ? null : templateCache.get(sql);
+        return template != null ? template : LogsqlSqlTemplate.parse(sql);
+    }
+
+    /**
+     * Caches the template of a poolable prepared statement that was closed.
+     */
+    void templateReleased(LogsqlSqlTemplate template) {
+        if (templateCache != null) {
+            templateCache.put(template);
         }
+    }
 
-        return new LogsqlQueryResult(translated, columns, rows);
+    /**
+     * Returns the LogsQL the service translates {@code sql} to, without running it.
+     */
+    String translateQuery(String sql) throws SQLException {
+        Map<String, Object> body = requestBody(sql);
+        body.put("execMode", "translate");
+        LogsqlQueryEvents.TranslateEvent event = LogsqlQueryTrace.JFR ? LogsqlQueryEvents.beginTranslation() : null;
+        String logsql = decodeQueryResponse(postQuery(body, null), 0, null, null, null).getLogsql();
+        if (event != null) {
+            LogsqlQueryEvents.commitTranslation(event, sql, logsql);
+        }
+        return logsql;
     }
 
-    private Map<String, Object> parseJson(String json) throws SQLException {
-        if (json == null || json.isBlank()) {
-            return Collections.emptyMap();
+    private Map<String, Object> requestBody(String sql) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("sql", sql);
+        if (config.getEndpoint() != null) {
+            body.put("endpoint", config.getEndpoint());
         }
+        if (config.getBearerToken() != null) {
+            body.put("bearerToken", config.getBearerToken());
+        }
+        return body;
+    }
+
+    private HttpResponse<InputStream> postQuery(Map<String, Object> body, String ifNoneMatch) throws SQLException {
+        String payload;
         try {
-            return mapper.readValue(json, MAP_TYPE);
-        } catch (IOException e) {
-            throw new SQLException("Failed to parse response JSON", e);
+            payload = mapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Failed to serialize request payload", e);
+        }
+
+        HttpRequest.Builder builder = baseRequestBuilder(buildUri("/api/v1/sql-to-logsql"))
+                .timeout(config.getTimeout())
+                .setHeader("Accept", LogsqlResponseReader.acceptHeader(config.getProtocolVersion(), config.getRowFormat()))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(payload));
+        if (ifNoneMatch != null) {
+            builder.header("If-None-Match", ifNoneMatch);
         }
+        String acceptEncoding = config.getCompressionCodecs().getAcceptEncoding();
+        if (acceptEncoding != null) {
+            builder.header("Accept-Encoding", acceptEncoding);
+        }
+        HttpRequest request = builder.build();
+
+        HttpResponse<InputStream> response = send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() >= 400) {
+            String error;
+            try (InputStream in = decodedBody(response, null)) {
+                error = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException | SQLException e) {
+                error = "";
+            }
+            throw new SQLException("Query execution failed: " + extractErrorMessage(response.statusCode(), error));
+        }
+        return response;
     }
 
-    private Map<String, Object> parseRow(String jsonLine) throws SQLException {
+    /**
+     * Returns the response body decompressed according to its {@code Content-Encoding}, counting the bytes
+     * on both sides of the codec, and to {@code trace} as well unless it is {@code null}.
+     */
+    private InputStream decodedBody(HttpResponse<InputStream> response, LogsqlQueryTrace trace) throws SQLException {
+        InputStream body = trace == null ? response.body() : trace.timeTransfer(response.body());
+        InputStream received = stats.countReceived(body);
+        String contentEncoding = response.headers().firstValue("Content-Encoding").orElse(null);
         try {
-            return mapper.readValue(jsonLine, MAP_TYPE);
-        } catch (IOException e) {
-            throw new SQLException("Failed to parse response row: " + jsonLine, e);
+            InputStream decoded = stats.countDecoded(config.getCompressionCodecs().decode(received, contentEncoding));
+            return trace == null ? decoded : trace.countDecoded(decoded);
+        } catch (SQLException e) {
+            closeQuietly(received);
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // nothing left to read
         }
     }
 
-    private HttpResponse<String> send(HttpRequest request) throws SQLException {
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws SQLException {
         try {
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            return response;
+            return httpClient.send(request, bodyHandler);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new SQLException("Request interrupted", e);
@@ -190,7 +441,7 @@ final class LogsqlConnection implements Connection {
                 .GET()
                 .build();
 
-        HttpResponse<String> response = send(request);
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString());
         if (response.statusCode() >= 400) {
             throw new SQLException("Failed to connect to sql-to-logsql service at " + baseUrl
                     + ": status=" + response.statusCode());
@@ -347,8 +598,9 @@ final class LogsqlConnection implements Connection {
             case "getCatalogTerm":
             case "getSchemaTerm":
                 return "";
-            case "supportsGetGeneratedKeys":
             case "supportsStatementPooling":
+                return Boolean.valueOf(templateCache != null);
+            case "supportsGetGeneratedKeys":
             case "supportsSavepoints":
             case "supportsNamedParameters":
                 return Boolean.FALSE;
@@ -487,14 +739,14 @@ final class LogsqlConnection implements Connection {
         List<Object[]> rows = new ArrayList<>();
         List<TableEntry> tables = fetchTables(tableNamePattern, null);
         for (TableEntry table : tables) {
-            List<Map<String, Object>> describeRows = runDescribeCommand(table);
+            LogsqlQueryResult describeResult = runDescribeCommand(table);
             int ordinal = 1;
-            for (Map<String, Object> row : describeRows) {
-                String columnName = stringValue(row, "field_name");
+            for (int row = 0; row < describeResult.getRowCount(); row++) {
+                String columnName = stringValue(describeResult, row, "field_name");
                 if (columnName == null || !matchesPattern(columnName, columnNamePattern)) {
                     continue;
                 }
-                String hits = stringValue(row, "hits");
+                String hits = stringValue(describeResult, row, "hits");
                 rows.add(new Object[]{
                         null,
                         null,
@@ -532,22 +784,24 @@ final class LogsqlConnection implements Connection {
     private List<TableEntry> fetchTables(String tableNamePattern, String[] types) throws SQLException {
         List<TableEntry> result = new ArrayList<>();
         if (isTableTypeIncluded(types, "TABLE")) {
-            for (Map<String, Object> entry : runShowCommand("SHOW TABLES")) {
-                String name = stringValue(entry, "table_name");
+            LogsqlQueryResult tables = runShowCommand("SHOW TABLES");
+            for (int row = 0; row < tables.getRowCount(); row++) {
+                String name = stringValue(tables, row, "table_name");
                 if (name == null || !matchesPattern(name, tableNamePattern)) {
                     continue;
                 }
-                String remarks = stringValue(entry, "query");
+                String remarks = stringValue(tables, row, "query");
                 result.add(new TableEntry(name, "TABLE", remarks));
             }
         }
         if (isTableTypeIncluded(types, "VIEW")) {
-            for (Map<String, Object> entry : runShowCommand("SHOW VIEWS")) {
-                String name = stringValue(entry, "view_name");
+            LogsqlQueryResult views = runShowCommand("SHOW VIEWS");
+            for (int row = 0; row < views.getRowCount(); row++) {
+                String name = stringValue(views, row, "view_name");
                 if (name == null || !matchesPattern(name, tableNamePattern)) {
                     continue;
                 }
-                String remarks = stringValue(entry, "query");
+                String remarks = stringValue(views, row, "query");
                 result.add(new TableEntry(name, "VIEW", remarks));
             }
         }
@@ -555,14 +809,13 @@ final class LogsqlConnection implements Connection {
         return result;
     }
 
-    private List<Map<String, Object>> runShowCommand(String sql) throws SQLException {
-        LogsqlQueryResult result = executeQuery(sql, 0);
-        return result.getRows();
+    private LogsqlQueryResult runShowCommand(String sql) throws SQLException {
+        return executeQuery(sql, 0, 0, 0, 0);
     }
 
-    private List<Map<String, Object>> runDescribeCommand(TableEntry table) throws SQLException {
+    private LogsqlQueryResult runDescribeCommand(TableEntry table) throws SQLException {
         String sql = ("VIEW".equalsIgnoreCase(table.type) ? "DESCRIBE VIEW " : "DESCRIBE TABLE ") + table.name;
-        return executeQuery(sql, 0).getRows();
+        return executeQuery(sql, 0, 0, 0, 0);
     }
 
     private boolean isTableTypeIncluded(String[] requestedTypes, String candidateType) {
@@ -618,8 +871,8 @@ final class LogsqlConnection implements Connection {
         return upperValue.matches(regex.toString());
     }
 
-    private String stringValue(Map<String, Object> entry, String key) {
-        Object value = entry.get(key);
+    private String stringValue(LogsqlQueryResult result, int row, String column) throws SQLException {
+        Object value = result.getValue(row, column);
         return value == null ? null : value.toString();
     }
 
@@ -642,10 +895,9 @@ final class LogsqlConnection implements Connection {
         return value.substring(0, len);
     }
 
-    private String extractErrorMessage(HttpResponse<String> response) {
-        String body = response.body();
+    private String extractErrorMessage(int statusCode, String body) {
         if (body == null || body.isBlank()) {
-            return "status=" + response.statusCode();
+            return "status=" + statusCode;
         }
         try {
             Map<String, Object> map = mapper.readValue(body, MAP_TYPE);
@@ -708,8 +960,18 @@ final class LogsqlConnection implements Connection {
     }
 
     @Override
-    public void close() {
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
         closed = true;
+        if (resultCache != null) {
+            resultCache.release();
+        }
+        LogsqlDriverMetrics.INSTANCE.connectionClosed();
+        if (monitorName != null) {
+            LogsqlDriverMetrics.unregister(monitorName);
+        }
     }
 
     @Override
@@ -961,18 +1223,29 @@ final class LogsqlConnection implements Connection {
         if (iface.isInstance(this)) {
             return iface.cast(this);
         }
+        if (iface == LogsqlConnectionMetrics.class) {
+            return iface.cast(stats);
+        }
+        if (iface == LogsqlConnectionMXBean.class) {
+            return iface.cast(monitor);
+        }
         throw new SQLFeatureNotSupportedException("Not a wrapper for " + iface.getName());
     }
 
     @Override
     public boolean isWrapperFor(Class<?> iface) throws SQLException {
-        return iface.isInstance(this);
+        return iface.isInstance(this) || iface == LogsqlConnectionMetrics.class
+                || iface == LogsqlConnectionMXBean.class;
     }
 
     LogsqlConnectionConfig getConfig() {
         return config;
     }
 
+    LogsqlConnectionMonitor getMonitor() {
+        return monitor;
+    }
+
     HttpClient getHttpClient() {
         return httpClient;
     }
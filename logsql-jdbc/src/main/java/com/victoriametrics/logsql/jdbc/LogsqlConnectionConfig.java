@@ -1,8 +1,12 @@
 package com.victoriametrics.logsql.jdbc;
 
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.DriverPropertyInfo;
 import java.sql.SQLException;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Locale;
@@ -16,6 +20,22 @@ final class LogsqlConnectionConfig {
     static final int DEFAULT_PORT = 8080;
     static final String DEFAULT_SCHEME = "http";
     static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(60);
+    static final long DEFAULT_CACHE_MAX_BYTES = 256L * 1024 * 1024;
+    static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(5);
+    static final int DEFAULT_CACHE_REFRESH_CONCURRENCY = 2;
+    static final int DEFAULT_PROTOCOL_VERSION = 2;
+    static final String DEFAULT_ROW_FORMAT = "json";
+    static final int DEFAULT_DECODE_PARALLELISM = 1;
+    static final long DEFAULT_DECODE_QUEUE_BYTES = 64L * 1024 * 1024;
+    static final int DEFAULT_OFF_HEAP_ARENA_BYTES = 4 * 1024 * 1024;
+    static final String DEFAULT_MEMORY_POLICY = "spill";
+    static final String DEFAULT_LIMIT_POLICY = "truncate";
+    static final long DEFAULT_RETAINED_RESULT_ROWS = 0L;
+    static final Duration DEFAULT_TIME_BUCKET_DELAY = Duration.ofMinutes(1);
+    static final long DEFAULT_TIME_BUCKET_CACHE_ROWS = 1_000_000L;
+    static final long DEFAULT_QUERY_PROGRESS_ROWS = 10_000L;
+    static final long DEFAULT_SLOW_QUERY_LOGS_PER_MINUTE = 60L;
+    static final int DEFAULT_STATEMENT_CACHE_SIZE = 256;
 
     private final String host;
     private final int port;
@@ -27,6 +47,39 @@ final class LogsqlConnectionConfig {
     private final boolean verifyTls;
     private final Map<String, String> headers;
     private final Properties rawProperties;
+    private final Path cacheDir;
+    private final long cacheMaxBytes;
+    private final Duration cacheTtl;
+    private final Duration cacheMaxStale;
+    private final int cacheRefreshConcurrency;
+    private final int protocolVersion;
+    private final String rowFormat;
+    private final LogsqlCompressionCodecs compressionCodecs;
+    private final int decodeParallelism;
+    private final long decodeQueueBytes;
+    private final boolean lazyDecoding;
+    private final boolean offHeap;
+    private final int offHeapArenaBytes;
+    private final long statementMemoryBytes;
+    private final long connectionMemoryBytes;
+    private final String memoryPolicy;
+    private final Path spillDir;
+    private final long maxResultBytes;
+    private final long maxFieldBytes;
+    private final String limitPolicy;
+    private final int largeFieldBytes;
+    private final long retainedResultRows;
+    private final Duration timeBucket;
+    private final Duration timeBucketDelay;
+    private final long timeBucketCacheRows;
+    private final Duration timeBucketMaxAge;
+    private final boolean jmx;
+    private final LogsqlQueryListeners queryListeners;
+    private final long queryProgressRows;
+    private final Duration slowQueryThreshold;
+    private final double slowQuerySampleRate;
+    private final long slowQueryLogsPerMinute;
+    private final int statementCacheSize;
 
     LogsqlConnectionConfig(
             String host,
@@ -39,7 +92,7 @@ final class LogsqlConnectionConfig {
             boolean verifyTls,
             Map<String, String> headers,
             Properties rawProperties
-    ) {
+    ) throws SQLException {
         this.host = Objects.requireNonNullElse(host, DEFAULT_HOST);
         this.port = port <= 0 ? DEFAULT_PORT : port;
         this.scheme = scheme == null || scheme.isBlank() ? DEFAULT_SCHEME : scheme.toLowerCase(Locale.ROOT);
@@ -49,7 +102,120 @@ final class LogsqlConnectionConfig {
         this.timeout = timeout == null ? DEFAULT_TIMEOUT : timeout;
         this.verifyTls = verifyTls;
         this.headers = headers == null ? Collections.emptyMap() : Collections.unmodifiableMap(new LinkedHashMap<>(headers));
-        this.rawProperties = rawProperties;
+        this.rawProperties = rawProperties == null ? new Properties() : rawProperties;
+        this.cacheDir = parsePath("cacheDir", this.rawProperties.getProperty("cacheDir"));
+        this.cacheMaxBytes = LogsqlUrlParser.parsePositiveLong(
+                "cacheMaxBytes", this.rawProperties.getProperty("cacheMaxBytes"), DEFAULT_CACHE_MAX_BYTES);
+        this.cacheTtl = LogsqlUrlParser.parseMillis(
+                "cacheTtl", this.rawProperties.getProperty("cacheTtl"), DEFAULT_CACHE_TTL);
+        String maxStaleValue = this.rawProperties.getProperty("cacheMaxStale");
+        this.cacheMaxStale = LogsqlUrlParser.trimToNull(maxStaleValue) == null
+                ? Duration.ZERO
+                : LogsqlUrlParser.parseMillis("cacheMaxStale", maxStaleValue, Duration.ZERO);
+        this.cacheRefreshConcurrency = (int) Math.min(Integer.MAX_VALUE, LogsqlUrlParser.parsePositiveLong(
+                "cacheRefreshConcurrency", this.rawProperties.getProperty("cacheRefreshConcurrency"),
+                DEFAULT_CACHE_REFRESH_CONCURRENCY));
+        this.protocolVersion = parseProtocolVersion(this.rawProperties.getProperty("protocol"));
+        this.rowFormat = parseChoice("rowFormat", this.rawProperties.getProperty("rowFormat"),
+                DEFAULT_ROW_FORMAT, "smile");
+        this.compressionCodecs = LogsqlCompressionCodecs.forProperty(this.rawProperties.getProperty("compression"));
+        this.decodeParallelism = (int) Math.min(Integer.MAX_VALUE, LogsqlUrlParser.parsePositiveLong(
+                "decodeParallelism", this.rawProperties.getProperty("decodeParallelism"), DEFAULT_DECODE_PARALLELISM));
+        this.decodeQueueBytes = LogsqlUrlParser.parsePositiveLong(
+                "decodeQueueBytes", this.rawProperties.getProperty("decodeQueueBytes"), DEFAULT_DECODE_QUEUE_BYTES);
+        this.lazyDecoding = LogsqlUrlParser.parseBoolean(this.rawProperties.getProperty("lazyDecoding"), false);
+        this.offHeap = LogsqlUrlParser.parseBoolean(this.rawProperties.getProperty("offHeap"), false);
+        this.offHeapArenaBytes = (int) Math.min(Integer.MAX_VALUE, LogsqlUrlParser.parsePositiveLong(
+                "offHeapArenaBytes", this.rawProperties.getProperty("offHeapArenaBytes"), DEFAULT_OFF_HEAP_ARENA_BYTES));
+        this.statementMemoryBytes = LogsqlUrlParser.parseNonNegativeLong(
+                "statementMemoryBytes", this.rawProperties.getProperty("statementMemoryBytes"), 0);
+        this.connectionMemoryBytes = LogsqlUrlParser.parseNonNegativeLong(
+                "connectionMemoryBytes", this.rawProperties.getProperty("connectionMemoryBytes"), 0);
+        this.memoryPolicy = parseChoice("memoryPolicy", this.rawProperties.getProperty("memoryPolicy"),
+                DEFAULT_MEMORY_POLICY, "fail");
+        this.spillDir = parsePath("spillDir", this.rawProperties.getProperty("spillDir"));
+        this.maxResultBytes = LogsqlUrlParser.parseNonNegativeLong(
+                "maxResultBytes", this.rawProperties.getProperty("maxResultBytes"), 0);
+        this.maxFieldBytes = LogsqlUrlParser.parseNonNegativeLong(
+                "maxFieldBytes", this.rawProperties.getProperty("maxFieldBytes"), 0);
+        this.limitPolicy = parseChoice("limitPolicy", this.rawProperties.getProperty("limitPolicy"),
+                DEFAULT_LIMIT_POLICY, "fail");
+        this.largeFieldBytes = (int) Math.min(Integer.MAX_VALUE, LogsqlUrlParser.parseNonNegativeLong(
+                "largeFieldBytes", this.rawProperties.getProperty("largeFieldBytes"), 0));
+        this.retainedResultRows = LogsqlUrlParser.parseNonNegativeLong(
+                "retainedResultRows", this.rawProperties.getProperty("retainedResultRows"),
+                DEFAULT_RETAINED_RESULT_ROWS);
+        String timeBucketValue = this.rawProperties.getProperty("timeBucket");
+        this.timeBucket = LogsqlUrlParser.trimToNull(timeBucketValue) == null
+                ? null
+                : LogsqlUrlParser.parseMillis("timeBucket", timeBucketValue, Duration.ZERO);
+        this.timeBucketDelay = LogsqlUrlParser.parseMillis(
+                "timeBucketDelay", this.rawProperties.getProperty("timeBucketDelay"), DEFAULT_TIME_BUCKET_DELAY);
+        this.timeBucketCacheRows = LogsqlUrlParser.parsePositiveLong(
+                "timeBucketCacheRows", this.rawProperties.getProperty("timeBucketCacheRows"),
+                DEFAULT_TIME_BUCKET_CACHE_ROWS);
+        this.timeBucketMaxAge = LogsqlUrlParser.parseMillis(
+                "timeBucketMaxAge", this.rawProperties.getProperty("timeBucketMaxAge"), cacheTtl);
+        this.jmx = LogsqlUrlParser.parseBoolean(this.rawProperties.getProperty("jmx"), true);
+        this.queryListeners = LogsqlQueryListeners.forProperty(this.rawProperties.getProperty("queryListeners"));
+        this.queryProgressRows = LogsqlUrlParser.parseNonNegativeLong(
+                "queryProgressRows", this.rawProperties.getProperty("queryProgressRows"), DEFAULT_QUERY_PROGRESS_ROWS);
+        String slowQueryValue = this.rawProperties.getProperty("slowQueryMillis");
+        this.slowQueryThreshold = LogsqlUrlParser.trimToNull(slowQueryValue) == null
+                ? Duration.ZERO
+                : LogsqlUrlParser.parseMillis("slowQueryMillis", slowQueryValue, Duration.ZERO);
+        this.slowQuerySampleRate = LogsqlUrlParser.parseFraction(
+                "slowQuerySampleRate", this.rawProperties.getProperty("slowQuerySampleRate"), 1.0);
+        this.slowQueryLogsPerMinute = LogsqlUrlParser.parseNonNegativeLong("slowQueryLogsPerMinute",
+                this.rawProperties.getProperty("slowQueryLogsPerMinute"), DEFAULT_SLOW_QUERY_LOGS_PER_MINUTE);
+        this.statementCacheSize = (int) Math.min(Integer.MAX_VALUE, LogsqlUrlParser.parseNonNegativeLong(
+                "statementCacheSize", this.rawProperties.getProperty("statementCacheSize"),
+                DEFAULT_STATEMENT_CACHE_SIZE));
+    }
+
+    private static int parseProtocolVersion(String value) throws SQLException {
+        String trimmed = LogsqlUrlParser.trimToNull(value);
+        if (trimmed == null) {
+            return DEFAULT_PROTOCOL_VERSION;
+        }
+        switch (trimmed.toLowerCase(Locale.ROOT)) {
+            case "1":
+            case "v1":
+                return 1;
+            case "2":
+            case "v2":
+                return 2;
+            default:
+                throw new SQLException("Invalid protocol value: " + value + " (expected v1 or v2)");
+        }
+    }
+
+    /**
+     * Parses one of {@code choices}, case-insensitively; the first choice is the default.
+     */
+    private static String parseChoice(String name, String value, String... choices) throws SQLException {
+        String trimmed = LogsqlUrlParser.trimToNull(value);
+        if (trimmed == null) {
+            return choices[0];
+        }
+        String choice = trimmed.toLowerCase(Locale.ROOT);
+        if (!Arrays.asList(choices).contains(choice)) {
+            throw new SQLException("Invalid " + name + " value: " + value
+                    + " (expected " + String.join(" or ", choices) + ")");
+        }
+        return choice;
+    }
+
+    private static Path parsePath(String name, String value) throws SQLException {
+        String trimmed = LogsqlUrlParser.trimToNull(value);
+        if (trimmed == null) {
+            return null;
+        }
+        try {
+            return Paths.get(trimmed);
+        } catch (InvalidPathException e) {
+            throw new SQLException("Invalid " + name + " value: " + value, e);
+        }
     }
 
     String getHost() {
@@ -92,6 +258,150 @@ final class LogsqlConnectionConfig {
         return rawProperties;
     }
 
+    Path getCacheDir() {
+        return cacheDir;
+    }
+
+    long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
+    Duration getCacheMaxStale() {
+        return cacheMaxStale;
+    }
+
+    int getCacheRefreshConcurrency() {
+        return cacheRefreshConcurrency;
+    }
+
+    int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    String getRowFormat() {
+        return rowFormat;
+    }
+
+    LogsqlCompressionCodecs getCompressionCodecs() {
+        return compressionCodecs;
+    }
+
+    int getDecodeParallelism() {
+        return decodeParallelism;
+    }
+
+    long getDecodeQueueBytes() {
+        return decodeQueueBytes;
+    }
+
+    boolean isLazyDecoding() {
+        return lazyDecoding;
+    }
+
+    boolean isOffHeap() {
+        return offHeap;
+    }
+
+    int getOffHeapArenaBytes() {
+        return offHeapArenaBytes;
+    }
+
+    long getStatementMemoryBytes() {
+        return statementMemoryBytes;
+    }
+
+    long getConnectionMemoryBytes() {
+        return connectionMemoryBytes;
+    }
+
+    String getMemoryPolicy() {
+        return memoryPolicy;
+    }
+
+    Path getSpillDir() {
+        return spillDir;
+    }
+
+    long getMaxResultBytes() {
+        return maxResultBytes;
+    }
+
+    long getMaxFieldBytes() {
+        return maxFieldBytes;
+    }
+
+    String getLimitPolicy() {
+        return limitPolicy;
+    }
+
+    int getLargeFieldBytes() {
+        return largeFieldBytes;
+    }
+
+    long getRetainedResultRows() {
+        return retainedResultRows;
+    }
+
+    Duration getTimeBucket() {
+        return timeBucket;
+    }
+
+    Duration getTimeBucketDelay() {
+        return timeBucketDelay;
+    }
+
+    long getTimeBucketCacheRows() {
+        return timeBucketCacheRows;
+    }
+
+    /**
+     * Returns how long a cached time bucket is reused before it is fetched again, {@link #getCacheTtl()} by default.
+     */
+    Duration getTimeBucketMaxAge() {
+        return timeBucketMaxAge;
+    }
+
+    boolean isJmx() {
+        return jmx;
+    }
+
+    /**
+     * Returns the query listeners of the connection, or {@code null} when there are none.
+     */
+    LogsqlQueryListeners getQueryListeners() {
+        return queryListeners;
+    }
+
+    long getQueryProgressRows() {
+        return queryProgressRows;
+    }
+
+    /**
+     * Returns the duration beyond which executions are logged, or zero when the slow query log is disabled.
+     */
+    Duration getSlowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+
+    double getSlowQuerySampleRate() {
+        return slowQuerySampleRate;
+    }
+
+    long getSlowQueryLogsPerMinute() {
+        return slowQueryLogsPerMinute;
+    }
+
+    /**
+     * Returns the number of prepared statement templates cached per connection, or zero when they are not cached.
+     */
+    int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
     DriverPropertyInfo[] toDriverPropertyInfo() throws SQLException {
         DriverPropertyInfo hostInfo = new DriverPropertyInfo("host", host);
         hostInfo.description = "sql-to-logsql service host";
@@ -114,6 +424,129 @@ final class LogsqlConnectionConfig {
         DriverPropertyInfo verifyInfo = new DriverPropertyInfo("verify", Boolean.toString(verifyTls));
         verifyInfo.description = "Verify TLS certificates when using HTTPS";
 
+        DriverPropertyInfo cacheDirInfo = new DriverPropertyInfo("cacheDir", cacheDir == null ? null : cacheDir.toString());
+        cacheDirInfo.description = "Directory of the on-disk result cache (disabled when empty)";
+
+        DriverPropertyInfo cacheMaxBytesInfo = new DriverPropertyInfo("cacheMaxBytes", Long.toString(cacheMaxBytes));
+        cacheMaxBytesInfo.description = "Maximum total size of the on-disk result cache in bytes";
+
+        DriverPropertyInfo cacheTtlInfo = new DriverPropertyInfo("cacheTtl", Long.toString(cacheTtl.toMillis()));
+        cacheTtlInfo.description = "Lifetime of cached results in milliseconds";
+
+        DriverPropertyInfo cacheMaxStaleInfo = new DriverPropertyInfo("cacheMaxStale",
+                Long.toString(cacheMaxStale.toMillis()));
+        cacheMaxStaleInfo.description = "Time in milliseconds an expired cached result may still be served while it is refreshed";
+
+        DriverPropertyInfo cacheRefreshConcurrencyInfo = new DriverPropertyInfo("cacheRefreshConcurrency",
+                Integer.toString(cacheRefreshConcurrency));
+        cacheRefreshConcurrencyInfo.description = "Maximum number of concurrent background cache refreshes";
+
+        DriverPropertyInfo protocolInfo = new DriverPropertyInfo("protocol", "v" + protocolVersion);
+        protocolInfo.description = "Response protocol: v2 streams NDJSON rows, v1 uses the JSON envelope";
+        protocolInfo.choices = new String[]{"v1", "v2"};
+
+        DriverPropertyInfo rowFormatInfo = new DriverPropertyInfo("rowFormat", rowFormat);
+        rowFormatInfo.description = "Encoding of streamed rows: json, or smile for binary JSON with shared property names";
+        rowFormatInfo.choices = new String[]{"json", "smile"};
+
+        String acceptEncoding = compressionCodecs.getAcceptEncoding();
+        DriverPropertyInfo compressionInfo = new DriverPropertyInfo("compression",
+                acceptEncoding == null ? "none" : acceptEncoding.replace(" ", ""));
+        compressionInfo.description = "Comma-separated response compression formats in order of preference, or none";
+
+        DriverPropertyInfo decodeParallelismInfo = new DriverPropertyInfo("decodeParallelism",
+                Integer.toString(decodeParallelism));
+        decodeParallelismInfo.description = "Maximum number of chunks of an NDJSON response decoded concurrently (1 decodes on the calling thread)";
+
+        DriverPropertyInfo decodeQueueBytesInfo = new DriverPropertyInfo("decodeQueueBytes",
+                Long.toString(decodeQueueBytes));
+        decodeQueueBytesInfo.description = "Maximum number of bytes of a response read ahead of row assembly";
+
+        DriverPropertyInfo lazyDecodingInfo = new DriverPropertyInfo("lazyDecoding", Boolean.toString(lazyDecoding));
+        lazyDecodingInfo.description = "Keep NDJSON rows as raw bytes and decode each value when it is first read";
+
+        DriverPropertyInfo offHeapInfo = new DriverPropertyInfo("offHeap", Boolean.toString(offHeap));
+        offHeapInfo.description = "Store the rows of result sets in direct memory, released when the result set is closed";
+
+        DriverPropertyInfo offHeapArenaBytesInfo = new DriverPropertyInfo("offHeapArenaBytes",
+                Integer.toString(offHeapArenaBytes));
+        offHeapArenaBytesInfo.description = "Maximum size of the direct buffers off-heap rows are written to";
+
+        DriverPropertyInfo statementMemoryBytesInfo = new DriverPropertyInfo("statementMemoryBytes",
+                Long.toString(statementMemoryBytes));
+        statementMemoryBytesInfo.description = "Estimated memory a single result may occupy, in bytes (0 is unlimited)";
+
+        DriverPropertyInfo connectionMemoryBytesInfo = new DriverPropertyInfo("connectionMemoryBytes",
+                Long.toString(connectionMemoryBytes));
+        connectionMemoryBytesInfo.description = "Estimated memory the open results of the connection may occupy, in bytes (0 is unlimited)";
+
+        DriverPropertyInfo memoryPolicyInfo = new DriverPropertyInfo("memoryPolicy", memoryPolicy);
+        memoryPolicyInfo.description = "What happens to a result exceeding a memory budget: spill to disk, or fail";
+        memoryPolicyInfo.choices = new String[]{"spill", "fail"};
+
+        DriverPropertyInfo spillDirInfo = new DriverPropertyInfo("spillDir", spillDir == null ? null : spillDir.toString());
+        spillDirInfo.description = "Directory of spill files (the temporary-file directory when empty)";
+
+        DriverPropertyInfo maxResultBytesInfo = new DriverPropertyInfo("maxResultBytes", Long.toString(maxResultBytes));
+        maxResultBytesInfo.description = "Maximum size of a decompressed query response, in bytes (0 is unlimited)";
+
+        DriverPropertyInfo maxFieldBytesInfo = new DriverPropertyInfo("maxFieldBytes", Long.toString(maxFieldBytes));
+        maxFieldBytesInfo.description = "Maximum size of a single field value, in bytes (0 is unlimited)";
+
+        DriverPropertyInfo limitPolicyInfo = new DriverPropertyInfo("limitPolicy", limitPolicy);
+        limitPolicyInfo.description = "What happens to a result exceeding maxResultBytes or maxFieldBytes: truncate it with a warning, or fail";
+        limitPolicyInfo.choices = new String[]{"truncate", "fail"};
+
+        DriverPropertyInfo largeFieldBytesInfo = new DriverPropertyInfo("largeFieldBytes", Integer.toString(largeFieldBytes));
+        largeFieldBytesInfo.description = "Size in bytes beyond which string values are kept in a temporary file and streamed (0 disables it)";
+
+        DriverPropertyInfo retainedResultRowsInfo = new DriverPropertyInfo("retainedResultRows",
+                Long.toString(retainedResultRows));
+        retainedResultRowsInfo.description = "Maximum number of rows of results retained for conditional requests (0 disables them)";
+
+        DriverPropertyInfo timeBucketInfo = new DriverPropertyInfo("timeBucket",
+                timeBucket == null ? null : Long.toString(timeBucket.toMillis()));
+        timeBucketInfo.description = "Bucket size in milliseconds for incremental evaluation of relative time windows";
+
+        DriverPropertyInfo timeBucketDelayInfo = new DriverPropertyInfo("timeBucketDelay",
+                Long.toString(timeBucketDelay.toMillis()));
+        timeBucketDelayInfo.description = "Time in milliseconds after its end before a bucket is cached";
+
+        DriverPropertyInfo timeBucketCacheRowsInfo = new DriverPropertyInfo("timeBucketCacheRows",
+                Long.toString(timeBucketCacheRows));
+        timeBucketCacheRowsInfo.description = "Maximum number of rows kept in cached time buckets per connection";
+
+        DriverPropertyInfo timeBucketMaxAgeInfo = new DriverPropertyInfo("timeBucketMaxAge",
+                Long.toString(timeBucketMaxAge.toMillis()));
+        timeBucketMaxAgeInfo.description = "Time in milliseconds a cached bucket is reused before it is fetched again";
+
+        DriverPropertyInfo jmxInfo = new DriverPropertyInfo("jmx", Boolean.toString(jmx));
+        jmxInfo.description = "Register MBeans with driver and connection metrics";
+
+        DriverPropertyInfo queryListenersInfo = new DriverPropertyInfo("queryListeners",
+                this.rawProperties.getProperty("queryListeners"));
+        queryListenersInfo.description = "Comma-separated LogsqlQueryListener classes notified of query executions";
+
+        DriverPropertyInfo queryProgressRowsInfo = new DriverPropertyInfo("queryProgressRows",
+                Long.toString(queryProgressRows));
+        queryProgressRowsInfo.description = "Number of decoded rows between progress callbacks of query listeners";
+
+        DriverPropertyInfo slowQueryMillisInfo = new DriverPropertyInfo("slowQueryMillis",
+                slowQueryThreshold.isZero() ? null : Long.toString(slowQueryThreshold.toMillis()));
+        slowQueryMillisInfo.description = "Duration in milliseconds beyond which executions are logged as slow queries";
+
+        DriverPropertyInfo slowQuerySampleRateInfo = new DriverPropertyInfo("slowQuerySampleRate",
+                Double.toString(slowQuerySampleRate));
+        slowQuerySampleRateInfo.description = "Share of slow queries that are logged, between 0 and 1";
+
+        DriverPropertyInfo slowQueryLogsPerMinuteInfo = new DriverPropertyInfo("slowQueryLogsPerMinute",
+                Long.toString(slowQueryLogsPerMinute));
+        slowQueryLogsPerMinuteInfo.description = "Maximum number of slow query entries logged per minute by the driver";
+
+        DriverPropertyInfo statementCacheSizeInfo = new DriverPropertyInfo("statementCacheSize",
+                Integer.toString(statementCacheSize));
+        statementCacheSizeInfo.description = "Number of prepared statement templates cached per connection (0 disables it)";
+
         return new DriverPropertyInfo[] {
                 hostInfo,
                 portInfo,
@@ -121,7 +554,40 @@ final class LogsqlConnectionConfig {
                 endpointInfo,
                 bearerTokenInfo,
                 timeoutInfo,
-                verifyInfo
+                verifyInfo,
+                cacheDirInfo,
+                cacheMaxBytesInfo,
+                cacheTtlInfo,
+                cacheMaxStaleInfo,
+                cacheRefreshConcurrencyInfo,
+                protocolInfo,
+                rowFormatInfo,
+                compressionInfo,
+                decodeParallelismInfo,
+                decodeQueueBytesInfo,
+                lazyDecodingInfo,
+                offHeapInfo,
+                offHeapArenaBytesInfo,
+                statementMemoryBytesInfo,
+                connectionMemoryBytesInfo,
+                memoryPolicyInfo,
+                spillDirInfo,
+                maxResultBytesInfo,
+                maxFieldBytesInfo,
+                limitPolicyInfo,
+                largeFieldBytesInfo,
+                retainedResultRowsInfo,
+                timeBucketInfo,
+                timeBucketDelayInfo,
+                timeBucketCacheRowsInfo,
+                timeBucketMaxAgeInfo,
+                jmxInfo,
+                queryListenersInfo,
+                queryProgressRowsInfo,
+                slowQueryMillisInfo,
+                slowQuerySampleRateInfo,
+                slowQueryLogsPerMinuteInfo,
+                statementCacheSizeInfo
         };
     }
 }
@@ -0,0 +1,14 @@
+package com.victoriametrics.logsql.jdbc;
+
+/**
+ * Management interface of a connection, registered as
+ * {@code com.victoriametrics.logsql.jdbc:type=Connection,id=<n>} while the connection is open unless the
+ * {@code jmx} property is {@code false}.
+ */
+public interface LogsqlConnectionMXBean extends LogsqlQueryMetricsMXBean, LogsqlConnectionMetrics {
+
+    /**
+     * Returns the base URL of the sql-to-logsql service.
+     */
+    String getServiceUrl();
+}
@@ -0,0 +1,53 @@
+package com.victoriametrics.logsql.jdbc;
+
+/**
+ * Transfer and memory statistics of a connection, obtained through
+ * {@code connection.unwrap(LogsqlConnectionMetrics.class)}.
+ */
+public interface LogsqlConnectionMetrics {
+
+    /**
+     * Returns the number of query response body bytes received from the service, as sent on the wire.
+     */
+    long getResponseBytesReceived();
+
+    /**
+     * Returns the number of query response body bytes after decompression.
+     */
+    long getResponseBytesDecoded();
+
+    /**
+     * Returns decoded bytes per received byte, or {@code 1.0} before the first response.
+     */
+    double getCompressionRatio();
+
+    /**
+     * Returns the number of bytes of direct memory currently held by off-heap results of this connection.
+     */
+    long getOffHeapBytesInUse();
+
+    /**
+     * Returns the highest number of bytes of direct memory held by off-heap results at any one time.
+     */
+    long getOffHeapBytesPeak();
+
+    /**
+     * Returns the total number of bytes of direct memory ever reserved for off-heap results.
+     */
+    long getOffHeapBytesReserved();
+
+    /**
+     * Returns the estimated number of heap bytes held by open result sets charged to the memory budgets.
+     */
+    long getResultBytesInUse();
+
+    /**
+     * Returns the number of bytes of spill files held by open result sets.
+     */
+    long getSpillBytesOnDisk();
+
+    /**
+     * Returns the total number of bytes of result rows ever spilled to disk.
+     */
+    long getSpillBytesWritten();
+}
@@ -0,0 +1,67 @@
+package com.victoriametrics.logsql.jdbc;
+
+/**
+ * Metrics of one connection backing {@link LogsqlConnectionMXBean}, recorded to the driver-wide metrics as well.
+ * A connection is used by one thread at a time, so its histograms are not striped.
+ */
+final class LogsqlConnectionMonitor extends LogsqlQueryMetrics implements LogsqlConnectionMXBean {
+
+    private final LogsqlConnectionStats stats;
+    private final String serviceUrl;
+
+    LogsqlConnectionMonitor(LogsqlConnectionStats stats, String serviceUrl) {
+        super(LogsqlDriverMetrics.INSTANCE, 1);
+        this.stats = stats;
+        this.serviceUrl = serviceUrl;
+    }
+
+    @Override
+    public String getServiceUrl() {
+        return serviceUrl;
+    }
+
+    @Override
+    public long getResponseBytesReceived() {
+        return stats.getResponseBytesReceived();
+    }
+
+    @Override
+    public long getResponseBytesDecoded() {
+        return stats.getResponseBytesDecoded();
+    }
+
+    @Override
+    public double getCompressionRatio() {
+        return stats.getCompressionRatio();
+    }
+
+    @Override
+    public long getOffHeapBytesInUse() {
+        return stats.getOffHeapBytesInUse();
+    }
+
+    @Override
+    public long getOffHeapBytesPeak() {
+        return stats.getOffHeapBytesPeak();
+    }
+
+    @Override
+    public long getOffHeapBytesReserved() {
+        return stats.getOffHeapBytesReserved();
+    }
+
+    @Override
+    public long getResultBytesInUse() {
+        return stats.getResultBytesInUse();
+    }
+
+    @Override
+    public long getSpillBytesOnDisk() {
+        return stats.getSpillBytesOnDisk();
+    }
+
+    @Override
+    public long getSpillBytesWritten() {
+        return stats.getSpillBytesWritten();
+    }
+}
@@ -0,0 +1,187 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters backing {@link LogsqlConnectionMetrics}. Changes are applied to the parent as well, if any, which then
+ * holds the sums over all its children.
+ */
+final class LogsqlConnectionStats implements LogsqlConnectionMetrics {
+
+    private final LogsqlConnectionStats parent;
+
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder bytesDecoded = new LongAdder();
+    private final AtomicLong offHeapBytes = new AtomicLong();
+    private final AtomicLong offHeapPeakBytes = new AtomicLong();
+    private final LongAdder offHeapBytesReserved = new LongAdder();
+    private final AtomicLong resultBytes = new AtomicLong();
+    private final AtomicLong spillBytesOnDisk = new AtomicLong();
+    private final LongAdder spillBytesWritten = new LongAdder();
+
+    LogsqlConnectionStats() {
+        this(null);
+    }
+
+    LogsqlConnectionStats(LogsqlConnectionStats parent) {
+        this.parent = parent;
+    }
+
+    InputStream countReceived(InputStream in) {
+        return new CountingInputStream(in, bytesReceived, parent == null ? null : parent.bytesReceived);
+    }
+
+    InputStream countDecoded(InputStream in) {
+        return new CountingInputStream(in, bytesDecoded, parent == null ? null : parent.bytesDecoded);
+    }
+
+    void offHeapReserved(long bytes) {
+        long inUse = offHeapBytes.addAndGet(bytes);
+        offHeapBytesReserved.add(bytes);
+        offHeapPeakBytes.accumulateAndGet(inUse, Math::max);
+        if (parent != null) {
+            parent.offHeapReserved(bytes);
+        }
+    }
+
+    void offHeapReleased(long bytes) {
+        offHeapBytes.addAndGet(-bytes);
+        if (parent != null) {
+            parent.offHeapReleased(bytes);
+        }
+    }
+
+    /**
+     * Adds {@code bytes} to the estimated size of the results held by the connection, unless that would take it
+     * above {@code limit}; a limit of zero or less is no limit.
+     */
+    boolean tryReserveResultBytes(long bytes, long limit) {
+        while (true) {
+            long current = resultBytes.get();
+            if (limit > 0 && current + bytes > limit) {
+                return false;
+            }
+            if (resultBytes.compareAndSet(current, current + bytes)) {
+                if (parent != null) {
+                    parent.resultBytes.addAndGet(bytes);
+                }
+                return true;
+            }
+        }
+    }
+
+    void releaseResultBytes(long bytes) {
+        resultBytes.addAndGet(-bytes);
+        if (parent != null) {
+            parent.releaseResultBytes(bytes);
+        }
+    }
+
+    void spilled(long bytes) {
+        spillBytesOnDisk.addAndGet(bytes);
+        spillBytesWritten.add(bytes);
+        if (parent != null) {
+            parent.spilled(bytes);
+        }
+    }
+
+    void spillReleased(long bytes) {
+        spillBytesOnDisk.addAndGet(-bytes);
+        if (parent != null) {
+            parent.spillReleased(bytes);
+        }
+    }
+
+    @Override
+    public long getResponseBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public long getResponseBytesDecoded() {
+        return bytesDecoded.sum();
+    }
+
+    @Override
+    public double getCompressionRatio() {
+        long received = bytesReceived.sum();
+        return received == 0 ? 1.0 : (double) bytesDecoded.sum() / received;
+    }
+
+    @Override
+    public long getOffHeapBytesInUse() {
+        return offHeapBytes.get();
+    }
+
+    @Override
+    public long getOffHeapBytesPeak() {
+        return offHeapPeakBytes.get();
+    }
+
+    @Override
+    public long getOffHeapBytesReserved() {
+        return offHeapBytesReserved.sum();
+    }
+
+    @Override
+    public long getResultBytesInUse() {
+        return resultBytes.get();
+    }
+
+    @Override
+    public long getSpillBytesOnDisk() {
+        return spillBytesOnDisk.get();
+    }
+
+    @Override
+    public long getSpillBytesWritten() {
+        return spillBytesWritten.sum();
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private final LongAdder counter;
+        private final LongAdder parentCounter;
+
+        CountingInputStream(InputStream in, LongAdder counter, LongAdder parentCounter) {
+            super(in);
+            this.counter = counter;
+            this.parentCounter = parentCounter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) {
+            counter.add(n);
+            if (parentCounter != null) {
+                parentCounter.add(n);
+            }
+        }
+    }
+}
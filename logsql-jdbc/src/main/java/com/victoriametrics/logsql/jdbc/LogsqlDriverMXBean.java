@@ -0,0 +1,19 @@
+package com.victoriametrics.logsql.jdbc;
+
+/**
+ * Management interface of the driver, registered as {@code com.victoriametrics.logsql.jdbc:type=Driver} with the
+ * first connection that has JMX enabled. Query metrics and transfer statistics are the sums over all connections
+ * of this driver instance, including closed ones.
+ */
+public interface LogsqlDriverMXBean extends LogsqlQueryMetricsMXBean, LogsqlConnectionMetrics {
+
+    /**
+     * Returns the number of connections that have not been closed.
+     */
+    long getOpenConnections();
+
+    /**
+     * Returns the number of connections ever opened.
+     */
+    long getConnectionsOpened();
+}
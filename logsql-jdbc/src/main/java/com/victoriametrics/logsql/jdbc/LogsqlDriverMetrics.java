@@ -0,0 +1,134 @@
+package com.victoriametrics.logsql.jdbc;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Driver-wide metrics, the parent of the metrics of every connection, backing {@link LogsqlDriverMXBean}. The MBean
+ * is registered with the first connection that has JMX enabled and stays registered while the driver is loaded.
+ */
+final class LogsqlDriverMetrics extends LogsqlQueryMetrics implements LogsqlDriverMXBean {
+
+    static final String DOMAIN = "com.victoriametrics.logsql.jdbc";
+    static final LogsqlDriverMetrics INSTANCE = new LogsqlDriverMetrics();
+
+    private static final Logger LOGGER = Logger.getLogger(LogsqlDriverMetrics.class.getName());
+
+    private final LogsqlConnectionStats stats = new LogsqlConnectionStats();
+    private final AtomicLong connectionIds = new AtomicLong();
+    private final LongAdder openConnections = new LongAdder();
+    private final AtomicBoolean registered = new AtomicBoolean();
+
+    private LogsqlDriverMetrics() {
+        super(null, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    }
+
+    LogsqlConnectionStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Counts a new connection and returns its id.
+     */
+    long connectionOpened() {
+        openConnections.increment();
+        return connectionIds.incrementAndGet();
+    }
+
+    void connectionClosed() {
+        openConnections.decrement();
+    }
+
+    void register() {
+        if (registered.compareAndSet(false, true)) {
+            register(this, LogsqlDriverMXBean.class, DOMAIN + ":type=Driver");
+        }
+    }
+
+    /**
+     * Registers {@code bean} with the platform MBean server under {@code name}, returning the name or {@code null}
+     * when the registration failed. Monitoring never stops a connection from opening, so failures are only logged.
+     */
+    static <T> ObjectName register(T bean, Class<T> iface, String name) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(bean, iface, true), objectName);
+            return objectName;
+        } catch (JMException | SecurityException e) {
+            LOGGER.log(Level.FINE, "Failed to register MBean " + name, e);
+            return null;
+        }
+    }
+
+    static void unregister(ObjectName name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(name);
+        } catch (JMException | SecurityException e) {
+            LOGGER.log(Level.FINE, "Failed to unregister MBean " + name, e);
+        }
+    }
+
+    @Override
+    public long getOpenConnections() {
+        return openConnections.sum();
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return connectionIds.get();
+    }
+
+    @Override
+    public long getResponseBytesReceived() {
+        return stats.getResponseBytesReceived();
+    }
+
+    @Override
+    public long getResponseBytesDecoded() {
+        return stats.getResponseBytesDecoded();
+    }
+
+    @Override
+    public double getCompressionRatio() {
+        return stats.getCompressionRatio();
+    }
+
+    @Override
+    public long getOffHeapBytesInUse() {
+        return stats.getOffHeapBytesInUse();
+    }
+
+    @Override
+    public long getOffHeapBytesPeak() {
+        return stats.getOffHeapBytesPeak();
+    }
+
+    @Override
+    public long getOffHeapBytesReserved() {
+        return stats.getOffHeapBytesReserved();
+    }
+
+    @Override
+    public long getResultBytesInUse() {
+        return stats.getResultBytesInUse();
+    }
+
+    @Override
+    public long getSpillBytesOnDisk() {
+        return stats.getSpillBytesOnDisk();
+    }
+
+    @Override
+    public long getSpillBytesWritten() {
+        return stats.getSpillBytesWritten();
+    }
+}
@@ -0,0 +1,203 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+
+/**
+ * Temporary file holding the text of the large string values of one result, as UTF-8, so that they are read
+ * through a {@link LogsqlClob} instead of being held on the heap. String literals are copied from the response
+ * bytes without being decoded into a {@link String}. The file is created with the first value and deleted when the
+ * spill is closed together with the rows of the result.
+ */
+final class LogsqlFieldSpill {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final LogsqlConnectionStats stats;
+    private final Path directory;
+    private final int threshold;
+    private final Appender appender = new Appender();
+    private FileChannel channel;
+    private long fileBytes;
+    private boolean closed;
+
+    LogsqlFieldSpill(LogsqlConnectionStats stats, Path directory, int threshold) {
+        this.stats = stats;
+        this.directory = directory;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Returns the length in bytes beyond which a string value is spilled.
+     */
+    int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Appends the text of the JSON string literal in {@code [quote, end)} of {@code bytes}.
+     */
+    LogsqlClob write(byte[] bytes, int quote, int end) throws SQLException {
+        long offset = open();
+        try {
+            long length = LogsqlJsonString.utf8(bytes, quote, end).transferTo(appender);
+            return new LogsqlClob(this, offset, length);
+        } catch (IOException e) {
+            throw new SQLException("Failed to spill field value to disk", e);
+        }
+    }
+
+    LogsqlClob write(String value) throws SQLException {
+        long offset = open();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        try {
+            appender.write(bytes, 0, bytes.length);
+        } catch (IOException e) {
+            throw new SQLException("Failed to spill field value to disk", e);
+        }
+        return new LogsqlClob(this, offset, bytes.length);
+    }
+
+    /**
+     * Returns the UTF-8 bytes of a value written at {@code offset}.
+     */
+    InputStream open(long offset, long length) throws SQLException {
+        if (closed) {
+            throw new SQLException("Result rows have been released");
+        }
+        try {
+            appender.flush();
+        } catch (IOException e) {
+            throw new SQLException("Failed to spill field value to disk", e);
+        }
+        return new RegionInputStream(channel, offset, length);
+    }
+
+    /**
+     * Deletes the file; values read through it afterwards fail.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // the file was opened for deletion on close
+            }
+            stats.spillReleased(fileBytes);
+        }
+    }
+
+    private long open() throws SQLException {
+        if (closed) {
+            throw new SQLException("Result rows have been released");
+        }
+        if (channel == null) {
+            try {
+                Path file = directory == null
+                        ? Files.createTempFile("logsql-fields-", ".bin")
+                        : Files.createTempFile(directory, "logsql-fields-", ".bin");
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+            } catch (IOException e) {
+                throw new SQLException("Failed to create spill file", e);
+            }
+        }
+        return fileBytes + appender.buffer.position();
+    }
+
+    /**
+     * Buffers appended bytes and writes them at the end of the file.
+     */
+    private final class Appender extends OutputStream {
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int n = Math.min(len, buffer.remaining());
+                buffer.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            buffer.flip();
+            int length = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, fileBytes + length - buffer.remaining());
+            }
+            buffer.clear();
+            fileBytes += length;
+            if (length > 0) {
+                stats.spilled(length);
+            }
+        }
+    }
+
+    private static final class RegionInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private long position;
+        private long remaining;
+
+        RegionInputStream(FileChannel channel, long position, long remaining) {
+            this.channel = channel;
+            this.position = position;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of spill file");
+            }
+            position += read;
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, remaining));
+            position += skipped;
+            remaining -= skipped;
+            return skipped;
+        }
+    }
+}
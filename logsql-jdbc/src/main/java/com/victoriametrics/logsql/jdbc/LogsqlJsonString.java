@@ -0,0 +1,240 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.io.InputStream;
+
+/**
+ * Reads JSON string literals straight from the raw bytes of a response, for values that should not be decoded into
+ * a {@link String} in full: strings cut off at a maximum number of characters, and large strings copied to a
+ * {@link LogsqlFieldSpill}. A literal is given by the index of its opening quote and the index after its closing
+ * quote, as returned by {@link #end(byte[], int, int)}.
+ */
+final class LogsqlJsonString {
+
+    private LogsqlJsonString() {
+    }
+
+    /**
+     * Returns the index after the closing quote of the literal opening at {@code quote}, or -1 when it does not end
+     * before {@code limit}.
+     */
+    static int end(byte[] bytes, int quote, int limit) {
+        int i = quote + 1;
+        while (true) {
+            int found = LogsqlByteScanner.indexOfQuoteOrBackslash(bytes, i, limit);
+            if (found < 0) {
+                return -1;
+            }
+            if (bytes[found] == '"') {
+                return found + 1;
+            }
+            // skips the escaped character, which may itself be a quote or backslash
+            i = found + 2;
+        }
+    }
+
+    /**
+     * Returns the value of the literal in {@code [quote, end)} when it is too long to be decoded as usual: cut off at
+     * {@code maxChars} characters when it may have more, or as a {@link LogsqlClob} over the literal when it has more
+     * than {@code largeBytes} bytes. Returns {@code null} for other literals; a limit of {@code 0} is not applied.
+     */
+    static Object decodeLong(byte[] bytes, int quote, int end, int maxChars, int largeBytes) {
+        // every character takes at least one byte
+        int length = end - quote - 2;
+        if (maxChars > 0 && length > maxChars) {
+            return decode(bytes, quote, end, maxChars);
+        }
+        if (largeBytes > 0 && length > largeBytes) {
+            return new LogsqlClob(bytes, quote, end);
+        }
+        return null;
+    }
+
+    /**
+     * Decodes at most the first {@code maxChars} characters of the literal in {@code [quote, end)}.
+     */
+    static String decode(byte[] bytes, int quote, int end, int maxChars) {
+        StringBuilder text = new StringBuilder(Math.min(maxChars, end - quote));
+        int i = quote + 1;
+        int last = end - 1;
+        while (i < last && text.length() < maxChars) {
+            int b = bytes[i] & 0xff;
+            if (b == '\\') {
+                int unit = unescape(bytes, i);
+                i += bytes[i + 1] == 'u' ? 6 : 2;
+                if (Character.isHighSurrogate((char) unit)) {
+                    if (text.length() + 1 == maxChars) {
+                        break;
+                    }
+                    int low = lowSurrogate(bytes, i, last);
+                    if (low >= 0) {
+                        text.append((char) unit).append((char) low);
+                        i += 6;
+                        continue;
+                    }
+                }
+                text.append((char) unit);
+            } else if (b < 0x80) {
+                text.append((char) b);
+                i++;
+            } else {
+                int length = b >= 0xf0 ? 4 : b >= 0xe0 ? 3 : b >= 0xc0 ? 2 : 1;
+                int codePoint = length == 1 || i + length > last ? -1 : codePoint(bytes, i, length);
+                if (codePoint < 0) {
+                    text.append('\uFFFD');
+                    i++;
+                    continue;
+                }
+                if (Character.isSupplementaryCodePoint(codePoint) && text.length() + 1 == maxChars) {
+                    break;
+                }
+                text.appendCodePoint(codePoint);
+                i += length;
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the text of the literal in {@code [quote, end)} as UTF-8 bytes, unescaped while they are read. Runs
+     * without escapes are copied as they are, since JSON text is UTF-8 already.
+     */
+    static InputStream utf8(byte[] bytes, int quote, int end) {
+        return new Utf8Stream(bytes, quote + 1, end - 1);
+    }
+
+    private static int unescape(byte[] bytes, int backslash) {
+        byte escaped = bytes[backslash + 1];
+        switch (escaped) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                return hex(bytes, backslash + 2);
+            default:
+                // quote, backslash and solidus stand for themselves
+                return escaped;
+        }
+    }
+
+    private static int lowSurrogate(byte[] bytes, int i, int last) {
+        if (i + 6 > last || bytes[i] != '\\' || bytes[i + 1] != 'u') {
+            return -1;
+        }
+        int unit = hex(bytes, i + 2);
+        return Character.isLowSurrogate((char) unit) ? unit : -1;
+    }
+
+    private static int hex(byte[] bytes, int from) {
+        int value = 0;
+        for (int i = from; i < from + 4; i++) {
+            value = value << 4 | Character.digit(bytes[i], 16);
+        }
+        return value & 0xffff;
+    }
+
+    private static int codePoint(byte[] bytes, int i, int length) {
+        int codePoint = bytes[i] & (0xff >> (length + 1));
+        for (int j = i + 1; j < i + length; j++) {
+            if ((bytes[j] & 0xc0) != 0x80) {
+                return -1;
+            }
+            codePoint = codePoint << 6 | bytes[j] & 0x3f;
+        }
+        return codePoint;
+    }
+
+    private static int encode(int codePoint, byte[] out) {
+        if (codePoint < 0x80) {
+            out[0] = (byte) codePoint;
+            return 1;
+        }
+        if (codePoint < 0x800) {
+            out[0] = (byte) (0xc0 | codePoint >> 6);
+            out[1] = (byte) (0x80 | codePoint & 0x3f);
+            return 2;
+        }
+        if (codePoint < 0x10000) {
+            if (Character.isSurrogate((char) codePoint)) {
+                // an unpaired surrogate has no UTF-8 encoding
+                return encode('\uFFFD', out);
+            }
+            out[0] = (byte) (0xe0 | codePoint >> 12);
+            out[1] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+            out[2] = (byte) (0x80 | codePoint & 0x3f);
+            return 3;
+        }
+        out[0] = (byte) (0xf0 | codePoint >> 18);
+        out[1] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+        out[2] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+        out[3] = (byte) (0x80 | codePoint & 0x3f);
+        return 4;
+    }
+
+    private static final class Utf8Stream extends InputStream {
+
+        private final byte[] bytes;
+        private final int last;
+        private final byte[] escaped = new byte[4];
+        private int i;
+        private int escapedFrom;
+        private int escapedTo;
+
+        Utf8Stream(byte[] bytes, int from, int last) {
+            this.bytes = bytes;
+            this.i = from;
+            this.last = last;
+        }
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (escapedFrom == escapedTo) {
+                if (i >= last) {
+                    return -1;
+                }
+                if (bytes[i] != '\\') {
+                    int to = (int) Math.min(last, (long) i + len);
+                    int escape = LogsqlByteScanner.indexOfQuoteOrBackslash(bytes, i, to);
+                    int n = (escape < 0 ? to : escape) - i;
+                    System.arraycopy(bytes, i, b, off, n);
+                    i += n;
+                    return n;
+                }
+                unescapeNext();
+            }
+            int n = Math.min(len, escapedTo - escapedFrom);
+            System.arraycopy(escaped, escapedFrom, b, off, n);
+            escapedFrom += n;
+            return n;
+        }
+
+        private void unescapeNext() {
+            int codePoint = unescape(bytes, i);
+            i += bytes[i + 1] == 'u' ? 6 : 2;
+            if (Character.isHighSurrogate((char) codePoint)) {
+                int low = lowSurrogate(bytes, i, last);
+                if (low >= 0) {
+                    codePoint = Character.toCodePoint((char) codePoint, (char) low);
+                    i += 6;
+                }
+            }
+            escapedFrom = 0;
+            escapedTo = encode(codePoint, escaped);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of durations, cumulative since creation and over the last minute.
+ *
+ * <p>Durations are counted in buckets of microseconds, four per power of two, which bounds the error of reported
+ * quantiles to about 12%. The recent window is made of four slices of 15 seconds; a slice is cleared when it is
+ * reused, so the window covers between 45 and 60 seconds, and a duration recorded while its slice is being cleared
+ * may be lost. Recording goes to one of several stripes chosen by thread, so that threads recording concurrently
+ * seldom update the same counters; a snapshot sums the stripes.
+ */
+final class LogsqlLatencyHistogram {
+
+    private static final int SUB_BUCKETS = 4;
+    // up to 2^36 microseconds, about 19 hours
+    private static final int BUCKETS = SUB_BUCKETS + 34 * SUB_BUCKETS;
+    private static final int SLICES = 4;
+    private static final long SLICE_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    private final Stripe[] stripes;
+
+    LogsqlLatencyHistogram(int stripes) {
+        int count = Integer.highestOneBit(Math.max(1, stripes));
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    void record(long nanos) {
+        long duration = Math.max(0, nanos);
+        int bucket = bucket(duration / 1000);
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        stripe.total.incrementAndGet(bucket);
+        stripe.totalNanos.addAndGet(duration);
+        long max = stripe.maxNanos.get();
+        while (duration > max && !stripe.maxNanos.compareAndSet(max, duration)) {
+            max = stripe.maxNanos.get();
+        }
+        long epoch = System.nanoTime() / SLICE_NANOS;
+        int slice = (int) Math.floorMod(epoch, (long) SLICES);
+        long sliceEpoch = stripe.sliceEpochs.get(slice);
+        if (sliceEpoch != epoch && stripe.sliceEpochs.compareAndSet(slice, sliceEpoch, epoch)) {
+            for (int i = 0; i < BUCKETS; i++) {
+                stripe.recent.set(slice * BUCKETS + i, 0);
+            }
+            stripe.sliceNanos.set(slice, 0);
+        }
+        stripe.recent.incrementAndGet(slice * BUCKETS + bucket);
+        stripe.sliceNanos.addAndGet(slice, duration);
+    }
+
+    /**
+     * Returns the statistics of all recorded durations.
+     */
+    LogsqlLatencyStats total() {
+        long[] counts = new long[BUCKETS];
+        long nanos = 0;
+        long max = 0;
+        for (Stripe stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.total.get(i);
+            }
+            nanos += stripe.totalNanos.get();
+            max = Math.max(max, stripe.maxNanos.get());
+        }
+        return stats(counts, nanos, max);
+    }
+
+    /**
+     * Returns the statistics of the durations recorded within the last minute.
+     */
+    LogsqlLatencyStats recent() {
+        long[] counts = new long[BUCKETS];
+        long nanos = 0;
+        long epoch = System.nanoTime() / SLICE_NANOS;
+        for (Stripe stripe : stripes) {
+            for (int slice = 0; slice < SLICES; slice++) {
+                if (epoch - stripe.sliceEpochs.get(slice) >= SLICES) {
+                    continue;
+                }
+                for (int i = 0; i < BUCKETS; i++) {
+                    counts[i] += stripe.recent.get(slice * BUCKETS + i);
+                }
+                nanos += stripe.sliceNanos.get(slice);
+            }
+        }
+        int highest = BUCKETS - 1;
+        while (highest > 0 && counts[highest] == 0) {
+            highest--;
+        }
+        return stats(counts, nanos, upperMicros(highest) * 1000);
+    }
+
+    private static LogsqlLatencyStats stats(long[] counts, long nanos, long maxNanos) {
+        long count = 0;
+        for (long c : counts) {
+            count += c;
+        }
+        if (count == 0) {
+            return new LogsqlLatencyStats(0, 0, 0, 0, 0, 0);
+        }
+        return new LogsqlLatencyStats(count, nanos / 1e6 / count, quantile(counts, count, 0.5),
+                quantile(counts, count, 0.99), quantile(counts, count, 0.999), maxNanos / 1e6);
+    }
+
+    /**
+     * Returns the midpoint of the bucket holding the {@code q} quantile, in milliseconds.
+     */
+    private static double quantile(long[] counts, long count, double q) {
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (lowerMicros(i) + upperMicros(i)) / 2.0 / 1e3;
+            }
+        }
+        return upperMicros(counts.length - 1) / 1e3;
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(0, micros);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return Math.min(BUCKETS - 1, SUB_BUCKETS + (exponent - 2) * SUB_BUCKETS + sub);
+    }
+
+    static long lowerMicros(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 2;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exponent - 2);
+    }
+
+    static long upperMicros(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 2;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub + 1) << (exponent - 2);
+    }
+
+    private static final class Stripe {
+
+        private final AtomicLongArray total = new AtomicLongArray(BUCKETS);
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray recent = new AtomicLongArray(SLICES * BUCKETS);
+        private final AtomicLongArray sliceNanos = new AtomicLongArray(SLICES);
+        private final AtomicLongArray sliceEpochs = new AtomicLongArray(SLICES);
+
+        Stripe() {
+            for (int i = 0; i < SLICES; i++) {
+                // no slice is current before the first duration is recorded
+                sliceEpochs.set(i, Long.MIN_VALUE / 2);
+            }
+        }
+    }
+}
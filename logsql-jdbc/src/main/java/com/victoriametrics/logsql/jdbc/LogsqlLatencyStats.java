@@ -0,0 +1,69 @@
+package com.victoriametrics.logsql.jdbc;
+
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Summary of the durations of one query phase, as reported by the driver and connection MBeans. Quantiles are
+ * approximate, within about 12% of the exact value.
+ */
+public final class LogsqlLatencyStats {
+
+    private final long count;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p99Millis;
+    private final double p999Millis;
+    private final double maxMillis;
+
+    LogsqlLatencyStats(long count, double meanMillis, double p50Millis, double p99Millis, double p999Millis,
+                       double maxMillis) {
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p99Millis = p99Millis;
+        this.p999Millis = p999Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Reconstructs the summary from its open MBean representation, for MXBean proxies.
+     */
+    public static LogsqlLatencyStats from(CompositeData data) {
+        return new LogsqlLatencyStats((Long) data.get("count"), (Double) data.get("meanMillis"),
+                (Double) data.get("p50Millis"), (Double) data.get("p99Millis"), (Double) data.get("p999Millis"),
+                (Double) data.get("maxMillis"));
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getP999Millis() {
+        return p999Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ", mean=" + meanMillis + "ms, p50=" + p50Millis + "ms, p99=" + p99Millis
+                + "ms, p999=" + p999Millis + "ms, max=" + maxMillis + "ms";
+    }
+}
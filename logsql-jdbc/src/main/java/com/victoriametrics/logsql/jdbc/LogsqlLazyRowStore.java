@@ -0,0 +1,124 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Row store keeping every row as the raw JSON it was received in, together with the offsets of its field values.
+ * A value is decoded when it is first read and cached in its row afterwards, so consumers touching a few columns
+ * of a wide result do not pay for decoding the others. Long strings are cut off at the max field size, and large
+ * ones are read as a {@link LogsqlClob} over the row bytes, without being decoded in full.
+ */
+final class LogsqlLazyRowStore implements LogsqlRowStore {
+
+    /**
+     * One row: the buffer holding its JSON and, per column, the {@code [start, end)} range of the value.
+     * Columns the row does not contain have an empty range.
+     */
+    static final class Row {
+        final byte[] bytes;
+        final int[] spans;
+        Object[] values;
+
+        Row(byte[] bytes, int[] spans) {
+            this.bytes = bytes;
+            this.spans = spans;
+        }
+    }
+
+    private final ObjectReader valueReader;
+    private final List<Row> rows;
+    private final int maxFieldChars;
+    private final int largeFieldBytes;
+
+    LogsqlLazyRowStore(ObjectReader valueReader, List<Row> rows) {
+        this(valueReader, rows, 0, 0);
+    }
+
+    LogsqlLazyRowStore(ObjectReader valueReader, List<Row> rows, int maxFieldChars, int largeFieldBytes) {
+        this.valueReader = valueReader;
+        this.rows = rows;
+        this.maxFieldChars = maxFieldChars;
+        this.largeFieldBytes = largeFieldBytes;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    /**
+     * Returns the total size of the buffers the rows are kept in.
+     */
+    long getBufferBytes() {
+        Map<byte[], Boolean> buffers = new IdentityHashMap<>();
+        long bytes = 0;
+        for (Row row : rows) {
+            if (buffers.put(row.bytes, Boolean.TRUE) == null) {
+                bytes += row.bytes.length;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public Object getValue(int row, int column) throws SQLException {
+        Row entry = rows.get(row);
+        int start = 2 * column;
+        if (start >= entry.spans.length || entry.spans[start] == entry.spans[start + 1]) {
+            return null;
+        }
+        // results retained for conditional requests are read by several result sets, possibly on other threads
+        synchronized (entry) {
+            Object[] values = entry.values;
+            if (values == null) {
+                values = new Object[entry.spans.length / 2];
+                entry.values = values;
+            } else if (values[column] != null) {
+                return values[column];
+            }
+            Object value;
+            try {
+                value = decode(valueReader, entry.bytes, entry.spans[start], entry.spans[start + 1], maxFieldChars,
+                        largeFieldBytes);
+            } catch (IOException e) {
+                throw new SQLException("Failed to decode value of row " + (row + 1) + ", column " + (column + 1), e);
+            }
+            values[column] = value;
+            return value;
+        }
+    }
+
+    /**
+     * Decodes the JSON value in {@code [start, end)} into the object a {@code Map} deserialization would produce,
+     * applying {@link LogsqlJsonString#decodeLong} to strings.
+     */
+    static Object decode(ObjectReader reader, byte[] bytes, int start, int end, int maxChars, int largeBytes)
+            throws IOException {
+        switch (bytes[start]) {
+            case 'n':
+                return null;
+            case 't':
+                return Boolean.TRUE;
+            case 'f':
+                return Boolean.FALSE;
+            case '"':
+                Object text = LogsqlJsonString.decodeLong(bytes, start, end, maxChars, largeBytes);
+                if (text != null) {
+                    return text;
+                }
+                if (LogsqlByteScanner.indexOfQuoteOrBackslash(bytes, start + 1, end - 1) < 0) {
+                    return new String(bytes, start + 1, end - start - 2, StandardCharsets.UTF_8);
+                }
+                return reader.readValue(bytes, start, end - start);
+            default:
+                return reader.readValue(bytes, start, end - start);
+        }
+    }
+}
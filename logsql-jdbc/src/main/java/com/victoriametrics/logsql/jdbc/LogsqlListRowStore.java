@@ -0,0 +1,26 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.util.List;
+
+/**
+ * Heap row store over column-aligned value arrays.
+ */
+final class LogsqlListRowStore implements LogsqlRowStore {
+
+    private final List<Object[]> rows;
+
+    LogsqlListRowStore(List<Object[]> rows) {
+        this.rows = rows;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public Object getValue(int row, int column) {
+        Object[] values = rows.get(row);
+        return column < values.length ? values[column] : null;
+    }
+}
@@ -0,0 +1,172 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Row store keeping its rows outside the Java heap, in direct {@link ByteBuffer} chunks, in the
+ * {@link LogsqlRowCodec} encoding.
+ *
+ * <p>Rows are appended to the current chunk and never span two; a row larger than a chunk gets one of its own. The
+ * heap only holds the chunk list and one {@code long} per row locating it, so a result of millions of rows adds no
+ * objects the garbage collector has to trace or copy. The chunks are freed as soon as the store is closed.
+ */
+final class LogsqlOffHeapRowStore implements LogsqlRowStore {
+
+    private static final int MIN_CHUNK_BYTES = 64 * 1024;
+
+    // Unsafe.invokeCleaner frees a direct buffer right away instead of when the buffer is garbage collected
+    private static final MethodHandle INVOKE_CLEANER = findCleaner();
+
+    private final LogsqlRowCodec codec;
+    private final LogsqlConnectionStats stats;
+    private final int rowCount;
+    private final long[] rowPositions;
+    private ByteBuffer[] chunks;
+    private long reservedBytes;
+
+    private LogsqlOffHeapRowStore(Writer writer) {
+        this.codec = writer.codec;
+        this.stats = writer.stats;
+        this.rowCount = writer.rowCount;
+        this.rowPositions = Arrays.copyOf(writer.rowPositions, writer.rowCount);
+        this.chunks = writer.chunks.toArray(new ByteBuffer[0]);
+        this.reservedBytes = writer.reservedBytes;
+    }
+
+    private static MethodHandle findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // the buffers are still freed once they become unreachable
+            return null;
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public Object getValue(int row, int column) throws SQLException {
+        if (chunks == null) {
+            throw new SQLException("Result rows have been released");
+        }
+        long position = rowPositions[row];
+        return codec.read(chunks[(int) (position >>> 32)], (int) position, row, column);
+    }
+
+    /**
+     * Returns the number of off-heap bytes held by this store, zero once it is closed.
+     */
+    long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    @Override
+    public void close() {
+        ByteBuffer[] released = chunks;
+        if (released == null) {
+            return;
+        }
+        chunks = null;
+        free(released, stats, reservedBytes);
+        reservedBytes = 0;
+    }
+
+    private static void free(ByteBuffer[] chunks, LogsqlConnectionStats stats, long bytes) {
+        if (INVOKE_CLEANER != null) {
+            for (ByteBuffer chunk : chunks) {
+                try {
+                    INVOKE_CLEANER.invokeExact(chunk);
+                } catch (Throwable e) {
+                    // left to the garbage collector
+                }
+            }
+        }
+        stats.offHeapReleased(bytes);
+    }
+
+    /**
+     * Appends rows to direct buffers, each allocated at twice the size of the previous one up to the arena chunk
+     * size. A row is encoded on the heap first, so that a chunk is only allocated once its size is known. A writer
+     * that is abandoned must be {@linkplain #release() released}.
+     */
+    static final class Writer {
+
+        private final LogsqlRowCodec codec;
+        private final LogsqlConnectionStats stats;
+        private final int chunkBytes;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private ByteBuffer current;
+        private long[] rowPositions = new long[64];
+        private int rowCount;
+        private long reservedBytes;
+        private boolean built;
+
+        Writer(ObjectMapper mapper, LogsqlFieldSpill largeFields, LogsqlConnectionStats stats, int chunkBytes) {
+            this.codec = new LogsqlRowCodec(mapper, largeFields);
+            this.stats = stats;
+            this.chunkBytes = chunkBytes;
+        }
+
+        /**
+         * Appends a row made of the first {@code columnCount} entries of {@code values}.
+         */
+        void append(Object[] values, int columnCount) throws SQLException {
+            ByteBuffer row = codec.encode(values, columnCount);
+            if (current == null || current.remaining() < row.remaining()) {
+                allocate(row.remaining());
+            }
+            if (rowCount == rowPositions.length) {
+                rowPositions = Arrays.copyOf(rowPositions, rowCount * 2);
+            }
+            rowPositions[rowCount++] = ((long) (chunks.size() - 1) << 32) | current.position();
+            current.put(row);
+        }
+
+        int getRowCount() {
+            return rowCount;
+        }
+
+        LogsqlOffHeapRowStore build() {
+            built = true;
+            return new LogsqlOffHeapRowStore(this);
+        }
+
+        /**
+         * Frees the chunks written so far unless a store has been built from them.
+         */
+        void release() {
+            if (!built && !chunks.isEmpty()) {
+                free(chunks.toArray(new ByteBuffer[0]), stats, reservedBytes);
+                chunks.clear();
+                current = null;
+            }
+        }
+
+        private void allocate(int length) {
+            int previous = current == null ? 0 : current.capacity();
+            int size = Math.max(length, Math.min(chunkBytes, Math.max(MIN_CHUNK_BYTES, 2 * previous)));
+            current = ByteBuffer.allocateDirect(size);
+            chunks.add(current);
+            reservedBytes += size;
+            stats.offHeapReserved(size);
+        }
+    }
+}
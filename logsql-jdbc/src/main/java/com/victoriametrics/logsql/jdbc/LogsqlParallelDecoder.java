@@ -0,0 +1,404 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Decodes NDJSON responses on a fork/join pool.
+ *
+ * <p>The calling thread reads the response in chunks cut at line boundaries and submits each chunk to a
+ * driver-wide pool, where it is decoded into a block of rows. Blocks are handed to the
+ * {@link LogsqlResultBuilder} strictly in stream order, so the result is identical to sequential decoding.
+ * Chunks that have been read but not yet assembled form a queue bounded by bytes and by count: once either
+ * limit is reached the reader stops reading and waits for the oldest block, which keeps the memory held by a
+ * result in flight independent of the response size.
+ *
+ * <p>In lazy mode rows are not decoded at all: each row is indexed into the offsets of its field values, which
+ * are skipped over rather than parsed, and the chunk itself becomes the storage of a {@link LogsqlLazyRowStore},
+ * unless the rows kept from it take up a small part of it and are copied out. A row longer than a chunk grows the
+ * buffer up to a maximum row size, {@link #DEFAULT_MAX_ROW_BYTES} by default; longer rows fail the query.
+ * With a parallelism of one every chunk is processed on the calling thread.
+ *
+ * <p>When string values are cut off at a max field size or large ones are spilled, strings longer than either limit
+ * are read from the chunk by {@link LogsqlJsonString} rather than decoded by the parser, so that they are never
+ * materialized in full.
+ */
+final class LogsqlParallelDecoder {
+
+    static final int DEFAULT_CHUNK_BYTES = 1 << 20;
+    // the chunk buffer grows to hold a row larger than a chunk, up to this size
+    static final int DEFAULT_MAX_ROW_BYTES = 1 << 28;
+
+    private static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE =
+            new TypeReference<LinkedHashMap<String, Object>>() {
+            };
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("logsql-decode-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    private final ObjectMapper mapper;
+    private final ObjectReader rowReader;
+    private final ObjectReader valueReader;
+    private final int parallelism;
+    private final long maxQueuedBytes;
+    private final boolean lazy;
+    private final int chunkBytes;
+    private final int maxRowBytes;
+
+    LogsqlParallelDecoder(ObjectMapper mapper, int parallelism, long maxQueuedBytes, boolean lazy) {
+        this(mapper, parallelism, maxQueuedBytes, lazy, DEFAULT_CHUNK_BYTES);
+    }
+
+    LogsqlParallelDecoder(ObjectMapper mapper, int parallelism, long maxQueuedBytes, boolean lazy, int chunkBytes) {
+        this(mapper, parallelism, maxQueuedBytes, lazy, chunkBytes, DEFAULT_MAX_ROW_BYTES);
+    }
+
+    LogsqlParallelDecoder(ObjectMapper mapper, int parallelism, long maxQueuedBytes, boolean lazy, int chunkBytes,
+                          int maxRowBytes) {
+        this.mapper = mapper;
+        this.rowReader = mapper.readerFor(MAP_TYPE);
+        this.valueReader = mapper.readerFor(Object.class);
+        this.parallelism = parallelism;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.lazy = lazy;
+        this.chunkBytes = chunkBytes;
+        this.maxRowBytes = Math.max(chunkBytes, maxRowBytes);
+    }
+
+    /**
+     * Field names of a row and the {@code [start, end)} ranges of their values in the chunk.
+     */
+    private static final class IndexedRow {
+        final String[] names;
+        final int[] spans;
+
+        IndexedRow(String[] names, int[] spans) {
+            this.names = names;
+            this.spans = spans;
+        }
+    }
+
+    /**
+     * Rows decoded or indexed from one chunk, or the failure that stopped processing it.
+     */
+    private static final class Block {
+        final byte[] chunk;
+        final List<Map<String, Object>> rows;
+        final List<IndexedRow> indexedRows;
+        final int length;
+        final int newlines;
+        final Exception error;
+        final int errorLine;
+
+        Block(byte[] chunk, List<Map<String, Object>> rows, List<IndexedRow> indexedRows, int length, int newlines,
+              Exception error, int errorLine) {
+            this.chunk = chunk;
+            this.rows = rows;
+            this.indexedRows = indexedRows;
+            this.length = length;
+            this.newlines = newlines;
+            this.error = error;
+            this.errorLine = errorLine;
+        }
+    }
+
+    LogsqlQueryResult read(InputStream in, int maxRows) throws SQLException, IOException {
+        return read(in, maxRows, null, null);
+    }
+
+    LogsqlQueryResult read(InputStream in, int maxRows, LogsqlResultMemory memory, LogsqlResultLimits limits)
+            throws SQLException, IOException {
+        return read(in, maxRows, memory, limits, null);
+    }
+
+    /**
+     * Decodes {@code in}, reporting its translation and rows to {@code trace} unless it is {@code null}.
+     */
+    LogsqlQueryResult read(InputStream in, int maxRows, LogsqlResultMemory memory, LogsqlResultLimits limits,
+                           LogsqlQueryTrace trace) throws SQLException, IOException {
+        JsonFactory factory = limits == null ? mapper.getFactory() : limits.constrain(mapper.getFactory());
+        int maxChars = limits == null ? 0 : limits.getMaxFieldChars();
+        int largeBytes = memory == null || memory.getLargeFields() == null ? 0 : memory.getLargeFields().getThreshold();
+        LogsqlResultBuilder builder = new LogsqlResultBuilder(maxRows, valueReader, memory, maxChars).trace(trace);
+        ArrayDeque<ForkJoinTask<Block>> pending = new ArrayDeque<>();
+        long queuedBytes = 0;
+        long linesBefore = 0;
+        String translated = null;
+        boolean headerRead = false;
+        byte[] buffer = new byte[chunkBytes];
+        int length = 0;
+        boolean eof = false;
+        try {
+            while (!eof) {
+                int read = in.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    length += read;
+                    if (length < buffer.length) {
+                        continue;
+                    }
+                }
+                int end = eof ? length : LogsqlByteScanner.lastIndexOfNewline(buffer, 0, length) + 1;
+                if (end == 0) {
+                    if (!eof) {
+                        // a single row larger than the chunk size
+                        if (buffer.length >= maxRowBytes) {
+                            throw new SQLException("Response row exceeds the maximum row size of " + maxRowBytes
+                                    + " bytes", LogsqlResultLimits.LIMIT_EXCEEDED_STATE);
+                        }
+                        buffer = Arrays.copyOf(buffer, (int) Math.min(maxRowBytes, buffer.length * 2L));
+                    }
+                    continue;
+                }
+                byte[] chunk = buffer;
+                int carry = length - end;
+                buffer = new byte[Math.max(chunkBytes, carry * 2)];
+                System.arraycopy(chunk, end, buffer, 0, carry);
+                length = carry;
+
+                int start = 0;
+                if (!headerRead) {
+                    try (JsonParser parser = factory.createParser(chunk, 0, end)) {
+                        JsonToken token = parser.nextToken();
+                        if (token == null) {
+                            linesBefore += LogsqlByteScanner.countNewlines(chunk, 0, end);
+                            continue;
+                        }
+                        if (token != JsonToken.START_OBJECT) {
+                            throw new SQLException("Failed to parse response header: expected a JSON object");
+                        }
+                        Map<String, Object> header = rowReader.readValue(parser);
+                        Object logsql = header.get("logsql");
+                        translated = logsql == null ? null : logsql.toString();
+                        builder.translated(translated);
+                        start = (int) parser.getCurrentLocation().getByteOffset();
+                    }
+                    headerRead = true;
+                    linesBefore += LogsqlByteScanner.countNewlines(chunk, 0, start);
+                }
+
+                if (parallelism <= 1 || eof && pending.isEmpty()) {
+                    // with a single chunk left and nothing queued, decoding it here avoids the hand-off
+                    linesBefore = assemble(builder, decode(factory, chunk, start, end, maxChars, largeBytes), linesBefore, limits);
+                    continue;
+                }
+                byte[] bytes = chunk;
+                int from = start;
+                int to = end;
+                pending.addLast(POOL.submit(() -> decode(factory, bytes, from, to, maxChars, largeBytes)));
+                queuedBytes += to - from;
+                while (!pending.isEmpty() && (pending.peekFirst().isDone()
+                        || queuedBytes > maxQueuedBytes || pending.size() > parallelism * 2)) {
+                    Block block = pending.removeFirst().join();
+                    queuedBytes -= block.length;
+                    linesBefore = assemble(builder, block, linesBefore, limits);
+                }
+            }
+            while (!pending.isEmpty()) {
+                linesBefore = assemble(builder, pending.removeFirst().join(), linesBefore, limits);
+            }
+        } catch (IOException | LogsqlResultLimits.Exceeded e) {
+            // the rows assembled before a limit tripped are the result
+            if (limits == null || !limits.trip(e)) {
+                throw e;
+            }
+        } finally {
+            for (ForkJoinTask<Block> task : pending) {
+                task.cancel(false);
+            }
+        }
+        return builder.build(translated);
+    }
+
+    private static long assemble(LogsqlResultBuilder builder, Block block, long linesBefore,
+                                 LogsqlResultLimits limits) throws SQLException {
+        for (Map<String, Object> row : block.rows) {
+            builder.addRow(row);
+        }
+        int firstRawRow = builder.getRawRowCount();
+        try {
+            for (IndexedRow row : block.indexedRows) {
+                if (limits != null) {
+                    limits.checkRawRow(row.names, row.spans);
+                }
+                builder.addRawRow(block.chunk, row.names, row.spans);
+            }
+        } finally {
+            builder.compactRawRows(block.chunk, firstRawRow);
+        }
+        if (block.error != null) {
+            if (limits != null && limits.trip(block.error)) {
+                throw new LogsqlResultLimits.Exceeded();
+            }
+            long line = linesBefore + block.errorLine;
+            if (block.error instanceof SQLException) {
+                throw new SQLException("Failed to parse response row at line " + line + ": "
+                        + block.error.getMessage());
+            }
+            throw new SQLException("Failed to parse response row at line " + line, block.error);
+        }
+        return linesBefore + block.newlines;
+    }
+
+    private Block decode(JsonFactory factory, byte[] chunk, int from, int to, int maxChars, int largeBytes) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        List<IndexedRow> indexedRows = new ArrayList<>();
+        RowIndexer indexer = lazy ? new RowIndexer(chunk, from) : null;
+        int length = to - from;
+        int newlines = LogsqlByteScanner.countNewlines(chunk, from, to);
+        try (JsonParser parser = factory.createParser(chunk, from, length)) {
+            try {
+                JsonToken token;
+                while ((token = parser.nextToken()) != null) {
+                    if (token != JsonToken.START_OBJECT) {
+                        return new Block(chunk, rows, indexedRows, length, newlines,
+                                new SQLException("expected a JSON object"), parser.getCurrentLocation().getLineNr());
+                    }
+                    if (indexer != null) {
+                        indexedRows.add(indexer.index(parser));
+                    } else if (maxChars > 0 || largeBytes > 0) {
+                        rows.add(readRow(parser, chunk, from, to, maxChars, largeBytes));
+                    } else {
+                        rows.add(rowReader.readValue(parser));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                return new Block(chunk, rows, indexedRows, length, newlines, e,
+                        parser.getCurrentLocation().getLineNr());
+            }
+        } catch (IOException e) {
+            return new Block(chunk, rows, indexedRows, length, newlines, e, 1);
+        }
+        return new Block(chunk, rows, indexedRows, length, newlines, null, 0);
+    }
+
+    /**
+     * Reads a row as {@code rowReader} would, except for strings that {@link LogsqlJsonString#decodeLong} takes
+     * from the chunk.
+     */
+    private Map<String, Object> readRow(JsonParser parser, byte[] chunk, int from, int to, int maxChars,
+                                        int largeBytes) throws IOException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            if (parser.nextToken() == JsonToken.VALUE_STRING) {
+                // token locations are relative to the start of the parsed range
+                int quote = from + (int) parser.currentTokenLocation().getByteOffset();
+                int end = LogsqlJsonString.end(chunk, quote, to);
+                Object text = end < 0 ? null : LogsqlJsonString.decodeLong(chunk, quote, end, maxChars, largeBytes);
+                // the parser skips over a string whose text has not been asked for
+                row.put(name, text != null ? text : parser.getText());
+            } else {
+                row.put(name, valueReader.readValue(parser));
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new IOException("Unexpected end of row");
+        }
+        return row;
+    }
+
+    /**
+     * Records where the values of a row start and end without decoding them. Consecutive rows with the same
+     * fields share one names array.
+     */
+    private static final class RowIndexer {
+        private final byte[] chunk;
+        private final int from;
+        private String[] names = new String[16];
+        private int[] spans = new int[32];
+        private String[] previousNames = new String[0];
+
+        RowIndexer(byte[] chunk, int from) {
+            this.chunk = chunk;
+            this.from = from;
+        }
+
+        IndexedRow index(JsonParser parser) throws IOException {
+            int count = 0;
+            while (true) {
+                JsonToken token = parser.nextToken();
+                if (token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT) {
+                    throw new IOException("Unexpected end of row");
+                }
+                // token locations are relative to the start of the parsed range
+                int tokenStart = from + (int) parser.currentTokenLocation().getByteOffset();
+                if (count > 0) {
+                    spans[2 * count - 1] = valueEnd(tokenStart, token == JsonToken.FIELD_NAME);
+                }
+                if (token == JsonToken.END_OBJECT) {
+                    break;
+                }
+                if (count == names.length) {
+                    names = Arrays.copyOf(names, count * 2);
+                    spans = Arrays.copyOf(spans, count * 4);
+                }
+                names[count] = parser.currentName();
+                JsonToken value = parser.nextToken();
+                spans[2 * count] = from + (int) parser.currentTokenLocation().getByteOffset();
+                if (value.isStructStart()) {
+                    parser.skipChildren();
+                }
+                count++;
+            }
+            if (!sameNames(count)) {
+                previousNames = Arrays.copyOf(names, count);
+            }
+            return new IndexedRow(previousNames, Arrays.copyOf(spans, 2 * count));
+        }
+
+        private boolean sameNames(int count) {
+            if (previousNames.length != count) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                // field names are canonicalized by the parser
+                if (previousNames[i] != names[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Steps back from the token following a value over whitespace and the separating comma.
+         */
+        private int valueEnd(int nextToken, boolean afterComma) {
+            int i = skipWhitespaceBackwards(nextToken - 1);
+            if (afterComma) {
+                i = skipWhitespaceBackwards(i - 1);
+            }
+            return i + 1;
+        }
+
+        private int skipWhitespaceBackwards(int i) {
+            while (chunk[i] == ' ' || chunk[i] == '\t' || chunk[i] == '\r' || chunk[i] == '\n') {
+                i--;
+            }
+            return i;
+        }
+    }
+}
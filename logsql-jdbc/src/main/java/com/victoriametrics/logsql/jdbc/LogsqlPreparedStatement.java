@@ -21,12 +21,6 @@ import java.sql.SQLType;
 import java.sql.SQLXML;
 import java.sql.Time;
 import java.sql.Timestamp;
-import java.time.Instant;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.OffsetDateTime;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.Calendar;
 
@@ -35,19 +29,33 @@ class LogsqlPreparedStatement extends LogsqlStatement implements PreparedStateme
     private static final Object UNSET = new Object();
     private static final Object NULL_VALUE = new Object();
 
-    private final String sqlTemplate;
-    private final int parameterCount;
+    private final LogsqlSqlTemplate template;
     private final Object[] parameters;
+    private int lastRenderedLength;
 
     LogsqlPreparedStatement(LogsqlConnection connection, String sql) throws SQLException {
         super(connection);
         if (sql == null) {
             throw new SQLException("SQL must not be null");
         }
-        this.sqlTemplate = sql;
-        this.parameterCount = countParameters(sql);
-        this.parameters = new Object[parameterCount];
+        this.template = connection.template(sql);
+        this.parameters = new Object[template.getParameterCount()];
         Arrays.fill(this.parameters, UNSET);
+        // prepared statements are poolable unless told otherwise, as JDBC specifies
+        setPoolable(true);
+    }
+
+    LogsqlSqlTemplate getTemplate() {
+        return template;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        boolean open = !isClosed();
+        super.close();
+        if (open && isPoolable()) {
+            getConnectionInternal().templateReleased(template);
+        }
     }
 
     @Override
@@ -345,54 +353,25 @@ class LogsqlPreparedStatement extends LogsqlStatement implements PreparedStateme
     }
 
     private void setParameter(int parameterIndex, Object value) throws SQLException {
-        if (parameterIndex < 1 || parameterIndex > parameterCount) {
+        if (parameterIndex < 1 || parameterIndex > parameters.length) {
             throw new SQLException("Parameter index out of range: " + parameterIndex);
         }
         parameters[parameterIndex - 1] = value;
     }
 
-    private String renderSql() throws SQLException {
+    String renderSql() throws SQLException {
+        int parameterCount = template.getParameterCount();
         if (parameterCount == 0) {
-            return sqlTemplate;
-        }
-
-        StringBuilder builder = new StringBuilder();
-        boolean inSingleQuote = false;
-        boolean inDoubleQuote = false;
-        int parameterIndex = 0;
-        int length = sqlTemplate.length();
-        for (int i = 0; i < length; i++) {
-            char c = sqlTemplate.charAt(i);
-            if (c == '\'') {
-                builder.append(c);
-                if (inSingleQuote && i + 1 < length && sqlTemplate.charAt(i + 1) == '\'') {
-                    builder.append('\'');
-                    i++;
-                } else {
-                    inSingleQuote = !inSingleQuote;
-                }
-            } else if (c == '"') {
-                builder.append(c);
-                if (inDoubleQuote && i + 1 < length && sqlTemplate.charAt(i + 1) == '"') {
-                    builder.append('"');
-                    i++;
-                } else {
-                    inDoubleQuote = !inDoubleQuote;
-                }
-            } else if (!inSingleQuote && !inDoubleQuote && c == '?') {
-                if (parameterIndex >= parameterCount) {
-                    throw new SQLException("Too many parameters in SQL template");
-                }
-                builder.append(formatParameter(getParameterValue(parameterIndex)));
-                parameterIndex++;
-            } else {
-                builder.append(c);
-            }
+            return template.getSql();
         }
 
-        if (parameterIndex < parameterCount) {
-            throw new SQLException("Not all parameters were set");
+        StringBuilder builder = new StringBuilder(template.capacity(lastRenderedLength));
+        for (int i = 0; i < parameterCount; i++) {
+            builder.append(template.segment(i));
+            LogsqlSqlTemplate.appendLiteral(builder, getParameterValue(i));
         }
+        builder.append(template.segment(parameterCount));
+        lastRenderedLength = builder.length();
         return builder.toString();
     }
 
@@ -403,101 +382,4 @@ class LogsqlPreparedStatement extends LogsqlStatement implements PreparedStateme
         }
         return value == NULL_VALUE ? null : value;
     }
-
-    private String formatParameter(Object value) throws SQLException {
-        if (value == null) {
-            return "NULL";
-        }
-        if (value instanceof String || value instanceof Character) {
-            return quote(value.toString());
-        }
-        if (value instanceof Boolean) {
-            return ((Boolean) value) ? "TRUE" : "FALSE";
-        }
-        if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
-            return value.toString();
-        }
-        if (value instanceof Float || value instanceof Double) {
-            if (((Number) value).doubleValue() == Double.POSITIVE_INFINITY || ((Number) value).doubleValue() == Double.NEGATIVE_INFINITY || Double.isNaN(((Number) value).doubleValue())) {
-                throw new SQLException("Floating point value cannot be represented: " + value);
-            }
-            return value.toString();
-        }
-        if (value instanceof BigDecimal) {
-            return ((BigDecimal) value).toPlainString();
-        }
-        if (value instanceof byte[]) {
-            return formatBytes((byte[]) value);
-        }
-        if (value instanceof Date) {
-            return quote(value.toString());
-        }
-        if (value instanceof Time) {
-            return quote(value.toString());
-        }
-        if (value instanceof Timestamp) {
-            return quote(value.toString());
-        }
-        if (value instanceof Instant) {
-            return quote(DateTimeFormatter.ISO_INSTANT.format((Instant) value));
-        }
-        if (value instanceof OffsetDateTime) {
-            return quote(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format((OffsetDateTime) value));
-        }
-        if (value instanceof ZonedDateTime) {
-            return quote(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(((ZonedDateTime) value).toOffsetDateTime()));
-        }
-        if (value instanceof LocalDateTime) {
-            return quote(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format((LocalDateTime) value));
-        }
-        if (value instanceof LocalDate) {
-            return quote(DateTimeFormatter.ISO_LOCAL_DATE.format((LocalDate) value));
-        }
-        if (value instanceof Calendar) {
-            Calendar calendar = (Calendar) value;
-            return quote(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(ZonedDateTime.ofInstant(calendar.toInstant(), calendar.getTimeZone().toZoneId())));
-        }
-        return quote(value.toString());
-    }
-
-    private String quote(String value) {
-        String escaped = value.replace("'", "''");
-        return "'" + escaped + "'";
-    }
-
-    private int countParameters(String sql) {
-        boolean inSingleQuote = false;
-        boolean inDoubleQuote = false;
-        int count = 0;
-        int length = sql.length();
-        for (int i = 0; i < length; i++) {
-            char c = sql.charAt(i);
-            if (c == '\'') {
-                if (inSingleQuote && i + 1 < length && sql.charAt(i + 1) == '\'') {
-                    i++;
-                } else {
-                    inSingleQuote = !inSingleQuote;
-                }
-            } else if (c == '\"') {
-                if (inDoubleQuote && i + 1 < length && sql.charAt(i + 1) == '\"') {
-                    i++;
-                } else {
-                    inDoubleQuote = !inDoubleQuote;
-                }
-            } else if (!inSingleQuote && !inDoubleQuote && c == '?') {
-                count++;
-            }
-        }
-        return count;
-    }
-
-    private String formatBytes(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("X'");
-        for (byte b : bytes) {
-            sb.append(String.format("%02X", b));
-        }
-        sb.append("'");
-        return sb.toString();
-    }
 }
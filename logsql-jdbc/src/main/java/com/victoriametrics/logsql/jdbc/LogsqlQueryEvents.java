@@ -0,0 +1,282 @@
+package com.victoriametrics.logsql.jdbc;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder events of one query execution and of the result set it produced.
+ *
+ * <p>Phase events are begun and ended as the execution passes through them, but committed together once it has
+ * finished, when the translated LogsQL and the number of rows are known; a committed event keeps the time it was
+ * ended at. An instance is only created while at least one of the events is enabled, so that executions outside of
+ * a recording cost a few checks and no allocation. This class must only be loaded when {@link LogsqlQueryTrace#JFR}
+ * is set, since the {@code jdk.jfr} module may be missing from trimmed runtimes.
+ */
+final class LogsqlQueryEvents {
+
+    private static final String CATEGORY = "LogsQL JDBC";
+    private static final String PREFIX = "com.victoriametrics.logsql.jdbc.";
+    // never committed, only asked whether their type is enabled
+    private static final Event[] PROBES = {
+            new QueryEvent(), new SendEvent(), new FirstByteEvent(), new BodyCompleteEvent(), new DecodeEvent(),
+            new IterateEvent(), new CloseEvent()
+    };
+    private static final TranslateEvent TRANSLATE_PROBE = new TranslateEvent();
+
+    private final String sql;
+    private final QueryEvent query = new QueryEvent();
+    private final SendEvent send = new SendEvent();
+    private final FirstByteEvent firstByte = new FirstByteEvent();
+    private final BodyCompleteEvent bodyComplete = new BodyCompleteEvent();
+    private final DecodeEvent decode = new DecodeEvent();
+    private int sqlHash;
+    private int logsqlLength;
+    private long bytes;
+    private boolean sent;
+    private boolean responded;
+    private boolean firstByteRead;
+    private boolean bodyCompleted;
+    private boolean decoded;
+    private IterateEvent iterate;
+    private boolean iterated;
+
+    private LogsqlQueryEvents(String sql) {
+        this.sql = sql;
+        query.begin();
+    }
+
+    /**
+     * Begins the events of an execution of {@code sql}, returning {@code null} when none of them is enabled.
+     */
+    static LogsqlQueryEvents begin(String sql) {
+        for (Event probe : PROBES) {
+            if (probe.isEnabled()) {
+                return new LogsqlQueryEvents(sql);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a translation event begun now, or {@code null} when it is not enabled.
+     */
+    static TranslateEvent beginTranslation() {
+        if (!TRANSLATE_PROBE.isEnabled()) {
+            return null;
+        }
+        TranslateEvent event = new TranslateEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitTranslation(TranslateEvent event, String sql, String logsql) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.sqlHash = sql.hashCode();
+            event.logsqlLength = logsql == null ? 0 : logsql.length();
+            event.commit();
+        }
+    }
+
+    void sending() {
+        sent = true;
+        send.begin();
+    }
+
+    void responseReceived() {
+        responded = true;
+        send.end();
+        firstByte.begin();
+        decode.begin();
+    }
+
+    void firstByteRead() {
+        firstByteRead = true;
+        firstByte.end();
+        bodyComplete.begin();
+    }
+
+    void bodyCompleted() {
+        bodyCompleted = true;
+        bodyComplete.end();
+    }
+
+    void bodyRead(long transferNanos) {
+        // a decompressing reader may stop at the end of its format without reading the end of the body
+        if (firstByteRead && !bodyCompleted) {
+            bodyCompleted();
+        }
+        decoded = true;
+        decode.transferTime = transferNanos;
+        decode.end();
+    }
+
+    /**
+     * Commits the events of the execution traced by {@code trace}.
+     */
+    void finished(LogsqlQueryTrace trace, LogsqlQueryResult result) {
+        sqlHash = sql.hashCode();
+        logsqlLength = result == null || result.getLogsql() == null ? 0 : result.getLogsql().length();
+        bytes = trace.getBytesReceived();
+        long rows = trace.getRowsReturned();
+        if (sent) {
+            commit(send, rows);
+        }
+        if (responded) {
+            commit(firstByte, rows);
+        }
+        if (firstByteRead) {
+            commit(bodyComplete, rows);
+        }
+        if (decoded) {
+            decode.bytesDecoded = trace.getBytesDecoded();
+            commit(decode, rows);
+        }
+        query.end();
+        query.source = trace.getSource().name();
+        query.failed = result == null;
+        commit(query, rows);
+    }
+
+    /**
+     * Begins the iteration of the result set handed out for the execution.
+     */
+    void iterationStarted() {
+        iterate = new IterateEvent();
+        iterate.begin();
+    }
+
+    /**
+     * Commits the iteration event once, when the result set was exhausted or closed after {@code rows} rows.
+     */
+    void iterationFinished(int rows) {
+        if (iterate != null && !iterated) {
+            iterated = true;
+            iterate.end();
+            commit(iterate, rows);
+        }
+    }
+
+    CloseEvent closing() {
+        CloseEvent event = new CloseEvent();
+        event.begin();
+        return event;
+    }
+
+    void closed(CloseEvent event, int rows) {
+        event.end();
+        commit(event, rows);
+    }
+
+    private void commit(QueryPhaseEvent event, long rows) {
+        if (event.shouldCommit()) {
+            event.sqlHash = sqlHash;
+            event.logsqlLength = logsqlLength;
+            event.rows = rows;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    @Category(CATEGORY)
+    @StackTrace(false)
+    abstract static class QueryPhaseEvent extends Event {
+
+        @Label("SQL Hash")
+        @Description("Hash code of the SQL statement")
+        int sqlHash;
+
+        @Label("LogsQL Length")
+        @Description("Length of the translated LogsQL, 0 when not known")
+        int logsqlLength;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Bytes")
+        @Description("Response body bytes received from the service for the execution")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name(PREFIX + "Query")
+    @Label("Query")
+    @Description("Execution of a query, from the call to the result handed to the statement")
+    static final class QueryEvent extends QueryPhaseEvent {
+
+        @Label("Source")
+        @Description("Where the rows came from: SERVICE, NOT_MODIFIED, RESULT_CACHE, STALE_RESULT_CACHE or "
+                + "TIME_BUCKETS")
+        String source;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    @Name(PREFIX + "Translate")
+    @Label("Translate")
+    @Description("Translation of SQL to LogsQL by the service without running the query")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class TranslateEvent extends Event {
+
+        @Label("SQL Hash")
+        int sqlHash;
+
+        @Label("LogsQL Length")
+        int logsqlLength;
+    }
+
+    @Name(PREFIX + "Send")
+    @Label("Send")
+    @Description("Request to the service until the response headers arrive, covering translation and the start of the "
+            + "VictoriaLogs query")
+    static final class SendEvent extends QueryPhaseEvent {
+    }
+
+    @Name(PREFIX + "FirstByte")
+    @Label("First Byte")
+    @Description("Wait from the response headers until the first byte of the body")
+    static final class FirstByteEvent extends QueryPhaseEvent {
+    }
+
+    @Name(PREFIX + "BodyComplete")
+    @Label("Body Complete")
+    @Description("Transfer from the first byte of the response body until its end")
+    static final class BodyCompleteEvent extends QueryPhaseEvent {
+    }
+
+    @Name(PREFIX + "Decode")
+    @Label("Decode")
+    @Description("Reading and decoding of the response body into rows")
+    static final class DecodeEvent extends QueryPhaseEvent {
+
+        @Label("Transfer Time")
+        @Description("Part of the duration spent waiting for bytes from the network")
+        @Timespan
+        long transferTime;
+
+        @Label("Bytes Decoded")
+        @Description("Response body bytes after decompression")
+        @DataAmount
+        long bytesDecoded;
+    }
+
+    @Name(PREFIX + "ResultSetIterate")
+    @Label("Result Set Iterate")
+    @Description("Iteration of a result set, from its creation until it was exhausted or closed")
+    static final class IterateEvent extends QueryPhaseEvent {
+    }
+
+    @Name(PREFIX + "ResultSetClose")
+    @Label("Result Set Close")
+    @Description("Closing of a result set, releasing its rows")
+    static final class CloseEvent extends QueryPhaseEvent {
+    }
+}
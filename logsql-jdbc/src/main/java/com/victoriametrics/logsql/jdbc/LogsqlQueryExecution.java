@@ -0,0 +1,47 @@
+package com.victoriametrics.logsql.jdbc;
+
+/**
+ * An execution of a query as seen by a {@link LogsqlQueryListener}. Timings are in nanoseconds from the start of the
+ * execution and read {@code 0} until the phase they measure has ended.
+ */
+public interface LogsqlQueryExecution {
+
+    String getSql();
+
+    /**
+     * Returns the {@link System#nanoTime()} at which the execution started.
+     */
+    long getStartNanos();
+
+    /**
+     * Returns the time until the response headers of the service arrived, covering translation and the start of the
+     * VictoriaLogs query.
+     */
+    long getResponseNanos();
+
+    /**
+     * Returns the time spent waiting for bytes of the response body so far.
+     */
+    long getTransferNanos();
+
+    /**
+     * Returns the time spent decoding the response body, once it has been read.
+     */
+    long getDecodeNanos();
+
+    /**
+     * Returns the time since the start, or the duration of the execution once it has ended.
+     */
+    long getTotalNanos();
+
+    /**
+     * Returns the number of response body bytes received so far, as sent on the wire.
+     */
+    long getBytesReceived();
+
+    /**
+     * Returns the number of rows decoded from the response so far, including rows beyond the max rows of the
+     * statement, which are dropped.
+     */
+    long getRowsDecoded();
+}
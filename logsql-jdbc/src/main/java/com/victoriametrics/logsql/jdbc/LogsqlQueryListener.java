@@ -0,0 +1,57 @@
+package com.victoriametrics.logsql.jdbc;
+
+/**
+ * Service provider interface for observing query executions, for example to feed a tracing or audit system.
+ *
+ * <p>Listeners are named in the {@code queryListeners} connection property or discovered through
+ * {@link java.util.ServiceLoader} from {@code META-INF/services/com.victoriametrics.logsql.jdbc.LogsqlQueryListener};
+ * named classes need a public no-argument constructor. A connection creates its own instances. Callbacks run on the
+ * thread executing the query, in the order of this interface, and should return quickly; an exception thrown by a
+ * listener is logged and otherwise ignored. The {@link LogsqlQueryExecution} passed to every callback of an
+ * execution is the same object and may be used as a key; it is only valid during the callbacks.
+ */
+public interface LogsqlQueryListener {
+
+    /**
+     * Called before the query is run.
+     */
+    default void queryStarted(LogsqlQueryExecution execution) {
+    }
+
+    /**
+     * Called with the LogsQL the service translated the query to, as soon as it is known. Not called when the
+     * response carries no translation.
+     */
+    default void queryTranslated(LogsqlQueryExecution execution, String logsql) {
+    }
+
+    /**
+     * Called when the first row of the result has been decoded, or with the result when its rows were not decoded
+     * from a response, such as results reused from a cache. Not called for empty results.
+     */
+    default void firstRow(LogsqlQueryExecution execution) {
+    }
+
+    /**
+     * Called each time another {@code queryProgressRows} rows have been decoded from the response.
+     *
+     * @param rows  the number of rows decoded so far
+     * @param bytes the number of response body bytes received so far
+     */
+    default void queryProgress(LogsqlQueryExecution execution, long rows, long bytes) {
+    }
+
+    /**
+     * Called when the result is handed to the statement.
+     *
+     * @param rows the number of rows of the result
+     */
+    default void queryCompleted(LogsqlQueryExecution execution, long rows) {
+    }
+
+    /**
+     * Called when the execution failed with {@code error}.
+     */
+    default void queryFailed(LogsqlQueryExecution execution, Throwable error) {
+    }
+}
@@ -0,0 +1,135 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The query listeners of a connection, invoked so that a failing listener neither fails the query nor keeps the
+ * others from being called.
+ */
+final class LogsqlQueryListeners {
+
+    private static final Logger LOGGER = Logger.getLogger(LogsqlQueryListeners.class.getName());
+
+    private final LogsqlQueryListener[] listeners;
+
+    private LogsqlQueryListeners(LogsqlQueryListener[] listeners) {
+        this.listeners = listeners;
+    }
+
+    /**
+     * Instantiates the listeners found through {@link ServiceLoader} and those named in the comma-separated
+     * {@code queryListeners} property, returning {@code null} when there are none.
+     */
+    static LogsqlQueryListeners forProperty(String value) throws SQLException {
+        List<LogsqlQueryListener> listeners = new ArrayList<>();
+        try {
+            for (LogsqlQueryListener listener : ServiceLoader.load(LogsqlQueryListener.class,
+                    LogsqlQueryListeners.class.getClassLoader())) {
+                listeners.add(listener);
+            }
+        } catch (ServiceConfigurationError e) {
+            LOGGER.log(Level.WARNING, "Failed to load query listeners", e);
+        }
+        String trimmed = LogsqlUrlParser.trimToNull(value);
+        if (trimmed != null) {
+            for (String name : trimmed.split(",")) {
+                if (!name.isBlank()) {
+                    listeners.add(instantiate(name.trim()));
+                }
+            }
+        }
+        return listeners.isEmpty() ? null : new LogsqlQueryListeners(listeners.toArray(new LogsqlQueryListener[0]));
+    }
+
+    private static LogsqlQueryListener instantiate(String className) throws SQLException {
+        Class<?> type;
+        try {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            type = Class.forName(className, true,
+                    loader != null ? loader : LogsqlQueryListeners.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("Query listener class not found: " + className, e);
+        }
+        if (!LogsqlQueryListener.class.isAssignableFrom(type)) {
+            throw new SQLException("Class " + className + " does not implement " + LogsqlQueryListener.class.getName());
+        }
+        try {
+            return (LogsqlQueryListener) type.getConstructor().newInstance();
+        } catch (InvocationTargetException e) {
+            throw new SQLException("Failed to create query listener " + className, e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("Failed to create query listener " + className, e);
+        }
+    }
+
+    void started(LogsqlQueryExecution execution) {
+        for (LogsqlQueryListener listener : listeners) {
+            try {
+                listener.queryStarted(execution);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    void translated(LogsqlQueryExecution execution, String logsql) {
+        for (LogsqlQueryListener listener : listeners) {
+            try {
+                listener.queryTranslated(execution, logsql);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    void firstRow(LogsqlQueryExecution execution) {
+        for (LogsqlQueryListener listener : listeners) {
+            try {
+                listener.firstRow(execution);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    void progress(LogsqlQueryExecution execution, long rows, long bytes) {
+        for (LogsqlQueryListener listener : listeners) {
+            try {
+                listener.queryProgress(execution, rows, bytes);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    void completed(LogsqlQueryExecution execution, long rows) {
+        for (LogsqlQueryListener listener : listeners) {
+            try {
+                listener.queryCompleted(execution, rows);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    void failed(LogsqlQueryExecution execution, Throwable error) {
+        for (LogsqlQueryListener listener : listeners) {
+            try {
+                listener.queryFailed(execution, error);
+            } catch (RuntimeException e) {
+                failed(listener, e);
+            }
+        }
+    }
+
+    private static void failed(LogsqlQueryListener listener, RuntimeException e) {
+        LOGGER.log(Level.WARNING, "Query listener " + listener.getClass().getName() + " failed", e);
+    }
+}
@@ -0,0 +1,214 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.net.http.HttpTimeoutException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLWarning;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms backing {@link LogsqlQueryMetricsMXBean}. Everything recorded is also recorded
+ * to the parent, if any, so that the driver reports the sums over its connections. Counters are striped
+ * {@link LongAdder}s and histograms are striped by thread, so that recording stays cheap when many threads execute
+ * queries at once; it happens once per execution, never per row.
+ */
+class LogsqlQueryMetrics implements LogsqlQueryMetricsMXBean {
+
+    private final LogsqlQueryMetrics parent;
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+    private final LongAdder openResultSets = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder conditionalRequests = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LogsqlLatencyHistogram responseLatency;
+    private final LogsqlLatencyHistogram transferLatency;
+    private final LogsqlLatencyHistogram decodeLatency;
+    private final LogsqlLatencyHistogram totalLatency;
+
+    LogsqlQueryMetrics(LogsqlQueryMetrics parent, int stripes) {
+        this.parent = parent;
+        this.responseLatency = new LogsqlLatencyHistogram(stripes);
+        this.transferLatency = new LogsqlLatencyHistogram(stripes);
+        this.decodeLatency = new LogsqlLatencyHistogram(stripes);
+        this.totalLatency = new LogsqlLatencyHistogram(stripes);
+    }
+
+    void queryStarted() {
+        inFlight.increment();
+        if (parent != null) {
+            parent.queryStarted();
+        }
+    }
+
+    void querySucceeded(LogsqlQueryTrace trace, LogsqlQueryResult result) {
+        inFlight.decrement();
+        succeeded.increment();
+        rows.add(trace.getRowsReturned());
+        SQLWarning warning = result.getWarning();
+        if (warning != null && LogsqlResultLimits.TRUNCATED_STATE.equals(warning.getSQLState())) {
+            truncated.increment();
+        }
+        if (trace.hasResponseBody()) {
+            responseLatency.record(trace.getResponseNanos());
+            transferLatency.record(trace.getTransferNanos());
+            decodeLatency.record(trace.getDecodeNanos());
+        }
+        totalLatency.record(trace.getTotalNanos());
+        if (parent != null) {
+            parent.querySucceeded(trace, result);
+        }
+    }
+
+    void queryFailed(Throwable error) {
+        inFlight.decrement();
+        failed.increment();
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpTimeoutException || cause instanceof SQLTimeoutException) {
+                timedOut.increment();
+                break;
+            }
+        }
+        if (parent != null) {
+            parent.queryFailed(error);
+        }
+    }
+
+    void resultCacheLookup(boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+        if (parent != null) {
+            parent.resultCacheLookup(hit);
+        }
+    }
+
+    void conditionalRequest(boolean notModified) {
+        conditionalRequests.increment();
+        if (notModified) {
+            this.notModified.increment();
+        }
+        if (parent != null) {
+            parent.conditionalRequest(notModified);
+        }
+    }
+
+    void resultSetOpened() {
+        openResultSets.increment();
+        if (parent != null) {
+            parent.resultSetOpened();
+        }
+    }
+
+    void resultSetClosed() {
+        openResultSets.decrement();
+        if (parent != null) {
+            parent.resultSetClosed();
+        }
+    }
+
+    @Override
+    public long getQueriesInFlight() {
+        return inFlight.sum();
+    }
+
+    @Override
+    public long getQueriesSucceeded() {
+        return succeeded.sum();
+    }
+
+    @Override
+    public long getQueriesFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public long getQueriesTimedOut() {
+        return timedOut.sum();
+    }
+
+    @Override
+    public long getQueriesTruncated() {
+        return truncated.sum();
+    }
+
+    @Override
+    public long getOpenResultSets() {
+        return openResultSets.sum();
+    }
+
+    @Override
+    public long getRowsReturned() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getResultCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getResultCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public double getResultCacheHitRatio() {
+        long hits = cacheHits.sum();
+        long lookups = hits + cacheMisses.sum();
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    @Override
+    public long getNotModifiedResponses() {
+        return notModified.sum();
+    }
+
+    @Override
+    public double getNotModifiedRatio() {
+        long requests = conditionalRequests.sum();
+        return requests == 0 ? 0.0 : (double) notModified.sum() / requests;
+    }
+
+    @Override
+    public LogsqlLatencyStats getResponseLatency() {
+        return responseLatency.total();
+    }
+
+    @Override
+    public LogsqlLatencyStats getRecentResponseLatency() {
+        return responseLatency.recent();
+    }
+
+    @Override
+    public LogsqlLatencyStats getTransferLatency() {
+        return transferLatency.total();
+    }
+
+    @Override
+    public LogsqlLatencyStats getRecentTransferLatency() {
+        return transferLatency.recent();
+    }
+
+    @Override
+    public LogsqlLatencyStats getDecodeLatency() {
+        return decodeLatency.total();
+    }
+
+    @Override
+    public LogsqlLatencyStats getRecentDecodeLatency() {
+        return decodeLatency.recent();
+    }
+
+    @Override
+    public LogsqlLatencyStats getTotalLatency() {
+        return totalLatency.total();
+    }
+
+    @Override
+    public LogsqlLatencyStats getRecentTotalLatency() {
+        return totalLatency.recent();
+    }
+}
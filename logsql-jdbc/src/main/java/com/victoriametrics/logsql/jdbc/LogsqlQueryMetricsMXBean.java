@@ -0,0 +1,80 @@
+package com.victoriametrics.logsql.jdbc;
+
+/**
+ * Query execution metrics shared by the driver and connection MBeans.
+ *
+ * <p>Latencies are split into the phases of an execution answered by the service: the response latency until the
+ * response headers arrive, covering translation and the start of the VictoriaLogs query; the transfer latency spent
+ * waiting for the response body; the decode latency spent turning it into rows; and the total latency of
+ * {@code executeQuery}. Each is reported for successful executions, since the driver or connection was created and
+ * over the last minute.
+ */
+public interface LogsqlQueryMetricsMXBean {
+
+    /**
+     * Returns the number of queries currently executing.
+     */
+    long getQueriesInFlight();
+
+    long getQueriesSucceeded();
+
+    long getQueriesFailed();
+
+    /**
+     * Returns the number of failed queries that timed out.
+     */
+    long getQueriesTimedOut();
+
+    /**
+     * Returns the number of queries whose result was cut off by a result limit.
+     */
+    long getQueriesTruncated();
+
+    /**
+     * Returns the number of result sets that have not been closed.
+     */
+    long getOpenResultSets();
+
+    /**
+     * Returns the number of rows of query results, wherever they came from.
+     */
+    long getRowsReturned();
+
+    /**
+     * Returns the number of query results answered from the on-disk result cache, including stale ones.
+     */
+    long getResultCacheHits();
+
+    long getResultCacheMisses();
+
+    /**
+     * Returns hits per result cache lookup, or {@code 0.0} before the first lookup.
+     */
+    double getResultCacheHitRatio();
+
+    /**
+     * Returns the number of conditional requests the service answered with {@code 304 Not Modified}.
+     */
+    long getNotModifiedResponses();
+
+    /**
+     * Returns {@code 304 Not Modified} responses per conditional request, or {@code 0.0} before the first one.
+     */
+    double getNotModifiedRatio();
+
+    LogsqlLatencyStats getResponseLatency();
+
+    LogsqlLatencyStats getRecentResponseLatency();
+
+    LogsqlLatencyStats getTransferLatency();
+
+    LogsqlLatencyStats getRecentTransferLatency();
+
+    LogsqlLatencyStats getDecodeLatency();
+
+    LogsqlLatencyStats getRecentDecodeLatency();
+
+    LogsqlLatencyStats getTotalLatency();
+
+    LogsqlLatencyStats getRecentTotalLatency();
+}
@@ -0,0 +1,61 @@
+package com.victoriametrics.logsql.jdbc;
+
+/**
+ * Where the time of one query execution went, obtained through {@code resultSet.unwrap(LogsqlQueryProfile.class)}
+ * on the result set of a statement.
+ *
+ * <p>The translation and server times are reported by the service in its {@code Server-Timing} header; they are
+ * {@code -1} when the header is missing, as with older services, or when the result was not fetched from the
+ * service. The response time measured by the driver includes them and the network round trip.
+ */
+public interface LogsqlQueryProfile extends LogsqlQueryExecution {
+
+    /**
+     * Where the rows of a result came from, which tells whether caches were hit.
+     */
+    enum Source {
+        /**
+         * Transferred and decoded from a response of the service.
+         */
+        SERVICE,
+        /**
+         * Reused because the service answered {@code 304 Not Modified} for a retained result.
+         */
+        NOT_MODIFIED,
+        /**
+         * Read from the on-disk result cache.
+         */
+        RESULT_CACHE,
+        /**
+         * Read from the on-disk result cache after it expired, while a refresh runs in the background.
+         */
+        STALE_RESULT_CACHE,
+        /**
+         * Assembled from cached and freshly fetched time buckets.
+         */
+        TIME_BUCKETS
+    }
+
+    Source getSource();
+
+    /**
+     * Returns the time the service spent translating the SQL, or {@code -1} when it is not known.
+     */
+    long getTranslationNanos();
+
+    /**
+     * Returns the time the service spent running the query on VictoriaLogs, or {@code -1} when it is not known.
+     */
+    long getServerNanos();
+
+    /**
+     * Returns the number of response body bytes after decompression.
+     */
+    long getBytesDecoded();
+
+    /**
+     * Returns the number of rows of the result, which is lower than the rows decoded when the max rows of the
+     * statement cut it off.
+     */
+    long getRowsReturned();
+}
@@ -1,19 +1,36 @@
 package com.victoriametrics.logsql.jdbc;
 
+import java.sql.SQLException;
+import java.sql.SQLWarning;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 final class LogsqlQueryResult {
 
     private final String logsql;
     private final List<String> columnNames;
-    private final List<Map<String, Object>> rows;
+    private final int[] columnTypes;
+    private final LogsqlRowStore rows;
+    private final SQLWarning warning;
 
-    LogsqlQueryResult(String logsql, List<String> columnNames, List<Map<String, Object>> rows) {
+    LogsqlQueryResult(String logsql, List<String> columnNames, int[] columnTypes, LogsqlRowStore rows) {
+        this(logsql, columnNames, columnTypes, rows, null);
+    }
+
+    private LogsqlQueryResult(String logsql, List<String> columnNames, int[] columnTypes, LogsqlRowStore rows,
+                              SQLWarning warning) {
         this.logsql = logsql;
         this.columnNames = columnNames == null ? Collections.emptyList() : Collections.unmodifiableList(columnNames);
-        this.rows = rows == null ? Collections.emptyList() : Collections.unmodifiableList(rows);
+        this.columnTypes = columnTypes == null ? new int[0] : columnTypes;
+        this.rows = rows == null ? new LogsqlListRowStore(Collections.emptyList()) : rows;
+        this.warning = warning;
+    }
+
+    /**
+     * Returns a view of this result that reports {@code warning} on the result set built from it.
+     */
+    LogsqlQueryResult withWarning(SQLWarning warning) {
+        return new LogsqlQueryResult(logsql, columnNames, columnTypes, rows, warning);
     }
 
     String getLogsql() {
@@ -24,11 +41,24 @@ final class LogsqlQueryResult {
         return columnNames;
     }
 
-    List<Map<String, Object>> getRows() {
+    int[] getColumnTypes() {
+        return columnTypes;
+    }
+
+    LogsqlRowStore getRows() {
         return rows;
     }
 
+    SQLWarning getWarning() {
+        return warning;
+    }
+
     int getRowCount() {
-        return rows.size();
+        return rows.getRowCount();
+    }
+
+    Object getValue(int row, String columnName) throws SQLException {
+        int column = columnNames.indexOf(columnName);
+        return column < 0 ? null : rows.getValue(row, column);
     }
 }
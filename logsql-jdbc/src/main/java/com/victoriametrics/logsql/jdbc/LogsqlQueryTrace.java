@@ -0,0 +1,320 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Timings and sizes of one query execution, from the call to the result handed to the statement.
+ *
+ * <p>The response phase lasts until the headers of the response arrive, which covers the translation by the service
+ * and the start of the VictoriaLogs query. The body is then read and decoded in one pass; the time spent waiting
+ * for bytes from the network is the transfer time, and the rest of the pass is the decode time. A trace is used by
+ * the thread executing the query only. While a flight recording is running, the phases are also
+ * reported as {@link LogsqlQueryEvents}, and they are reported to the {@link LogsqlQueryListener}s of the connection,
+ * if any, as they happen.
+ */
+final class LogsqlQueryTrace implements LogsqlQueryProfile {
+
+    /**
+     * Whether the {@code jdk.jfr} module, which trimmed runtimes may leave out, is present.
+     */
+    static final boolean JFR = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    private final long startNanos = System.nanoTime();
+    private final String sql;
+    private final LogsqlQueryEvents events;
+    private final LogsqlQueryListeners listeners;
+    private final long progressRows;
+    private long nextProgressRows;
+    private long rowsDecoded;
+    private boolean translated;
+    private long responseNanos;
+    private long transferNanos;
+    private long bodyNanos;
+    private long endNanos;
+    private long bytesReceived;
+    private long bytesDecoded;
+    private int rows;
+    private Source source = Source.SERVICE;
+    private long translationNanos = -1;
+    private long serverNanos = -1;
+
+    LogsqlQueryTrace(String sql) {
+        this(sql, null, 0);
+    }
+
+    /**
+     * Creates the trace of an execution of {@code sql} reported to {@code listeners}, which may be {@code null},
+     * with progress every {@code progressRows} decoded rows.
+     */
+    LogsqlQueryTrace(String sql, LogsqlQueryListeners listeners, long progressRows) {
+        this.sql = sql;
+        this.events = JFR ? LogsqlQueryEvents.begin(sql) : null;
+        this.listeners = listeners;
+        this.progressRows = progressRows;
+        this.nextProgressRows = progressRows;
+    }
+
+    void started() {
+        if (listeners != null) {
+            listeners.started(this);
+        }
+    }
+
+    void sending() {
+        if (events != null) {
+            events.sending();
+        }
+    }
+
+    void responseReceived() {
+        responseNanos = System.nanoTime();
+        if (events != null) {
+            events.responseReceived();
+        }
+    }
+
+    void bodyRead() {
+        bodyNanos = System.nanoTime();
+        if (events != null) {
+            events.bodyRead(transferNanos);
+        }
+    }
+
+    void source(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * Takes the translation and server times from the {@code Server-Timing} header of the response, such as
+     * {@code translate;dur=0.412, query;dur=35.120}, ignoring metrics it does not know.
+     */
+    void serverTiming(String header) {
+        if (header == null) {
+            return;
+        }
+        for (String metric : header.split(",")) {
+            String[] parts = metric.split(";");
+            String name = parts[0].trim();
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (!param.startsWith("dur=")) {
+                    continue;
+                }
+                long nanos;
+                try {
+                    nanos = (long) (Double.parseDouble(param.substring(4)) * 1_000_000);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if ("translate".equals(name)) {
+                    translationNanos = nanos;
+                } else if ("query".equals(name)) {
+                    serverNanos = nanos;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the translated LogsQL read from the response header.
+     */
+    void translated(String logsql) {
+        if (!translated && logsql != null) {
+            translated = true;
+            if (listeners != null) {
+                listeners.translated(this, logsql);
+            }
+        }
+    }
+
+    /**
+     * Counts a row decoded from the response, whether or not it is kept.
+     */
+    void rowDecoded() {
+        rowsDecoded++;
+        if (listeners != null) {
+            if (rowsDecoded == 1) {
+                listeners.firstRow(this);
+            }
+            if (rowsDecoded == nextProgressRows) {
+                nextProgressRows += progressRows;
+                listeners.progress(this, rowsDecoded, bytesReceived);
+            }
+        }
+    }
+
+    void finished(LogsqlQueryResult result) {
+        endNanos = System.nanoTime();
+        this.rows = result.getRowCount();
+        if (events != null) {
+            events.finished(this, result);
+        }
+        if (listeners != null) {
+            // results that were not decoded from a response, such as cached ones
+            translated(result.getLogsql());
+            if (rowsDecoded == 0 && rows > 0) {
+                listeners.firstRow(this);
+            }
+            listeners.completed(this, rows);
+        }
+    }
+
+    void failed(Throwable error) {
+        endNanos = System.nanoTime();
+        if (events != null) {
+            events.finished(this, null);
+        }
+        if (listeners != null) {
+            listeners.failed(this, error);
+        }
+    }
+
+    /**
+     * Returns {@code body}, the response body as received, timing and counting its reads.
+     */
+    InputStream timeTransfer(InputStream body) {
+        return new TransferStream(body);
+    }
+
+    /**
+     * Returns {@code body}, the decompressed response body, counting its bytes.
+     */
+    InputStream countDecoded(InputStream body) {
+        return new FilterInputStream(body) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    bytesDecoded++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    bytesDecoded += n;
+                }
+                return n;
+            }
+        };
+    }
+
+    @Override
+    public String getSql() {
+        return sql;
+    }
+
+    @Override
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Returns the flight recorder events of the execution, or {@code null} when none is recorded.
+     */
+    LogsqlQueryEvents getEvents() {
+        return events;
+    }
+
+    @Override
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * Reports whether the response of the service was read, which is when the phase timings are known.
+     */
+    boolean hasResponseBody() {
+        return bodyNanos != 0;
+    }
+
+    @Override
+    public long getResponseNanos() {
+        return responseNanos == 0 ? 0 : responseNanos - startNanos;
+    }
+
+    @Override
+    public long getTransferNanos() {
+        return transferNanos;
+    }
+
+    @Override
+    public long getDecodeNanos() {
+        return bodyNanos == 0 ? 0 : Math.max(0, bodyNanos - responseNanos - transferNanos);
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return (endNanos == 0 ? System.nanoTime() : endNanos) - startNanos;
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    @Override
+    public long getRowsDecoded() {
+        return rowsDecoded;
+    }
+
+    @Override
+    public long getTranslationNanos() {
+        return translationNanos;
+    }
+
+    @Override
+    public long getServerNanos() {
+        return serverNanos;
+    }
+
+    @Override
+    public long getRowsReturned() {
+        return rows;
+    }
+
+    @Override
+    public long getBytesDecoded() {
+        return bytesDecoded;
+    }
+
+    private final class TransferStream extends FilterInputStream {
+
+        TransferStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = super.read();
+            transferNanos += System.nanoTime() - start;
+            counted(b < 0 ? -1 : 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int n = super.read(b, off, len);
+            transferNanos += System.nanoTime() - start;
+            counted(n);
+            return n;
+        }
+
+        private void counted(int n) {
+            if (n > 0) {
+                if (bytesReceived == 0 && events != null) {
+                    events.firstByteRead();
+                }
+                bytesReceived += n;
+            } else if (n < 0 && events != null) {
+                events.bodyCompleted();
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decodes query responses of the sql-to-logsql service into {@link LogsqlQueryResult}s.
+ *
+ * <p>Two representations are understood. The JSON envelope ({@code application/json}) carries the rows as
+ * one escaped NDJSON string in its {@code data} field. The NDJSON representation ({@code application/x-ndjson})
+ * starts with a {@code {"logsql": ...}} object followed by the raw rows, which are parsed directly from the
+ * response stream. The Smile representation ({@code application/x-jackson-smile}) is the same document in
+ * binary JSON, where property names repeated by every row are back-references to their first occurrence; it
+ * goes through the same row assembly as NDJSON. NDJSON rows are decoded by a {@link LogsqlParallelDecoder}
+ * when one is configured, or when long strings must be read from the response bytes. Under
+ * {@link LogsqlResultLimits} every representation ends at the last complete row read before a limit tripped.
+ */
+final class LogsqlResponseReader {
+
+    static final String JSON_CONTENT_TYPE = "application/json";
+    static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+    static final String SMILE_CONTENT_TYPE = "application/x-jackson-smile";
+
+    private static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE =
+            new TypeReference<LinkedHashMap<String, Object>>() {
+            };
+
+    private final ObjectMapper mapper;
+    private final SmileFactory smileFactory;
+    private final LogsqlParallelDecoder parallelDecoder;
+    // reads NDJSON in chunks when strings must be taken from the response bytes
+    private final LogsqlParallelDecoder chunkDecoder;
+
+    LogsqlResponseReader(ObjectMapper mapper, LogsqlParallelDecoder parallelDecoder) {
+        this.mapper = mapper;
+        this.smileFactory = new SmileFactory(mapper);
+        this.parallelDecoder = parallelDecoder;
+        this.chunkDecoder = parallelDecoder != null
+                ? parallelDecoder
+                : new LogsqlParallelDecoder(mapper, 1, LogsqlConnectionConfig.DEFAULT_DECODE_QUEUE_BYTES, false);
+    }
+
+    /**
+     * Returns the {@code Accept} header value negotiating the given protocol version and row format.
+     */
+    static String acceptHeader(int protocolVersion, String rowFormat) {
+        if (protocolVersion < 2) {
+            return JSON_CONTENT_TYPE;
+        }
+        if ("smile".equals(rowFormat)) {
+            return SMILE_CONTENT_TYPE + ", " + NDJSON_CONTENT_TYPE + ";q=0.9, " + JSON_CONTENT_TYPE + ";q=0.8";
+        }
+        return NDJSON_CONTENT_TYPE + ", " + JSON_CONTENT_TYPE + ";q=0.9";
+    }
+
+    LogsqlQueryResult read(InputStream body, String contentType, int maxRows) throws SQLException {
+        return read(body, contentType, maxRows, null, null);
+    }
+
+    /**
+     * Decodes a response, accounting its rows to {@code memory} when it is not {@code null}, which is released
+     * when decoding fails, and reading it under {@code limits} when they are not {@code null}.
+     */
+    LogsqlQueryResult read(InputStream body, String contentType, int maxRows, LogsqlResultMemory memory,
+                           LogsqlResultLimits limits) throws SQLException {
+        return read(body, contentType, maxRows, memory, limits, null);
+    }
+
+    /**
+     * Decodes a response like {@link #read(InputStream, String, int, LogsqlResultMemory, LogsqlResultLimits)},
+     * reporting its translation and rows to {@code trace} unless it is {@code null}.
+     */
+    LogsqlQueryResult read(InputStream body, String contentType, int maxRows, LogsqlResultMemory memory,
+                           LogsqlResultLimits limits, LogsqlQueryTrace trace) throws SQLException {
+        // closing the body before its end aborts the exchange
+        try (InputStream in = limits == null ? body : limits.limit(body)) {
+            String mediaType = mediaType(contentType);
+            LogsqlQueryResult result;
+            boolean boundedStrings = limits != null && limits.getMaxFieldChars() > 0
+                    || memory != null && memory.getLargeFields() != null;
+            if (NDJSON_CONTENT_TYPE.equals(mediaType) && (parallelDecoder != null || boundedStrings)) {
+                result = chunkDecoder.read(in, maxRows, memory, limits, trace);
+            } else if (NDJSON_CONTENT_TYPE.equals(mediaType)) {
+                result = readStream(constrain(mapper.getFactory(), limits), in, maxRows, memory, limits, trace);
+            } else if (SMILE_CONTENT_TYPE.equals(mediaType)) {
+                result = readStream(constrain(smileFactory, limits), in, maxRows, memory, limits, trace);
+            } else {
+                result = readEnvelope(in, maxRows, memory, limits, trace);
+            }
+            return limits == null ? result : limits.finish(result);
+        } catch (IOException e) {
+            release(memory);
+            throw new SQLException("Failed to read query response", e);
+        } catch (SQLException | RuntimeException e) {
+            release(memory);
+            throw e;
+        }
+    }
+
+    private static int maxFieldChars(LogsqlResultLimits limits) {
+        return limits == null ? 0 : limits.getMaxFieldChars();
+    }
+
+    private static JsonFactory constrain(JsonFactory factory, LogsqlResultLimits limits) {
+        return limits == null ? factory : limits.constrain(factory);
+    }
+
+    private static void release(LogsqlResultMemory memory) {
+        if (memory != null) {
+            memory.release();
+        }
+    }
+
+    private LogsqlQueryResult readStream(JsonFactory factory, InputStream in, int maxRows, LogsqlResultMemory memory,
+                                         LogsqlResultLimits limits, LogsqlQueryTrace trace)
+            throws SQLException, IOException {
+        LogsqlResultBuilder builder = new LogsqlResultBuilder(maxRows, null, memory, maxFieldChars(limits))
+                .trace(trace);
+        String translated = null;
+        try (JsonParser parser = factory.createParser(in)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return builder.build(null);
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new SQLException("Failed to parse response header: expected a JSON object");
+            }
+            Map<String, Object> header = mapper.readValue(parser, MAP_TYPE);
+            Object logsql = header.get("logsql");
+            translated = logsql == null ? null : logsql.toString();
+            builder.translated(translated);
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new SQLException("Failed to parse response row at "
+                            + describe(parser.getCurrentLocation()) + ": expected a JSON object");
+                }
+                builder.addRow(mapper.readValue(parser, MAP_TYPE));
+            }
+        } catch (IOException e) {
+            if (limits == null || !limits.trip(e)) {
+                throw e;
+            }
+        }
+        return builder.build(translated);
+    }
+
+    private LogsqlQueryResult readEnvelope(InputStream in, int maxRows, LogsqlResultMemory memory,
+                                           LogsqlResultLimits limits, LogsqlQueryTrace trace)
+            throws SQLException, IOException {
+        String json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        LogsqlResultBuilder builder = new LogsqlResultBuilder(maxRows, null, memory, maxFieldChars(limits))
+                .trace(trace);
+        Map<String, Object> resultMap;
+        if (json.isBlank()) {
+            resultMap = Map.of();
+        } else {
+            try {
+                resultMap = mapper.readValue(json, MAP_TYPE);
+            } catch (IOException e) {
+                if (limits != null && limits.trip(e)) {
+                    // the rows are one string of the envelope, so none of them survives a cut-off response
+                    return builder.build(null);
+                }
+                throw new SQLException("Failed to parse response JSON", e);
+            }
+        }
+        String translated = (String) resultMap.getOrDefault("logsql", null);
+        String data = (String) resultMap.getOrDefault("data", "");
+        builder.translated(translated);
+
+        JsonFactory rowFactory = constrain(mapper.getFactory(), limits);
+        if (data != null && !data.isBlank()) {
+            int start = 0;
+            while (start < data.length()) {
+                int end = data.indexOf('\n', start);
+                if (end < 0) {
+                    end = data.length();
+                }
+                // trimming also drops the carriage return of CRLF line breaks
+                String trimmed = data.substring(start, end).trim();
+                if (!trimmed.isEmpty()) {
+                    Map<String, Object> row = parseRow(rowFactory, trimmed, limits);
+                    if (row == null) {
+                        break;
+                    }
+                    builder.addRow(row);
+                }
+                start = end + 1;
+            }
+        }
+        return builder.build(translated);
+    }
+
+    /**
+     * Parses one row of an envelope, returning {@code null} when it breaks a limit.
+     */
+    private Map<String, Object> parseRow(JsonFactory factory, String jsonLine, LogsqlResultLimits limits)
+            throws SQLException {
+        try (JsonParser parser = factory.createParser(jsonLine)) {
+            return mapper.readValue(parser, MAP_TYPE);
+        } catch (IOException e) {
+            if (limits != null && limits.trip(e)) {
+                return null;
+            }
+            throw new SQLException("Failed to parse response row: " + jsonLine, e);
+        }
+    }
+
+    private static String describe(JsonLocation location) {
+        // binary formats have no lines, only byte offsets
+        return location.getLineNr() > 0 ? "line " + location.getLineNr() : "byte " + location.getByteOffset();
+    }
+
+    private static String mediaType(String contentType) {
+        if (contentType == null) {
+            return JSON_CONTENT_TYPE;
+        }
+        int separator = contentType.indexOf(';');
+        String type = separator < 0 ? contentType : contentType.substring(0, separator);
+        return type.trim().toLowerCase(Locale.ROOT);
+    }
+}
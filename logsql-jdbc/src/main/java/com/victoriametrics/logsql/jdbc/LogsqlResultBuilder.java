@@ -0,0 +1,370 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assembles decoded response rows into a column-aligned {@link LogsqlQueryResult}.
+ * Columns are ordered by first appearance; column types are inferred from the first non-null value.
+ * Rows are either added decoded, or as raw JSON with the offsets of their values, in which case the result
+ * is backed by a {@link LogsqlLazyRowStore}. With a {@link LogsqlResultMemory}, rows are charged to its budgets and
+ * decoded into its off-heap or spill writer where it provides one. String values are cut off at the max field size,
+ * and large ones are moved to the {@link LogsqlFieldSpill} of the memory when it has one.
+ */
+final class LogsqlResultBuilder {
+
+    // raw rows are copied out of a chunk when they take up less than this share of it
+    private static final int COMPACT_RATIO = 4;
+
+    private final int maxRows;
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+    private final List<String> columnNames = new ArrayList<>();
+    private final List<LogsqlColumnStore.Column> columns = new ArrayList<>();
+    // rows held in memory, by the columns or the off-heap writer
+    private int rowCount;
+    private final List<LogsqlLazyRowStore.Row> rawRows = new ArrayList<>();
+    private final ObjectReader valueReader;
+    private final LogsqlResultMemory memory;
+    private final int maxFieldChars;
+    private final LogsqlFieldSpill largeFields;
+    private Object[] rowValues;
+    private int[] columnTypes = new int[16];
+    private String[] lastNames;
+    private int[] lastColumns;
+    private LogsqlQueryTrace trace;
+
+    LogsqlResultBuilder(int maxRows) {
+        this(maxRows, null);
+    }
+
+    LogsqlResultBuilder(int maxRows, ObjectReader valueReader) {
+        this(maxRows, valueReader, null);
+    }
+
+    LogsqlResultBuilder(int maxRows, ObjectReader valueReader, LogsqlResultMemory memory) {
+        this(maxRows, valueReader, memory, 0);
+    }
+
+    LogsqlResultBuilder(int maxRows, ObjectReader valueReader, LogsqlResultMemory memory, int maxFieldChars) {
+        this.maxRows = maxRows;
+        this.valueReader = valueReader;
+        this.memory = memory;
+        this.maxFieldChars = maxFieldChars;
+        this.largeFields = memory == null ? null : memory.getLargeFields();
+        this.rowValues = memory == null ? null : new Object[16];
+    }
+
+    /**
+     * Reports the translation and every row added to {@code trace}, which may be {@code null}.
+     */
+    LogsqlResultBuilder trace(LogsqlQueryTrace trace) {
+        this.trace = trace;
+        return this;
+    }
+
+    /**
+     * Takes note of the translated LogsQL read from the response header, before any row.
+     */
+    void translated(String logsql) {
+        if (trace != null) {
+            trace.translated(logsql);
+        }
+    }
+
+    void addRow(Map<String, Object> row) throws SQLException {
+        if (trace != null) {
+            trace.rowDecoded();
+        }
+        boolean retained = maxRows <= 0 || getRowCount() < maxRows;
+        if (retained && memory != null && memory.isBudgeted()) {
+            memory.reserve(LogsqlResultMemory.estimateRow(row.values()));
+        }
+        boolean encoded = isEncoding();
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            int column = columnIndex(entry.getKey());
+            if (!retained) {
+                continue;
+            }
+            Object value = entry.getValue();
+            if ((maxFieldChars > 0 || largeFields != null)
+                    && (value instanceof String || value instanceof LogsqlClob)) {
+                value = fieldValue(value);
+            }
+            if (encoded) {
+                rowValues[column] = value;
+            } else {
+                columns.get(column).set(rowCount, value);
+            }
+            if (value != null && columnTypes[column] == Types.NULL) {
+                columnTypes[column] = inferType(value);
+            }
+        }
+        if (!retained) {
+            return;
+        }
+        if (encoded) {
+            appendEncoded();
+        } else {
+            rowCount++;
+        }
+    }
+
+    /**
+     * Adds a row kept as raw JSON. {@code spans} holds the {@code [start, end)} range in {@code bytes} of the
+     * value of every field in {@code names}; rows sharing their field names should share the array.
+     */
+    void addRawRow(byte[] bytes, String[] names, int[] spans) throws SQLException {
+        if (trace != null) {
+            trace.rowDecoded();
+        }
+        int[] columns = names == lastNames ? lastColumns : columnIndexes(names);
+        if (maxRows > 0 && getRowCount() >= maxRows) {
+            return;
+        }
+        if (memory != null && memory.isBudgeted() && names.length > 0) {
+            // the raw bytes of the row and its offsets
+            memory.reserve(LogsqlResultMemory.ROW_OVERHEAD + 8L * names.length
+                    + spans[2 * names.length - 1] - spans[0]);
+        }
+        if (isEncoding()) {
+            for (int i = 0; i < names.length; i++) {
+                Object value;
+                try {
+                    value = LogsqlLazyRowStore.decode(valueReader, bytes, spans[2 * i], spans[2 * i + 1],
+                            maxFieldChars, largeFieldBytes());
+                    if (value instanceof LogsqlClob) {
+                        value = fieldValue(value);
+                    }
+                } catch (IOException e) {
+                    throw new SQLException("Failed to decode value of field " + names[i], e);
+                }
+                rowValues[columns[i]] = value;
+                if (value != null && columnTypes[columns[i]] == Types.NULL) {
+                    columnTypes[columns[i]] = inferType(value);
+                }
+            }
+            appendEncoded();
+            return;
+        }
+        int[] columnSpans = new int[2 * columnNames.size()];
+        for (int i = 0; i < names.length; i++) {
+            int column = columns[i];
+            int start = spans[2 * i];
+            int end = spans[2 * i + 1];
+            columnSpans[2 * column] = start;
+            columnSpans[2 * column + 1] = end;
+            if (columnTypes[column] == Types.NULL && bytes[start] == '"') {
+                columnTypes[column] = Types.VARCHAR;
+            } else if (columnTypes[column] == Types.NULL && bytes[start] != 'n') {
+                try {
+                    columnTypes[column] = inferType(LogsqlLazyRowStore.decode(valueReader, bytes, start, end, 0, 0));
+                } catch (IOException e) {
+                    throw new SQLException("Failed to decode value of field " + names[i], e);
+                }
+            }
+        }
+        rawRows.add(new LogsqlLazyRowStore.Row(bytes, columnSpans));
+    }
+
+    /**
+     * Returns the number of rows added as raw JSON and kept so far.
+     */
+    int getRawRowCount() {
+        return rawRows.size();
+    }
+
+    /**
+     * Copies the raw rows kept from {@code firstRow} on out of {@code chunk}, the buffer they were read into, when
+     * they take up less than a quarter of it, so that a few rows kept from a large response or a result cut short
+     * by {@code maxRows} do not hold on to the whole buffer.
+     */
+    void compactRawRows(byte[] chunk, int firstRow) {
+        long retained = 0;
+        for (int i = firstRow; i < rawRows.size(); i++) {
+            int[] spans = rawRows.get(i).spans;
+            retained += extentEnd(spans) - extentStart(spans);
+        }
+        if (retained == 0 || retained * COMPACT_RATIO >= chunk.length) {
+            return;
+        }
+        byte[] compacted = new byte[(int) retained];
+        int offset = 0;
+        for (int i = firstRow; i < rawRows.size(); i++) {
+            LogsqlLazyRowStore.Row row = rawRows.get(i);
+            int start = extentStart(row.spans);
+            int end = extentEnd(row.spans);
+            System.arraycopy(chunk, start, compacted, offset, end - start);
+            int[] spans = new int[row.spans.length];
+            for (int j = 0; j < spans.length; j += 2) {
+                if (row.spans[j] != row.spans[j + 1]) {
+                    spans[j] = row.spans[j] - start + offset;
+                    spans[j + 1] = row.spans[j + 1] - start + offset;
+                }
+            }
+            rawRows.set(i, new LogsqlLazyRowStore.Row(compacted, spans));
+            offset += end - start;
+        }
+    }
+
+    private static int extentStart(int[] spans) {
+        int start = Integer.MAX_VALUE;
+        for (int j = 0; j < spans.length; j += 2) {
+            if (spans[j] != spans[j + 1]) {
+                start = Math.min(start, spans[j]);
+            }
+        }
+        return start == Integer.MAX_VALUE ? 0 : start;
+    }
+
+    private static int extentEnd(int[] spans) {
+        int end = 0;
+        for (int j = 0; j < spans.length; j += 2) {
+            if (spans[j] != spans[j + 1]) {
+                end = Math.max(end, spans[j + 1]);
+            }
+        }
+        return end;
+    }
+
+    int getRowCount() {
+        LogsqlSpillRowStore.Writer spill = memory == null ? null : memory.getSpill();
+        return rowCount + rawRows.size() + (spill == null ? 0 : spill.getRowCount());
+    }
+
+    LogsqlQueryResult build(String logsql) throws SQLException {
+        int columnCount = columnNames.size();
+        int[] types = Arrays.copyOf(columnTypes, columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            if (types[i] == Types.NULL) {
+                types[i] = Types.VARCHAR;
+            }
+        }
+        LogsqlRowStore store;
+        if (memory != null && memory.getOffHeap() != null) {
+            store = memory.getOffHeap().build();
+        } else if (rawRows.isEmpty()) {
+            store = new LogsqlColumnStore(columns, rowCount);
+        } else {
+            store = new LogsqlLazyRowStore(valueReader, rawRows, maxFieldChars, largeFieldBytes());
+        }
+        if (memory != null) {
+            store = memory.seal(store, columnCount);
+        }
+        return new LogsqlQueryResult(logsql, columnNames, types, store);
+    }
+
+    /**
+     * Cuts off a string value at the max field size, and moves it to the large field spill when it is large.
+     */
+    private Object fieldValue(Object value) throws SQLException {
+        if (value instanceof LogsqlClob) {
+            // the bytes a value read from the response refers to are not kept
+            return largeFields == null ? value.toString() : ((LogsqlClob) value).spill(largeFields);
+        }
+        String text = truncate((String) value, maxFieldChars);
+        if (largeFields != null && text.length() > largeFields.getThreshold()) {
+            return largeFields.write(text);
+        }
+        return text;
+    }
+
+    private int largeFieldBytes() {
+        return largeFields == null ? 0 : largeFields.getThreshold();
+    }
+
+    /**
+     * Returns the first {@code maxChars} characters of {@code text}, or {@code text} when it is not longer or
+     * {@code maxChars} is {@code 0}. A surrogate pair is never split.
+     */
+    static String truncate(String text, int maxChars) {
+        if (maxChars <= 0 || text.length() <= maxChars) {
+            return text;
+        }
+        int end = Character.isHighSurrogate(text.charAt(maxChars - 1)) ? maxChars - 1 : maxChars;
+        return text.substring(0, end);
+    }
+
+    /**
+     * Reports whether rows are collected in {@code rowValues} and encoded, rather than stored on the heap.
+     */
+    private boolean isEncoding() {
+        return memory != null && (memory.getSpill() != null || memory.getOffHeap() != null);
+    }
+
+    private void appendEncoded() throws SQLException {
+        int width = columnNames.size();
+        if (memory.getSpill() != null) {
+            memory.getSpill().append(rowValues, width);
+        } else {
+            memory.getOffHeap().append(rowValues, width);
+            rowCount++;
+        }
+        Arrays.fill(rowValues, 0, width, null);
+    }
+
+    private int[] columnIndexes(String[] names) {
+        int[] columns = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            columns[i] = columnIndex(names[i]);
+        }
+        lastNames = names;
+        lastColumns = columns;
+        return columns;
+    }
+
+    private int columnIndex(String name) {
+        Integer index = columnIndexes.get(name);
+        if (index != null) {
+            return index;
+        }
+        int column = columnNames.size();
+        columnIndexes.put(name, column);
+        columnNames.add(name);
+        if (memory != null && column >= rowValues.length) {
+            rowValues = Arrays.copyOf(rowValues, rowValues.length * 2);
+        }
+        if (!isEncoding()) {
+            columns.add(new LogsqlColumnStore.Column(rowCount));
+        }
+        if (column >= columnTypes.length) {
+            columnTypes = Arrays.copyOf(columnTypes, columnTypes.length * 2);
+        }
+        return column;
+    }
+
+    static int inferType(Object value) {
+        if (value instanceof Boolean) {
+            return Types.BOOLEAN;
+        }
+        if (value instanceof Byte || value instanceof Short || value instanceof Integer) {
+            return Types.INTEGER;
+        }
+        if (value instanceof Long) {
+            return Types.BIGINT;
+        }
+        if (value instanceof Float) {
+            return Types.REAL;
+        }
+        if (value instanceof Double) {
+            return Types.DOUBLE;
+        }
+        if (value instanceof java.math.BigDecimal) {
+            return Types.NUMERIC;
+        }
+        if (value instanceof java.time.temporal.Temporal || value instanceof java.util.Date) {
+            return Types.TIMESTAMP;
+        }
+        if (value instanceof byte[]) {
+            return Types.VARBINARY;
+        }
+        return Types.VARCHAR;
+    }
+}
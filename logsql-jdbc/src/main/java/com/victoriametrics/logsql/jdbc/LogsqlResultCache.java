@@ -0,0 +1,394 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Disk-backed tier for decoded query results.
+ *
+ * <p>Entries are stored as {@link LogsqlColumnarFile}s named after a hash of the query and the connection
+ * settings that influence its result, and are served back through memory-mapped buffers. Writes go to a
+ * temporary file that is forced to disk and atomically renamed, so a crash never leaves a partial entry
+ * behind. Once the directory exceeds its size budget, entries are evicted in least-recently-used order.
+ * Connections configured with the same directory share a single instance, so they must agree on its size
+ * budget and refresh concurrency. The instance is released when the last of them is closed, after which the
+ * directory may be opened again with other settings.
+ *
+ * <p>Expired entries may still be served for a bounded time while a background task, limited in number per
+ * cache, fetches a fresh result.
+ */
+final class LogsqlResultCache {
+
+    private static final Logger LOGGER = Logger.getLogger(LogsqlResultCache.class.getName());
+
+    private static final String FILE_SUFFIX = ".lsqc";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Duration STALE_TEMP_AGE = Duration.ofMinutes(10);
+    private static final Map<Path, LogsqlResultCache> INSTANCES = new ConcurrentHashMap<>();
+    private static final ExecutorService REFRESHER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "logsql-cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path directory;
+    private final long maxBytes;
+    private final int maxRefreshes;
+    private final Semaphore refreshPermits;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    // connections using the instance, guarded by INSTANCES
+    private int references;
+
+    private LogsqlResultCache(Path directory, long maxBytes, int maxRefreshes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxRefreshes = maxRefreshes;
+        this.refreshPermits = new Semaphore(maxRefreshes);
+        Files.createDirectories(directory);
+        loadEntries();
+    }
+
+    /**
+     * Returns the cache of {@code directory}, opening it unless another connection did already. The settings must
+     * match those the directory was opened with, since the instance and its budget are shared. Every cache returned
+     * must be {@link #release() released} once.
+     */
+    static LogsqlResultCache open(Path directory, long maxBytes, int maxRefreshes) throws SQLException {
+        Path normalized = directory.toAbsolutePath().normalize();
+        LogsqlResultCache cache;
+        try {
+            cache = INSTANCES.compute(normalized, (dir, open) -> {
+                if (open == null) {
+                    try {
+                        open = new LogsqlResultCache(dir, maxBytes, maxRefreshes);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                if (open.matches(maxBytes, maxRefreshes)) {
+                    open.references++;
+                }
+                return open;
+            });
+        } catch (UncheckedIOException e) {
+            throw new SQLException("Failed to open result cache directory " + normalized, e.getCause());
+        }
+        if (!cache.matches(maxBytes, maxRefreshes)) {
+            throw new SQLException("Result cache directory " + normalized + " is already open with cacheMaxBytes="
+                    + cache.maxBytes + " and cacheRefreshConcurrency=" + cache.maxRefreshes
+                    + ", which differ from cacheMaxBytes=" + maxBytes + " and cacheRefreshConcurrency="
+                    + maxRefreshes);
+        }
+        return cache;
+    }
+
+    private boolean matches(long maxBytes, int maxRefreshes) {
+        return this.maxBytes == maxBytes && this.maxRefreshes == maxRefreshes;
+    }
+
+    /**
+     * Hands back a cache returned by {@link #open}, closing the instance when no connection uses it anymore.
+     * Refreshes still running keep writing to the directory, which a later instance picks up when it is opened.
+     */
+    void release() {
+        INSTANCES.computeIfPresent(directory, (dir, cache) -> {
+            if (cache != this) {
+                return cache;
+            }
+            return --references == 0 ? null : this;
+        });
+    }
+
+    /**
+     * Only data queries are cached; view management and catalog statements always reach the service.
+     */
+    static boolean isCacheable(String sql) {
+        String trimmed = sql.trim();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        switch (trimmed.substring(0, end).toUpperCase(Locale.ROOT)) {
+            case "SELECT":
+            case "WITH":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static String key(LogsqlConnectionConfig config, String sql, int maxRows) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        update(digest, config.getScheme());
+        update(digest, config.getHost());
+        update(digest, Integer.toString(config.getPort()));
+        update(digest, config.getBasePath());
+        update(digest, config.getEndpoint());
+        update(digest, config.getBearerToken());
+        for (Map.Entry<String, String> header : new TreeMap<>(config.getHeaders()).entrySet()) {
+            update(digest, header.getKey());
+            update(digest, header.getValue());
+        }
+        update(digest, Integer.toString(maxRows));
+        update(digest, sql);
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+
+    /**
+     * A cached result together with whether it outlived its time to live.
+     */
+    static final class Lookup {
+        final LogsqlQueryResult result;
+        final long expiredForMillis;
+
+        Lookup(LogsqlQueryResult result, long expiredForMillis) {
+            this.result = result;
+            this.expiredForMillis = expiredForMillis;
+        }
+
+        boolean isStale() {
+            return expiredForMillis > 0;
+        }
+    }
+
+    /**
+     * Returns the cached result for {@code key}, or {@code null} when it is absent or older than {@code ttl}.
+     */
+    LogsqlQueryResult get(String key, Duration ttl, ObjectMapper mapper) {
+        Lookup lookup = lookup(key, ttl, Duration.ZERO, mapper);
+        return lookup == null ? null : lookup.result;
+    }
+
+    /**
+     * Returns the cached entry for {@code key} unless it is absent or expired for longer than {@code maxStale}.
+     */
+    Lookup lookup(String key, Duration ttl, Duration maxStale, ObjectMapper mapper) {
+        Path file = directory.resolve(key + FILE_SUFFIX);
+        LogsqlColumnarFile.Mapped mapped;
+        try {
+            mapped = LogsqlColumnarFile.map(file, mapper);
+        } catch (NoSuchFileException e) {
+            forget(key);
+            return null;
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Discarding unreadable result cache entry " + file, e);
+            remove(key);
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        long expiredFor = now - (mapped.createdAt + ttl.toMillis());
+        if (expiredFor > maxStale.toMillis()) {
+            remove(key);
+            return null;
+        }
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                track(key, file);
+            }
+        }
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(now));
+        } catch (IOException ignored) {
+            // recency is best effort, the in-memory order is authoritative
+        }
+        return new Lookup(mapped.result, Math.max(0L, expiredFor));
+    }
+
+    /**
+     * Repopulates {@code key} in the background unless a refresh of it is already running or the number of
+     * concurrent refreshes is exhausted, in which case a later lookup of the stale entry tries again. The result of
+     * {@code loader} is closed once it is stored; when it is {@code null}, the entry is left as it is.
+     *
+     * @return whether a refresh was scheduled
+     */
+    boolean refreshAsync(String key, Callable<LogsqlQueryResult> loader, ObjectMapper mapper) {
+        if (!refreshing.add(key)) {
+            return false;
+        }
+        if (!refreshPermits.tryAcquire()) {
+            refreshing.remove(key);
+            return false;
+        }
+        try {
+            REFRESHER.execute(() -> {
+                try {
+                    LogsqlQueryResult result = loader.call();
+                    if (result != null) {
+                        try {
+                            put(key, result, mapper);
+                        } finally {
+                            result.getRows().close();
+                        }
+                    }
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Background refresh of result cache entry " + key + " failed", e);
+                } finally {
+                    refreshing.remove(key);
+                    refreshPermits.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+            refreshPermits.release();
+            return false;
+        }
+    }
+
+    void put(String key, LogsqlQueryResult result, ObjectMapper mapper) {
+        Path file = directory.resolve(key + FILE_SUFFIX);
+        Path temp = directory.resolve(key + "." + Long.toHexString(System.nanoTime()) + TEMP_SUFFIX);
+        try {
+            long size = LogsqlColumnarFile.write(temp, result, System.currentTimeMillis(), mapper);
+            if (size > maxBytes) {
+                Files.deleteIfExists(temp);
+                // an older result of the query must not outlive the one that could not be stored
+                remove(key);
+                return;
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory();
+            synchronized (this) {
+                Long previous = entries.put(key, size);
+                totalBytes += size - (previous == null ? 0L : previous);
+                evict(key);
+            }
+        } catch (IOException | SQLException e) {
+            LOGGER.log(Level.FINE, "Failed to write result cache entry " + file, e);
+            deleteQuietly(temp);
+        }
+    }
+
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            deleteQuietly(directory.resolve(eldest.getKey() + FILE_SUFFIX));
+        }
+    }
+
+    private void remove(String key) {
+        forget(key);
+        deleteQuietly(directory.resolve(key + FILE_SUFFIX));
+    }
+
+    private synchronized void forget(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+    }
+
+    private void track(String key, Path file) {
+        try {
+            long size = Files.size(file);
+            entries.put(key, size);
+            totalBytes += size;
+        } catch (IOException ignored) {
+            // the entry disappeared concurrently
+        }
+    }
+
+    private void loadEntries() throws IOException {
+        List<Path> files = new ArrayList<>();
+        long staleBefore = System.currentTimeMillis() - STALE_TEMP_AGE.toMillis();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(FILE_SUFFIX)) {
+                    files.add(file);
+                } else if (name.endsWith(TEMP_SUFFIX) && lastModified(file) < staleBefore) {
+                    // left behind by a writer that crashed before renaming its entry
+                    deleteQuietly(file);
+                }
+            }
+        }
+        files.sort(Comparator.comparingLong(LogsqlResultCache::lastModified));
+        synchronized (this) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                track(name.substring(0, name.length() - FILE_SUFFIX.length()), file);
+            }
+            evict(null);
+        }
+    }
+
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // not supported on every platform; the entry itself has already been forced
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // a mapped file may not be deletable on some platforms, eviction is retried later
+        }
+    }
+}
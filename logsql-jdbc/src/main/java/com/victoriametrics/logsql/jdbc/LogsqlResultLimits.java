@@ -0,0 +1,215 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+
+/**
+ * Size limits of one query execution, enforced while its response is read.
+ *
+ * <p>{@code maxResultBytes} bounds the decompressed response: the body is read through a stream that ends once the
+ * limit is reached, so the reader stops at the last complete row and the exchange is aborted when the body is
+ * closed. A result assembled from several responses, such as the buckets of a time window, shares the limit.
+ * {@code maxFieldBytes} bounds a single value: decoded strings are checked by the parser while their text is
+ * accumulated, and raw values kept for lazy decoding by the length of their JSON. The first limit to trip ends the
+ * result; depending on the policy the rows read so far are returned with an {@link SQLWarning}, or the execution
+ * fails with SQLState {@code 54000}.
+ *
+ * <p>The JDBC max field size is not a limit of that kind: string values are silently cut off at
+ * {@code maxFieldChars} characters while they are decoded, and the result is otherwise complete.
+ */
+final class LogsqlResultLimits {
+
+    static final String LIMIT_EXCEEDED_STATE = "54000";
+    static final String TRUNCATED_STATE = "01004";
+
+    private final long maxResultBytes;
+    private final long maxFieldBytes;
+    private final int maxFieldChars;
+    private final boolean failFast;
+    private long remainingBytes;
+    private String exceeded;
+
+    private LogsqlResultLimits(long maxResultBytes, long maxFieldBytes, int maxFieldChars, boolean failFast) {
+        this.maxResultBytes = maxResultBytes;
+        this.maxFieldBytes = maxFieldBytes;
+        this.maxFieldChars = maxFieldChars;
+        this.failFast = failFast;
+        this.remainingBytes = maxResultBytes;
+    }
+
+    /**
+     * Returns the limits of one execution, or {@code null} when none is set.
+     */
+    static LogsqlResultLimits of(long maxResultBytes, long maxFieldBytes, int maxFieldChars,
+                                 LogsqlConnectionConfig config) {
+        if (maxResultBytes <= 0 && maxFieldBytes <= 0 && maxFieldChars <= 0) {
+            return null;
+        }
+        return new LogsqlResultLimits(maxResultBytes, maxFieldBytes, maxFieldChars,
+                "fail".equals(config.getLimitPolicy()));
+    }
+
+    /**
+     * Returns the number of characters string values are cut off at, or {@code 0}.
+     */
+    int getMaxFieldChars() {
+        return maxFieldChars;
+    }
+
+    /**
+     * Reports whether the result read under these limits holds every row and value of the response.
+     */
+    boolean isComplete() {
+        return exceeded == null && maxFieldChars <= 0;
+    }
+
+    /**
+     * Reports whether one of the limits tripped.
+     */
+    boolean isExceeded() {
+        return exceeded != null;
+    }
+
+    /**
+     * Returns {@code body} cut off once {@code maxResultBytes} bytes were read from it and the bodies limited
+     * before.
+     */
+    InputStream limit(InputStream body) {
+        return maxResultBytes <= 0 ? body : new LimitedInputStream(body);
+    }
+
+    /**
+     * Returns a copy of {@code factory} whose parsers reject strings longer than {@code maxFieldBytes}, or
+     * {@code factory} itself when values are not limited.
+     */
+    JsonFactory constrain(JsonFactory factory) {
+        if (maxFieldBytes <= 0) {
+            return factory;
+        }
+        JsonFactory copy = factory.copy();
+        copy.setStreamReadConstraints(factory.streamReadConstraints().rebuild()
+                .maxStringLength((int) Math.min(maxFieldBytes, Integer.MAX_VALUE))
+                .build());
+        return copy;
+    }
+
+    /**
+     * Checks the raw values of a row, given as the {@code [start, end)} ranges in {@code spans}.
+     *
+     * @throws Exceeded if a value is longer than {@code maxFieldBytes}
+     */
+    void checkRawRow(String[] names, int[] spans) throws Exceeded {
+        if (maxFieldBytes <= 0) {
+            return;
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (spans[2 * i + 1] - spans[2 * i] > maxFieldBytes) {
+                exceeded = "maxFieldBytes of " + maxFieldBytes + " bytes in field " + names[i];
+                throw new Exceeded();
+            }
+        }
+    }
+
+    /**
+     * Reports whether {@code error} was caused by one of the limits, in which case the rows read before it make up
+     * the result.
+     */
+    boolean trip(Throwable error) {
+        if (exceeded != null) {
+            // a response cut off by maxResultBytes usually ends in the middle of a row
+            return true;
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof StreamConstraintsException && maxFieldBytes > 0
+                    && String.valueOf(cause.getMessage()).startsWith("String value length")) {
+                exceeded = "maxFieldBytes of " + maxFieldBytes + " bytes";
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies the policy to a result read under these limits.
+     *
+     * @throws SQLException if a limit tripped and the policy is to fail
+     */
+    LogsqlQueryResult finish(LogsqlQueryResult result) throws SQLException {
+        if (exceeded == null) {
+            return result;
+        }
+        if (failFast) {
+            result.getRows().close();
+            throw new SQLException("Query result exceeds " + exceeded, LIMIT_EXCEEDED_STATE);
+        }
+        return result.withWarning(new SQLWarning("Query result truncated after " + result.getRowCount()
+                + " rows: it exceeds " + exceeded, TRUNCATED_STATE));
+    }
+
+    /**
+     * Signals that a row breaks a limit and the result ends before it.
+     */
+    static final class Exceeded extends SQLException {
+
+        private static final long serialVersionUID = 1L;
+
+        Exceeded() {
+            super("Query result limit exceeded", LIMIT_EXCEEDED_STATE);
+        }
+    }
+
+    private final class LimitedInputStream extends FilterInputStream {
+
+        LimitedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remainingBytes == 0) {
+                if (exceeded == null && in.read() >= 0) {
+                    exceeded = "maxResultBytes of " + maxResultBytes + " bytes";
+                }
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remainingBytes));
+            if (read > 0) {
+                remainingBytes -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remainingBytes));
+            remainingBytes -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remainingBytes);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
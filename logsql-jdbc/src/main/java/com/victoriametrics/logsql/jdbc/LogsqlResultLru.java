@@ -0,0 +1,72 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory least-recently-used map of decoded results, bounded by the total number of rows it retains.
+ */
+final class LogsqlResultLru {
+
+    /**
+     * A retained result, the validator the service sent along with it, if any, and when it was retained, in
+     * milliseconds of the clock of the caller.
+     */
+    static final class Entry {
+        final String validator;
+        final LogsqlQueryResult result;
+        final long retainedAt;
+
+        Entry(String validator, LogsqlQueryResult result, long retainedAt) {
+            this.validator = validator;
+            this.result = result;
+            this.retainedAt = retainedAt;
+        }
+    }
+
+    private final long maxRows;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long rows;
+
+    LogsqlResultLru(long maxRows) {
+        this.maxRows = maxRows;
+    }
+
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Retains {@code result} under {@code key}; results larger than the whole budget are not retained.
+     */
+    synchronized void put(String key, String validator, LogsqlQueryResult result) {
+        put(key, validator, result, 0L);
+    }
+
+    /**
+     * Retains {@code result} under {@code key} like {@link #put(String, String, LogsqlQueryResult)}, recording
+     * {@code retainedAt} with it.
+     */
+    synchronized void put(String key, String validator, LogsqlQueryResult result, long retainedAt) {
+        if (result.getRowCount() > maxRows) {
+            remove(key);
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(validator, result, retainedAt));
+        rows += result.getRowCount() - (previous == null ? 0 : previous.result.getRowCount());
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (rows > maxRows && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            iterator.remove();
+            rows -= eldest.getValue().result.getRowCount();
+        }
+    }
+
+    synchronized void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            rows -= removed.result.getRowCount();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory accounting of one query execution whose result is owned by a single result set.
+ *
+ * <p>Rows are charged against the statement budget and the budget shared by the result sets of the connection, at
+ * an estimate of the heap they occupy once decoded. When a row does not fit, the result either fails with
+ * SQLState {@code 53200}, or that row and all rows after it are spilled to a {@link LogsqlSpillRowStore}. The
+ * reservation is returned when the result set closes the row store, or when decoding fails and
+ * {@link #release()} is called. The {@link LogsqlFieldSpill} of large string values, when they are enabled, shares
+ * the lifetime of the row store.
+ */
+final class LogsqlResultMemory {
+
+    static final String OUT_OF_MEMORY_STATE = "53200";
+
+    // object header, a reference per column and the row's share of its store
+    static final long ROW_OVERHEAD = 32;
+
+    private final ObjectMapper mapper;
+    private final LogsqlConnectionStats stats;
+    private final long statementLimit;
+    private final long connectionLimit;
+    private final boolean failFast;
+    private final Path spillDir;
+    private final LogsqlFieldSpill largeFields;
+    private final LogsqlOffHeapRowStore.Writer offHeap;
+    private LogsqlSpillRowStore.Writer spill;
+    private long reserved;
+
+    LogsqlResultMemory(ObjectMapper mapper, LogsqlConnectionStats stats, LogsqlConnectionConfig config) {
+        this.mapper = mapper;
+        this.stats = stats;
+        this.statementLimit = config.getStatementMemoryBytes();
+        this.connectionLimit = config.getConnectionMemoryBytes();
+        this.failFast = "fail".equals(config.getMemoryPolicy());
+        this.spillDir = config.getSpillDir();
+        this.largeFields = config.getLargeFieldBytes() > 0
+                ? new LogsqlFieldSpill(stats, spillDir, config.getLargeFieldBytes())
+                : null;
+        this.offHeap = config.isOffHeap()
+                ? new LogsqlOffHeapRowStore.Writer(mapper, largeFields, stats, config.getOffHeapArenaBytes())
+                : null;
+    }
+
+    /**
+     * Reports whether results decoded under {@code config} need an accounting of their own.
+     */
+    static boolean isRequired(LogsqlConnectionConfig config) {
+        return config.isOffHeap() || config.getStatementMemoryBytes() > 0 || config.getConnectionMemoryBytes() > 0
+                || config.getLargeFieldBytes() > 0;
+    }
+
+    /**
+     * Returns the spill large string values go to, or {@code null} when they are kept like other values.
+     */
+    LogsqlFieldSpill getLargeFields() {
+        return largeFields;
+    }
+
+    /**
+     * Returns the writer rows kept in memory go to, or {@code null} when they are kept on the heap.
+     */
+    LogsqlOffHeapRowStore.Writer getOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Returns the writer of spilled rows, or {@code null} while rows are kept in memory.
+     */
+    LogsqlSpillRowStore.Writer getSpill() {
+        return spill;
+    }
+
+    boolean isBudgeted() {
+        return statementLimit > 0 || connectionLimit > 0;
+    }
+
+    /**
+     * Charges a row of about {@code bytes} to the budgets. Returns {@code false} when the row, and every row after
+     * it, must be spilled.
+     *
+     * @throws SQLException if the row exceeds a budget and the policy is to fail
+     */
+    boolean reserve(long bytes) throws SQLException {
+        if (spill != null) {
+            return false;
+        }
+        boolean statementFits = statementLimit <= 0 || reserved + bytes <= statementLimit;
+        if (statementFits && stats.tryReserveResultBytes(bytes, connectionLimit)) {
+            reserved += bytes;
+            return true;
+        }
+        if (failFast) {
+            throw new SQLException(statementFits
+                    ? "Query result exceeds the connection memory budget of " + connectionLimit + " bytes"
+                    : "Query result exceeds the statement memory budget of " + statementLimit + " bytes",
+                    OUT_OF_MEMORY_STATE);
+        }
+        spill = new LogsqlSpillRowStore.Writer(mapper, largeFields, stats, spillDir);
+        return false;
+    }
+
+    /**
+     * Returns the store of the complete result: the rows kept in memory followed by the spilled ones. Closing it
+     * returns the reservation.
+     */
+    LogsqlRowStore seal(LogsqlRowStore inMemory, int columnCount) throws SQLException {
+        LogsqlRowStore store = spill == null
+                ? inMemory
+                : LogsqlConcatRowStore.append(inMemory, spill.build(), columnCount);
+        long bytes = reserved;
+        reserved = 0;
+        return bytes == 0 && largeFields == null ? store : new ReservedRowStore(store, stats, bytes, largeFields);
+    }
+
+    /**
+     * Frees everything written for a result that will not be built.
+     */
+    void release() {
+        if (offHeap != null) {
+            offHeap.release();
+        }
+        if (spill != null) {
+            spill.release();
+        }
+        if (largeFields != null) {
+            largeFields.close();
+        }
+        stats.releaseResultBytes(reserved);
+        reserved = 0;
+    }
+
+    /**
+     * Estimates the heap occupied by a decoded row holding {@code values}.
+     */
+    static long estimateRow(Iterable<Object> values) {
+        long size = ROW_OVERHEAD;
+        for (Object value : values) {
+            size += 8 + estimate(value);
+        }
+        return size;
+    }
+
+    static long estimate(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return 0;
+        }
+        if (value instanceof String) {
+            // compact strings only need two bytes per character for text beyond Latin-1
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Double) {
+            return 24;
+        }
+        if (value instanceof BigInteger || value instanceof BigDecimal) {
+            return 64 + value.toString().length();
+        }
+        if (value instanceof Map) {
+            long size = 64;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 40 + estimate(entry.getKey()) + estimate(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof List) {
+            long size = 40;
+            for (Object element : (List<?>) value) {
+                size += 8 + estimate(element);
+            }
+            return size;
+        }
+        return 64;
+    }
+
+    private static final class ReservedRowStore implements LogsqlRowStore {
+
+        private final LogsqlRowStore delegate;
+        private final LogsqlConnectionStats stats;
+        private final LogsqlFieldSpill largeFields;
+        private long bytes;
+
+        ReservedRowStore(LogsqlRowStore delegate, LogsqlConnectionStats stats, long bytes,
+                         LogsqlFieldSpill largeFields) {
+            this.delegate = delegate;
+            this.stats = stats;
+            this.bytes = bytes;
+            this.largeFields = largeFields;
+        }
+
+        @Override
+        public int getRowCount() {
+            return delegate.getRowCount();
+        }
+
+        @Override
+        public Object getValue(int row, int column) throws SQLException {
+            return delegate.getValue(row, column);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+            if (largeFields != null) {
+                largeFields.close();
+            }
+            stats.releaseResultBytes(bytes);
+            bytes = 0;
+        }
+    }
+}
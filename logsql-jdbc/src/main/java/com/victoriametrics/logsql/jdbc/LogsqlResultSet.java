@@ -43,19 +43,28 @@ class LogsqlResultSet implements ResultSet {
     private final LogsqlStatement statement; // may be null for metadata result sets
     private final List<String> columnNames;
     private final Map<String, Integer> columnIndexes;
-    private final List<Object[]> rows;
+    private final LogsqlRowStore rows;
+    private final int rowCount;
     private final int[] columnTypes;
     private final LogsqlResultSetMetaData metaData;
 
     private int cursor = -1;
     private boolean closed = false;
     private boolean wasNull = false;
+    private SQLWarning warnings;
+    private LogsqlQueryEvents events;
+    private LogsqlQueryProfile profile;
 
     LogsqlResultSet(LogsqlStatement statement, List<String> columnNames, int[] columnTypes, List<Object[]> rows) {
+        this(statement, columnNames, columnTypes, new LogsqlListRowStore(rows));
+    }
+
+    LogsqlResultSet(LogsqlStatement statement, List<String> columnNames, int[] columnTypes, LogsqlRowStore rows) {
         this.statement = statement;
         this.columnNames = columnNames;
         this.columnTypes = columnTypes;
         this.rows = rows;
+        this.rowCount = rows.getRowCount();
         this.columnIndexes = new HashMap<>();
         for (int i = 0; i < columnNames.size(); i++) {
             columnIndexes.put(columnNames.get(i), i);
@@ -63,28 +72,65 @@ class LogsqlResultSet implements ResultSet {
         this.metaData = new LogsqlResultSetMetaData(columnNames, columnTypes);
     }
 
+    void addWarning(SQLWarning warning) {
+        if (warnings == null) {
+            warnings = warning;
+        } else {
+            warnings.setNextWarning(warning);
+        }
+    }
+
+    void setProfile(LogsqlQueryProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Reports the iteration and closing of this result set as flight recorder events of its execution.
+     */
+    void setEvents(LogsqlQueryEvents events) {
+        this.events = events;
+        events.iterationStarted();
+    }
+
     void closeFromStatement() {
         closed = true;
-        cursor = rows.size();
+        releaseRows();
+        cursor = rowCount;
     }
 
     @Override
     public boolean next() throws SQLException {
         ensureOpen();
-        if (cursor + 1 < rows.size()) {
+        if (cursor + 1 < rowCount) {
             cursor++;
             wasNull = false;
             return true;
         }
-        cursor = rows.size();
+        cursor = rowCount;
         wasNull = false;
+        if (events != null) {
+            events.iterationFinished(rowCount);
+        }
         return false;
     }
 
+    private void releaseRows() {
+        if (events == null) {
+            rows.close();
+            return;
+        }
+        int rowsRead = Math.min(cursor + 1, rowCount);
+        events.iterationFinished(rowsRead);
+        LogsqlQueryEvents.CloseEvent event = events.closing();
+        rows.close();
+        events.closed(event, rowsRead);
+    }
+
     @Override
     public void close() throws SQLException {
         if (!closed) {
             closed = true;
+            releaseRows();
             if (statement != null) {
                 statement.onResultSetClosed(this);
             }
@@ -99,7 +145,7 @@ class LogsqlResultSet implements ResultSet {
     @Override
     public String getString(int columnIndex) throws SQLException {
         Object value = getColumnValue(columnIndex);
-        return value != null ? value.toString() : null;
+        return value != null ? stringValue(value) : null;
     }
 
     @Override
@@ -163,8 +209,8 @@ class LogsqlResultSet implements ResultSet {
             byte[] bytes = (byte[]) value;
             return bytes.clone();
         }
-        if (value instanceof String) {
-            return ((String) value).getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        if (value instanceof String || value instanceof LogsqlClob) {
+            return stringValue(value).getBytes(java.nio.charset.StandardCharsets.UTF_8);
         }
         throw new SQLException("Cannot convert value to byte[]: " + value.getClass().getName());
     }
@@ -202,7 +248,7 @@ class LogsqlResultSet implements ResultSet {
     @Override
     public String getString(String columnLabel) throws SQLException {
         Object value = getColumnValue(columnLabel);
-        return value != null ? value.toString() : null;
+        return value != null ? stringValue(value) : null;
     }
 
     @Override
@@ -265,8 +311,8 @@ class LogsqlResultSet implements ResultSet {
         if (value instanceof byte[]) {
             return ((byte[]) value).clone();
         }
-        if (value instanceof String) {
-            return ((String) value).getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        if (value instanceof String || value instanceof LogsqlClob) {
+            return stringValue(value).getBytes(java.nio.charset.StandardCharsets.UTF_8);
         }
         throw new SQLException("Cannot convert value to byte[]: " + value.getClass().getName());
     }
@@ -303,12 +349,14 @@ class LogsqlResultSet implements ResultSet {
 
     @Override
     public SQLWarning getWarnings() throws SQLException {
-        return null;
+        ensureOpen();
+        return warnings;
     }
 
     @Override
     public void clearWarnings() throws SQLException {
-        // no warnings produced
+        ensureOpen();
+        warnings = null;
     }
 
     @Override
@@ -323,12 +371,12 @@ class LogsqlResultSet implements ResultSet {
 
     @Override
     public Object getObject(int columnIndex) throws SQLException {
-        return getColumnValue(columnIndex);
+        return objectValue(getColumnValue(columnIndex));
     }
 
     @Override
     public Object getObject(String columnLabel) throws SQLException {
-        return getColumnValue(columnLabel);
+        return objectValue(getColumnValue(columnLabel));
     }
 
     @Override
@@ -342,14 +390,18 @@ class LogsqlResultSet implements ResultSet {
 
     @Override
     public Reader getCharacterStream(int columnIndex) throws SQLException {
-        String value = getString(columnIndex);
-        return value == null ? null : new StringReader(value);
+        Object value = getColumnValue(columnIndex);
+        if (value instanceof LogsqlClob) {
+            int maxFieldSize = maxFieldSize();
+            LogsqlClob clob = (LogsqlClob) value;
+            return maxFieldSize > 0 ? clob.getCharacterStream(1, maxFieldSize) : clob.getCharacterStream();
+        }
+        return value == null ? null : new StringReader(stringValue(value));
     }
 
     @Override
     public Reader getCharacterStream(String columnLabel) throws SQLException {
-        String value = getString(columnLabel);
-        return value == null ? null : new StringReader(value);
+        return getCharacterStream(findColumn(columnLabel));
     }
 
     @Override
@@ -399,25 +451,25 @@ class LogsqlResultSet implements ResultSet {
     @Override
     public boolean isBeforeFirst() throws SQLException {
         ensureOpen();
-        return cursor < 0 && !rows.isEmpty();
+        return cursor < 0 && rowCount > 0;
     }
 
     @Override
     public boolean isAfterLast() throws SQLException {
         ensureOpen();
-        return rows.isEmpty() ? false : cursor >= rows.size();
+        return rowCount == 0 ? false : cursor >= rowCount;
     }
 
     @Override
     public boolean isFirst() throws SQLException {
         ensureOpen();
-        return cursor == 0 && !rows.isEmpty();
+        return cursor == 0 && rowCount > 0;
     }
 
     @Override
     public boolean isLast() throws SQLException {
         ensureOpen();
-        return !rows.isEmpty() && cursor == rows.size() - 1;
+        return rowCount > 0 && cursor == rowCount - 1;
     }
 
     @Override
@@ -429,14 +481,14 @@ class LogsqlResultSet implements ResultSet {
     @Override
     public void afterLast() throws SQLException {
         ensureOpen();
-        cursor = rows.size();
+        cursor = rowCount;
     }
 
     @Override
     public boolean first() throws SQLException {
         ensureOpen();
-        if (rows.isEmpty()) {
-            cursor = rows.size();
+        if (rowCount == 0) {
+            cursor = rowCount;
             return false;
         }
         cursor = 0;
@@ -447,11 +499,11 @@ class LogsqlResultSet implements ResultSet {
     @Override
     public boolean last() throws SQLException {
         ensureOpen();
-        if (rows.isEmpty()) {
-            cursor = rows.size();
+        if (rowCount == 0) {
+            cursor = rowCount;
             return false;
         }
-        cursor = rows.size() - 1;
+        cursor = rowCount - 1;
         wasNull = false;
         return true;
     }
@@ -459,7 +511,7 @@ class LogsqlResultSet implements ResultSet {
     @Override
     public int getRow() throws SQLException {
         ensureOpen();
-        if (cursor < 0 || cursor >= rows.size()) {
+        if (cursor < 0 || cursor >= rowCount) {
             return 0;
         }
         return cursor + 1;
@@ -472,7 +524,7 @@ class LogsqlResultSet implements ResultSet {
         if (row > 0) {
             target = row - 1;
         } else if (row < 0) {
-            target = rows.size() + row;
+            target = rowCount + row;
         } else {
             cursor = -1;
             return false;
@@ -481,8 +533,8 @@ class LogsqlResultSet implements ResultSet {
             cursor = -1;
             return false;
         }
-        if (target >= rows.size()) {
-            cursor = rows.size();
+        if (target >= rowCount) {
+            cursor = rowCount;
             return false;
         }
         cursor = target;
@@ -501,8 +553,8 @@ class LogsqlResultSet implements ResultSet {
             cursor = -1;
             return false;
         }
-        if (target >= rows.size()) {
-            cursor = rows.size();
+        if (target >= rowCount) {
+            cursor = rowCount;
             return false;
         }
         cursor = target;
@@ -818,7 +870,13 @@ class LogsqlResultSet implements ResultSet {
 
     @Override
     public Clob getClob(int columnIndex) throws SQLException {
-        throw unsupported();
+        Object value = getColumnValue(columnIndex);
+        if (value == null) {
+            return null;
+        }
+        return value instanceof LogsqlClob && maxFieldSize() == 0
+                ? (LogsqlClob) value
+                : new LogsqlClob(stringValue(value));
     }
 
     @Override
@@ -843,7 +901,7 @@ class LogsqlResultSet implements ResultSet {
 
     @Override
     public Clob getClob(String columnLabel) throws SQLException {
-        throw unsupported();
+        return getClob(findColumn(columnLabel));
     }
 
     @Override
@@ -1205,7 +1263,7 @@ class LogsqlResultSet implements ResultSet {
             return type.cast(value);
         }
         if (type == String.class) {
-            return type.cast(value.toString());
+            return type.cast(stringValue(value));
         }
         if (Number.class.isAssignableFrom(type)) {
             Number number = toNumber(value);
@@ -1253,6 +1311,30 @@ class LogsqlResultSet implements ResultSet {
         throw new SQLException("Cannot convert column " + columnIndex + " to type " + type.getName());
     }
 
+    /**
+     * Returns the text of a value, cut off at the max field size of the statement when it is a string.
+     */
+    private String stringValue(Object value) throws SQLException {
+        if (value instanceof LogsqlClob) {
+            int maxFieldSize = maxFieldSize();
+            LogsqlClob clob = (LogsqlClob) value;
+            return maxFieldSize > 0 ? clob.getSubString(1, maxFieldSize) : clob.toString();
+        }
+        if (value instanceof String) {
+            return LogsqlResultBuilder.truncate((String) value, maxFieldSize());
+        }
+        return value.toString();
+    }
+
+    private Object objectValue(Object value) throws SQLException {
+        return value instanceof String || value instanceof LogsqlClob ? stringValue(value) : value;
+    }
+
+    private int maxFieldSize() throws SQLException {
+        // values are cut off while they are decoded; this covers results that were not, such as cached ones
+        return statement == null ? 0 : statement.getMaxFieldSize();
+    }
+
     private void ensureOpen() throws SQLException {
         if (closed) {
             throw new SQLException("ResultSet is closed");
@@ -1262,10 +1344,10 @@ class LogsqlResultSet implements ResultSet {
     private Object getColumnValue(int columnIndex) throws SQLException {
         ensureOpen();
         ensureValidColumnIndex(columnIndex);
-        if (cursor < 0 || cursor >= rows.size()) {
+        if (cursor < 0 || cursor >= rowCount) {
             throw new SQLException("Cursor is not positioned on a row");
         }
-        Object value = rows.get(cursor)[columnIndex - 1];
+        Object value = rows.getValue(cursor, columnIndex - 1);
         wasNull = value == null;
         return value;
     }
@@ -1441,11 +1523,14 @@ class LogsqlResultSet implements ResultSet {
         if (iface.isInstance(this)) {
             return iface.cast(this);
         }
+        if (iface == LogsqlQueryProfile.class && profile != null) {
+            return iface.cast(profile);
+        }
         throw new SQLFeatureNotSupportedException("Not a wrapper for " + iface.getName());
     }
 
     @Override
     public boolean isWrapperFor(Class<?> iface) throws SQLException {
-        return iface.isInstance(this);
+        return iface.isInstance(this) || iface == LogsqlQueryProfile.class && profile != null;
     }
 }
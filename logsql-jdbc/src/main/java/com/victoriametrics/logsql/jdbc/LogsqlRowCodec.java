@@ -0,0 +1,202 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary row encoding shared by the off-heap and spilled row stores.
+ *
+ * <pre>
+ * row   := columnCount:int value*
+ * value := NULL | FALSE | TRUE | INT int | LONG long | DOUBLE double
+ *        | (STRING | BIG_INTEGER | BIG_DECIMAL | JSON | FIELD) length:int bytes
+ * </pre>
+ *
+ * Strings are UTF-8, big numbers their decimal representation and nested objects and arrays JSON. A large string
+ * value kept in the {@link LogsqlFieldSpill} of the result is a {@code FIELD} holding its offset and length there.
+ */
+final class LogsqlRowCodec {
+
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte STRING = 6;
+    private static final byte BIG_INTEGER = 7;
+    private static final byte BIG_DECIMAL = 8;
+    private static final byte JSON = 9;
+    private static final byte FIELD = 10;
+
+    private final ObjectMapper mapper;
+    private final LogsqlFieldSpill largeFields;
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+
+    // position of the last value read, so that reading the columns of a row in order does not rescan it
+    private ByteBuffer cursorBuffer;
+    private int cursorRow = -1;
+    private int cursorColumn;
+    private int cursorOffset;
+
+    LogsqlRowCodec(ObjectMapper mapper, LogsqlFieldSpill largeFields) {
+        this.mapper = mapper;
+        this.largeFields = largeFields;
+    }
+
+    /**
+     * Encodes the first {@code columnCount} entries of {@code values} into a reused heap buffer, which is
+     * returned flipped for reading and stays valid until the next call.
+     */
+    ByteBuffer encode(Object[] values, int columnCount) throws SQLException {
+        scratch.clear();
+        ensureScratch(4);
+        scratch.putInt(columnCount);
+        for (int column = 0; column < columnCount; column++) {
+            encode(values[column]);
+        }
+        scratch.flip();
+        return scratch;
+    }
+
+    /**
+     * Reads {@code column} of the row {@code row} encoded at {@code offset} of {@code buffer}.
+     */
+    Object read(ByteBuffer buffer, int offset, int row, int column) throws SQLException {
+        if (column >= buffer.getInt(offset)) {
+            return null;
+        }
+        int current = 0;
+        offset += 4;
+        if (buffer == cursorBuffer && row == cursorRow && column >= cursorColumn) {
+            current = cursorColumn;
+            offset = cursorOffset;
+        }
+        for (; current < column; current++) {
+            offset = skip(buffer, offset);
+        }
+        cursorBuffer = buffer;
+        cursorRow = row;
+        cursorColumn = column;
+        cursorOffset = offset;
+        return readValue(buffer, offset, row, column);
+    }
+
+    private static int skip(ByteBuffer buffer, int offset) {
+        switch (buffer.get(offset)) {
+            case NULL:
+            case FALSE:
+            case TRUE:
+                return offset + 1;
+            case INT:
+                return offset + 5;
+            case LONG:
+            case DOUBLE:
+                return offset + 9;
+            default:
+                return offset + 5 + buffer.getInt(offset + 1);
+        }
+    }
+
+    private Object readValue(ByteBuffer buffer, int offset, int row, int column) throws SQLException {
+        byte tag = buffer.get(offset);
+        switch (tag) {
+            case NULL:
+                return null;
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case INT:
+                return buffer.getInt(offset + 1);
+            case LONG:
+                return buffer.getLong(offset + 1);
+            case DOUBLE:
+                return buffer.getDouble(offset + 1);
+            default:
+                break;
+        }
+        byte[] bytes = new byte[buffer.getInt(offset + 1)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 5);
+        view.get(bytes);
+        switch (tag) {
+            case FIELD:
+                ByteBuffer field = ByteBuffer.wrap(bytes);
+                return new LogsqlClob(largeFields, field.getLong(), field.getLong());
+            case BIG_INTEGER:
+                return new BigInteger(new String(bytes, StandardCharsets.US_ASCII));
+            case BIG_DECIMAL:
+                return new BigDecimal(new String(bytes, StandardCharsets.US_ASCII));
+            case JSON:
+                try {
+                    return mapper.readValue(bytes, Object.class);
+                } catch (IOException e) {
+                    throw new SQLException("Failed to decode value of row " + (row + 1) + ", column " + (column + 1), e);
+                }
+            default:
+                return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private void encode(Object value) throws SQLException {
+        if (value == null) {
+            putTag(NULL);
+        } else if (value instanceof Boolean) {
+            putTag((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            ensureScratch(5);
+            scratch.put(INT).putInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            ensureScratch(9);
+            scratch.put(LONG).putLong((Long) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            ensureScratch(9);
+            scratch.put(DOUBLE).putDouble(((Number) value).doubleValue());
+        } else if (value instanceof BigInteger) {
+            putBytes(BIG_INTEGER, value.toString().getBytes(StandardCharsets.US_ASCII));
+        } else if (value instanceof BigDecimal) {
+            putBytes(BIG_DECIMAL, value.toString().getBytes(StandardCharsets.US_ASCII));
+        } else if (value instanceof LogsqlClob && ((LogsqlClob) value).getSpill() != null) {
+            LogsqlClob field = (LogsqlClob) value;
+            ensureScratch(21);
+            scratch.put(FIELD).putInt(16).putLong(field.getOffset()).putLong(field.getByteLength());
+        } else if (value instanceof Map || value instanceof List) {
+            try {
+                putBytes(JSON, mapper.writeValueAsBytes(value));
+            } catch (IOException e) {
+                throw new SQLException("Failed to encode nested value", e);
+            }
+        } else {
+            putBytes(STRING, value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void putTag(byte tag) {
+        ensureScratch(1);
+        scratch.put(tag);
+    }
+
+    private void putBytes(byte tag, byte[] bytes) {
+        ensureScratch(5 + bytes.length);
+        scratch.put(tag).putInt(bytes.length).put(bytes);
+    }
+
+    private void ensureScratch(int bytes) {
+        if (scratch.remaining() < bytes) {
+            int capacity = Math.max(scratch.capacity() * 2, scratch.position() + bytes);
+            ByteBuffer grown = ByteBuffer.allocate(capacity);
+            scratch.flip();
+            grown.put(scratch);
+            scratch = grown;
+        }
+    }
+}
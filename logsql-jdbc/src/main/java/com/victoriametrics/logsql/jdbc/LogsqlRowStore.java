@@ -0,0 +1,20 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.sql.SQLException;
+
+/**
+ * Random-access storage backing the rows of a {@link LogsqlResultSet}.
+ */
+interface LogsqlRowStore {
+
+    int getRowCount();
+
+    Object getValue(int row, int column) throws SQLException;
+
+    /**
+     * Releases resources held by the store. Values must not be read afterwards.
+     */
+    default void close() {
+        // nothing to release by default
+    }
+}
@@ -0,0 +1,110 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs executions taking longer than {@code slowQueryMillis} to the parent logger of the driver, with the SQL, the
+ * translated LogsQL, the size of the result and the time spent in each phase.
+ *
+ * <p>Only a {@code slowQuerySampleRate} share of slow executions is considered, and at most
+ * {@code slowQueryLogsPerMinute} entries are written per minute by all connections together; the next entry written
+ * reports how many were left out. Fast executions cost one comparison.
+ */
+final class LogsqlSlowQueryLog {
+
+    static final Logger LOGGER = Logger.getLogger("com.victoriametrics.logsql.jdbc");
+
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    // the first entry opens a window
+    private static final AtomicLong WINDOW_START = new AtomicLong(System.nanoTime() - WINDOW_NANOS);
+    private static final AtomicInteger WINDOW_ENTRIES = new AtomicInteger();
+    private static final AtomicLong SUPPRESSED = new AtomicLong();
+
+    private final long thresholdNanos;
+    private final double sampleRate;
+    private final long entriesPerMinute;
+
+    private LogsqlSlowQueryLog(Duration threshold, double sampleRate, long entriesPerMinute) {
+        this.thresholdNanos = threshold.toNanos();
+        this.sampleRate = sampleRate;
+        this.entriesPerMinute = entriesPerMinute;
+    }
+
+    /**
+     * Returns the slow query log configured for a connection, or {@code null} when it is disabled.
+     */
+    static LogsqlSlowQueryLog forConfig(LogsqlConnectionConfig config) {
+        if (config.getSlowQueryThreshold().isZero() || config.getSlowQuerySampleRate() == 0
+                || config.getSlowQueryLogsPerMinute() == 0) {
+            return null;
+        }
+        return new LogsqlSlowQueryLog(config.getSlowQueryThreshold(), config.getSlowQuerySampleRate(),
+                config.getSlowQueryLogsPerMinute());
+    }
+
+    /**
+     * Logs the execution traced by {@code trace} if it was slow, given its {@code result} or {@code error}.
+     */
+    void record(LogsqlQueryTrace trace, LogsqlQueryResult result, Throwable error) {
+        if (trace.getTotalNanos() < thresholdNanos || !LOGGER.isLoggable(Level.WARNING)) {
+            return;
+        }
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        if (!acquire()) {
+            SUPPRESSED.incrementAndGet();
+            return;
+        }
+        LOGGER.log(Level.WARNING, format(trace, result, error, SUPPRESSED.getAndSet(0)));
+    }
+
+    private boolean acquire() {
+        long now = System.nanoTime();
+        long start = WINDOW_START.get();
+        if (now - start >= WINDOW_NANOS && WINDOW_START.compareAndSet(start, now)) {
+            WINDOW_ENTRIES.set(0);
+        }
+        return WINDOW_ENTRIES.incrementAndGet() <= entriesPerMinute;
+    }
+
+    static String format(LogsqlQueryTrace trace, LogsqlQueryResult result, Throwable error, long suppressed) {
+        StringBuilder entry = new StringBuilder(256);
+        entry.append(error == null ? "Slow query took " : "Slow query failed after ")
+                .append(millis(trace.getTotalNanos())).append(" ms");
+        if (trace.hasResponseBody()) {
+            entry.append(" (response ").append(millis(trace.getResponseNanos()))
+                    .append(" ms, transfer ").append(millis(trace.getTransferNanos()))
+                    .append(" ms, decode ").append(millis(trace.getDecodeNanos())).append(" ms)");
+        }
+        if (error == null) {
+            entry.append(", ").append(result.getRowCount()).append(" rows");
+        }
+        entry.append(", ").append(trace.getBytesReceived()).append(" bytes received");
+        entry.append(", source ").append(trace.getSource().name().toLowerCase(Locale.ROOT).replace('_', ' '));
+        if (suppressed > 0) {
+            entry.append(", ").append(suppressed).append(" slow queries not logged before");
+        }
+        entry.append("\nSQL: ").append(trace.getSql());
+        String logsql = result == null ? null : result.getLogsql();
+        if (logsql != null) {
+            entry.append("\nLogsQL: ").append(logsql);
+        }
+        if (error != null) {
+            entry.append("\nError: ").append(error.getMessage());
+        }
+        return entry.toString();
+    }
+
+    private static String millis(long nanos) {
+        long tenths = nanos / 100_000;
+        return tenths / 10 + "." + tenths % 10;
+    }
+}
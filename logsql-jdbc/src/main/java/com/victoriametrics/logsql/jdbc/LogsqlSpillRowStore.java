@@ -0,0 +1,224 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Row store keeping its rows in a temporary file, used for the part of a result beyond its memory budget.
+ *
+ * <pre>
+ * file  := block*
+ * block := row* rowOffset:int*
+ * </pre>
+ *
+ * Rows are in the {@link LogsqlRowCodec} encoding and grouped into blocks of about {@value #BLOCK_BYTES} bytes.
+ * Reading a row pages its block into a reused heap buffer, so iterating a spilled result reads the file once, one
+ * block at a time. The file is deleted when the store is closed.
+ */
+final class LogsqlSpillRowStore implements LogsqlRowStore {
+
+    static final int BLOCK_BYTES = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final LogsqlRowCodec codec;
+    private final LogsqlConnectionStats stats;
+    private final int rowCount;
+    private final int blockCount;
+    private final int[] blockFirstRows;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final long fileBytes;
+    private ByteBuffer block;
+    private int loadedBlock = -1;
+    private boolean closed;
+
+    private LogsqlSpillRowStore(Writer writer) {
+        this.channel = writer.channel;
+        this.codec = writer.codec;
+        this.stats = writer.stats;
+        this.rowCount = writer.rowCount;
+        this.blockCount = writer.blockCount;
+        this.blockFirstRows = writer.blockFirstRows;
+        this.blockOffsets = writer.blockOffsets;
+        this.blockLengths = writer.blockLengths;
+        this.fileBytes = writer.fileBytes;
+        // the write buffer is at least as large as every block written from it
+        this.block = writer.block;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public Object getValue(int row, int column) throws SQLException {
+        if (closed) {
+            throw new SQLException("Result rows have been released");
+        }
+        int index = Arrays.binarySearch(blockFirstRows, 0, blockCount, row);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        if (index != loadedBlock) {
+            load(index);
+        }
+        int rowsInBlock = (index + 1 < blockCount ? blockFirstRows[index + 1] : rowCount) - blockFirstRows[index];
+        int offsets = blockLengths[index] - 4 * rowsInBlock;
+        return codec.read(block, block.getInt(offsets + 4 * (row - blockFirstRows[index])), row, column);
+    }
+
+    private void load(int index) throws SQLException {
+        block.clear();
+        block.limit(blockLengths[index]);
+        try {
+            long position = blockOffsets[index];
+            while (block.hasRemaining()) {
+                int read = channel.read(block, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of spill file");
+                }
+                position += read;
+            }
+        } catch (IOException e) {
+            loadedBlock = -1;
+            throw new SQLException("Failed to read spilled result rows", e);
+        }
+        loadedBlock = index;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            block = null;
+            closeChannel(channel, stats, fileBytes);
+        }
+    }
+
+    private static void closeChannel(FileChannel channel, LogsqlConnectionStats stats, long fileBytes) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // the file was opened for deletion on close
+        }
+        stats.spillReleased(fileBytes);
+    }
+
+    /**
+     * Appends rows to a temporary file in {@code directory}, or in the default temporary-file directory when it
+     * is {@code null}. A writer that is abandoned must be {@linkplain #release() released}.
+     */
+    static final class Writer {
+
+        private final FileChannel channel;
+        private final LogsqlRowCodec codec;
+        private final LogsqlConnectionStats stats;
+        private ByteBuffer block = ByteBuffer.allocate(BLOCK_BYTES);
+        private int[] rowOffsets = new int[1024];
+        private int rowsInBlock;
+        private int rowCount;
+        private int blockCount;
+        private int[] blockFirstRows = new int[16];
+        private long[] blockOffsets = new long[16];
+        private int[] blockLengths = new int[16];
+        private long fileBytes;
+        private boolean built;
+
+        Writer(ObjectMapper mapper, LogsqlFieldSpill largeFields, LogsqlConnectionStats stats, Path directory)
+                throws SQLException {
+            this.codec = new LogsqlRowCodec(mapper, largeFields);
+            this.stats = stats;
+            try {
+                Path file = directory == null
+                        ? Files.createTempFile("logsql-spill-", ".bin")
+                        : Files.createTempFile(directory, "logsql-spill-", ".bin");
+                this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+            } catch (IOException e) {
+                throw new SQLException("Failed to create spill file", e);
+            }
+        }
+
+        /**
+         * Appends a row made of the first {@code columnCount} entries of {@code values}.
+         */
+        void append(Object[] values, int columnCount) throws SQLException {
+            ByteBuffer row = codec.encode(values, columnCount);
+            int trailer = 4 * (rowsInBlock + 1);
+            if (rowsInBlock > 0 && block.remaining() < row.remaining() + trailer) {
+                flush();
+                trailer = 4;
+            }
+            if (block.capacity() < row.remaining() + trailer) {
+                block = ByteBuffer.allocate(row.remaining() + trailer);
+            }
+            if (rowsInBlock == rowOffsets.length) {
+                rowOffsets = Arrays.copyOf(rowOffsets, rowsInBlock * 2);
+            }
+            rowOffsets[rowsInBlock++] = block.position();
+            block.put(row);
+            rowCount++;
+        }
+
+        int getRowCount() {
+            return rowCount;
+        }
+
+        LogsqlSpillRowStore build() throws SQLException {
+            flush();
+            built = true;
+            return new LogsqlSpillRowStore(this);
+        }
+
+        /**
+         * Deletes the file unless a store has been built from it.
+         */
+        void release() {
+            if (!built) {
+                built = true;
+                closeChannel(channel, stats, fileBytes);
+            }
+        }
+
+        private void flush() throws SQLException {
+            if (rowsInBlock == 0) {
+                return;
+            }
+            for (int i = 0; i < rowsInBlock; i++) {
+                block.putInt(rowOffsets[i]);
+            }
+            block.flip();
+            int length = block.remaining();
+            try {
+                long position = fileBytes;
+                while (block.hasRemaining()) {
+                    position += channel.write(block, position);
+                }
+            } catch (IOException e) {
+                throw new SQLException("Failed to spill result rows to disk", e);
+            }
+            if (blockCount == blockFirstRows.length) {
+                blockFirstRows = Arrays.copyOf(blockFirstRows, blockCount * 2);
+                blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+                blockLengths = Arrays.copyOf(blockLengths, blockCount * 2);
+            }
+            blockFirstRows[blockCount] = rowCount - rowsInBlock;
+            blockOffsets[blockCount] = fileBytes;
+            blockLengths[blockCount] = length;
+            blockCount++;
+            fileBytes += length;
+            stats.spilled(length);
+            rowsInBlock = 0;
+            block.clear();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * The SQL of a prepared statement split at its {@code ?} placeholders, once when the statement is prepared, into
+ * the literal segments between them. Rendering appends the segments and the SQL literals of the bound values into a
+ * builder sized for the result, so that executing the same statement many times does not scan the SQL again.
+ * Placeholders inside single-quoted string literals and double-quoted identifiers are not parameters; doubled quotes
+ * escape a quote inside them. Instances are immutable.
+ */
+final class LogsqlSqlTemplate {
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    // room reserved per parameter before a statement was rendered once
+    private static final int PARAMETER_LENGTH_ESTIMATE = 16;
+
+    private final String sql;
+    private final String[] segments;
+    private final int segmentsLength;
+
+    private LogsqlSqlTemplate(String sql, String[] segments) {
+        this.sql = sql;
+        this.segments = segments;
+        int length = 0;
+        for (String segment : segments) {
+            length += segment.length();
+        }
+        this.segmentsLength = length;
+    }
+
+    static LogsqlSqlTemplate parse(String sql) {
+        List<String> segments = new ArrayList<>();
+        boolean inSingleQuote = false;
+        boolean inDoubleQuote = false;
+        int segmentStart = 0;
+        int length = sql.length();
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                if (inSingleQuote && i + 1 < length && sql.charAt(i + 1) == '\'') {
+                    i++;
+                } else {
+                    inSingleQuote = !inSingleQuote;
+                }
+            } else if (c == '"') {
+                if (inDoubleQuote && i + 1 < length && sql.charAt(i + 1) == '"') {
+                    i++;
+                } else {
+                    inDoubleQuote = !inDoubleQuote;
+                }
+            } else if (!inSingleQuote && !inDoubleQuote && c == '?') {
+                segments.add(sql.substring(segmentStart, i));
+                segmentStart = i + 1;
+            }
+        }
+        segments.add(sql.substring(segmentStart));
+        return new LogsqlSqlTemplate(sql, segments.toArray(new String[0]));
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    int getParameterCount() {
+        return segments.length - 1;
+    }
+
+    /**
+     * Returns the literal SQL preceding parameter {@code index}, counted from 0, or following the last parameter
+     * when {@code index} is the parameter count.
+     */
+    String segment(int index) {
+        return segments[index];
+    }
+
+    /**
+     * Returns a capacity for a builder rendering the template, {@code lastLength} being the length of its previous
+     * rendering, or 0 when there was none.
+     */
+    int capacity(int lastLength) {
+        return Math.max(lastLength, segmentsLength + getParameterCount() * PARAMETER_LENGTH_ESTIMATE);
+    }
+
+    /**
+     * Appends {@code value} as an SQL literal.
+     */
+    static void appendLiteral(StringBuilder builder, Object value) throws SQLException {
+        if (value == null) {
+            builder.append("NULL");
+        } else if (value instanceof String) {
+            appendQuoted(builder, (String) value);
+        } else if (value instanceof Long) {
+            builder.append((long) (Long) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            builder.append(((Number) value).intValue());
+        } else if (value instanceof Double) {
+            double d = (Double) value;
+            checkFinite(d, value);
+            builder.append(d);
+        } else if (value instanceof Float) {
+            float f = (Float) value;
+            checkFinite(f, value);
+            builder.append(f);
+        } else if (value instanceof Boolean) {
+            builder.append((Boolean) value ? "TRUE" : "FALSE");
+        } else if (value instanceof BigDecimal) {
+            builder.append(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Character) {
+            appendQuoted(builder, value.toString());
+        } else if (value instanceof byte[]) {
+            appendHex(builder, (byte[]) value);
+        } else if (value instanceof Date || value instanceof Time || value instanceof Timestamp) {
+            appendQuoted(builder, value.toString());
+        } else if (value instanceof Instant) {
+            appendQuoted(builder, DateTimeFormatter.ISO_INSTANT.format((Instant) value));
+        } else if (value instanceof OffsetDateTime) {
+            appendQuoted(builder, DateTimeFormatter.ISO_OFFSET_DATE_TIME.format((OffsetDateTime) value));
+        } else if (value instanceof ZonedDateTime) {
+            appendQuoted(builder,
+                    DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(((ZonedDateTime) value).toOffsetDateTime()));
+        } else if (value instanceof LocalDateTime) {
+            appendQuoted(builder, DateTimeFormatter.ISO_LOCAL_DATE_TIME.format((LocalDateTime) value));
+        } else if (value instanceof LocalDate) {
+            appendQuoted(builder, DateTimeFormatter.ISO_LOCAL_DATE.format((LocalDate) value));
+        } else if (value instanceof Calendar) {
+            Calendar calendar = (Calendar) value;
+            appendQuoted(builder, DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(
+                    ZonedDateTime.ofInstant(calendar.toInstant(), calendar.getTimeZone().toZoneId())));
+        } else {
+            appendQuoted(builder, value.toString());
+        }
+    }
+
+    private static void checkFinite(double value, Object boxed) throws SQLException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new SQLException("Floating point value cannot be represented: " + boxed);
+        }
+    }
+
+    private static void appendQuoted(StringBuilder builder, String value) {
+        builder.append('\'');
+        int start = 0;
+        int quote;
+        while ((quote = value.indexOf('\'', start)) >= 0) {
+            builder.append(value, start, quote + 1).append('\'');
+            start = quote + 1;
+        }
+        builder.append(value, start, value.length()).append('\'');
+    }
+
+    private static void appendHex(StringBuilder builder, byte[] bytes) {
+        builder.ensureCapacity(builder.length() + bytes.length * 2 + 3);
+        builder.append("X'");
+        for (byte b : bytes) {
+            builder.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+        }
+        builder.append('\'');
+    }
+}
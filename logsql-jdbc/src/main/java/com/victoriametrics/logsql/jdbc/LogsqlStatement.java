@@ -6,13 +6,9 @@ import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
-import java.sql.Types;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
-class LogsqlStatement implements Statement {
+class LogsqlStatement implements Statement, LogsqlStatementLimits {
 
     private final LogsqlConnection connection;
     private LogsqlResultSet currentResultSet;
@@ -24,9 +20,14 @@ class LogsqlStatement implements Statement {
     private boolean poolable = false;
     private boolean closeOnCompletion = false;
     private boolean closing = false;
+    private int maxFieldSize;
+    private long maxResultBytes;
+    private long maxFieldBytes;
 
     LogsqlStatement(LogsqlConnection connection) {
         this.connection = Objects.requireNonNull(connection, "connection");
+        this.maxResultBytes = connection.getConfig().getMaxResultBytes();
+        this.maxFieldBytes = connection.getConfig().getMaxFieldBytes();
     }
 
     LogsqlConnection getConnectionInternal() {
@@ -40,10 +41,12 @@ class LogsqlStatement implements Statement {
     @Override
     public ResultSet executeQuery(String sql) throws SQLException {
         checkOpen();
-        LogsqlQueryResult result = connection.executeQuery(sql, maxRows);
+        LogsqlQueryTrace trace = connection.trace(sql);
+        LogsqlQueryResult result = connection.executeQuery(sql, maxRows, maxResultBytes, maxFieldBytes, maxFieldSize,
+                trace);
         this.translatedLogsql = result.getLogsql();
         closeCurrentResultSet();
-        this.currentResultSet = buildResultSet(result);
+        this.currentResultSet = buildResultSet(result, trace);
         return currentResultSet;
     }
 
@@ -67,7 +70,7 @@ class LogsqlStatement implements Statement {
 
     @Override
     public int getMaxFieldSize() throws SQLException {
-        return 0;
+        return maxFieldSize;
     }
 
     @Override
@@ -75,7 +78,7 @@ class LogsqlStatement implements Statement {
         if (max < 0) {
             throw new SQLException("max field size must be non-negative");
         }
-        // no-op
+        this.maxFieldSize = max;
     }
 
     @Override
@@ -91,6 +94,36 @@ class LogsqlStatement implements Statement {
         this.maxRows = max;
     }
 
+    @Override
+    public long getMaxResultBytes() throws SQLException {
+        checkOpen();
+        return maxResultBytes;
+    }
+
+    @Override
+    public void setMaxResultBytes(long bytes) throws SQLException {
+        checkOpen();
+        if (bytes < 0) {
+            throw new SQLException("max result bytes must be non-negative");
+        }
+        this.maxResultBytes = bytes;
+    }
+
+    @Override
+    public long getMaxFieldBytes() throws SQLException {
+        checkOpen();
+        return maxFieldBytes;
+    }
+
+    @Override
+    public void setMaxFieldBytes(long bytes) throws SQLException {
+        checkOpen();
+        if (bytes < 0) {
+            throw new SQLException("max field bytes must be non-negative");
+        }
+        this.maxFieldBytes = bytes;
+    }
+
     @Override
     public void setEscapeProcessing(boolean enable) {
         // no-op
@@ -294,62 +327,22 @@ class LogsqlStatement implements Statement {
         return iface.isInstance(this);
     }
 
-    private LogsqlResultSet buildResultSet(LogsqlQueryResult result) {
-        List<String> columns = result.getColumnNames();
-        int columnCount = columns.size();
-        int[] columnTypes = new int[columnCount];
-        for (int i = 0; i < columnCount; i++) {
-            columnTypes[i] = inferColumnType(result.getRows(), columns.get(i));
-        }
-
-        List<Object[]> rows = new ArrayList<>(result.getRows().size());
-        for (Map<String, Object> row : result.getRows()) {
-            Object[] values = new Object[columnCount];
-            for (int i = 0; i < columnCount; i++) {
-                values[i] = row.get(columns.get(i));
-            }
-            rows.add(values);
+    private LogsqlResultSet buildResultSet(LogsqlQueryResult result, LogsqlQueryTrace trace) {
+        LogsqlResultSet resultSet = new LogsqlResultSet(this, result.getColumnNames(), result.getColumnTypes(),
+                result.getRows());
+        if (result.getWarning() != null) {
+            resultSet.addWarning(result.getWarning());
         }
-
-        return new LogsqlResultSet(this, columns, columnTypes, rows);
-    }
-
-    private int inferColumnType(List<Map<String, Object>> rows, String column) {
-        for (Map<String, Object> row : rows) {
-            Object value = row.get(column);
-            if (value == null) {
-                continue;
-            }
-            if (value instanceof Boolean) {
-                return Types.BOOLEAN;
-            }
-            if (value instanceof Byte || value instanceof Short || value instanceof Integer) {
-                return Types.INTEGER;
-            }
-            if (value instanceof Long) {
-                return Types.BIGINT;
-            }
-            if (value instanceof Float) {
-                return Types.REAL;
-            }
-            if (value instanceof Double) {
-                return Types.DOUBLE;
-            }
-            if (value instanceof java.math.BigDecimal) {
-                return Types.NUMERIC;
-            }
-            if (value instanceof java.time.temporal.Temporal || value instanceof java.util.Date) {
-                return Types.TIMESTAMP;
-            }
-            if (value instanceof byte[]) {
-                return Types.VARBINARY;
-            }
-            return Types.VARCHAR;
+        resultSet.setProfile(trace);
+        if (trace.getEvents() != null) {
+            resultSet.setEvents(trace.getEvents());
         }
-        return Types.VARCHAR;
+        connection.getMonitor().resultSetOpened();
+        return resultSet;
     }
 
     void onResultSetClosed(LogsqlResultSet resultSet) throws SQLException {
+        connection.getMonitor().resultSetClosed();
         if (currentResultSet == resultSet) {
             currentResultSet = null;
         }
@@ -363,6 +356,7 @@ class LogsqlStatement implements Statement {
             LogsqlResultSet rs = currentResultSet;
             currentResultSet = null;
             rs.closeFromStatement();
+            connection.getMonitor().resultSetClosed();
         }
     }
 
@@ -0,0 +1,31 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.sql.SQLException;
+
+/**
+ * Byte limits of the results of a statement, obtained through {@code statement.unwrap(LogsqlStatementLimits.class)}.
+ * They start out at the {@code maxResultBytes} and {@code maxFieldBytes} connection properties; {@code 0} means
+ * unlimited.
+ */
+public interface LogsqlStatementLimits {
+
+    /**
+     * Returns the maximum number of decompressed response bytes read for a query.
+     */
+    long getMaxResultBytes() throws SQLException;
+
+    /**
+     * Sets the maximum number of decompressed response bytes read for a query.
+     */
+    void setMaxResultBytes(long bytes) throws SQLException;
+
+    /**
+     * Returns the maximum size of a single field value, in bytes.
+     */
+    long getMaxFieldBytes() throws SQLException;
+
+    /**
+     * Sets the maximum size of a single field value, in bytes.
+     */
+    void setMaxFieldBytes(long bytes) throws SQLException;
+}
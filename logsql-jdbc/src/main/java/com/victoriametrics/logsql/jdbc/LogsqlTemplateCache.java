@@ -0,0 +1,35 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used map of the templates of the prepared statements of a connection, keyed by their SQL, bounded by
+ * the number of templates. A poolable statement hands its template back when it is closed, so that preparing the same
+ * SQL again reuses its parsing.
+ */
+final class LogsqlTemplateCache {
+
+    private final LinkedHashMap<String, LogsqlSqlTemplate> templates;
+
+    LogsqlTemplateCache(int maxTemplates) {
+        this.templates = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LogsqlSqlTemplate> eldest) {
+                return size() > maxTemplates;
+            }
+        };
+    }
+
+    synchronized LogsqlSqlTemplate get(String sql) {
+        return templates.get(sql);
+    }
+
+    synchronized void put(LogsqlSqlTemplate template) {
+        templates.put(template.getSql(), template);
+    }
+
+    synchronized int size() {
+        return templates.size();
+    }
+}
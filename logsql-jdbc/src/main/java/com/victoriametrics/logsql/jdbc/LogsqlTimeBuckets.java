@@ -0,0 +1,393 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Incremental evaluation of queries over a sliding time window.
+ *
+ * <p>A {@code _time > now() - <duration>} conjunct is lifted out of the SQL and turned into the
+ * {@code start}/{@code end} parameters of the request. Predicates are only looked for outside string literals, quoted
+ * identifiers and comments, and a strict {@code >} starts the window one nanosecond after the bound. When the
+ * translated LogsQL only consists of row-local pipes, the window is split into buckets aligned to the configured size:
+ * buckets that ended more than the settle delay ago are fetched once and kept on the heap in a per-connection cache
+ * bounded by rows for at most the maximum age, after which they are fetched again to pick up late logs, while the
+ * partial head of the window and the still-open tail are always queried. The partial results are stitched together in
+ * chronological bucket order. Queries with aggregating or ordering pipes are sent as a single windowed request instead,
+ * since their buckets cannot be merged on the client.
+ */
+final class LogsqlTimeBuckets {
+
+    private static final String PREDICATE =
+            "_time\\s*>(=?)\\s*now\\s*\\(\\s*\\)\\s*-\\s*(\\d+)\\s*(ms|s|m|h|d|w)\\b";
+    private static final Pattern LEADING_CONJUNCT =
+            Pattern.compile("(?i)\\bWHERE\\s+" + PREDICATE + "\\s+AND\\s+");
+    private static final Pattern TRAILING_CONJUNCT =
+            Pattern.compile("(?i)\\s+AND\\s+" + PREDICATE);
+    private static final Pattern SOLE_PREDICATE =
+            Pattern.compile("(?i)\\s*\\bWHERE\\s+" + PREDICATE + "(?=\\s*(?:$|;|\\)|\\bGROUP\\b|\\bORDER\\b|\\bLIMIT\\b|\\bOFFSET\\b|\\bHAVING\\b))");
+    private static final Pattern ANY_PREDICATE = Pattern.compile("(?i)" + PREDICATE);
+    private static final Pattern OR_KEYWORD = Pattern.compile("(?i)\\bOR\\b");
+
+    /**
+     * Pipes that transform each row independently of the others, so that running them per bucket and
+     * concatenating the output is equivalent to running them over the whole window.
+     */
+    private static final Set<String> ROW_LOCAL_PIPES = Set.of(
+            "fields", "filter", "where", "format", "extract", "extract_regexp", "copy", "rename", "delete",
+            "replace", "replace_regexp", "unpack_json", "unpack_logfmt", "pack_json", "math", "eval");
+
+    private static final int MAX_TRANSLATIONS = 256;
+
+    private final LogsqlConnection connection;
+    private final Duration bucketSize;
+    private final Duration settleDelay;
+    private final Duration maxAge;
+    private final Clock clock;
+    private final LogsqlResultLru buckets;
+    private final LinkedHashMap<String, Boolean> bucketable = new LinkedHashMap<>(16, 0.75f, true);
+
+    LogsqlTimeBuckets(LogsqlConnection connection, Duration bucketSize, Duration settleDelay, Duration maxAge,
+                      long maxCachedRows, Clock clock) {
+        this.connection = connection;
+        this.bucketSize = bucketSize;
+        this.settleDelay = settleDelay;
+        this.maxAge = maxAge;
+        this.clock = clock;
+        this.buckets = new LogsqlResultLru(maxCachedRows);
+    }
+
+    /**
+     * A query whose relative time predicate was lifted into an explicit lookback.
+     */
+    static final class Window {
+        final String sql;
+        final Duration lookback;
+        final boolean exclusive;
+
+        Window(String sql, Duration lookback, boolean exclusive) {
+            this.sql = sql;
+            this.lookback = lookback;
+            this.exclusive = exclusive;
+        }
+
+        /**
+         * Returns the first instant of the window ending at {@code now}.
+         */
+        Instant start(Instant now) {
+            Instant bound = now.minus(lookback);
+            return exclusive ? bound.plusNanos(1) : bound;
+        }
+    }
+
+    /**
+     * A half-open {@code [start, end)} slice of the window; closed slices can be cached.
+     */
+    static final class Bucket {
+        final Instant start;
+        final Instant end;
+        final boolean closed;
+
+        Bucket(Instant start, Instant end, boolean closed) {
+            this.start = start;
+            this.end = end;
+            this.closed = closed;
+        }
+    }
+
+    /**
+     * Returns the windowed result of {@code sql}, or {@code null} when it carries no liftable time predicate. The
+     * requests made for it are read under {@code limits} unless they are {@code null}, which then bound the window
+     * as a whole; buckets served from the cache do not count towards them.
+     */
+    LogsqlQueryResult execute(String sql, int maxRows, LogsqlResultLimits limits) throws SQLException {
+        Window window = parseWindow(sql);
+        if (window == null) {
+            return null;
+        }
+        Instant now = clock.instant();
+        Instant start = window.start(now);
+        if (!isBucketable(window.sql)) {
+            return connection.fetchQuery(window.sql, maxRows, format(start), format(now), limits);
+        }
+
+        List<Bucket> plan = plan(start, now, bucketSize, settleDelay);
+        List<LogsqlQueryResult> parts = new ArrayList<>(plan.size());
+        boolean[] owned = new boolean[plan.size()];
+        long rows = 0;
+        try {
+            for (Bucket bucket : plan) {
+                if (maxRows > 0 && rows >= maxRows) {
+                    break;
+                }
+                String key = bucket.closed ? bucketKey(window.sql, bucket) : null;
+                LogsqlResultLru.Entry cached = key == null ? null : cachedBucket(key);
+                LogsqlQueryResult part;
+                if (cached != null) {
+                    part = cached.result;
+                } else {
+                    part = fetch(window.sql, bucket, limits);
+                    // a bucket cut off by a limit is not the result of its query
+                    boolean complete = limits == null || !limits.isExceeded();
+                    LogsqlQueryResult shared = key == null || !complete ? null : share(key, part);
+                    if (shared != null) {
+                        part = shared;
+                    } else {
+                        owned[parts.size()] = true;
+                    }
+                }
+                parts.add(part);
+                rows += part.getRowCount();
+                if (limits != null && limits.isExceeded()) {
+                    break;
+                }
+            }
+        } catch (SQLException | RuntimeException | Error e) {
+            for (int i = 0; i < parts.size(); i++) {
+                if (owned[i]) {
+                    parts.get(i).getRows().close();
+                }
+            }
+            throw e;
+        }
+        String logsql = parts.isEmpty() ? null : parts.get(parts.size() - 1).getLogsql();
+        LogsqlQueryResult stitched = LogsqlConcatRowStore.stitch(logsql, parts, owned, maxRows);
+        for (LogsqlQueryResult part : parts) {
+            if (part.getWarning() != null) {
+                // the warning of the bucket a limit tripped in
+                return stitched.withWarning(part.getWarning());
+            }
+        }
+        return stitched;
+    }
+
+    /**
+     * Caches the result of a closed bucket and returns the cached copy, closing {@code fetched}. Cached results are
+     * shared by the result sets of the connection, so they are copied onto the heap, where reading them does not
+     * change them and closing a result set does not release them. Returns {@code null}, leaving {@code fetched}
+     * open, when it cannot be copied.
+     */
+    private LogsqlQueryResult share(String key, LogsqlQueryResult fetched) throws SQLException {
+        LogsqlColumnStore copy;
+        try {
+            copy = LogsqlColumnStore.copyOf(fetched.getRows(), fetched.getColumnNames().size());
+        } catch (SQLException | RuntimeException | Error e) {
+            fetched.getRows().close();
+            throw e;
+        }
+        if (copy == null) {
+            return null;
+        }
+        fetched.getRows().close();
+        LogsqlQueryResult shared = new LogsqlQueryResult(fetched.getLogsql(), fetched.getColumnNames(),
+                fetched.getColumnTypes(), copy);
+        buckets.put(key, null, shared, clock.millis());
+        return shared;
+    }
+
+    /**
+     * Returns the cached bucket under {@code key}, dropping it once it is older than the maximum age.
+     */
+    private LogsqlResultLru.Entry cachedBucket(String key) {
+        LogsqlResultLru.Entry cached = buckets.get(key);
+        if (cached != null && clock.millis() - cached.retainedAt > maxAge.toMillis()) {
+            buckets.remove(key);
+            return null;
+        }
+        return cached;
+    }
+
+    private String bucketKey(String sql, Bucket bucket) {
+        return bucketSize.toMillis() + ":" + bucket.start.toEpochMilli() + ":" + sql;
+    }
+
+    private LogsqlQueryResult fetch(String sql, Bucket bucket, LogsqlResultLimits limits) throws SQLException {
+        // VictoriaLogs treats the end bound as inclusive, buckets are half-open
+        return connection.fetchQuery(sql, 0, format(bucket.start), format(bucket.end.minusNanos(1)), limits);
+    }
+
+    private boolean isBucketable(String sql) throws SQLException {
+        synchronized (this) {
+            Boolean known = bucketable.get(sql);
+            if (known != null) {
+                return known;
+            }
+        }
+        boolean result = isRowLocal(connection.translateQuery(sql));
+        synchronized (this) {
+            bucketable.put(sql, result);
+            if (bucketable.size() > MAX_TRANSLATIONS) {
+                Iterator<String> iterator = bucketable.keySet().iterator();
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lifts a single {@code _time > now() - <n><unit>} conjunct out of the WHERE clause. Predicates that are
+     * part of a disjunction are left alone, as removing them would change the meaning of the query. The SQL is
+     * matched with its literals and comments blanked out, so that text inside them is neither lifted nor cut.
+     */
+    static Window parseWindow(String sql) {
+        String code = maskLiterals(sql);
+        Matcher any = ANY_PREDICATE.matcher(code);
+        if (!any.find() || any.find() || OR_KEYWORD.matcher(code).find()) {
+            return null;
+        }
+        for (Pattern pattern : new Pattern[]{LEADING_CONJUNCT, TRAILING_CONJUNCT, SOLE_PREDICATE}) {
+            Matcher matcher = pattern.matcher(code);
+            if (matcher.find()) {
+                String replacement = pattern == LEADING_CONJUNCT ? "WHERE " : "";
+                String rewritten = sql.substring(0, matcher.start()) + replacement + sql.substring(matcher.end());
+                return new Window(rewritten, toDuration(Long.parseLong(matcher.group(2)), matcher.group(3)),
+                        matcher.group(1).isEmpty());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns {@code sql} with the content of string literals and quoted identifiers replaced by {@code x} and
+     * comments replaced by spaces, keeping every other character at its index.
+     */
+    static String maskLiterals(String sql) {
+        char[] code = sql.toCharArray();
+        int length = code.length;
+        for (int i = 0; i < length; i++) {
+            char c = code[i];
+            if (c == '\'' || c == '"') {
+                // doubled quotes escape a quote; an unterminated literal runs to the end
+                int j = i + 1;
+                while (j < length && (code[j] != c || j + 1 < length && code[j + 1] == c)) {
+                    j += code[j] == c ? 2 : 1;
+                }
+                for (int k = i + 1; k < Math.min(j, length); k++) {
+                    code[k] = 'x';
+                }
+                i = j;
+            } else if (c == '-' && i + 1 < length && code[i + 1] == '-') {
+                while (i < length && code[i] != '\n') {
+                    code[i++] = ' ';
+                }
+            } else if (c == '/' && i + 1 < length && code[i + 1] == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                end = end < 0 ? length : end + 2;
+                while (i < end) {
+                    code[i++] = ' ';
+                }
+                i--;
+            }
+        }
+        return new String(code);
+    }
+
+    private static Duration toDuration(long amount, String unit) {
+        switch (unit.toLowerCase(Locale.ROOT)) {
+            case "ms":
+                return Duration.ofMillis(amount);
+            case "s":
+                return Duration.ofSeconds(amount);
+            case "m":
+                return Duration.ofMinutes(amount);
+            case "h":
+                return Duration.ofHours(amount);
+            case "d":
+                return Duration.ofDays(amount);
+            default:
+                return Duration.ofDays(amount * 7);
+        }
+    }
+
+    /**
+     * Splits {@code [start, now]} into a partial head, epoch-aligned closed buckets and an open tail.
+     */
+    static List<Bucket> plan(Instant start, Instant now, Duration bucketSize, Duration settleDelay) {
+        long size = bucketSize.toMillis();
+        long firstAligned = Math.floorDiv(start.toEpochMilli(), size) * size;
+        if (Instant.ofEpochMilli(firstAligned).isBefore(start)) {
+            firstAligned += size;
+        }
+        long settled = Math.floorDiv(now.minus(settleDelay).toEpochMilli(), size) * size;
+        List<Bucket> plan = new ArrayList<>();
+        if (firstAligned >= settled) {
+            plan.add(new Bucket(start, now.plusNanos(1), false));
+            return plan;
+        }
+        if (start.isBefore(Instant.ofEpochMilli(firstAligned))) {
+            plan.add(new Bucket(start, Instant.ofEpochMilli(firstAligned), false));
+        }
+        for (long bucket = firstAligned; bucket < settled; bucket += size) {
+            plan.add(new Bucket(Instant.ofEpochMilli(bucket), Instant.ofEpochMilli(bucket + size), true));
+        }
+        plan.add(new Bucket(Instant.ofEpochMilli(settled), now.plusNanos(1), false));
+        return plan;
+    }
+
+    /**
+     * Reports whether every pipe of {@code logsql} is row-local and nothing depends on the evaluation time.
+     */
+    static boolean isRowLocal(String logsql) {
+        if (logsql == null || logsql.contains("now()")) {
+            return false;
+        }
+        List<String> pipes = new ArrayList<>();
+        int depth = 0;
+        char quote = 0;
+        int segmentStart = 0;
+        for (int i = 0; i < logsql.length(); i++) {
+            char c = logsql.charAt(i);
+            if (quote != 0) {
+                if (c == '\\' && quote != '`') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'' || c == '`') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|') {
+                if (depth != 0) {
+                    // a subquery is evaluated over its own time range
+                    return false;
+                }
+                pipes.add(logsql.substring(segmentStart, i));
+                segmentStart = i + 1;
+            }
+        }
+        if (segmentStart == 0) {
+            return true;
+        }
+        pipes.add(logsql.substring(segmentStart));
+        for (String pipe : pipes.subList(1, pipes.size())) {
+            String trimmed = pipe.trim();
+            int end = 0;
+            while (end < trimmed.length() && (Character.isLetter(trimmed.charAt(end)) || trimmed.charAt(end) == '_')) {
+                end++;
+            }
+            if (!ROW_LOCAL_PIPES.contains(trimmed.substring(0, end).toLowerCase(Locale.ROOT))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String format(Instant instant) {
+        return DateTimeFormatter.ISO_INSTANT.format(instant);
+    }
+}
@@ -138,7 +138,59 @@ final class LogsqlUrlParser {
         }
     }
 
-    private static boolean parseBoolean(String value, boolean defaultValue) {
+    static long parsePositiveLong(String name, String value, long defaultValue) throws SQLException {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            long parsed = Long.parseLong(value.trim());
+            if (parsed <= 0) {
+                throw new SQLException(name + " must be positive: " + value);
+            }
+            return parsed;
+        } catch (NumberFormatException ex) {
+            throw new SQLException("Invalid " + name + " value: " + value, ex);
+        }
+    }
+
+    static long parseNonNegativeLong(String name, String value, long defaultValue) throws SQLException {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            long parsed = Long.parseLong(value.trim());
+            if (parsed < 0) {
+                throw new SQLException(name + " must not be negative: " + value);
+            }
+            return parsed;
+        } catch (NumberFormatException ex) {
+            throw new SQLException("Invalid " + name + " value: " + value, ex);
+        }
+    }
+
+    /**
+     * Parses a number between {@code 0} and {@code 1}.
+     */
+    static double parseFraction(String name, String value, double defaultValue) throws SQLException {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            if (!(parsed >= 0 && parsed <= 1)) {
+                throw new SQLException(name + " must be between 0 and 1: " + value);
+            }
+            return parsed;
+        } catch (NumberFormatException ex) {
+            throw new SQLException("Invalid " + name + " value: " + value, ex);
+        }
+    }
+
+    static Duration parseMillis(String name, String value, Duration defaultValue) throws SQLException {
+        return Duration.ofMillis(parsePositiveLong(name, value, defaultValue.toMillis()));
+    }
+
+    static boolean parseBoolean(String value, boolean defaultValue) {
         if (value == null) {
             return defaultValue;
         }
@@ -158,7 +210,7 @@ final class LogsqlUrlParser {
         }
     }
 
-    private static String trimToNull(String value) {
+    static String trimToNull(String value) {
         if (value == null) {
             return null;
         }
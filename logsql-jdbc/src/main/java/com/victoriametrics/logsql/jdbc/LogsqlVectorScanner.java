@@ -0,0 +1,32 @@
+package com.victoriametrics.logsql.jdbc;
+
+/**
+ * Byte scanner standing in for the Vector API one, which is only available from the Java 17 section of the
+ * multi-release jar ({@code src/main/java17}). This version is loaded on older runtimes: it reports itself as
+ * unsupported, so {@link LogsqlByteScanner} does not pick it, and scans with the SWAR loops of that class.
+ */
+final class LogsqlVectorScanner {
+
+    private LogsqlVectorScanner() {
+    }
+
+    static boolean isSupported() {
+        return false;
+    }
+
+    static int indexOfNewline(byte[] bytes, int from, int to) {
+        return LogsqlByteScanner.swarIndexOfNewline(bytes, from, to);
+    }
+
+    static int lastIndexOfNewline(byte[] bytes, int from, int to) {
+        return LogsqlByteScanner.swarLastIndexOfNewline(bytes, from, to);
+    }
+
+    static int countNewlines(byte[] bytes, int from, int to) {
+        return LogsqlByteScanner.swarCountNewlines(bytes, from, to);
+    }
+
+    static int indexOfQuoteOrBackslash(byte[] bytes, int from, int to) {
+        return LogsqlByteScanner.swarIndexOfQuoteOrBackslash(bytes, from, to);
+    }
+}
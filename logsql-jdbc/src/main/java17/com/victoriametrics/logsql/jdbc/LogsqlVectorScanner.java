@@ -0,0 +1,71 @@
+package com.victoriametrics.logsql.jdbc;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementation of the {@link LogsqlByteScanner} searches, comparing one SIMD register of bytes
+ * per step. Loading this class fails unless the runtime resolves {@code jdk.incubator.vector}, in which case
+ * {@link LogsqlByteScanner} stays on its SWAR implementation.
+ */
+final class LogsqlVectorScanner {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private LogsqlVectorScanner() {
+    }
+
+    static boolean isSupported() {
+        // with 64-bit vectors the SWAR loop is just as wide
+        return SPECIES.length() >= 16;
+    }
+
+    static int indexOfNewline(byte[] bytes, int from, int to) {
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            VectorMask<Byte> matches = ByteVector.fromArray(SPECIES, bytes, i)
+                    .compare(VectorOperators.EQ, (byte) '\n');
+            if (matches.anyTrue()) {
+                return i + matches.firstTrue();
+            }
+        }
+        return LogsqlByteScanner.swarIndexOfNewline(bytes, i, to);
+    }
+
+    static int lastIndexOfNewline(byte[] bytes, int from, int to) {
+        int i = to;
+        for (int bound = to - SPECIES.loopBound(to - from); i > bound; i -= SPECIES.length()) {
+            int start = i - SPECIES.length();
+            VectorMask<Byte> matches = ByteVector.fromArray(SPECIES, bytes, start)
+                    .compare(VectorOperators.EQ, (byte) '\n');
+            if (matches.anyTrue()) {
+                return start + matches.lastTrue();
+            }
+        }
+        return LogsqlByteScanner.swarLastIndexOfNewline(bytes, from, i);
+    }
+
+    static int countNewlines(byte[] bytes, int from, int to) {
+        int count = 0;
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            count += ByteVector.fromArray(SPECIES, bytes, i).compare(VectorOperators.EQ, (byte) '\n').trueCount();
+        }
+        return count + LogsqlByteScanner.swarCountNewlines(bytes, i, to);
+    }
+
+    static int indexOfQuoteOrBackslash(byte[] bytes, int from, int to) {
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            ByteVector vector = ByteVector.fromArray(SPECIES, bytes, i);
+            VectorMask<Byte> matches = vector.compare(VectorOperators.EQ, (byte) '"')
+                    .or(vector.compare(VectorOperators.EQ, (byte) '\\'));
+            if (matches.anyTrue()) {
+                return i + matches.firstTrue();
+            }
+        }
+        return LogsqlByteScanner.swarIndexOfQuoteOrBackslash(bytes, i, to);
+    }
+}
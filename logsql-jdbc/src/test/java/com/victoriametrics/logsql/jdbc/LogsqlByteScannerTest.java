@@ -0,0 +1,81 @@
+package com.victoriametrics.logsql.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlByteScannerTest {
+
+    @Test
+    public void usesVectorsWhenTheModuleIsAvailable() {
+        // set by the java17 build profile, which runs this test with jdk.incubator.vector resolved
+        assertEquals(Boolean.getBoolean("logsql.test.vectorized"), LogsqlByteScanner.VECTORIZED);
+    }
+
+    @Test
+    public void matchesScalarSearchAtEveryAlignment() {
+        Random random = new Random(42);
+        byte[] specials = {'\n', '"', '\\'};
+        // neighbours of the special bytes, with and without the high bit, trip up inexact SWAR tests
+        byte[] others = {'a', 0x00, 0x09, 0x0B, 0x21, 0x23, 0x5B, 0x5D, (byte) 0x8A, (byte) 0xA2, (byte) 0xDC, (byte) 0xFF};
+        for (int density : new int[]{2, 40, 1000}) {
+            byte[] bytes = new byte[700];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = random.nextInt(density) == 0
+                        ? specials[random.nextInt(specials.length)]
+                        : others[random.nextInt(others.length)];
+            }
+            for (int from = 0; from < 40; from++) {
+                for (int to = from; to <= bytes.length; to += 1 + random.nextInt(23)) {
+                    String range = "density " + density + " [" + from + ", " + to + ")";
+                    assertEquals(scalarIndexOf(bytes, from, to, false),
+                            LogsqlByteScanner.indexOfNewline(bytes, from, to), range);
+                    assertEquals(scalarIndexOf(bytes, from, to, false),
+                            LogsqlByteScanner.swarIndexOfNewline(bytes, from, to), range);
+                    assertEquals(scalarLastIndexOf(bytes, from, to),
+                            LogsqlByteScanner.lastIndexOfNewline(bytes, from, to), range);
+                    assertEquals(scalarLastIndexOf(bytes, from, to),
+                            LogsqlByteScanner.swarLastIndexOfNewline(bytes, from, to), range);
+                    assertEquals(scalarCount(bytes, from, to),
+                            LogsqlByteScanner.countNewlines(bytes, from, to), range);
+                    assertEquals(scalarCount(bytes, from, to),
+                            LogsqlByteScanner.swarCountNewlines(bytes, from, to), range);
+                    assertEquals(scalarIndexOf(bytes, from, to, true),
+                            LogsqlByteScanner.indexOfQuoteOrBackslash(bytes, from, to), range);
+                    assertEquals(scalarIndexOf(bytes, from, to, true),
+                            LogsqlByteScanner.swarIndexOfQuoteOrBackslash(bytes, from, to), range);
+                }
+            }
+        }
+    }
+
+    private static int scalarIndexOf(byte[] bytes, int from, int to, boolean quotes) {
+        for (int i = from; i < to; i++) {
+            if (quotes ? bytes[i] == '"' || bytes[i] == '\\' : bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int scalarLastIndexOf(byte[] bytes, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int scalarCount(byte[] bytes, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
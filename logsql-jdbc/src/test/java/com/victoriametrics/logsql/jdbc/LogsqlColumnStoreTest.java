@@ -0,0 +1,62 @@
+package com.victoriametrics.logsql.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlColumnStoreTest {
+
+    @Test
+    public void encodesRepeatedStringsOnce() throws Exception {
+        LogsqlResultBuilder builder = new LogsqlResultBuilder(0);
+        for (int i = 0; i < 10_000; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("_msg", "request " + i);
+            // a fresh instance per row, as the JSON parser produces them
+            row.put("level", new String(i % 10 == 0 ? "error" : "info"));
+            if (i % 3 == 0) {
+                row.put("host", "host-" + (i % 300));
+            }
+            row.put("code", i % 7 == 6 ? Integer.valueOf(500) : "ok");
+            builder.addRow(row);
+        }
+        LogsqlQueryResult result = builder.build("*");
+        LogsqlColumnStore store = assertInstanceOf(LogsqlColumnStore.class, result.getRows());
+        assertEquals(List.of("_msg", "level", "host", "code"), result.getColumnNames());
+
+        assertFalse(store.isDictionaryEncoded(0), "unique messages fall back to plain storage");
+        assertTrue(store.isDictionaryEncoded(1));
+        assertTrue(store.isDictionaryEncoded(2));
+        assertFalse(store.isDictionaryEncoded(3), "mixed types fall back to plain storage");
+
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals("request " + i, store.getValue(i, 0));
+            assertEquals(i % 10 == 0 ? "error" : "info", store.getValue(i, 1));
+            assertEquals(i % 3 == 0 ? "host-" + (i % 300) : null, store.getValue(i, 2));
+            assertEquals(i % 7 == 6 ? Integer.valueOf(500) : "ok", store.getValue(i, 3));
+        }
+        assertSame(store.getValue(1, 1), store.getValue(2, 1));
+        assertNull(store.getValue(0, 4));
+    }
+
+    @Test
+    public void respectsMaxRowsAndLateColumns() throws Exception {
+        LogsqlResultBuilder builder = new LogsqlResultBuilder(3);
+        builder.addRow(Map.of("a", "x"));
+        builder.addRow(Map.of("a", "y"));
+        builder.addRow(Map.of("b", "late"));
+        builder.addRow(Map.of("c", "dropped"));
+        LogsqlQueryResult result = builder.build(null);
+
+        assertEquals(3, result.getRowCount());
+        assertEquals(List.of("a", "b", "c"), result.getColumnNames());
+        assertNull(result.getValue(0, "b"));
+        assertEquals("late", result.getValue(2, "b"));
+        assertNull(result.getValue(2, "a"));
+        assertNull(result.getValue(2, "c"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.victoriametrics.logsql.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlCompressionTest {
+
+    @Test
+    public void decompressesGzipResponsesAndReportsRatio() throws Exception {
+        LogsqlConnectionMetrics metrics = runQuery(new Properties());
+
+        assertTrue(metrics.getResponseBytesReceived() > 0);
+        assertTrue(metrics.getCompressionRatio() > 5.0, "ratio was " + metrics.getCompressionRatio());
+        assertEquals(metrics.getResponseBytesDecoded(),
+                Math.round(metrics.getResponseBytesReceived() * metrics.getCompressionRatio()));
+    }
+
+    @Test
+    public void compressionCanBeDisabled() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("compression", "none");
+        LogsqlConnectionMetrics metrics = runQuery(properties);
+
+        assertEquals(metrics.getResponseBytesReceived(), metrics.getResponseBytesDecoded());
+        assertEquals(1.0, metrics.getCompressionRatio());
+    }
+
+    @Test
+    public void rejectsUnknownCodecs() {
+        Properties properties = new Properties();
+        properties.setProperty("compression", "br");
+        SQLException error = assertThrows(SQLException.class,
+                () -> LogsqlUrlParser.parse("jdbc:logsql://localhost", properties));
+        assertTrue(error.getMessage().contains("br"));
+    }
+
+    private LogsqlConnectionMetrics runQuery(Properties properties) throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            data.append("{\"_time\":\"2024-01-01T00:00:00Z\",\"_stream\":\"{app=\\\"api\\\"}\",\"_msg\":\"request ")
+                    .append(i).append(" served\"}\n");
+        }
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            server.setResponder(sql -> data.toString());
+            int rows = 0;
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                while (rs.next()) {
+                    assertEquals("request " + rows + " served", rs.getString("_msg"));
+                    rows++;
+                }
+            }
+            assertEquals(1000, rows);
+            assertTrue(connection.isWrapperFor(LogsqlConnectionMetrics.class));
+            return connection.unwrap(LogsqlConnectionMetrics.class);
+        }
+    }
+}
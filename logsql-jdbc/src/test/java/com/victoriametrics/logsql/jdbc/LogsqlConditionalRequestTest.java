@@ -0,0 +1,91 @@
+package com.victoriametrics.logsql.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlConditionalRequestTest {
+
+    @Test
+    public void repeatedPollingReusesRetainedResult() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            data.append("{\"_time\":\"2024-01-01T00:00:00Z\",\"_msg\":\"message ").append(i).append("\"}\n");
+        }
+        Properties properties = new Properties();
+        properties.setProperty("retainedResultRows", "1000");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            server.setResponder(sql -> data.toString());
+
+            long firstBytes = 0;
+            for (int poll = 0; poll < 5; poll++) {
+                try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                    int rows = 0;
+                    while (rs.next()) {
+                        assertEquals("message " + rows, rs.getString("_msg"));
+                        rows++;
+                    }
+                    assertEquals(500, rows);
+                }
+                if (poll == 0) {
+                    firstBytes = server.getBodyBytesSent();
+                }
+            }
+
+            assertEquals(5, server.getQueryRequests());
+            assertEquals(4, server.getNotModifiedResponses());
+            assertEquals(firstBytes, server.getBodyBytesSent(), "repeated polls should not transfer the body again");
+
+            server.setResponder(sql -> "{\"_msg\":\"changed\"}\n");
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                assertTrue(rs.next());
+                assertEquals("changed", rs.getString("_msg"));
+                assertFalse(rs.next());
+            }
+            assertEquals(4, server.getNotModifiedResponses());
+        }
+    }
+
+    @Test
+    public void conditionalRequestsAreOffByDefault() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl());
+             Statement statement = connection.createStatement()) {
+            server.setResponder(sql -> "{\"_msg\":\"a\"}\n");
+            statement.executeQuery("SELECT * FROM logs").close();
+            statement.executeQuery("SELECT * FROM logs").close();
+            assertEquals(0, server.getNotModifiedResponses());
+        }
+    }
+
+    @Test
+    public void ownedResultsAreNotRetained() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        Properties properties = new Properties();
+        properties.setProperty("statementMemoryBytes", "1000000");
+        properties.setProperty("retainedResultRows", "1000");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            server.setResponder(sql -> "{\"_msg\":\"a\"}\n");
+            for (int i = 0; i < 3; i++) {
+                try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                    assertTrue(rs.next());
+                    assertEquals("a", rs.getString("_msg"));
+                }
+            }
+            assertEquals(3, server.getQueryRequests());
+            assertEquals(0, server.getNotModifiedResponses(), "budgeted results belong to their result set");
+        }
+    }
+}
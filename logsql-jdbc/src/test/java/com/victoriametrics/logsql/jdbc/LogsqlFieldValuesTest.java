@@ -0,0 +1,147 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlFieldValuesTest {
+
+    private static final String[][] READERS = {
+            {"decodeParallelism", "1"},
+            {"decodeParallelism", "4"},
+            {"lazyDecoding", "true"},
+            {"rowFormat", "smile"},
+            {"protocolVersion", "1"},
+            {"offHeap", "true"},
+            {"statementMemoryBytes", "2000"},
+    };
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void readsStringLiteralsFromResponseBytes() throws Exception {
+        String text = "plain ünïcödé 😀 \"quoted\" back\\slash\ttab\nline \u0001 end";
+        byte[] literal = mapper.writeValueAsBytes(text);
+        byte[] escaped = "\"\\u00fc\\ud83d\\ude00\\n\\/\"".getBytes(StandardCharsets.US_ASCII);
+        int end = LogsqlJsonString.end(literal, 0, literal.length);
+        assertEquals(literal.length, end);
+        assertEquals(text, LogsqlJsonString.decode(literal, 0, end, Integer.MAX_VALUE));
+        assertEquals("ü😀\n/", LogsqlJsonString.decode(escaped, 0, escaped.length, 100));
+        assertEquals(text, new String(LogsqlJsonString.utf8(literal, 0, end).readAllBytes(), StandardCharsets.UTF_8));
+        assertEquals("ü😀\n/", new String(LogsqlJsonString.utf8(escaped, 0, escaped.length).readAllBytes(),
+                StandardCharsets.UTF_8));
+        for (int max = 1; max <= text.length(); max++) {
+            // a surrogate pair is never split
+            assertEquals(LogsqlResultBuilder.truncate(text, max), LogsqlJsonString.decode(literal, 0, end, max),
+                    "max " + max);
+        }
+        assertEquals(-1, LogsqlJsonString.end("\"open \\\" ended".getBytes(StandardCharsets.US_ASCII), 0, 14));
+    }
+
+    @Test
+    public void cutsOffStringsAtTheMaxFieldSize() throws Exception {
+        String data = rows(mapper.writeValueAsString(Map.of("_msg", "x".repeat(100_000) + "tail", "n", 7)));
+        for (String[] reader : READERS) {
+            String name = String.join("=", reader);
+            try (LogsqlStandInServer server = new LogsqlStandInServer();
+                 Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties(reader));
+                 Statement statement = connection.createStatement()) {
+                server.setResponder(sql -> data);
+                statement.setMaxFieldSize(10);
+                assertEquals(10, statement.getMaxFieldSize());
+                try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                    int rows = 0;
+                    while (rs.next()) {
+                        assertEquals(rows % 2 == 0 ? "x".repeat(10) : "short", rs.getString("_msg"), name);
+                        assertEquals(rs.getString("_msg"), rs.getObject("_msg"), name);
+                        assertEquals(7, rs.getInt("n"), name);
+                        rows++;
+                    }
+                    assertEquals(10, rows, name);
+                    assertNull(rs.getWarnings(), name);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void streamsLargeFieldsFromASpillFile() throws Exception {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            large.append("\tat com.example.Frame").append(i).append("(Frame.java:").append(i).append(") ü😀\n");
+        }
+        String text = large.toString();
+        String data = rows(mapper.writeValueAsString(Map.of("_msg", text, "n", 7)));
+        for (String[] reader : READERS) {
+            String name = String.join("=", reader);
+            Properties properties = properties(reader);
+            properties.setProperty("largeFieldBytes", "1000");
+            try (LogsqlStandInServer server = new LogsqlStandInServer();
+                 Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+                 Statement statement = connection.createStatement()) {
+                server.setResponder(sql -> data);
+                LogsqlConnectionMetrics metrics = connection.unwrap(LogsqlConnectionMetrics.class);
+                try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                    int rows = 0;
+                    while (rs.next()) {
+                        if (rows % 2 == 0) {
+                            try (Reader in = rs.getCharacterStream("_msg")) {
+                                assertEquals(text, read(in), name);
+                            }
+                            Clob clob = rs.getClob("_msg");
+                            assertEquals(text.length(), clob.length(), name);
+                            assertEquals(text.substring(5, 25), clob.getSubString(6, 20), name);
+                            assertEquals(text, rs.getString("_msg"), name);
+                        } else {
+                            assertEquals("short", rs.getString("_msg"), name);
+                            assertEquals("short", rs.getClob("_msg").getSubString(1, 10), name);
+                        }
+                        assertEquals(7, rs.getInt("n"), name);
+                        rows++;
+                    }
+                    assertEquals(10, rows, name);
+                    if (!"lazyDecoding".equals(reader[0])) {
+                        // lazy rows read large values straight from the response bytes they keep
+                        assertTrue(metrics.getSpillBytesOnDisk() >= 5L * text.length(), name);
+                    }
+                }
+                assertEquals(0, metrics.getSpillBytesOnDisk(), name);
+            }
+        }
+    }
+
+    private static String rows(String largeRow) {
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            data.append(i % 2 == 0 ? largeRow : "{\"_msg\":\"short\",\"n\":7}").append('\n');
+        }
+        return data.toString();
+    }
+
+    private static String read(Reader in) throws Exception {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            text.append(buffer, 0, read);
+        }
+        return text.toString();
+    }
+
+    private static Properties properties(String[] reader) {
+        Properties properties = new Properties();
+        properties.setProperty(reader[0], reader[1]);
+        return properties;
+    }
+}
@@ -0,0 +1,69 @@
+package com.victoriametrics.logsql.jdbc;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlJfrEventsTest {
+
+    private static final String PREFIX = "com.victoriametrics.logsql.jdbc.";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void queryPhasesAreRecorded() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        String sql = "SELECT * FROM logs";
+        Path file = tempDir.resolve("query.jfr");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl());
+             Statement statement = connection.createStatement();
+             Recording recording = new Recording()) {
+            server.setSyntheticRows(50, 4);
+            for (String name : new String[] {"Query", "Send", "FirstByte", "BodyComplete", "Decode",
+                    "ResultSetIterate", "ResultSetClose"}) {
+                recording.enable(PREFIX + name).withoutThreshold();
+            }
+            recording.start();
+            try (ResultSet rs = statement.executeQuery(sql)) {
+                while (rs.next()) {
+                    assertNotNull(rs.getString(1));
+                }
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+
+        Map<String, RecordedEvent> events = new HashMap<>();
+        List<RecordedEvent> recorded = RecordingFile.readAllEvents(file);
+        for (RecordedEvent event : recorded) {
+            events.put(event.getEventType().getName().substring(PREFIX.length()), event);
+        }
+        assertEquals(7, events.size(), events.keySet().toString());
+        for (RecordedEvent event : events.values()) {
+            assertEquals(sql.hashCode(), event.getInt("sqlHash"));
+            assertEquals(50, event.getLong("rows"));
+            assertTrue(event.getLong("bytes") > 0);
+            assertTrue(event.getLong("logsqlLength") > 0);
+        }
+        assertEquals("SERVICE", events.get("Query").getString("source"));
+        assertFalse(events.get("Query").getBoolean("failed"));
+        assertFalse(events.get("Send").getEndTime().isAfter(events.get("FirstByte").getStartTime()));
+        assertFalse(events.get("BodyComplete").getEndTime().isAfter(events.get("Decode").getEndTime()));
+        assertFalse(events.get("Query").getEndTime().isAfter(events.get("ResultSetIterate").getStartTime()));
+    }
+}
@@ -0,0 +1,101 @@
+package com.victoriametrics.logsql.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlJmxTest {
+
+    @Test
+    public void connectionMetricsArePublishedWhileOpen() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name;
+        Properties properties = new Properties();
+        properties.setProperty("retainedResultRows", "1000");
+        try (LogsqlStandInServer standIn = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(standIn.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            standIn.setSyntheticRows(100, 8);
+            name = findConnection(server, connection.unwrap(LogsqlConnectionMXBean.class).getServiceUrl());
+
+            for (int i = 0; i < 3; i++) {
+                try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                    assertEquals(1L, server.getAttribute(name, "OpenResultSets"));
+                    while (rs.next()) {
+                        assertNotNull(rs.getString(LogsqlSyntheticData.fieldName(0)));
+                    }
+                }
+            }
+            standIn.setErrorRate(1.0);
+            assertThrows(SQLException.class, () -> statement.executeQuery("SELECT * FROM logs"));
+
+            assertEquals(3L, server.getAttribute(name, "QueriesSucceeded"));
+            assertEquals(1L, server.getAttribute(name, "QueriesFailed"));
+            assertEquals(0L, server.getAttribute(name, "QueriesInFlight"));
+            assertEquals(0L, server.getAttribute(name, "OpenResultSets"));
+            assertEquals(300L, server.getAttribute(name, "RowsReturned"));
+            assertEquals(2L, server.getAttribute(name, "NotModifiedResponses"));
+            assertEquals(1.0, (Double) server.getAttribute(name, "NotModifiedRatio"), 1e-9);
+
+            LogsqlLatencyStats total = LogsqlLatencyStats.from(
+                    (CompositeData) server.getAttribute(name, "TotalLatency"));
+            assertEquals(3, total.getCount());
+            assertTrue(total.getMaxMillis() >= total.getP50Millis());
+            LogsqlLatencyStats decode = LogsqlLatencyStats.from(
+                    (CompositeData) server.getAttribute(name, "RecentDecodeLatency"));
+            assertEquals(1, decode.getCount(), "only the first execution transferred a body");
+
+            assertTrue((Long) server.getAttribute(name, "ResponseBytesReceived") > 0);
+            ObjectName driver = new ObjectName("com.victoriametrics.logsql.jdbc:type=Driver");
+            assertTrue((Long) server.getAttribute(driver, "QueriesSucceeded") >= 3);
+            assertTrue((Long) server.getAttribute(driver, "OpenConnections") >= 1);
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void registrationCanBeDisabled() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        Properties properties = new Properties();
+        properties.setProperty("jmx", "false");
+        try (LogsqlStandInServer standIn = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(standIn.jdbcUrl(), properties)) {
+            String serviceUrl = connection.unwrap(LogsqlConnectionMXBean.class).getServiceUrl();
+            assertNull(findConnectionOrNull(ManagementFactory.getPlatformMBeanServer(), serviceUrl));
+            try (Statement statement = connection.createStatement()) {
+                statement.executeQuery("SELECT * FROM logs").close();
+            }
+            assertEquals(1, connection.unwrap(LogsqlConnectionMXBean.class).getQueriesSucceeded());
+        }
+    }
+
+    private static ObjectName findConnection(MBeanServer server, String serviceUrl) throws Exception {
+        ObjectName name = findConnectionOrNull(server, serviceUrl);
+        assertNotNull(name, "connection MBean for " + serviceUrl);
+        return name;
+    }
+
+    private static ObjectName findConnectionOrNull(MBeanServer server, String serviceUrl) throws Exception {
+        Set<ObjectName> names = server.queryNames(new ObjectName("com.victoriametrics.logsql.jdbc:type=Connection,*"),
+                null);
+        for (ObjectName name : names) {
+            if (serviceUrl.equals(server.getAttribute(name, "ServiceUrl"))) {
+                return name;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,112 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlOffHeapRowStoreTest {
+
+    @Test
+    public void storesValuesLikeTheHeapStore() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("offHeap", "true");
+        properties.setProperty("offHeapArenaBytes", "256");
+        LogsqlConnectionConfig config = LogsqlUrlParser.parse("jdbc:logsql://localhost", properties);
+        LogsqlConnectionStats stats = new LogsqlConnectionStats();
+        LogsqlResultBuilder heap = new LogsqlResultBuilder(0);
+        LogsqlResultBuilder offHeap = new LogsqlResultBuilder(0, null,
+                new LogsqlResultMemory(new ObjectMapper(), stats, config));
+        String large = "x".repeat(1000);
+        for (int i = 0; i < 500; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("_msg", i % 50 == 0 ? large : "ünïcödé " + i);
+            row.put("int", i);
+            row.put("long", 1L << 40 | i);
+            row.put("double", i / 4.0);
+            row.put("bool", i % 2 == 0);
+            row.put("null", null);
+            if (i % 7 == 0) {
+                row.put("big", new BigInteger("123456789012345678901234567890"));
+                row.put("decimal", new BigDecimal("1.25"));
+                row.put("nested", Map.of("a", List.of(1, 2)));
+            }
+            heap.addRow(row);
+            offHeap.addRow(row);
+        }
+        LogsqlQueryResult expected = heap.build("*");
+        LogsqlQueryResult actual = offHeap.build("*");
+        LogsqlRowStore rows = actual.getRows();
+        assertTrue(rows instanceof LogsqlOffHeapRowStore);
+        assertEquals(expected.getColumnNames(), actual.getColumnNames());
+        assertArrayEquals(expected.getColumnTypes(), actual.getColumnTypes());
+        assertEquals(500, rows.getRowCount());
+        for (int row = 0; row < 500; row++) {
+            for (int column = 0; column < actual.getColumnNames().size(); column++) {
+                assertEquals(expected.getRows().getValue(row, column), rows.getValue(row, column),
+                        "row " + row + ", column " + column);
+            }
+            // out-of-order reads must not depend on the cursor of the previous read
+            assertEquals(row, rows.getValue(row, 1));
+            assertEquals(expected.getRows().getValue(row, 0), rows.getValue(row, 0));
+        }
+
+        long reserved = ((LogsqlOffHeapRowStore) rows).getReservedBytes();
+        assertTrue(reserved > 0);
+        assertEquals(reserved, stats.getOffHeapBytesInUse());
+        rows.close();
+        rows.close();
+        assertEquals(0, stats.getOffHeapBytesInUse());
+        assertEquals(reserved, stats.getOffHeapBytesPeak());
+        assertThrows(SQLException.class, () -> rows.getValue(0, 0));
+    }
+
+    @Test
+    public void resultSetCloseReleasesDirectMemory() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            data.append("{\"_msg\":\"request ").append(i).append("\",\"status\":").append(200 + i % 3).append("}\n");
+        }
+        Properties properties = new Properties();
+        properties.setProperty("offHeap", "true");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            server.setResponder(sql -> data.toString());
+            LogsqlConnectionMetrics metrics = connection.unwrap(LogsqlConnectionMetrics.class);
+            int rows = 0;
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                assertTrue(metrics.getOffHeapBytesInUse() > 0);
+                while (rs.next()) {
+                    assertEquals("request " + rows, rs.getString("_msg"));
+                    assertEquals(200 + rows % 3, rs.getInt("status"));
+                    rows++;
+                }
+            }
+            assertEquals(1000, rows);
+            assertEquals(0, metrics.getOffHeapBytesInUse());
+
+            // a statement closes the result set it replaces
+            statement.executeQuery("SELECT * FROM logs");
+            long inUse = metrics.getOffHeapBytesInUse();
+            statement.executeQuery("SELECT * FROM logs");
+            assertEquals(inUse, metrics.getOffHeapBytesInUse());
+            statement.close();
+            assertEquals(0, metrics.getOffHeapBytesInUse());
+            assertEquals(3 * inUse, metrics.getOffHeapBytesReserved());
+        }
+    }
+}
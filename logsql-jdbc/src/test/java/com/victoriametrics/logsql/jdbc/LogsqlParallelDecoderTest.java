@@ -0,0 +1,163 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlParallelDecoderTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void decodesChunksInStreamOrder() throws Exception {
+        StringBuilder body = new StringBuilder("{\"logsql\":\"* | limit 5000\"}\n");
+        for (int i = 0; i < 5000; i++) {
+            body.append("{\"_time\":\"2024-01-01T00:00:00Z\",\"_msg\":\"ünïcödé ").append(i).append("\",\"n\":").append(i);
+            if (i % 1000 == 0) {
+                body.append(",\"wide\":\"").append("x".repeat(3000)).append('"');
+            }
+            body.append("}\n");
+            if (i % 700 == 0) {
+                body.append('\n');
+            }
+        }
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+        LogsqlQueryResult expected = new LogsqlResponseReader(mapper, null)
+                .read(new ByteArrayInputStream(bytes), LogsqlResponseReader.NDJSON_CONTENT_TYPE, 0);
+        for (boolean lazy : new boolean[]{false, true}) {
+            LogsqlQueryResult actual = new LogsqlParallelDecoder(mapper, 4, 2048, lazy, 512)
+                    .read(new TrickleInputStream(bytes), 0);
+
+            assertEquals(expected.getLogsql(), actual.getLogsql());
+            assertEquals(expected.getColumnNames(), actual.getColumnNames());
+            assertArrayEquals(expected.getColumnTypes(), actual.getColumnTypes());
+            assertEquals(5000, actual.getRowCount());
+            assertEquals(rows(expected), rows(actual));
+        }
+    }
+
+    @Test
+    public void lazyRowsDecodeValuesLikeMaps() throws Exception {
+        String body = "{\"logsql\":\"*\"}\n"
+                + "{\"a\":null, \"s\" : \"esc\\\"aped\\u00e9\" ,\"i\":1,\"l\":12345678901,\"b\":123456789012345678901234,"
+                + "\"d\":-1.5e3,\"t\":true,\"o\":{\"x\":[1,{\"y\":\"}\"}]},\"e\":[]}\r\n"
+                + "{\"a\":\"late\",\"s\":\"plain\",\"s\":\"duplicate\",\"f\":false,\"i\":2}\n"
+                + "{}\n"
+                + "{\"i\":3}";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        LogsqlQueryResult expected = new LogsqlResponseReader(mapper, null)
+                .read(new ByteArrayInputStream(bytes), LogsqlResponseReader.NDJSON_CONTENT_TYPE, 0);
+        LogsqlQueryResult actual = new LogsqlParallelDecoder(mapper, 1, 1024, true)
+                .read(new ByteArrayInputStream(bytes), 0);
+
+        assertInstanceOf(LogsqlLazyRowStore.class, actual.getRows());
+        assertEquals(expected.getColumnNames(), actual.getColumnNames());
+        assertArrayEquals(expected.getColumnTypes(), actual.getColumnTypes());
+        for (int row = 0; row < expected.getRowCount(); row++) {
+            for (int column = 0; column < expected.getColumnNames().size(); column++) {
+                Object value = expected.getRows().getValue(row, column);
+                assertEquals(value, actual.getRows().getValue(row, column), "row " + row + ", column " + column);
+                if (value != null) {
+                    assertEquals(value.getClass(), actual.getRows().getValue(row, column).getClass());
+                }
+            }
+        }
+        assertSame(actual.getRows().getValue(0, 1), actual.getRows().getValue(0, 1), "decoded values are cached");
+    }
+
+    @Test
+    public void lazyRowsKeptFromLargeChunksAreCopiedOut() throws Exception {
+        StringBuilder body = new StringBuilder("{\"logsql\":\"*\"}\n");
+        for (int i = 0; i < 1000; i++) {
+            body.append("{\"_msg\":\"message ").append(i).append("\",\"n\":").append(i).append("}\n");
+        }
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+        LogsqlQueryResult all = new LogsqlParallelDecoder(mapper, 1, 1 << 20, true, 1 << 16)
+                .read(new ByteArrayInputStream(bytes), 0);
+        LogsqlQueryResult few = new LogsqlParallelDecoder(mapper, 1, 1 << 20, true, 1 << 16)
+                .read(new ByteArrayInputStream(bytes), 3);
+
+        assertEquals(1 << 16, ((LogsqlLazyRowStore) all.getRows()).getBufferBytes());
+        assertTrue(((LogsqlLazyRowStore) few.getRows()).getBufferBytes() < 100);
+        assertEquals(3, few.getRowCount());
+        for (int row = 0; row < 3; row++) {
+            assertEquals("message " + row, few.getValue(row, "_msg"));
+            assertEquals(row, few.getValue(row, "n"));
+        }
+    }
+
+    @Test
+    public void rowsLongerThanTheMaximumRowSizeFail() {
+        String wide = "{\"logsql\":\"*\"}\n{\"_msg\":\"" + "x".repeat(5000) + "\"}\n";
+        byte[] bytes = wide.getBytes(StandardCharsets.UTF_8);
+
+        SQLException error = assertThrows(SQLException.class, () -> new LogsqlParallelDecoder(mapper, 1, 1 << 20,
+                true, 256, 4096).read(new ByteArrayInputStream(bytes), 0));
+        assertEquals(LogsqlResultLimits.LIMIT_EXCEEDED_STATE, error.getSQLState());
+        assertTrue(error.getMessage().contains("4096 bytes"), error.getMessage());
+    }
+
+    @Test
+    public void handlesEmptyAndHeaderOnlyResponses() throws Exception {
+        LogsqlParallelDecoder decoder = new LogsqlParallelDecoder(mapper, 4, 1024, false, 64);
+
+        LogsqlQueryResult empty = decoder.read(new ByteArrayInputStream(new byte[0]), 0);
+        assertNull(empty.getLogsql());
+        assertEquals(0, empty.getRowCount());
+
+        LogsqlQueryResult headerOnly = decoder.read(
+                new ByteArrayInputStream("{\"logsql\":\"*\"}\n".getBytes(StandardCharsets.UTF_8)), 0);
+        assertEquals("*", headerOnly.getLogsql());
+        assertEquals(0, headerOnly.getRowCount());
+    }
+
+    @Test
+    public void reportsTheLineOfMalformedRows() {
+        StringBuilder body = new StringBuilder("{\"logsql\":\"*\"}\n");
+        for (int i = 0; i < 100; i++) {
+            body.append("{\"n\":").append(i).append("}\n");
+        }
+        body.append("[1]\n{\"n\":100}\n");
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+        SQLException error = assertThrows(SQLException.class,
+                () -> new LogsqlParallelDecoder(mapper, 2, 64, false, 64).read(new ByteArrayInputStream(bytes), 0));
+        assertEquals("Failed to parse response row at line 102: expected a JSON object", error.getMessage());
+    }
+
+    private static List<String> rows(LogsqlQueryResult result) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        for (int row = 0; row < result.getRowCount(); row++) {
+            StringBuilder line = new StringBuilder();
+            for (int column = 0; column < result.getColumnNames().size(); column++) {
+                line.append(result.getRows().getValue(row, column)).append('|');
+            }
+            rows.add(line.toString());
+        }
+        return rows;
+    }
+
+    /**
+     * Returns at most 100 bytes per read, like a slow network connection.
+     */
+    private static final class TrickleInputStream extends ByteArrayInputStream {
+        TrickleInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 100));
+        }
+    }
+}
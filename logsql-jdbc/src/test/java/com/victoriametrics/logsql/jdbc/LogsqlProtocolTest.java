@@ -0,0 +1,156 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlProtocolTest {
+
+    private static final String DATA = "{\"_time\":\"2024-01-01T00:00:00Z\",\"_msg\":\"line \\\"one\\\"\\n\",\"hits\":1}\n"
+            + "\n"
+            + "{\"_time\":\"2024-01-01T00:00:01Z\",\"_msg\":\"ünïcödé\",\"extra\":{\"a\":[1,2]}}\n";
+
+    @Test
+    public void streamedAndEnvelopedResponsesDecodeIdentically() throws Exception {
+        List<String> streamed = query("v2", "json", LogsqlResponseReader.NDJSON_CONTENT_TYPE);
+        List<String> enveloped = query("v1", "json", LogsqlResponseReader.JSON_CONTENT_TYPE);
+        List<String> binary = query("v2", "smile", LogsqlResponseReader.SMILE_CONTENT_TYPE);
+
+        assertEquals(List.of("line \"one\"\n|1|null", "ünïcödé|null|{a=[1, 2]}"), streamed);
+        assertEquals(streamed, enveloped);
+        assertEquals(streamed, binary);
+    }
+
+    @Test
+    public void smileRowsShareRepeatedPropertyNames() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            data.append("{\"_time\":\"2024-01-01T00:00:00Z\",\"_stream\":\"{app=\\\"api\\\"}\",")
+                    .append("\"_msg\":\"request ").append(i).append("\",\"duration_ms\":").append(i % 97).append("}\n");
+        }
+        long[] bodyBytes = new long[2];
+        String[] rowFormats = {"json", "smile"};
+        for (int f = 0; f < rowFormats.length; f++) {
+            Properties properties = new Properties();
+            properties.setProperty("rowFormat", rowFormats[f]);
+            properties.setProperty("compression", "none");
+            try (LogsqlStandInServer server = new LogsqlStandInServer();
+                 Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+                 Statement statement = connection.createStatement()) {
+                server.setResponder(sql -> data.toString());
+                try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                    int rows = 0;
+                    while (rs.next()) {
+                        assertEquals("request " + rows, rs.getString("_msg"));
+                        assertEquals(rows % 97, rs.getInt("duration_ms"));
+                        rows++;
+                    }
+                    assertEquals(1000, rows);
+                }
+                assertEquals(LogsqlResponseReader.acceptHeader(2, rowFormats[f]).split(",")[0],
+                        server.getLastContentType());
+                bodyBytes[f] = server.getBodyBytesSent();
+            }
+        }
+        assertTrue(bodyBytes[1] < bodyBytes[0] * 3 / 4,
+                "smile body of " + bodyBytes[1] + " bytes should be well below " + bodyBytes[0] + " bytes of NDJSON");
+    }
+
+    @Test
+    public void smileEncodedByTheServiceIsDecoded() throws Exception {
+        // the byte sequences pinned by the service's Smile encoder tests in cmd/sql-to-logsql/api/server_test.go
+        LogsqlResponseReader reader = new LogsqlResponseReader(new ObjectMapper(), null);
+        LogsqlQueryResult result = readSmile(reader,
+                0xFA, 0x85, 'l', 'o', 'g', 's', 'q', 'l', 0x40, '*', 0xFB,
+                0xFA, 0x83, '_', 'm', 's', 'g', 0x40, 'a', 0xFB,
+                0xFA, 0x41, 0x40, 'b', 0xFB);
+        assertEquals("*", result.getLogsql());
+        assertEquals(2, result.getRowCount());
+        assertEquals("a", result.getValue(0, "_msg"));
+        assertEquals("b", result.getValue(1, "_msg"));
+
+        result = readSmile(reader,
+                0xFA, 0x85, 'l', 'o', 'g', 's', 'q', 'l', 0x40, '*', 0xFB,
+                0xFA, 0x80, 'n',
+                0xF8,
+                0xC0,
+                0xC1,
+                0x24, 0x03, 0x88,
+                0x25, 0x20, 0x00, 0x00, 0x00, 0x81,
+                0x26, 0x89, 0x00, 0x20, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+                0x29, 0x00, 0x3F, 0x7C, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+                0x29, 0x00, 0x7F, 0x78, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+                0xF9,
+                0xFB);
+        assertEquals(List.of(0, -1, 100, -2147483649L, new BigInteger("9223372036854775808"), 1.5,
+                Double.POSITIVE_INFINITY), result.getValue(0, "n"));
+
+        // without a header line the first row takes its place, the second one only holds back-references
+        String shortName = "ü".repeat(28);
+        String longName = shortName + "u";
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(0xFA);
+        body.write(0xF6);
+        body.writeBytes(shortName.getBytes(StandardCharsets.UTF_8));
+        body.write(0xC2);
+        body.write(0x34);
+        body.writeBytes(longName.getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(new byte[]{(byte) 0xFC, (byte) 0xC4, (byte) 0xFB, (byte) 0xFA, 0x40, (byte) 0xC6, 0x41,
+                (byte) 0xC8, (byte) 0xFB});
+        result = readSmile(reader, body.toByteArray());
+        assertEquals(List.of(shortName, longName), result.getColumnNames());
+        assertEquals(3, result.getValue(0, shortName));
+        assertEquals(4, result.getValue(0, longName));
+    }
+
+    private static LogsqlQueryResult readSmile(LogsqlResponseReader reader, int... body) throws Exception {
+        byte[] bytes = new byte[body.length];
+        for (int i = 0; i < body.length; i++) {
+            bytes[i] = (byte) body[i];
+        }
+        return readSmile(reader, bytes);
+    }
+
+    private static LogsqlQueryResult readSmile(LogsqlResponseReader reader, byte[] body) throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.writeBytes(new byte[]{':', ')', '\n', 0x01});
+        stream.writeBytes(body);
+        return reader.read(new ByteArrayInputStream(stream.toByteArray()), LogsqlResponseReader.SMILE_CONTENT_TYPE, 0);
+    }
+
+    private List<String> query(String protocol, String rowFormat, String expectedContentType) throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        Properties properties = new Properties();
+        properties.setProperty("protocol", protocol);
+        properties.setProperty("rowFormat", rowFormat);
+        properties.setProperty("retainedResultRows", "0");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            server.setResponder(sql -> DATA);
+            List<String> rows = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                assertEquals("*", ((LogsqlStatement) statement).getTranslatedLogsql());
+                while (rs.next()) {
+                    rows.add(rs.getString("_msg") + "|" + rs.getObject("hits") + "|" + rs.getObject("extra"));
+                }
+            }
+            assertEquals(expectedContentType, server.getLastContentType());
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.victoriametrics.logsql.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlQueryListenerTest {
+
+    private static final List<String> CALLS = Collections.synchronizedList(new ArrayList<>());
+
+    public static final class RecordingListener implements LogsqlQueryListener {
+
+        @Override
+        public void queryStarted(LogsqlQueryExecution execution) {
+            CALLS.add("started " + execution.getSql());
+        }
+
+        @Override
+        public void queryTranslated(LogsqlQueryExecution execution, String logsql) {
+            CALLS.add("translated " + logsql);
+        }
+
+        @Override
+        public void firstRow(LogsqlQueryExecution execution) {
+            CALLS.add("first row " + execution.getRowsDecoded());
+        }
+
+        @Override
+        public void queryProgress(LogsqlQueryExecution execution, long rows, long bytes) {
+            assertTrue(bytes > 0);
+            CALLS.add("progress " + rows);
+        }
+
+        @Override
+        public void queryCompleted(LogsqlQueryExecution execution, long rows) {
+            assertTrue(execution.getResponseNanos() > 0);
+            assertTrue(execution.getTotalNanos() >= execution.getResponseNanos() + execution.getDecodeNanos());
+            CALLS.add("completed " + rows);
+        }
+
+        @Override
+        public void queryFailed(LogsqlQueryExecution execution, Throwable error) {
+            CALLS.add("failed " + error.getClass().getSimpleName());
+        }
+    }
+
+    public static final class FailingListener implements LogsqlQueryListener {
+
+        @Override
+        public void queryStarted(LogsqlQueryExecution execution) {
+            throw new IllegalStateException("listener failure");
+        }
+    }
+
+    @Test
+    public void listenersFollowTheExecution() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        Properties properties = new Properties();
+        properties.setProperty("queryListeners",
+                FailingListener.class.getName() + ", " + RecordingListener.class.getName());
+        properties.setProperty("queryProgressRows", "10");
+        properties.setProperty("retainedResultRows", "0");
+        CALLS.clear();
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            server.setSyntheticRows(25, 4);
+            statement.setMaxRows(20);
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                int rows = 0;
+                while (rs.next()) {
+                    rows++;
+                }
+                assertEquals(20, rows);
+            }
+            assertEquals(List.of("started SELECT * FROM logs", "translated *", "first row 1", "progress 10",
+                    "progress 20", "completed 20"), CALLS);
+
+            CALLS.clear();
+            server.setErrorRate(1.0);
+            assertThrows(SQLException.class, () -> statement.executeQuery("SELECT 1"));
+            assertEquals(List.of("started SELECT 1", "failed SQLException"), CALLS);
+        }
+    }
+
+    @Test
+    public void unknownListenerClassIsRejected() {
+        Properties properties = new Properties();
+        properties.setProperty("queryListeners", "com.example.MissingListener");
+        SQLException e = assertThrows(SQLException.class,
+                () -> LogsqlUrlParser.parse("jdbc:logsql://localhost:8080", properties));
+        assertTrue(e.getMessage().contains("com.example.MissingListener"));
+    }
+}
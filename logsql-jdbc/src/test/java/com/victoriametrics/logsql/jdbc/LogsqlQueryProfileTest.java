@@ -0,0 +1,62 @@
+package com.victoriametrics.logsql.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlQueryProfileTest {
+
+    @Test
+    public void profileReportsWhereTheTimeWent() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        Properties properties = new Properties();
+        properties.setProperty("retainedResultRows", "1000");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            server.setSyntheticRows(100, 4);
+            server.setLatencyMillis(20);
+            statement.setMaxRows(30);
+
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                assertTrue(rs.isWrapperFor(LogsqlQueryProfile.class));
+                LogsqlQueryProfile profile = rs.unwrap(LogsqlQueryProfile.class);
+                assertEquals(LogsqlQueryProfile.Source.SERVICE, profile.getSource());
+                assertEquals("SELECT * FROM logs", profile.getSql());
+                assertEquals(100_000, profile.getTranslationNanos());
+                assertEquals(20_000_000, profile.getServerNanos());
+                assertTrue(profile.getResponseNanos() >= profile.getServerNanos());
+                assertTrue(profile.getTotalNanos() >= profile.getResponseNanos() + profile.getDecodeNanos());
+                assertTrue(profile.getBytesReceived() > 0);
+                assertTrue(profile.getBytesDecoded() >= profile.getBytesReceived());
+                assertEquals(100, profile.getRowsDecoded());
+                assertEquals(30, profile.getRowsReturned());
+            }
+
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                LogsqlQueryProfile profile = rs.unwrap(LogsqlQueryProfile.class);
+                assertEquals(LogsqlQueryProfile.Source.NOT_MODIFIED, profile.getSource());
+                assertEquals(0, profile.getRowsDecoded());
+                assertEquals(30, profile.getRowsReturned());
+            }
+        }
+    }
+
+    @Test
+    public void metadataResultSetsHaveNoProfile() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl());
+             ResultSet rs = connection.getMetaData().getTableTypes()) {
+            assertFalse(rs.isWrapperFor(LogsqlQueryProfile.class));
+            assertThrows(SQLException.class, () -> rs.unwrap(LogsqlQueryProfile.class));
+        }
+    }
+}
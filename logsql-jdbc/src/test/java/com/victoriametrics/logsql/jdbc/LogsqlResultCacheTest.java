@@ -0,0 +1,273 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlResultCacheTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    public void roundTripsValuesThroughMappedFile() throws Exception {
+        LogsqlResultCache cache = LogsqlResultCache.open(cacheDir, 1024 * 1024, 1);
+        LogsqlResultBuilder builder = new LogsqlResultBuilder(0);
+        builder.addRow(row("_time", "2024-01-01T00:00:00Z", "hits", 5, "big", 1L << 40, "ratio", 0.5, "ok", true));
+        builder.addRow(row("_time", "2024-01-01T00:00:01Z", "hits", null, "nested", Map.of("a", 1)));
+        builder.addRow(row("_msg", "ünïcödé", "hits", 7));
+        LogsqlQueryResult original = builder.build("* | limit 3");
+
+        cache.put("k1", original, mapper);
+        LogsqlQueryResult cached = cache.get("k1", Duration.ofMinutes(1), mapper);
+
+        assertNotNull(cached);
+        assertEquals("* | limit 3", cached.getLogsql());
+        assertEquals(original.getColumnNames(), cached.getColumnNames());
+        assertArrayEquals(original.getColumnTypes(), cached.getColumnTypes());
+        assertEquals(3, cached.getRowCount());
+        for (int row = 0; row < original.getRowCount(); row++) {
+            for (int column = 0; column < original.getColumnNames().size(); column++) {
+                assertEquals(original.getRows().getValue(row, column), cached.getRows().getValue(row, column),
+                        "row " + row + ", column " + column);
+            }
+        }
+        assertEquals(Types.INTEGER, cached.getColumnTypes()[cached.getColumnNames().indexOf("hits")]);
+    }
+
+    @Test
+    public void expiredEntriesAreDropped() throws Exception {
+        LogsqlResultCache cache = LogsqlResultCache.open(cacheDir, 1024 * 1024, 1);
+        cache.put("k1", singleRow("value"), mapper);
+        Thread.sleep(5);
+
+        assertNull(cache.get("k1", Duration.ofMillis(1), mapper));
+        assertEquals(0, countFiles(".lsqc"));
+    }
+
+    @Test
+    public void servesStaleEntriesWhileRefreshing() throws Exception {
+        LogsqlResultCache cache = LogsqlResultCache.open(cacheDir, 1024 * 1024, 1);
+        cache.put("k1", singleRow("old"), mapper);
+        Thread.sleep(5);
+
+        LogsqlResultCache.Lookup stale = cache.lookup("k1", Duration.ofMillis(1), Duration.ofMinutes(1), mapper);
+        assertNotNull(stale);
+        assertTrue(stale.isStale());
+        assertEquals("old", stale.result.getValue(0, "_msg"));
+
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(cache.refreshAsync("k1", () -> {
+            release.await();
+            return singleRow("new");
+        }, mapper));
+        assertFalse(cache.refreshAsync("k2", () -> singleRow("other"), mapper), "refresh concurrency is bounded");
+        release.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        LogsqlQueryResult fresh = null;
+        while (fresh == null && System.nanoTime() < deadline) {
+            fresh = cache.get("k1", Duration.ofMinutes(1), mapper);
+            if (fresh == null || !"new".equals(fresh.getValue(0, "_msg"))) {
+                fresh = null;
+                Thread.sleep(10);
+            }
+        }
+        assertNotNull(fresh);
+        assertNull(cache.lookup("k1", Duration.ofMillis(-60_000), Duration.ofMillis(1), mapper));
+    }
+
+    @Test
+    public void refreshesPendingWhenTheConnectionClosesAreDropped() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        Properties properties = new Properties();
+        properties.setProperty("cacheDir", cacheDir.toString());
+        properties.setProperty("cacheTtl", "1");
+        properties.setProperty("cacheMaxStale", "60000");
+        try (LogsqlStandInServer server = new LogsqlStandInServer()) {
+            server.setResponder(sql -> "{\"_msg\":\"old\"}\n");
+            try (Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+                 Statement statement = connection.createStatement()) {
+                statement.executeQuery("SELECT * FROM logs").close();
+                Thread.sleep(5);
+                server.setResponder(sql -> "{\"_msg\":\"new\"}\n");
+                server.setLatencyMillis(200);
+                try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                    assertNotNull(rs.getWarnings(), "the stale entry is served while it is refreshed");
+                }
+            }
+            Thread.sleep(500);
+
+            properties.setProperty("cacheTtl", "60000");
+            try (Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                assertTrue(rs.next());
+                assertEquals("old", rs.getString("_msg"), "the refresh of the closed connection was dropped");
+            }
+        }
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntriesBeyondBudget() throws Exception {
+        LogsqlQueryResult result = singleRow("x".repeat(400));
+        Path probeDir = Files.createDirectories(cacheDir.resolve("probe"));
+        LogsqlResultCache probe = LogsqlResultCache.open(probeDir, Long.MAX_VALUE, 1);
+        probe.put("probe", result, mapper);
+        long entrySize = Files.size(probeDir.resolve("probe.lsqc"));
+
+        Path dir = Files.createDirectories(cacheDir.resolve("lru"));
+        LogsqlResultCache cache = LogsqlResultCache.open(dir, entrySize * 2, 1);
+        cache.put("a", result, mapper);
+        cache.put("b", result, mapper);
+        assertNotNull(cache.get("a", Duration.ofMinutes(1), mapper));
+        cache.put("c", result, mapper);
+
+        assertNotNull(cache.get("a", Duration.ofMinutes(1), mapper));
+        assertNull(cache.get("b", Duration.ofMinutes(1), mapper));
+        assertNotNull(cache.get("c", Duration.ofMinutes(1), mapper));
+    }
+
+    @Test
+    public void resultsTooLargeToStoreDropTheEntryTheyReplace() throws Exception {
+        LogsqlResultCache cache = LogsqlResultCache.open(cacheDir, 1024, 1);
+        cache.put("k1", singleRow("old"), mapper);
+        assertNotNull(cache.get("k1", Duration.ofMinutes(1), mapper));
+
+        cache.put("k1", singleRow("x".repeat(2048)), mapper);
+        assertNull(cache.get("k1", Duration.ofMinutes(1), mapper));
+        assertEquals(0, countFiles(".lsqc"));
+        assertEquals(0, countFiles(".tmp"));
+    }
+
+    @Test
+    public void connectionsSharingADirectoryMustAgreeOnItsSettings() throws Exception {
+        LogsqlResultCache cache = LogsqlResultCache.open(cacheDir, 1024 * 1024, 1);
+        assertSame(cache, LogsqlResultCache.open(cacheDir, 1024 * 1024, 1));
+        SQLException budget = assertThrows(SQLException.class, () -> LogsqlResultCache.open(cacheDir, 2048, 1));
+        assertTrue(budget.getMessage().contains("cacheMaxBytes=1048576"), budget.getMessage());
+        assertThrows(SQLException.class, () -> LogsqlResultCache.open(cacheDir, 1024 * 1024, 2));
+
+        cache.release();
+        cache.release();
+        LogsqlResultCache reopened = LogsqlResultCache.open(cacheDir, 2048, 1);
+        assertNotSame(cache, reopened, "the directory is closed with the last connection using it");
+        reopened.release();
+    }
+
+    @Test
+    public void connectionsFailingTheirHealthCheckDoNotOpenTheCache() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        String url;
+        try (LogsqlStandInServer server = new LogsqlStandInServer()) {
+            url = server.jdbcUrl();
+        }
+        Path dir = cacheDir.resolve("unreachable");
+        Properties properties = new Properties();
+        properties.setProperty("cacheDir", dir.toString());
+        assertThrows(SQLException.class, () -> DriverManager.getConnection(url, properties));
+        assertFalse(Files.exists(dir));
+    }
+
+    @Test
+    public void leavesNoTemporaryFilesAndIgnoresCorruptEntries() throws Exception {
+        LogsqlResultCache cache = LogsqlResultCache.open(cacheDir, 1024 * 1024, 1);
+        cache.put("k1", singleRow("value"), mapper);
+        assertEquals(0, countFiles(".tmp"));
+
+        Files.write(cacheDir.resolve("k2.lsqc"), new byte[]{1, 2, 3});
+        assertNull(cache.get("k2", Duration.ofMinutes(1), mapper));
+        assertFalse(Files.exists(cacheDir.resolve("k2.lsqc")));
+    }
+
+    @Test
+    public void entriesWithOffsetsOutsideTheFileAreMisses() throws Exception {
+        LogsqlResultCache cache = LogsqlResultCache.open(cacheDir, 1024 * 1024, 1);
+        LogsqlResultBuilder builder = new LogsqlResultBuilder(0);
+        builder.addRow(row("_msg", "first", "hits", 1));
+        builder.addRow(row("_msg", "second", "hits", 2));
+        LogsqlQueryResult result = builder.build("*");
+        cache.put("k1", result, mapper);
+        byte[] valid = Files.readAllBytes(cacheDir.resolve("k1.lsqc"));
+        ByteBuffer file = ByteBuffer.wrap(valid);
+        int directory = (int) file.getLong(valid.length - 12);
+        int rowCount = directory + 4 + 1;
+        int firstColumn = rowCount + 8;
+        int firstLength = firstColumn + 4 + "_msg".length() + 4 + 1 + 8;
+        int secondOffset = firstLength + 8 + 4 + "hits".length() + 4 + 1;
+
+        int[][] corruptions = {
+                {rowCount, 3},
+                {firstLength + 4, 1 << 20},
+                {secondOffset + 4, valid.length},
+                {secondOffset + 4, -1},
+        };
+        for (int[] corruption : corruptions) {
+            byte[] corrupted = valid.clone();
+            ByteBuffer.wrap(corrupted).putInt(corruption[0], corruption[1]);
+            Files.write(cacheDir.resolve("k1.lsqc"), corrupted);
+            assertNull(cache.get("k1", Duration.ofMinutes(1), mapper), "corrupted at " + corruption[0]);
+            assertFalse(Files.exists(cacheDir.resolve("k1.lsqc")));
+        }
+
+        byte[] truncated = new byte[valid.length - 12];
+        System.arraycopy(valid, 0, truncated, 0, truncated.length - 12);
+        System.arraycopy(valid, valid.length - 12, truncated, truncated.length - 12, 12);
+        Files.write(cacheDir.resolve("k1.lsqc"), truncated);
+        assertNull(cache.get("k1", Duration.ofMinutes(1), mapper));
+
+        cache.put("k1", result, mapper);
+        LogsqlQueryResult cached = cache.get("k1", Duration.ofMinutes(1), mapper);
+        assertEquals("second", cached.getValue(1, "_msg"));
+        assertEquals(2, cached.getValue(1, "hits"));
+    }
+
+    @Test
+    public void cachesOnlyDataQueries() {
+        assertTrue(LogsqlResultCache.isCacheable("  select * from logs"));
+        assertTrue(LogsqlResultCache.isCacheable("WITH t AS (SELECT 1) SELECT * FROM t"));
+        assertFalse(LogsqlResultCache.isCacheable("CREATE VIEW v AS SELECT * FROM logs"));
+        assertFalse(LogsqlResultCache.isCacheable("SHOW TABLES"));
+    }
+
+    private LogsqlQueryResult singleRow(String value) throws SQLException {
+        LogsqlResultBuilder builder = new LogsqlResultBuilder(0);
+        builder.addRow(row("_msg", value));
+        return builder.build("*");
+    }
+
+    private long countFiles(String suffix) throws Exception {
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(suffix)).count();
+        }
+    }
+
+    private static Map<String, Object> row(Object... keyValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            row.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return row;
+    }
+}
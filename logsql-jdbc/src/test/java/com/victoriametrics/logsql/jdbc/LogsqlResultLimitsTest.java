@@ -0,0 +1,143 @@
+package com.victoriametrics.logsql.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlResultLimitsTest {
+
+    private static final String[][] READERS = {
+            {"decodeParallelism", "1"},
+            {"decodeParallelism", "4"},
+            {"lazyDecoding", "true"},
+            {"rowFormat", "smile"},
+            {"protocolVersion", "1"},
+    };
+
+    @Test
+    public void truncatesAtMaxResultBytesAndAbortsTheResponse() throws Exception {
+        String data = rows(200_000, -1);
+        for (String[] reader : READERS) {
+            try (LogsqlStandInServer server = new LogsqlStandInServer();
+                 Connection connection = connect(server, reader);
+                 Statement statement = connection.createStatement()) {
+                server.setResponder(sql -> data);
+                LogsqlStatementLimits limits = statement.unwrap(LogsqlStatementLimits.class);
+                limits.setMaxResultBytes(64 * 1024);
+                LogsqlConnectionMetrics metrics = connection.unwrap(LogsqlConnectionMetrics.class);
+                String name = String.join("=", reader);
+
+                int rows = 0;
+                try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                    SQLWarning warning = rs.getWarnings();
+                    assertNotNull(warning, name);
+                    assertEquals(LogsqlResultLimits.TRUNCATED_STATE, warning.getSQLState(), name);
+                    assertTrue(warning.getMessage().contains("maxResultBytes of 65536 bytes"), name);
+                    while (rs.next()) {
+                        assertEquals("request " + rows, rs.getString("_msg"), name);
+                        rows++;
+                    }
+                }
+                assertTrue(rows < 4000, name);
+                if (!"protocolVersion".equals(reader[0])) {
+                    // the envelope holds its rows in one string that a cut-off response never completes
+                    assertTrue(rows > 1000, name);
+                }
+                assertTrue(metrics.getResponseBytesReceived() < data.length() / 4, name);
+
+                // the connection is usable after an aborted response
+                limits.setMaxResultBytes(0);
+                try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                    assertNull(rs.getWarnings(), name);
+                    int all = 0;
+                    while (rs.next()) {
+                        all++;
+                    }
+                    assertEquals(200_000, all, name);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void truncatesBeforeAFieldLargerThanMaxFieldBytes() throws Exception {
+        String data = rows(1000, 600);
+        for (String[] reader : READERS) {
+            Properties properties = properties(reader);
+            properties.setProperty("maxFieldBytes", "100000");
+            try (LogsqlStandInServer server = new LogsqlStandInServer();
+                 Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+                 Statement statement = connection.createStatement()) {
+                server.setResponder(sql -> data);
+                String name = String.join("=", reader);
+                assertEquals(100000, statement.unwrap(LogsqlStatementLimits.class).getMaxFieldBytes(), name);
+
+                int rows = 0;
+                try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                    assertNotNull(rs.getWarnings(), name);
+                    assertTrue(rs.getWarnings().getMessage().contains("maxFieldBytes of 100000 bytes"), name);
+                    while (rs.next()) {
+                        assertEquals("request " + rows, rs.getString("_msg"), name);
+                        rows++;
+                    }
+                }
+                // parallel decoding may end at an earlier chunk boundary, never after the oversized row
+                assertTrue(rows <= 600, name);
+                if (!"decodeParallelism=4".equals(name)) {
+                    assertEquals(600, rows, name);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void failsWhenConfigured() throws Exception {
+        String data = rows(10_000, -1);
+        Properties properties = new Properties();
+        properties.setProperty("maxResultBytes", "4096");
+        properties.setProperty("limitPolicy", "fail");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            server.setResponder(sql -> data);
+            SQLException error = assertThrows(SQLException.class, () -> statement.executeQuery("SELECT * FROM logs"));
+            assertEquals(LogsqlResultLimits.LIMIT_EXCEEDED_STATE, error.getSQLState());
+            assertTrue(error.getMessage().contains("maxResultBytes of 4096 bytes"));
+            assertEquals(0, connection.unwrap(LogsqlConnectionMetrics.class).getResultBytesInUse());
+
+            // a response within the limit is not affected
+            server.setResponder(sql -> rows(10, -1));
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                assertNull(rs.getWarnings());
+            }
+        }
+    }
+
+    private static String rows(int count, int hugeRow) {
+        StringBuilder data = new StringBuilder();
+        String huge = "x".repeat(1_000_000);
+        for (int i = 0; i < count; i++) {
+            data.append("{\"_msg\":\"").append(i == hugeRow ? huge : "request " + i).append("\",\"status\":")
+                    .append(200 + i % 3).append("}\n");
+        }
+        return data.toString();
+    }
+
+    private static Connection connect(LogsqlStandInServer server, String[] reader) throws SQLException {
+        return DriverManager.getConnection(server.jdbcUrl(), properties(reader));
+    }
+
+    private static Properties properties(String[] reader) {
+        Properties properties = new Properties();
+        properties.setProperty(reader[0], reader[1]);
+        return properties;
+    }
+}
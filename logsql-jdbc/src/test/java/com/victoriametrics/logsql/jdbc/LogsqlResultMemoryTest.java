@@ -0,0 +1,159 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlResultMemoryTest {
+
+    @TempDir
+    Path spillDir;
+
+    @Test
+    public void spillsRowsBeyondTheStatementBudget() throws Exception {
+        LogsqlConnectionStats stats = new LogsqlConnectionStats();
+        LogsqlResultBuilder heap = new LogsqlResultBuilder(0);
+        LogsqlResultBuilder budgeted = new LogsqlResultBuilder(0, null,
+                memory(stats, "statementMemoryBytes", "20000"));
+        // rows larger than a block get a block of their own
+        String huge = "y".repeat(2 * LogsqlSpillRowStore.BLOCK_BYTES);
+        for (int i = 0; i < 3000; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("_msg", i % 1000 == 500 ? huge : "request " + i);
+            row.put("status", 200 + i % 3);
+            if (i > 2000) {
+                // a column first seen in the spilled rows
+                row.put("late", i * 0.5);
+            }
+            heap.addRow(row);
+            budgeted.addRow(row);
+        }
+        LogsqlQueryResult expected = heap.build("*");
+        LogsqlQueryResult actual = budgeted.build("*");
+        assertEquals(expected.getColumnNames(), actual.getColumnNames());
+        assertArrayEquals(expected.getColumnTypes(), actual.getColumnTypes());
+        assertEquals(3000, actual.getRowCount());
+        assertTrue(stats.getSpillBytesWritten() > 6L * LogsqlSpillRowStore.BLOCK_BYTES);
+        assertEquals(stats.getSpillBytesWritten(), stats.getSpillBytesOnDisk());
+        assertTrue(stats.getResultBytesInUse() > 0 && stats.getResultBytesInUse() <= 20000);
+        for (int row = 0; row < 3000; row++) {
+            for (int column = 0; column < 3; column++) {
+                assertEquals(expected.getRows().getValue(row, column), actual.getRows().getValue(row, column),
+                        "row " + row + ", column " + column);
+            }
+        }
+        // random access pages blocks back in any order
+        assertEquals(expected.getRows().getValue(2999, 1), actual.getRows().getValue(2999, 1));
+        assertEquals(expected.getRows().getValue(0, 0), actual.getRows().getValue(0, 0));
+        assertEquals(expected.getRows().getValue(1500, 0), actual.getRows().getValue(1500, 0));
+
+        actual.getRows().close();
+        assertEquals(0, stats.getSpillBytesOnDisk());
+        assertEquals(0, stats.getResultBytesInUse());
+        assertEquals(0, countSpillFiles());
+    }
+
+    @Test
+    public void failsFastWhenConfigured() throws Exception {
+        LogsqlConnectionStats stats = new LogsqlConnectionStats();
+        LogsqlResultMemory memory = memory(stats, "statementMemoryBytes", "1000", "memoryPolicy", "fail");
+        LogsqlResultBuilder builder = new LogsqlResultBuilder(0, null, memory);
+        SQLException error = assertThrows(SQLException.class, () -> {
+            for (int i = 0; i < 100; i++) {
+                builder.addRow(Map.of("_msg", "request " + i));
+            }
+        });
+        assertEquals(LogsqlResultMemory.OUT_OF_MEMORY_STATE, error.getSQLState());
+        assertTrue(error.getMessage().contains("statement memory budget of 1000 bytes"));
+        memory.release();
+        assertEquals(0, stats.getResultBytesInUse());
+        assertEquals(0, countSpillFiles());
+    }
+
+    @Test
+    public void sharesTheConnectionBudgetBetweenOpenResults() throws Exception {
+        LogsqlConnectionStats stats = new LogsqlConnectionStats();
+        LogsqlQueryResult first = fill(memory(stats, "connectionMemoryBytes", "10000"), 100);
+        assertEquals(0, stats.getSpillBytesWritten());
+        long firstBytes = stats.getResultBytesInUse();
+
+        LogsqlQueryResult second = fill(memory(stats, "connectionMemoryBytes", "10000"), 100);
+        assertTrue(stats.getSpillBytesWritten() > 0);
+        assertTrue(stats.getResultBytesInUse() <= 10000);
+        assertEquals("request 99", second.getRows().getValue(99, 0));
+
+        first.getRows().close();
+        second.getRows().close();
+        assertEquals(0, stats.getResultBytesInUse());
+        fill(memory(stats, "connectionMemoryBytes", "10000"), 100);
+        assertEquals(firstBytes, stats.getResultBytesInUse());
+    }
+
+    @Test
+    public void resultSetsSpillAndReportIt() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            data.append("{\"_msg\":\"request ").append(i).append("\"}\n");
+        }
+        Properties properties = new Properties();
+        properties.setProperty("statementMemoryBytes", "10000");
+        properties.setProperty("spillDir", spillDir.toString());
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            server.setResponder(sql -> data.toString());
+            LogsqlConnectionMetrics metrics = connection.unwrap(LogsqlConnectionMetrics.class);
+            int rows = 0;
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM logs")) {
+                assertTrue(metrics.getSpillBytesOnDisk() > 0);
+                while (rs.next()) {
+                    assertEquals("request " + rows, rs.getString(1));
+                    rows++;
+                }
+            }
+            assertEquals(1000, rows);
+            assertEquals(0, metrics.getSpillBytesOnDisk());
+            assertEquals(0, metrics.getResultBytesInUse());
+            assertTrue(metrics.getSpillBytesWritten() > 0);
+        }
+    }
+
+    private LogsqlQueryResult fill(LogsqlResultMemory memory, int rows) throws SQLException {
+        LogsqlResultBuilder builder = new LogsqlResultBuilder(0, null, memory);
+        for (int i = 0; i < rows; i++) {
+            builder.addRow(Map.of("_msg", "request " + i));
+        }
+        return builder.build("*");
+    }
+
+    private LogsqlResultMemory memory(LogsqlConnectionStats stats, String... settings) throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("spillDir", spillDir.toString());
+        for (int i = 0; i < settings.length; i += 2) {
+            properties.setProperty(settings[i], settings[i + 1]);
+        }
+        return new LogsqlResultMemory(new ObjectMapper(), stats,
+                LogsqlUrlParser.parse("jdbc:logsql://localhost", properties));
+    }
+
+    private long countSpillFiles() throws Exception {
+        try (Stream<Path> files = Files.list(spillDir)) {
+            return files.count();
+        }
+    }
+}
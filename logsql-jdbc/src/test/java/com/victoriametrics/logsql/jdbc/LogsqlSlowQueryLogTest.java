@@ -0,0 +1,82 @@
+package com.victoriametrics.logsql.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlSlowQueryLogTest {
+
+    @Test
+    public void slowQueriesAreLoggedWithinTheRateLimit() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        List<LogRecord> records = Collections.synchronizedList(new ArrayList<>());
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger("com.victoriametrics.logsql.jdbc");
+        logger.addHandler(handler);
+        Properties properties = new Properties();
+        properties.setProperty("slowQueryMillis", "200");
+        properties.setProperty("slowQueryLogsPerMinute", "2");
+        properties.setProperty("retainedResultRows", "0");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            server.setSyntheticRows(10, 4);
+            statement.executeQuery("SELECT * FROM fast").close();
+            assertTrue(slowQueryEntries(records).isEmpty());
+
+            server.setLatencyMillis(250);
+            for (int i = 0; i < 3; i++) {
+                statement.executeQuery("SELECT * FROM slow").close();
+            }
+        } finally {
+            logger.removeHandler(handler);
+        }
+
+        List<LogRecord> entries = slowQueryEntries(records);
+        assertEquals(2, entries.size(), "the third entry exceeds the rate limit");
+        LogRecord entry = entries.get(0);
+        assertEquals(Level.WARNING, entry.getLevel());
+        String message = entry.getMessage();
+        assertTrue(message.contains("10 rows"), message);
+        assertTrue(message.contains("response "), message);
+        assertTrue(message.contains("\nSQL: SELECT * FROM slow"), message);
+        assertTrue(message.contains("\nLogsQL: *"), message);
+    }
+
+    private static List<LogRecord> slowQueryEntries(List<LogRecord> records) {
+        List<LogRecord> entries = new ArrayList<>();
+        synchronized (records) {
+            for (LogRecord record : records) {
+                if (record.getMessage().startsWith("Slow query")) {
+                    entries.add(record);
+                }
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,73 @@
+package com.victoriametrics.logsql.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlSqlTemplateTest {
+
+    @Test
+    public void placeholdersInsideQuotesAreNotParameters() {
+        LogsqlSqlTemplate template = LogsqlSqlTemplate.parse(
+                "SELECT \"a?\"\"b\" FROM logs WHERE x = 'it''s ?' AND y = ? AND z IN (?, ?)");
+        assertEquals(3, template.getParameterCount());
+        assertEquals("SELECT \"a?\"\"b\" FROM logs WHERE x = 'it''s ?' AND y = ", template.segment(0));
+        assertEquals(" AND z IN (", template.segment(1));
+        assertEquals(", ", template.segment(2));
+        assertEquals(")", template.segment(3));
+
+        assertEquals(0, LogsqlSqlTemplate.parse("SELECT '?'").getParameterCount());
+        assertEquals(2, LogsqlSqlTemplate.parse("??").getParameterCount());
+    }
+
+    @Test
+    public void valuesAreRenderedAsLiterals() throws SQLException {
+        assertEquals("NULL", literal(null));
+        assertEquals("'it''s '''", literal("it's '"));
+        assertEquals("'x'", literal('x'));
+        assertEquals("-42", literal((byte) -42));
+        assertEquals("9223372036854775807", literal(Long.MAX_VALUE));
+        assertEquals("1.5", literal(1.5f));
+        assertEquals("1.0E-5", literal(1e-5));
+        assertEquals("TRUE", literal(true));
+        assertEquals("100000000000000000000", literal(new BigDecimal("1E+20")));
+        assertEquals("X'00FF7F80'", literal(new byte[]{0, -1, 127, -128}));
+        assertEquals("'2024-02-29'", literal(Date.valueOf("2024-02-29")));
+        assertEquals("'2024-02-29'", literal(LocalDate.of(2024, 2, 29)));
+        assertThrows(SQLException.class, () -> literal(Double.NaN));
+        assertThrows(SQLException.class, () -> literal(Float.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    public void preparedStatementRendersBoundParameters() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl());
+             LogsqlPreparedStatement statement = (LogsqlPreparedStatement) connection.prepareStatement(
+                     "SELECT * FROM logs WHERE level = ? AND '?' <> ? LIMIT ?")) {
+            statement.setString(1, "error");
+            statement.setNull(2, Types.VARCHAR);
+            assertThrows(SQLException.class, statement::renderSql);
+            statement.setInt(3, 10);
+            assertEquals("SELECT * FROM logs WHERE level = 'error' AND '?' <> NULL LIMIT 10", statement.renderSql());
+            statement.setString(1, "a much longer level than the one rendered before");
+            assertEquals("SELECT * FROM logs WHERE level = 'a much longer level than the one rendered before' "
+                    + "AND '?' <> NULL LIMIT 10", statement.renderSql());
+            assertThrows(SQLException.class, () -> statement.setInt(4, 1));
+        }
+    }
+
+    private static String literal(Object value) throws SQLException {
+        StringBuilder builder = new StringBuilder();
+        LogsqlSqlTemplate.appendLiteral(builder, value);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,225 @@
+package com.victoriametrics.logsql.jdbc;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal in-process replacement for the sql-to-logsql service, mirroring its response representations,
+ * compression and validator handling so that driver behaviour can be tested without a VictoriaLogs instance.
+ * For load tests it can answer with synthetic rows of a given count and width, delay every query response and
+ * fail a share of them; requests are handled concurrently.
+ */
+final class LogsqlStandInServer implements AutoCloseable {
+
+    private static final int GZIP_MIN_SIZE = 1024;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final SmileFactory smileFactory = new SmileFactory();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger queryRequests = new AtomicInteger();
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+    private final AtomicLong bodyBytesSent = new AtomicLong();
+    private final AtomicLong failedResponses = new AtomicLong();
+    private volatile String lastContentType;
+    private volatile Function<String, String> responder = sql -> "";
+    private volatile long latencyMillis;
+    private volatile double errorRate;
+
+    LogsqlStandInServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/healthz", exchange -> respond(exchange, 200,
+                "{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/api/v1/sql-to-logsql", this::handleQuery);
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "logsql-stand-in-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Sets the function producing the NDJSON data returned for a SQL statement.
+     */
+    void setResponder(Function<String, String> responder) {
+        this.responder = responder;
+    }
+
+    /**
+     * Answers every query with {@code rows} rows of {@code width} fields from {@link LogsqlSyntheticData}.
+     */
+    void setSyntheticRows(int rows, int width) {
+        String data = new String(LogsqlSyntheticData.rows(LogsqlSyntheticData.DEFAULT_SEED, rows, width),
+                StandardCharsets.UTF_8);
+        this.responder = sql -> data;
+    }
+
+    /**
+     * Delays every query response by {@code millis}, standing in for translation and VictoriaLogs processing.
+     */
+    void setLatencyMillis(long millis) {
+        this.latencyMillis = millis;
+    }
+
+    /**
+     * Fails the given share of query requests with status 500. Failures are spread evenly over the requests rather
+     * than drawn at random, so that a run fails the same requests every time.
+     */
+    void setErrorRate(double rate) {
+        this.errorRate = rate;
+    }
+
+    String jdbcUrl() {
+        return "jdbc:logsql://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    int getQueryRequests() {
+        return queryRequests.get();
+    }
+
+    int getNotModifiedResponses() {
+        return notModifiedResponses.get();
+    }
+
+    long getBodyBytesSent() {
+        return bodyBytesSent.get();
+    }
+
+    long getFailedResponses() {
+        return failedResponses.get();
+    }
+
+    String getLastContentType() {
+        return lastContentType;
+    }
+
+    private void handleQuery(HttpExchange exchange) throws IOException {
+        int requestNumber = queryRequests.incrementAndGet();
+        Map<?, ?> request = mapper.readValue(exchange.getRequestBody(), Map.class);
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        double rate = errorRate;
+        if (rate > 0 && (long) (requestNumber * rate) != (long) ((requestNumber - 1) * rate)) {
+            failedResponses.incrementAndGet();
+            respond(exchange, 500, "{\"error\":\"injected failure\"}".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        String sql = (String) request.get("sql");
+        String data = "translate".equals(request.get("execMode")) ? "" : responder.apply(sql);
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        byte[] bytes;
+        if (accept != null && accept.contains(LogsqlResponseReader.SMILE_CONTENT_TYPE)) {
+            bytes = smile(data);
+            lastContentType = LogsqlResponseReader.SMILE_CONTENT_TYPE;
+        } else if (accept != null && accept.contains(LogsqlResponseReader.NDJSON_CONTENT_TYPE)) {
+            String body = mapper.writeValueAsString(Map.of("logsql", "*")) + "\n" + data;
+            bytes = body.getBytes(StandardCharsets.UTF_8);
+            lastContentType = LogsqlResponseReader.NDJSON_CONTENT_TYPE;
+        } else {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("logsql", "*");
+            if (!data.isEmpty()) {
+                response.put("data", data);
+            }
+            bytes = (mapper.writeValueAsString(response) + "\n").getBytes(StandardCharsets.UTF_8);
+            lastContentType = LogsqlResponseReader.JSON_CONTENT_TYPE;
+        }
+        exchange.getResponseHeaders().set("Content-Type", lastContentType);
+        String etag = etag(bytes);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = bytes.length >= GZIP_MIN_SIZE && acceptEncoding != null && acceptEncoding.contains("gzip");
+        if (gzip) {
+            etag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Server-Timing", "translate;dur=0.100, query;dur=" + latencyMillis);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModifiedResponses.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        if (gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        respond(exchange, 200, bytes);
+    }
+
+    private byte[] smile(String data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = smileFactory.createGenerator(out);
+             JsonParser rows = mapper.getFactory().createParser(data)) {
+            generator.writeStartObject();
+            generator.writeStringField("logsql", "*");
+            generator.writeEndObject();
+            while (rows.nextToken() != null) {
+                generator.copyCurrentStructure(rows);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] bytes) throws IOException {
+        if (!exchange.getResponseHeaders().containsKey("Content-Type")) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        bodyBytesSent.addAndGet(bytes.length);
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            StringBuilder sb = new StringBuilder("\"");
+            for (int i = 0; i < 16; i++) {
+                sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return sb.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,78 @@
+package com.victoriametrics.logsql.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlStatementCacheTest {
+
+    private static final String SQL = "SELECT * FROM logs WHERE level = ?";
+
+    @Test
+    public void closedPoolableStatementsHandBackTheirTemplates() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        Properties properties = new Properties();
+        properties.setProperty("statementCacheSize", "1");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties)) {
+            server.setResponder(sql -> "{\"_msg\":\"row\"}\n");
+            assertTrue(connection.getMetaData().supportsStatementPooling());
+            try (Statement statement = connection.createStatement()) {
+                assertFalse(statement.isPoolable());
+            }
+
+            LogsqlSqlTemplate template;
+            try (PreparedStatement statement = connection.prepareStatement(SQL)) {
+                assertTrue(statement.isPoolable());
+                template = ((LogsqlPreparedStatement) statement).getTemplate();
+                statement.setString(1, "error");
+                statement.executeQuery().close();
+            }
+            try (PreparedStatement statement = connection.prepareStatement(SQL)) {
+                assertSame(template, ((LogsqlPreparedStatement) statement).getTemplate());
+                statement.setString(1, "warn");
+                assertEquals("SELECT * FROM logs WHERE level = 'warn'",
+                        ((LogsqlPreparedStatement) statement).renderSql());
+                try (ResultSet rs = statement.executeQuery()) {
+                    assertTrue(rs.next());
+                }
+                statement.setPoolable(false);
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(SQL)) {
+                assertSame(template, ((LogsqlPreparedStatement) statement).getTemplate(),
+                        "a statement that is not poolable does not evict its template");
+            }
+            connection.prepareStatement("SELECT * FROM logs").close();
+            try (PreparedStatement statement = connection.prepareStatement(SQL)) {
+                assertNotSame(template, ((LogsqlPreparedStatement) statement).getTemplate(),
+                        "the least recently used template is evicted");
+            }
+        }
+    }
+
+    @Test
+    public void cachingCanBeDisabled() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        Properties properties = new Properties();
+        properties.setProperty("statementCacheSize", "0");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties)) {
+            assertFalse(connection.getMetaData().supportsStatementPooling());
+            LogsqlSqlTemplate template;
+            try (PreparedStatement statement = connection.prepareStatement(SQL)) {
+                template = ((LogsqlPreparedStatement) statement).getTemplate();
+            }
+            try (PreparedStatement statement = connection.prepareStatement(SQL)) {
+                assertNotSame(template, ((LogsqlPreparedStatement) statement).getTemplate());
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.victoriametrics.logsql.jdbc;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic generator of query responses shaped like VictoriaLogs output. The same seed, row count and width
+ * always produce the same bytes, so benchmark runs on different machines and driver versions decode identical input.
+ *
+ * <p>Every row starts with {@code _time}, {@code _stream}, {@code _msg} and {@code level}; further fields cycle
+ * through integer, floating-point, boolean, numeric-string and keyword values, so that all inferred column types
+ * and the common conversions are exercised. Messages vary in length and contain escaped characters.
+ */
+final class LogsqlSyntheticData {
+
+    static final long DEFAULT_SEED = 20240601L;
+
+    private static final long START_SECONDS = 1_717_200_000L;
+    private static final String[] LEVELS = {"info", "info", "info", "warn", "error", "debug"};
+    private static final String[] HOSTS = {"api-0", "api-1", "api-2", "worker-0", "worker-1"};
+    private static final String[] WORDS = {
+            "request", "completed", "user", "session", "cache", "miss", "timeout", "retry", "upstream", "served",
+            "GET", "POST", "/api/v1/query", "/healthz", "took", "bytes", "ms", "connection", "reset", "ok",
+    };
+    private static final String[] FIELD_KINDS = {"count", "ratio", "ok", "code", "tag"};
+
+    private LogsqlSyntheticData() {
+    }
+
+    /**
+     * Returns the name of the field at {@code index} of a row.
+     */
+    static String fieldName(int index) {
+        switch (index) {
+            case 0:
+                return "_time";
+            case 1:
+                return "_stream";
+            case 2:
+                return "_msg";
+            case 3:
+                return "level";
+            default:
+                return FIELD_KINDS[(index - 4) % FIELD_KINDS.length] + "_" + index;
+        }
+    }
+
+    /**
+     * Returns {@code rows} NDJSON rows of {@code width} fields each, {@code width} being at least 4.
+     */
+    static byte[] rows(long seed, int rows, int width) {
+        if (width < 4) {
+            throw new IllegalArgumentException("width must be at least 4");
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder out = new StringBuilder(rows * width * 24);
+        for (int i = 0; i < rows; i++) {
+            out.append("{\"_time\":\"").append(timestamp(i, random)).append('"');
+            String host = HOSTS[random.nextInt(HOSTS.length)];
+            out.append(",\"_stream\":");
+            appendString(out, "{host=\"" + host + "\",job=\"app\"}");
+            out.append(",\"_msg\":");
+            appendString(out, message(random));
+            out.append(",\"level\":\"").append(LEVELS[random.nextInt(LEVELS.length)]).append('"');
+            for (int field = 4; field < width; field++) {
+                out.append(",\"").append(fieldName(field)).append("\":");
+                switch ((field - 4) % FIELD_KINDS.length) {
+                    case 0:
+                        out.append(random.nextInt(1_000_000));
+                        break;
+                    case 1:
+                        out.append(random.nextInt(100_000) / 1000.0);
+                        break;
+                    case 2:
+                        out.append(random.nextBoolean());
+                        break;
+                    case 3:
+                        out.append('"').append(100 + random.nextInt(500)).append('"');
+                        break;
+                    default:
+                        out.append('"').append(WORDS[random.nextInt(WORDS.length)]).append('"');
+                        break;
+                }
+            }
+            out.append("}\n");
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns an NDJSON response body of the sql-to-logsql service: the header line followed by the rows.
+     */
+    static byte[] ndjsonResponse(long seed, int rows, int width) {
+        byte[] header = "{\"logsql\":\"*\"}\n".getBytes(StandardCharsets.UTF_8);
+        byte[] data = rows(seed, rows, width);
+        byte[] body = new byte[header.length + data.length];
+        System.arraycopy(header, 0, body, 0, header.length);
+        System.arraycopy(data, 0, body, header.length, data.length);
+        return body;
+    }
+
+    private static String timestamp(int row, SplittableRandom random) {
+        // rows are about a millisecond apart, with nanosecond precision as VictoriaLogs reports them
+        return Instant.ofEpochSecond(START_SECONDS + row / 1000, (row % 1000) * 1_000_000L + random.nextInt(1_000_000))
+                .toString();
+    }
+
+    private static String message(SplittableRandom random) {
+        StringBuilder message = new StringBuilder();
+        int words = 4 + random.nextInt(28);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                message.append(' ');
+            }
+            message.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        if (random.nextInt(8) == 0) {
+            message.append(" user=\"alice\"\n\tat com.example.Handler.run(Handler.java:42)");
+        }
+        return message.toString();
+    }
+
+    private static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    out.append(c);
+                    break;
+            }
+        }
+        out.append('"');
+    }
+}
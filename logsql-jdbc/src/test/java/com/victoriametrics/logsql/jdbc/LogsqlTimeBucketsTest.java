@@ -0,0 +1,246 @@
+package com.victoriametrics.logsql.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogsqlTimeBucketsTest {
+
+    @Test
+    public void liftsRelativeTimeConjunct() {
+        LogsqlTimeBuckets.Window sole = LogsqlTimeBuckets.parseWindow(
+                "SELECT * FROM logs WHERE _time > now() - 24h ORDER BY _time");
+        assertEquals("SELECT * FROM logs ORDER BY _time", sole.sql);
+        assertEquals(Duration.ofHours(24), sole.lookback);
+
+        LogsqlTimeBuckets.Window leading = LogsqlTimeBuckets.parseWindow(
+                "SELECT * FROM logs WHERE _time >= NOW() - 30m AND level = 'error'");
+        assertEquals("SELECT * FROM logs WHERE level = 'error'", leading.sql);
+        assertEquals(Duration.ofMinutes(30), leading.lookback);
+
+        LogsqlTimeBuckets.Window trailing = LogsqlTimeBuckets.parseWindow(
+                "SELECT * FROM logs WHERE level = 'error' AND _time > now() - 2d LIMIT 5");
+        assertEquals("SELECT * FROM logs WHERE level = 'error' LIMIT 5", trailing.sql);
+        assertEquals(Duration.ofDays(2), trailing.lookback);
+
+        assertNull(LogsqlTimeBuckets.parseWindow("SELECT * FROM logs WHERE level = 'x' OR _time > now() - 1h"));
+        assertNull(LogsqlTimeBuckets.parseWindow("SELECT * FROM logs WHERE _time >= '2024-01-01'"));
+    }
+
+    @Test
+    public void startsStrictWindowsAfterTheirBound() {
+        Instant now = Instant.parse("2024-01-02T00:30:00Z");
+        LogsqlTimeBuckets.Window strict = LogsqlTimeBuckets.parseWindow(
+                "SELECT * FROM logs WHERE _time > now() - 1h");
+        assertTrue(strict.exclusive);
+        assertEquals(Instant.parse("2024-01-01T23:30:00.000000001Z"), strict.start(now));
+        LogsqlTimeBuckets.Window inclusive = LogsqlTimeBuckets.parseWindow(
+                "SELECT * FROM logs WHERE _time >= now() - 1h");
+        assertFalse(inclusive.exclusive);
+        assertEquals(Instant.parse("2024-01-01T23:30:00Z"), inclusive.start(now));
+
+        // a strict bound on a bucket boundary leaves the first bucket partial
+        List<LogsqlTimeBuckets.Bucket> plan = LogsqlTimeBuckets.plan(
+                Instant.parse("2024-01-01T22:00:00.000000001Z"), now, Duration.ofHours(1), Duration.ofMinutes(1));
+        assertEquals(3, plan.size());
+        assertEquals(Instant.parse("2024-01-01T22:00:00.000000001Z"), plan.get(0).start);
+        assertEquals(Instant.parse("2024-01-01T23:00:00Z"), plan.get(0).end);
+        assertFalse(plan.get(0).closed);
+        assertTrue(plan.get(1).closed);
+        assertEquals(Instant.parse("2024-01-01T23:00:00Z"), plan.get(1).start);
+    }
+
+    @Test
+    public void ignoresPredicatesInsideLiteralsAndComments() {
+        assertNull(LogsqlTimeBuckets.parseWindow("SELECT * FROM logs WHERE _msg = 'x AND _time > now() - 1h'"));
+        assertNull(LogsqlTimeBuckets.parseWindow(
+                "SELECT * FROM logs WHERE level = 'error' -- AND _time > now() - 1h"));
+        assertNull(LogsqlTimeBuckets.parseWindow(
+                "SELECT * FROM logs WHERE level = 'error' /* AND _time > now() - 1h */"));
+
+        LogsqlTimeBuckets.Window window = LogsqlTimeBuckets.parseWindow(
+                "SELECT * FROM logs WHERE _msg = 'it''s AND _time > now() - 1h OR x' AND _time >= now() - 2h");
+        assertEquals("SELECT * FROM logs WHERE _msg = 'it''s AND _time > now() - 1h OR x'", window.sql);
+        assertEquals(Duration.ofHours(2), window.lookback);
+        assertFalse(window.exclusive);
+    }
+
+    @Test
+    public void plansAlignedClosedBucketsBetweenLiveEdges() {
+        Instant now = Instant.parse("2024-01-02T00:30:00Z");
+        List<LogsqlTimeBuckets.Bucket> plan = LogsqlTimeBuckets.plan(
+                now.minus(Duration.ofHours(3)), now, Duration.ofHours(1), Duration.ofMinutes(1));
+
+        assertEquals(4, plan.size());
+        assertEquals(Instant.parse("2024-01-01T21:30:00Z"), plan.get(0).start);
+        assertEquals(Instant.parse("2024-01-01T22:00:00Z"), plan.get(0).end);
+        assertFalse(plan.get(0).closed);
+        assertTrue(plan.get(1).closed);
+        assertEquals(Instant.parse("2024-01-01T22:00:00Z"), plan.get(1).start);
+        assertTrue(plan.get(2).closed);
+        assertEquals(Instant.parse("2024-01-02T00:00:00Z"), plan.get(2).end);
+        assertFalse(plan.get(3).closed);
+        assertEquals(Instant.parse("2024-01-02T00:00:00Z"), plan.get(3).start);
+
+        List<LogsqlTimeBuckets.Bucket> narrow = LogsqlTimeBuckets.plan(
+                now.minus(Duration.ofMinutes(10)), now, Duration.ofHours(1), Duration.ofMinutes(1));
+        assertEquals(1, narrow.size());
+        assertFalse(narrow.get(0).closed);
+    }
+
+    @Test
+    public void onlyRowLocalPipelinesAreBucketable() {
+        assertTrue(LogsqlTimeBuckets.isRowLocal("level:error"));
+        assertTrue(LogsqlTimeBuckets.isRowLocal("* | filter x:\"a|b\" | fields _time, _msg | rename a as b"));
+        assertFalse(LogsqlTimeBuckets.isRowLocal("* | stats count() as hits"));
+        assertFalse(LogsqlTimeBuckets.isRowLocal("* | sort by (_time) | limit 10"));
+        assertFalse(LogsqlTimeBuckets.isRowLocal("* | math now() - _time as age"));
+        assertFalse(LogsqlTimeBuckets.isRowLocal("user:in(* | fields user) | fields _msg"));
+    }
+
+    @Test
+    public void stitchesBucketsUnderUnionOfColumns() throws Exception {
+        LogsqlResultBuilder first = new LogsqlResultBuilder(0);
+        first.addRow(Map.of("a", "x"));
+        LogsqlResultBuilder empty = new LogsqlResultBuilder(0);
+        LogsqlResultBuilder second = new LogsqlResultBuilder(0);
+        second.addRow(Map.of("b", 2));
+        second.addRow(Map.of("b", 3));
+
+        LogsqlQueryResult stitched = LogsqlConcatRowStore.stitch(
+                "*", List.of(first.build("*"), empty.build("*"), second.build("*")), new boolean[3], 2);
+
+        assertEquals(List.of("a", "b"), stitched.getColumnNames());
+        assertEquals(Types.INTEGER, stitched.getColumnTypes()[1]);
+        assertEquals(2, stitched.getRowCount());
+        assertEquals("x", stitched.getValue(0, "a"));
+        assertNull(stitched.getValue(0, "b"));
+        assertNull(stitched.getValue(1, "a"));
+        assertEquals(2, stitched.getValue(1, "b"));
+    }
+
+    @Test
+    public void closesOnlyTheBucketsItOwns() {
+        boolean[] closed = new boolean[2];
+        List<LogsqlQueryResult> parts = List.of(
+                new LogsqlQueryResult("*", List.of("a"), new int[]{Types.VARCHAR}, closing(closed, 0)),
+                new LogsqlQueryResult("*", List.of("a"), new int[]{Types.VARCHAR}, closing(closed, 1)));
+
+        LogsqlConcatRowStore.stitch("*", parts, new boolean[]{false, true}, 0).getRows().close();
+
+        assertFalse(closed[0], "a shared bucket stays open");
+        assertTrue(closed[1]);
+    }
+
+    @Test
+    public void reusesHeapCopiesOfClosedBuckets() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        Properties properties = new Properties();
+        properties.setProperty("timeBucket", "3600000");
+        properties.setProperty("lazyDecoding", "true");
+        properties.setProperty("retainedResultRows", "0");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            server.setResponder(sql -> "{\"_msg\":\"row\"}\n");
+            ResultSet first = statement.executeQuery("SELECT * FROM logs WHERE _time > now() - 3h");
+            int requests = server.getQueryRequests();
+            try (Statement other = connection.createStatement();
+                 ResultSet second = other.executeQuery("SELECT * FROM logs WHERE _time > now() - 3h")) {
+                assertTrue(server.getQueryRequests() - requests < requests - 1, "closed buckets are not fetched again");
+                first.close();
+                int rows = 0;
+                while (second.next()) {
+                    assertEquals("row", second.getString("_msg"));
+                    rows++;
+                }
+                assertTrue(rows >= 3, "the buckets closed with the first result set are still readable");
+            }
+        }
+    }
+
+    @Test
+    public void bucketsOlderThanTheirMaximumAgeAreFetchedAgain() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        Properties properties = new Properties();
+        properties.setProperty("timeBucket", "3600000");
+        properties.setProperty("timeBucketMaxAge", "1");
+        properties.setProperty("retainedResultRows", "0");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            server.setResponder(sql -> "{\"_msg\":\"row\"}\n");
+            statement.executeQuery("SELECT * FROM logs WHERE _time > now() - 3h").close();
+            int requests = server.getQueryRequests();
+            Thread.sleep(10);
+            statement.executeQuery("SELECT * FROM logs WHERE _time > now() - 3h").close();
+            assertTrue(server.getQueryRequests() - requests >= requests - 1, "expired buckets are fetched again");
+        }
+    }
+
+    @Test
+    public void fetchedBucketsAreAccountedAndLimited() throws Exception {
+        Class.forName("com.victoriametrics.logsql.jdbc.LogsqlDriver");
+        Properties properties = new Properties();
+        properties.setProperty("timeBucket", "3600000");
+        properties.setProperty("statementMemoryBytes", "1000");
+        properties.setProperty("memoryPolicy", "fail");
+        String rows = "{\"_msg\":\"row\"}\n".repeat(50);
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            server.setResponder(sql -> rows);
+            SQLException error = assertThrows(SQLException.class,
+                    () -> statement.executeQuery("SELECT * FROM logs WHERE _time > now() - 3h"));
+            assertEquals(LogsqlResultMemory.OUT_OF_MEMORY_STATE, error.getSQLState());
+        }
+
+        properties.remove("statementMemoryBytes");
+        try (LogsqlStandInServer server = new LogsqlStandInServer();
+             Connection connection = DriverManager.getConnection(server.jdbcUrl(), properties);
+             Statement statement = connection.createStatement()) {
+            server.setResponder(sql -> rows);
+            statement.unwrap(LogsqlStatementLimits.class).setMaxResultBytes(rows.length() + 100);
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM logs WHERE _time > now() - 3h")) {
+                assertNotNull(rs.getWarnings());
+                assertEquals(LogsqlResultLimits.TRUNCATED_STATE, rs.getWarnings().getSQLState());
+                int count = 0;
+                while (rs.next()) {
+                    count++;
+                }
+                assertTrue(count >= 50 && count < 100, "the window shares maxResultBytes: " + count);
+            }
+        }
+    }
+
+    private static LogsqlRowStore closing(boolean[] closed, int index) {
+        return new LogsqlRowStore() {
+            @Override
+            public int getRowCount() {
+                return 1;
+            }
+
+            @Override
+            public Object getValue(int row, int column) {
+                return "x";
+            }
+
+            @Override
+            public void close() {
+                closed[index] = true;
+            }
+        };
+    }
+}
@@ -0,0 +1,3 @@
+mvn -DskipTests -f logsql-jdbc/pom.xml install
+mvn -f logsql-jdbc-benchmarks/pom.xml package
+java -jar logsql-jdbc-benchmarks/target/benchmarks.jar -prof gc "$@"
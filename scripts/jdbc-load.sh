@@ -0,0 +1,3 @@
+mvn -DskipTests -f logsql-jdbc/pom.xml install
+mvn -f logsql-jdbc-benchmarks/pom.xml package
+java -cp logsql-jdbc-benchmarks/target/benchmarks.jar com.victoriametrics.logsql.jdbc.LogsqlLoadDriver "$@"